@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import org.springframework.util.unit.DataSize;
+
 import java.time.Duration;
 
 /**
@@ -52,6 +54,21 @@ public class BlobUrlProperties {
     @jakarta.validation.constraints.Positive
     private long maxConcurrentUrls = 1000;
 
+    /**
+     * Maximum number of concurrent blob URLs a single user may hold.
+     * 0 disables the per-user limit.
+     * Default: 0
+     */
+    @jakarta.validation.constraints.PositiveOrZero
+    private long maxConcurrentUrlsPerUser = 0;
+
+    /**
+     * Interval between reconciliations of the in-memory URL quota counters with the database.
+     * Default: 1 minute
+     */
+    @org.hibernate.validator.constraints.time.DurationMin(seconds = 1)
+    private Duration quotaReconcileInterval = Duration.ofMinutes(1);
+
     /**
      * Whether to enable automatic cleanup of expired URLs.
      * Default: true
@@ -81,6 +98,21 @@ public class BlobUrlProperties {
     @jakarta.validation.constraints.Max(64)
     private int tokenLength = 32;
 
+    /**
+     * Maximum number of files accepted by a single batch creation request.
+     * Default: 1000
+     */
+    @jakarta.validation.constraints.Positive
+    private int maxBatchSize = 1000;
+
+    /**
+     * Number of threads creating the hard links of batch creation requests, shared by all requests.
+     * Default: 8
+     */
+    @jakarta.validation.constraints.Min(1)
+    @jakarta.validation.constraints.Max(64)
+    private int batchLinkParallelism = 8;
+
     private RateLimit rateLimit = new RateLimit();
 
     @Data
@@ -89,6 +121,7 @@ public class BlobUrlProperties {
         private DownloadLimit downloadPerIp = new DownloadLimit(50, 5); // 50 requests per 5 minutes per IP
         private DownloadLimit downloadPerUser = new DownloadLimit(100, 5); // 100 requests per 5 minutes per user
         private TokenLimit tokenValidation = new TokenLimit(20, 60); // 20 attempts per 60 seconds
+        private BandwidthLimit bandwidth = new BandwidthLimit();
 
         @Data
         public static class DownloadLimit {
@@ -115,5 +148,33 @@ public class BlobUrlProperties {
                 this.windowSeconds = windowSeconds;
             }
         }
+
+        /**
+         * Byte-rate limits applied to file and blob URL downloads.
+         * A rate of 0 disables the corresponding limit.
+         */
+        @Data
+        public static class BandwidthLimit {
+            /**
+             * Maximum total download rate of this node, in bytes per second.
+             */
+            private DataSize globalPerSecond = DataSize.ofBytes(0);
+
+            /**
+             * Maximum download rate per user, in bytes per second.
+             */
+            private DataSize perUserPerSecond = DataSize.ofBytes(0);
+
+            /**
+             * Maximum download rate per client IP, in bytes per second.
+             */
+            private DataSize perIpPerSecond = DataSize.ofBytes(0);
+
+            /**
+             * Amount of data a stream may send per turn while throttled. Smaller chunks
+             * share bandwidth more evenly between streams at the cost of more wake-ups.
+             */
+            private DataSize chunkSize = DataSize.ofKilobytes(64);
+        }
     }
 }
\ No newline at end of file
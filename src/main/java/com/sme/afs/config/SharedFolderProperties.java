@@ -4,6 +4,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 @Getter
 @Setter
@@ -19,4 +20,34 @@ public class SharedFolderProperties {
     private String packageOwner;
     private String packageOwnerFull;
     private boolean enforcePackageOwner = true;
+    private boolean enforcePermissions = false;
+    private boolean indexOnStartup = true;
+    private int indexBatchSize = 500;
+    private boolean indexedListings = true;
+    private boolean checksumBackfill = true;
+    private DataSize checksumBackfillRate = DataSize.ofMegabytes(32);
+    private long checksumBackfillIntervalMillis = 300_000;
+    private int checksumBackfillBatchSize = 100;
+    private boolean dedupeUploads = false;
+    private long dedupeSweepIntervalMillis = 3_600_000;
+    private boolean versioning = true;
+    private int maxVersionsPerFile = 10;
+    private boolean copyReflink = true;
+    private int jobThreads = 4;
+    private int jobQueueCapacity = 100;
+    private long jobRetentionHours = 168;
+    private int batchMaxSize = 1_000;
+    private int batchParallelism = 8;
+    private long quotaReconcileIntervalMillis = 3_600_000;
+    private boolean reconcile = true;
+    private long reconcileOperationsPerSecond = 2_000;
+    private long monitorCoalesceWindowMillis = 500;
+    private int monitorMaxBatchSize = 10_000;
+    private int monitorBatchQueueCapacity = 16;
+    private int changeFeedQueueCapacity = 256;
+    private int changeFeedMaxSubscribers = 1_000;
+    private long changeFeedTimeoutMillis = 1_800_000;
+    private long changeFeedSendTimeoutMillis = 10_000;
+    private int virtualPathCacheMaxEntries = 100_000;
+    private long virtualPathCacheCheckIntervalMillis = 1_000;
 }
@@ -0,0 +1,97 @@
+package com.sme.afs.controller;
+
+import com.sme.afs.config.BlobUrlProperties;
+import com.sme.afs.dto.BlobUrlBundleRequest;
+import com.sme.afs.dto.BlobUrlResponse;
+import com.sme.afs.dto.CreateBlobUrlBatchRequest;
+import com.sme.afs.model.BlobUrl;
+import com.sme.afs.service.ArchiveService;
+import com.sme.afs.service.BandwidthThrottleService;
+import com.sme.afs.service.BlobUrlService;
+import com.sme.afs.service.PermissionService;
+import com.sme.afs.service.permission.Permission;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.List;
+
+@RestController
+@RequestMapping("/blob-urls")
+@RequiredArgsConstructor
+public class BlobUrlController {
+    private final BlobUrlService blobUrlService;
+    private final BlobUrlProperties blobUrlProperties;
+    private final ArchiveService archiveService;
+    private final BandwidthThrottleService bandwidthThrottleService;
+    private final PermissionService permissionService;
+
+    @PostMapping("/batch")
+    @Operation(summary = "Create blob URLs for multiple files")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Blob URLs created successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid paths or concurrent URL limit reached"),
+        @ApiResponse(responseCode = "404", description = "File not found")
+    })
+    public ResponseEntity<List<BlobUrlResponse>> createBlobUrls(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Valid @RequestBody CreateBlobUrlBatchRequest request) {
+        request.getFilePaths().forEach(path ->
+            permissionService.checkPermission(userDetails.getUsername(), path, Permission.SHARE));
+        List<BlobUrl> blobUrls = blobUrlService.createBlobUrls(request.getFilePaths(), userDetails.getUsername());
+        return ResponseEntity.status(HttpStatus.CREATED)
+            .body(blobUrls.stream().map(this::toResponse).toList());
+    }
+
+    @PostMapping("/bundle")
+    @Operation(summary = "Download the files of several blob URLs as a ZIP archive")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Archive streamed successfully"),
+        @ApiResponse(responseCode = "404", description = "A download URL is invalid or expired"),
+        @ApiResponse(responseCode = "429", description = "Rate limit exceeded")
+    })
+    public ResponseEntity<StreamingResponseBody> downloadBundle(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Valid @RequestBody BlobUrlBundleRequest request,
+            HttpServletRequest httpRequest) {
+        String username = userDetails != null ? userDetails.getUsername() : null;
+        String clientIp = httpRequest.getRemoteAddr();
+        List<BlobUrl> blobUrls = blobUrlService.validateBundle(request.getTokens(), clientIp, username);
+
+        StreamingResponseBody body = out -> {
+            try (OutputStream throttled = bandwidthThrottleService.throttle(out, username, clientIp)) {
+                archiveService.writeBlobBundle(blobUrls, throttled);
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"download.zip\"")
+            .body(body);
+    }
+
+    private BlobUrlResponse toResponse(BlobUrl blobUrl) {
+        return BlobUrlResponse.builder()
+            .downloadUrl(blobUrlProperties.getDownloadUrlPath() + "/" + blobUrl.getToken())
+            .token(blobUrl.getToken())
+            .filename(blobUrl.getFilename())
+            .fileSize(blobUrl.getFileSize())
+            .contentType(blobUrl.getContentType())
+            .expiresAt(blobUrl.getExpiresAt())
+            .status("active")
+            .createdAt(blobUrl.getCreatedAt())
+            .createdBy(blobUrl.getCreatedBy())
+            .build();
+    }
+}
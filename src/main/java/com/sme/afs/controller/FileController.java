@@ -1,11 +1,30 @@
 package com.sme.afs.controller;
 
+import com.sme.afs.dto.BatchMoveRequest;
+import com.sme.afs.dto.BatchPathsRequest;
+import com.sme.afs.dto.BatchResponse;
+import com.sme.afs.dto.CopyRequest;
 import com.sme.afs.dto.FileListResponse;
 import com.sme.afs.dto.FileInfoResponse;
+import com.sme.afs.dto.FileVersionResponse;
+import com.sme.afs.dto.JobResponse;
+import com.sme.afs.dto.ListDirectoryRequest;
 import com.sme.afs.dto.RenameRequest;
 import com.sme.afs.dto.PathRequest;
+import com.sme.afs.dto.SearchRequest;
+import com.sme.afs.dto.SearchResponse;
 import com.sme.afs.dto.MoveRequest;
+import com.sme.afs.service.ArchiveService;
+import com.sme.afs.service.BandwidthThrottleService;
+import com.sme.afs.service.ChangeFeedService;
+import com.sme.afs.service.FileSearchService;
 import com.sme.afs.service.FileService;
+import com.sme.afs.service.PermissionService;
+import com.sme.afs.service.batch.BatchService;
+import com.sme.afs.service.copy.CopyService;
+import com.sme.afs.service.listing.ListingQuery;
+import com.sme.afs.service.search.SearchQuery;
+import com.sme.afs.service.permission.Permission;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -15,24 +34,58 @@ import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
 
 @RestController
 @RequestMapping("/files")
 @RequiredArgsConstructor
 public class FileController {
     private final FileService fileService;
+    private final FileSearchService fileSearchService;
+    private final ArchiveService archiveService;
+    private final BandwidthThrottleService bandwidthThrottleService;
+    private final PermissionService permissionService;
+    private final ChangeFeedService changeFeedService;
+    private final CopyService copyService;
+    private final BatchService batchService;
 
     @PostMapping("/list")
     @Operation(summary = "List directory contents")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Successfully retrieved directory listing"),
+        @ApiResponse(responseCode = "400", description = "Invalid sort, limit or cursor"),
         @ApiResponse(responseCode = "404", description = "Directory not found")
     })
     public ResponseEntity<FileListResponse> listDirectory(
-            @RequestBody PathRequest request) {
-        return ResponseEntity.ok(fileService.listDirectory(request.getPath()));
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody ListDirectoryRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getPath(), Permission.READ);
+        ListingQuery query = ListingQuery.of(request.getSort(), request.getDirection(),
+                request.getLimit(), request.getCursor());
+        return ResponseEntity.ok(fileService.listDirectory(request.getPath(), query));
+    }
+
+    @PostMapping("/search")
+    @Operation(summary = "Search file and tag names")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully searched"),
+        @ApiResponse(responseCode = "400", description = "Invalid query, limit or cursor")
+    })
+    public ResponseEntity<SearchResponse> search(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody SearchRequest request) {
+        SearchQuery query = SearchQuery.of(request.getQuery(), request.getPath(), request.getType(),
+                request.getLimit(), request.getCursor());
+        return ResponseEntity.ok(fileSearchService.search(username(userDetails), query));
     }
 
     @PostMapping("/info")
@@ -42,7 +95,9 @@ public class FileController {
         @ApiResponse(responseCode = "404", description = "File not found")
     })
     public ResponseEntity<FileInfoResponse> getFileInfo(
+            @AuthenticationPrincipal UserDetails userDetails,
             @RequestBody PathRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getPath(), Permission.READ);
         return ResponseEntity.ok(fileService.getFileInfo(request.getPath()));
     }
 
@@ -53,7 +108,9 @@ public class FileController {
         @ApiResponse(responseCode = "409", description = "Directory already exists")
     })
     public ResponseEntity<FileInfoResponse> createDirectory(
+            @AuthenticationPrincipal UserDetails userDetails,
             @RequestBody PathRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getPath(), Permission.WRITE);
         return ResponseEntity.ok(fileService.createDirectory(request.getPath()));
     }
 
@@ -64,7 +121,9 @@ public class FileController {
         @ApiResponse(responseCode = "404", description = "File not found")
     })
     public ResponseEntity<Void> delete(
+            @AuthenticationPrincipal UserDetails userDetails,
             @RequestBody PathRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getPath(), Permission.DELETE);
         fileService.delete(request.getPath());
         return ResponseEntity.ok().build();
     }
@@ -77,7 +136,9 @@ public class FileController {
         @ApiResponse(responseCode = "409", description = "Target name already exists")
     })
     public ResponseEntity<FileInfoResponse> rename(
+            @AuthenticationPrincipal UserDetails userDetails,
             @RequestBody RenameRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getPath(), Permission.WRITE);
         return ResponseEntity.ok(fileService.rename(request.getPath(), request.getNewName()));
     }
 
@@ -89,25 +150,132 @@ public class FileController {
         @ApiResponse(responseCode = "409", description = "Target already exists")
     })
     public ResponseEntity<FileInfoResponse> move(
+            @AuthenticationPrincipal UserDetails userDetails,
             @RequestBody MoveRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getSourcePath(), Permission.DELETE);
+        permissionService.checkPermission(username(userDetails), request.getTargetPath(), Permission.WRITE);
         return ResponseEntity.ok(fileService.move(request.getSourcePath(), request.getTargetPath()));
     }
 
+    @PostMapping("/copy")
+    @Operation(summary = "Copy file/directory on the server")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "File copied"),
+        @ApiResponse(responseCode = "202", description = "Directory copy job started"),
+        @ApiResponse(responseCode = "404", description = "Source not found"),
+        @ApiResponse(responseCode = "409", description = "Target already exists")
+    })
+    public ResponseEntity<JobResponse> copy(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody CopyRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getSourcePath(), Permission.READ);
+        permissionService.checkPermission(username(userDetails), request.getTargetPath(), Permission.WRITE);
+        JobResponse job = copyService.copy(request.getSourcePath(), request.getTargetPath(),
+            request.isRecursive(), username(userDetails));
+        return "COMPLETED".equals(job.getState())
+            ? ResponseEntity.ok(job)
+            : ResponseEntity.accepted().body(job);
+    }
+
+    @PostMapping("/batch/delete")
+    @Operation(summary = "Delete several files/directories",
+               description = "Directories are deleted by jobs; their results carry the job id")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed; see the result of every path"),
+        @ApiResponse(responseCode = "400", description = "Empty or too large batch")
+    })
+    public ResponseEntity<BatchResponse> batchDelete(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody BatchPathsRequest request) {
+        return ResponseEntity.ok(batchService.delete(request.getPaths(), username(userDetails)));
+    }
+
+    @PostMapping("/batch/move")
+    @Operation(summary = "Move several files/directories")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed; see the result of every move"),
+        @ApiResponse(responseCode = "400", description = "Empty or too large batch")
+    })
+    public ResponseEntity<BatchResponse> batchMove(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody BatchMoveRequest request) {
+        return ResponseEntity.ok(batchService.move(request.getMoves(), username(userDetails)));
+    }
+
+    @PostMapping("/batch/create")
+    @Operation(summary = "Create several directories")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed; see the result of every path"),
+        @ApiResponse(responseCode = "400", description = "Empty or too large batch")
+    })
+    public ResponseEntity<BatchResponse> batchCreateDirectories(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody BatchPathsRequest request) {
+        return ResponseEntity.ok(batchService.createDirectories(request.getPaths(), username(userDetails)));
+    }
+
     @GetMapping("/download/**")
     @Operation(summary = "Download file")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "File downloaded successfully"),
         @ApiResponse(responseCode = "404", description = "File not found")
     })
-    public ResponseEntity<Resource> download(HttpServletRequest request) {
-        String path = extractPathFromRequest(request);
+    public ResponseEntity<Resource> download(
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
+        String path = extractPathFromRequest(request, "/api/files/download/");
+        permissionService.checkPermission(username(userDetails), path, Permission.READ);
         Resource resource = fileService.loadAsResource(path);
         
         return ResponseEntity.ok()
             .contentType(MediaType.APPLICATION_OCTET_STREAM)
             .header(HttpHeaders.CONTENT_DISPOSITION, 
                 "attachment; filename=\"" + resource.getFilename() + "\"")
-            .body(resource);
+            .body(bandwidthThrottleService.throttle(resource, username(userDetails), request.getRemoteAddr()));
+    }
+
+    @GetMapping("/archive/**")
+    @Operation(summary = "Download directory as ZIP archive")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Archive streamed successfully"),
+        @ApiResponse(responseCode = "400", description = "Path is not a directory"),
+        @ApiResponse(responseCode = "404", description = "Directory not found")
+    })
+    public ResponseEntity<StreamingResponseBody> downloadArchive(
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
+        String path = extractPathFromRequest(request, "/api/files/archive/");
+        permissionService.checkPermission(username(userDetails), path, Permission.READ);
+        Path directory = fileService.resolveDirectory(path);
+        Path name = directory.getFileName();
+        String username = username(userDetails);
+        String clientIp = request.getRemoteAddr();
+
+        StreamingResponseBody body = out -> {
+            try (OutputStream throttled = bandwidthThrottleService.throttle(out, username, clientIp)) {
+                archiveService.writeDirectory(directory, throttled);
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + (name != null ? name : "archive") + ".zip\"")
+            .body(body);
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream changes below the given paths as server-sent events")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Change feed opened"),
+        @ApiResponse(responseCode = "429", description = "Too many open change feeds")
+    })
+    public SseEmitter changes(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam("path") List<String> paths) {
+        for (String path : paths) {
+            permissionService.checkPermission(username(userDetails), path, Permission.READ);
+        }
+        return changeFeedService.subscribe(paths);
     }
 
     @PostMapping("/upload")
@@ -117,14 +285,37 @@ public class FileController {
         @ApiResponse(responseCode = "409", description = "File already exists")
     })
     public ResponseEntity<FileInfoResponse> upload(
+            @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam("file") MultipartFile file,
-            @RequestParam("path") String path) {
+            @RequestParam("path") String path,
+            @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite) {
+        permissionService.checkPermission(username(userDetails), path, Permission.UPLOAD);
+        if (overwrite) {
+            permissionService.checkPermission(username(userDetails), path, Permission.WRITE);
+            return ResponseEntity.ok(fileService.replace(file, path, username(userDetails)));
+        }
         return ResponseEntity.ok(fileService.store(file, path));
     }
 
-    private String extractPathFromRequest(HttpServletRequest request) {
+    @GetMapping("/versions")
+    @Operation(summary = "List the previous versions of a file")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Versions listed successfully"),
+        @ApiResponse(responseCode = "404", description = "File not found")
+    })
+    public ResponseEntity<List<FileVersionResponse>> listVersions(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam("path") String path) {
+        permissionService.checkPermission(username(userDetails), path, Permission.READ);
+        return ResponseEntity.ok(fileService.listVersions(path));
+    }
+
+    private String username(UserDetails userDetails) {
+        return userDetails != null ? userDetails.getUsername() : null;
+    }
+
+    private String extractPathFromRequest(HttpServletRequest request, String prefix) {
         String requestURI = request.getRequestURI();
-        String downloadPrefix = "/api/files/download/";
-        return requestURI.substring(requestURI.indexOf(downloadPrefix) + downloadPrefix.length());
+        return requestURI.substring(requestURI.indexOf(prefix) + prefix.length());
     }
 }
@@ -2,7 +2,9 @@ package com.sme.afs.controller;
 
 import com.sme.afs.dto.CreateGroupRequest;
 import com.sme.afs.dto.GroupDTO;
+import com.sme.afs.dto.GroupUsageResponse;
 import com.sme.afs.dto.UpdateGroupPermissionsRequest;
+import com.sme.afs.dto.UpdateGroupQuotaRequest;
 import com.sme.afs.dto.UpdateGroupRequest;
 import com.sme.afs.security.annotation.IsAdmin;
 import com.sme.afs.service.GroupService;
@@ -42,4 +44,19 @@ public class GroupController {
         GroupDTO updatedGroup = groupService.updateGroupPermissions(id, request);
         return ResponseEntity.ok(updatedGroup);
     }
+
+    @PutMapping("/{id}/quota")
+    @IsAdmin
+    public ResponseEntity<GroupDTO> updateGroupQuota(
+            @PathVariable Long id,
+            @Valid @RequestBody UpdateGroupQuotaRequest request) {
+        GroupDTO updatedGroup = groupService.updateGroupQuota(id, request);
+        return ResponseEntity.ok(updatedGroup);
+    }
+
+    @GetMapping("/{id}/usage")
+    @IsAdmin
+    public ResponseEntity<GroupUsageResponse> getGroupUsage(@PathVariable Long id) {
+        return ResponseEntity.ok(groupService.getGroupUsage(id));
+    }
 }
@@ -0,0 +1,93 @@
+package com.sme.afs.controller;
+
+import com.sme.afs.dto.JobResponse;
+import com.sme.afs.dto.MoveRequest;
+import com.sme.afs.dto.PathRequest;
+import com.sme.afs.service.FileService;
+import com.sme.afs.service.PermissionService;
+import com.sme.afs.service.job.JobService;
+import com.sme.afs.service.permission.Permission;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/jobs")
+@RequiredArgsConstructor
+public class JobController {
+    private final JobService jobService;
+    private final FileService fileService;
+    private final PermissionService permissionService;
+
+    @PostMapping("/delete")
+    @Operation(summary = "Delete a file/directory in the background")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Delete job started"),
+        @ApiResponse(responseCode = "404", description = "File not found"),
+        @ApiResponse(responseCode = "429", description = "Too many jobs are queued")
+    })
+    public ResponseEntity<JobResponse> delete(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody PathRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getPath(), Permission.DELETE);
+        return ResponseEntity.accepted().body(fileService.submitDelete(request.getPath(), username(userDetails)));
+    }
+
+    @PostMapping("/move")
+    @Operation(summary = "Move a file/directory in the background")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Move job started"),
+        @ApiResponse(responseCode = "404", description = "Source not found"),
+        @ApiResponse(responseCode = "409", description = "Target already exists"),
+        @ApiResponse(responseCode = "429", description = "Too many jobs are queued")
+    })
+    public ResponseEntity<JobResponse> move(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody MoveRequest request) {
+        permissionService.checkPermission(username(userDetails), request.getSourcePath(), Permission.DELETE);
+        permissionService.checkPermission(username(userDetails), request.getTargetPath(), Permission.WRITE);
+        return ResponseEntity.accepted().body(
+            fileService.submitMove(request.getSourcePath(), request.getTargetPath(), username(userDetails)));
+    }
+
+    @GetMapping
+    @Operation(summary = "List the recent jobs of the current user")
+    public ResponseEntity<List<JobResponse>> listJobs(@AuthenticationPrincipal UserDetails userDetails) {
+        return ResponseEntity.ok(jobService.listJobs(username(userDetails)));
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get the state and progress of a job")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job found"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<JobResponse> getJob(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String jobId) {
+        return ResponseEntity.ok(jobService.getJob(jobId, username(userDetails)));
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    @Operation(summary = "Cancel a queued or running job")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cancellation requested"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<JobResponse> cancel(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String jobId) {
+        return ResponseEntity.ok(jobService.cancel(jobId, username(userDetails)));
+    }
+
+    private String username(UserDetails userDetails) {
+        return userDetails != null ? userDetails.getUsername() : null;
+    }
+}
@@ -1,6 +1,10 @@
 package com.sme.afs.controller;
 
+import com.sme.afs.dto.BandwidthStatsResponse;
 import com.sme.afs.dto.SystemStatusResponse;
+import com.sme.afs.security.annotation.IsAdmin;
+import com.sme.afs.service.BandwidthThrottleService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -11,7 +15,9 @@ import java.time.format.DateTimeFormatter;
 
 @RestController
 @RequestMapping("/system")
+@RequiredArgsConstructor
 public class SystemController {
+    private final BandwidthThrottleService bandwidthThrottleService;
 
     @GetMapping("/status")
     public ResponseEntity<SystemStatusResponse> getSystemStatus() {
@@ -21,4 +27,10 @@ public class SystemController {
         );
         return ResponseEntity.ok(status);
     }
+
+    @GetMapping("/bandwidth")
+    @IsAdmin
+    public ResponseEntity<BandwidthStatsResponse> getBandwidthStats() {
+        return ResponseEntity.ok(bandwidthThrottleService.getStats());
+    }
 }
@@ -0,0 +1,15 @@
+package com.sme.afs.dto;
+
+import lombok.Data;
+
+/**
+ * Download bandwidth counters of this node since startup.
+ */
+@Data
+public class BandwidthStatsResponse {
+    private boolean enabled;
+    private int activeStreams;
+    private long totalBytes;
+    private long throttledBytes;  // bytes that had to wait for a bandwidth limit
+    private long throttledMillis; // total time streams spent waiting
+}
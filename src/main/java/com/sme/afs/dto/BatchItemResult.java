@@ -0,0 +1,17 @@
+package com.sme.afs.dto;
+
+import lombok.Data;
+
+@Data
+public class BatchItemResult {
+    private String path;
+    private String targetPath;
+    private boolean success;
+    private String error;
+    private String message;
+
+    /**
+     * Id of the job that deletes a directory tree after the response, or null.
+     */
+    private String jobId;
+}
@@ -0,0 +1,16 @@
+package com.sme.afs.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchMoveRequest {
+    @Schema(description = "Source and target path of every move")
+    private List<MoveRequest> moves;
+}
@@ -0,0 +1,12 @@
+package com.sme.afs.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchResponse {
+    private int succeeded;
+    private int failed;
+    private List<BatchItemResult> results;
+}
@@ -0,0 +1,26 @@
+package com.sme.afs.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Request DTO for downloading the files of several blob URLs as one ZIP archive.
+ */
+@Data
+public class BlobUrlBundleRequest {
+
+    /**
+     * Tokens of the blob URLs to include in the archive.
+     */
+    @NotEmpty(message = "At least one token is required")
+    private List<
+            @NotBlank(message = "Token is required")
+            @Size(max = 64, message = "Token must not exceed 64 characters")
+            @Pattern(regexp = "^[A-Za-z0-9_-]+$", message = "Token contains invalid characters")
+            String> tokens;
+}
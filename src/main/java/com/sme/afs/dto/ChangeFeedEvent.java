@@ -0,0 +1,26 @@
+package com.sme.afs.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeFeedEvent {
+    /**
+     * Changed path relative to the shared folder root.
+     */
+    private String path;
+
+    /**
+     * CREATED, MODIFIED, DELETED, or RESCAN if the entries of the directory must be listed again.
+     */
+    private String type;
+
+    private Instant timestamp;
+}
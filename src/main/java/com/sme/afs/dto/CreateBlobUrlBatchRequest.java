@@ -0,0 +1,30 @@
+package com.sme.afs.dto;
+
+import com.sme.afs.validation.SafePath;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Request DTO for creating blob URLs for several files in one call.
+ * Each entry follows the same rules as {@link CreateBlobUrlRequest#getFilePath()}.
+ */
+@Data
+public class CreateBlobUrlBatchRequest {
+
+    /**
+     * Paths to the files for which to create blob URLs.
+     * Should be relative to the FileService root directory.
+     */
+    @NotEmpty(message = "At least one file path is required")
+    private List<
+            @NotBlank(message = "File path is required")
+            @Size(max = 1000, message = "File path must not exceed 1000 characters")
+            @Pattern(regexp = "^[^\\r\\n\\x00]+$", message = "File path must not contain control characters")
+            @SafePath(message = "File path is unsafe or contains traversal sequences")
+            String> filePaths;
+}
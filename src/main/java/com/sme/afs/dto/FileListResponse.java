@@ -10,4 +10,6 @@ public class FileListResponse {
     private long totalSize;
     private int totalFiles;
     private int totalDirectories;
+    private String nextCursor;
+    private String source;
 }
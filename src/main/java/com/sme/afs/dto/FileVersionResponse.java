@@ -0,0 +1,14 @@
+package com.sme.afs.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class FileVersionResponse {
+    private int versionNumber;
+    private long size;
+    private String checksum;
+    private LocalDateTime createdAt;
+    private String createdBy;
+    private String comment;
+}
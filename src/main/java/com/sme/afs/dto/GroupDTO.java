@@ -11,6 +11,8 @@ public class GroupDTO {
     private String name;
     private String description;
     private String basePath;
+    private Long quotaBytes;
+    private Long quotaFiles;
     private LocalDateTime createdAt;
     private boolean canRead;
     private boolean canWrite;
@@ -24,6 +26,8 @@ public class GroupDTO {
         dto.setName(group.getName());
         dto.setDescription(group.getDescription());
         dto.setBasePath(group.getBasePath());
+        dto.setQuotaBytes(group.getQuotaBytes());
+        dto.setQuotaFiles(group.getQuotaFiles());
         dto.setCreatedAt(group.getCreatedAt());
         
         if (group.getPermissions() != null) {
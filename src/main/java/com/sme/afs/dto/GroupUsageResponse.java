@@ -0,0 +1,16 @@
+package com.sme.afs.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class GroupUsageResponse {
+    private Long groupId;
+    private String basePath;
+    private long usedBytes;
+    private long fileCount;
+    private Long quotaBytes;
+    private Long quotaFiles;
+    private LocalDateTime reconciledAt;
+}
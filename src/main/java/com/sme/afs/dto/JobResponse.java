@@ -0,0 +1,21 @@
+package com.sme.afs.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class JobResponse {
+    private String id;
+    private String type;
+    private String state;
+    private String sourcePath;
+    private String targetPath;
+    private long totalItems;
+    private long processedItems;
+    private long totalBytes;
+    private long processedBytes;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,26 @@
+package com.sme.afs.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ListDirectoryRequest {
+    @Schema(description = "Directory path", example = "/home/user/docs")
+    private String path;
+
+    @Schema(description = "Maximum number of entries to return; all entries if omitted", example = "100")
+    private Integer limit;
+
+    @Schema(description = "Cursor returned as nextCursor by the previous page")
+    private String cursor;
+
+    @Schema(description = "Sort key: name, size or modifiedAt", example = "name")
+    private String sort;
+
+    @Schema(description = "Sort direction: asc or desc", example = "asc")
+    private String direction;
+}
@@ -0,0 +1,26 @@
+package com.sme.afs.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchRequest {
+    @Schema(description = "Text to find in file and tag names, case-insensitive", example = "report")
+    private String query;
+
+    @Schema(description = "Directory to search below; the whole shared folder if omitted", example = "/home/user/docs")
+    private String path;
+
+    @Schema(description = "Entry type: all, file or directory", example = "file")
+    private String type;
+
+    @Schema(description = "Maximum number of entries to return", example = "100")
+    private Integer limit;
+
+    @Schema(description = "Cursor returned as nextCursor by the previous page")
+    private String cursor;
+}
@@ -0,0 +1,12 @@
+package com.sme.afs.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class SearchResponse {
+    private String query;
+    private String path;
+    private List<FileInfoResponse> entries;
+    private String nextCursor;
+}
@@ -0,0 +1,13 @@
+package com.sme.afs.dto;
+
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+
+@Data
+public class UpdateGroupQuotaRequest {
+    @PositiveOrZero(message = "Byte quota must not be negative")
+    private Long quotaBytes;
+
+    @PositiveOrZero(message = "File quota must not be negative")
+    private Long quotaFiles;
+}
@@ -13,6 +13,7 @@ public enum ErrorCode {
     NOT_FOUND("NOT_FOUND", "Resource not found", HttpStatus.NOT_FOUND),
     ENDPOINT_NOT_FOUND("ENDPOINT_NOT_FOUND", "Endpoint not found", HttpStatus.NOT_FOUND),
     TOO_MANY_REQUESTS("TOO_MANY_REQUESTS", "Too many requests", HttpStatus.TOO_MANY_REQUESTS),
+    QUOTA_EXCEEDED("QUOTA_EXCEEDED", "Quota exceeded", HttpStatus.INSUFFICIENT_STORAGE),
     INTERNAL_ERROR("INTERNAL_ERROR", "Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
 
     public final String code;
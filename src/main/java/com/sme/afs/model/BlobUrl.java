@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
@@ -25,7 +26,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class BlobUrl {
+public class BlobUrl implements Persistable<String> {
 
     /**
      * Primary key - cryptographically secure random token
@@ -99,6 +100,28 @@ public class BlobUrl {
     @Column(name = "created_by", nullable = false, length = 100)
     private String createdBy;
 
+    /**
+     * Whether this entity has not been persisted yet.
+     * Tokens are assigned by the application, so without this flag every save
+     * would be a merge preceded by a SELECT, which defeats JDBC insert batching.
+     */
+    @Transient
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @Builder.Default
+    private boolean newEntity = true;
+
+    @Override
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    public String getId() {
+        return token;
+    }
+
+    @Override
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    public boolean isNew() {
+        return newEntity;
+    }
+
     /**
      * Check if this blob URL has expired
      */
@@ -120,4 +143,13 @@ public class BlobUrl {
             createdAt = LocalDateTime.now();
         }
     }
+
+    /**
+     * Mark the entity as managed once it has been stored or loaded
+     */
+    @PostPersist
+    @PostLoad
+    protected void markNotNew() {
+        newEntity = false;
+    }
 }
\ No newline at end of file
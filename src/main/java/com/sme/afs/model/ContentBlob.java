@@ -0,0 +1,70 @@
+package com.sme.afs.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Content of deduplicated uploads, stored once and hard-linked into the shared folder.
+ * New blobs are persisted without a preceding select by the assigned checksum.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "content_blobs")
+public class ContentBlob implements Persistable<String> {
+
+    /**
+     * Hex-encoded SHA-256 of the content.
+     */
+    @Id
+    @Column(length = 64)
+    private String checksum;
+
+    @Column(nullable = false)
+    private long size;
+
+    /**
+     * Number of files in the shared folder that are hard links to the blob.
+     */
+    @Column(nullable = false)
+    private int refCount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime lastLinkedAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public ContentBlob(String checksum, long size, int refCount, LocalDateTime createdAt) {
+        this.checksum = checksum;
+        this.size = size;
+        this.refCount = refCount;
+        this.createdAt = createdAt;
+        this.lastLinkedAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return checksum;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
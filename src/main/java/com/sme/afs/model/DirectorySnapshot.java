@@ -0,0 +1,59 @@
+package com.sme.afs.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Modification time of a directory at the last reconciliation scan.
+ * New snapshots are persisted without a preceding select by the assigned path.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "directory_snapshots")
+public class DirectorySnapshot implements Persistable<String> {
+
+    /**
+     * Path relative to the shared folder root, "/" for the root itself.
+     */
+    @Id
+    @Column(length = 4096)
+    private String path;
+
+    @Column(nullable = false)
+    private LocalDateTime modifiedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime scannedAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public DirectorySnapshot(String path, LocalDateTime modifiedAt, LocalDateTime scannedAt) {
+        this.path = path;
+        this.modifiedAt = modifiedAt;
+        this.scannedAt = scannedAt;
+    }
+
+    @Override
+    public String getId() {
+        return path;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
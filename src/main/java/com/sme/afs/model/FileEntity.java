@@ -20,8 +20,23 @@ public class FileEntity {
     @Column(nullable = false)
     private String name;
 
+    /**
+     * Path relative to the shared folder root, e.g. "/docs/report.pdf".
+     */
+    @Column(nullable = false, length = 4096)
+    private String path;
+
+    /**
+     * Path of the parent directory, "/" for entries in the root. Derived from {@link #path}.
+     */
+    @Column(nullable = false, length = 4096)
+    private String parentPath;
+
+    @Column(nullable = false, length = 4096)
+    private String physicalPath;
+
     @OneToOne
-    @JoinColumn(name = "virtual_path_id", nullable = false)
+    @JoinColumn(name = "virtual_path_id")
     private VirtualPath virtualPath;
 
     @Column(nullable = false)
@@ -61,6 +76,20 @@ public class FileEntity {
     @JoinColumn(name = "deleted_by")
     private User deletedBy;
 
+    @PrePersist
+    @PreUpdate
+    void updateParentPath() {
+        parentPath = parentOf(path);
+    }
+
+    /**
+     * Gets the parent path of a path relative to the shared folder root; "/" for top-level entries.
+     */
+    public static String parentOf(String path) {
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash > 0 ? path.substring(0, lastSlash) : "/";
+    }
+
     @ManyToMany
     @JoinTable(
         name = "file_tag_mappings",
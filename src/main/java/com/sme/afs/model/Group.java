@@ -24,8 +24,23 @@ package com.sme.afs.model;
                                                                                                                                                                                                                           
      private String description;                                                                                                                                                                                          
                                                                                                                                                                                                                           
+     /**
+      * Virtual path the group's rights apply to, relative to the shared folder root, e.g. "/marketing".
+      * It is in the same namespace as file paths and {@link VirtualPath#getVirtualPath()} and is
+      * stored normalized: leading slash, no trailing slash.
+      */
      @Column(nullable = false)                                                                                                                                                                                            
      private String basePath;                                                                                                                                                                                             
+
+     /**
+      * Maximum total size of the files below the base path, or null for no limit.
+      */
+     private Long quotaBytes;
+
+     /**
+      * Maximum number of files below the base path, or null for no limit.
+      */
+     private Long quotaFiles;
                                                                                                                                                                                                                           
      @ManyToMany(mappedBy = "groups")                                                                                                                                                                                     
      private Set<User> users = new HashSet<>();                                                                                                                                                                           
@@ -0,0 +1,58 @@
+package com.sme.afs.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Number and total size of the files below the base path of a group, kept up to date by the
+ * indexer. New rows are persisted without a preceding select by the assigned group id.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "group_usage")
+public class GroupUsage implements Persistable<Long> {
+
+    @Id
+    private Long groupId;
+
+    @Column(nullable = false)
+    private long usedBytes;
+
+    @Column(nullable = false)
+    private long fileCount;
+
+    /**
+     * When the counters were last recounted from the index, or null if they never were.
+     */
+    private LocalDateTime reconciledAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public GroupUsage(Long groupId) {
+        this.groupId = groupId;
+    }
+
+    @Override
+    public Long getId() {
+        return groupId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,103 @@
+package com.sme.afs.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A long-running file operation and its progress.
+ * New jobs are persisted without a preceding select by the assigned id.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "jobs")
+public class Job implements Persistable<String> {
+
+    public enum Type {
+        DELETE, MOVE, COPY
+    }
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private State state;
+
+    private String owner;
+
+    /**
+     * Paths relative to the shared folder root.
+     */
+    @Column(length = 4096)
+    private String sourcePath;
+
+    @Column(length = 4096)
+    private String targetPath;
+
+    @Column(nullable = false)
+    private long totalItems;
+
+    @Column(nullable = false)
+    private long processedItems;
+
+    @Column(nullable = false)
+    private long totalBytes;
+
+    @Column(nullable = false)
+    private long processedBytes;
+
+    @Column(length = 4096)
+    private String error;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public Job(Type type, String owner, String sourcePath, String targetPath) {
+        this.id = UUID.randomUUID().toString();
+        this.type = type;
+        this.state = State.QUEUED;
+        this.owner = owner;
+        this.sourcePath = sourcePath;
+        this.targetPath = targetPath;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
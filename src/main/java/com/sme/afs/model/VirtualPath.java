@@ -33,6 +33,13 @@ public class VirtualPath {
     @Column(nullable = false)
     private String name;
 
+    /**
+     * Number of path segments, e.g. 2 for "/a/b". Kept in sync with {@link #virtualPath}
+     * so that direct children can be looked up by depth and path prefix.
+     */
+    @Column(nullable = false)
+    private int depth;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_id")
     private VirtualPath parent;
@@ -62,15 +69,52 @@ public class VirtualPath {
         return parent == null;
     }
 
+    @PrePersist
+    @PreUpdate
+    void updateDepth() {
+        depth = depthOf(virtualPath);
+    }
+
+    /**
+     * Checks whether this path is the other path or one of its ancestors.
+     * Compares the materialised paths only, so no parent entities are loaded.
+     */
     public boolean isAncestorOf(VirtualPath other) {
-        VirtualPath current = other;
-        while (current != null) {
-            if (current.equals(this)) {
-                return true;
+        return other != null && isAncestorPath(virtualPath, other.getVirtualPath());
+    }
+
+    /**
+     * Checks whether {@code ancestor} equals {@code path} or is one of its ancestor paths.
+     */
+    public static boolean isAncestorPath(String ancestor, String path) {
+        if (ancestor == null || path == null || !path.startsWith(ancestor)) {
+            return false;
+        }
+        return path.length() == ancestor.length()
+            || ancestor.endsWith("/")
+            || path.charAt(ancestor.length()) == '/';
+    }
+
+    /**
+     * Gets the number of segments of a virtual path; the root "/" has depth 0.
+     */
+    public static int depthOf(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/' && i < path.length() - 1) {
+                depth++;
             }
-            current = current.getParent();
         }
-        return false;
+        return depth;
+    }
+
+    /**
+     * Builds a LIKE pattern matching all descendants of a virtual path.
+     * Wildcards in the path are escaped with backslashes.
+     */
+    public static String descendantPattern(String path) {
+        String prefix = path.endsWith("/") ? path : path + "/";
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
     }
 
     @Column(nullable = false)
@@ -0,0 +1,23 @@
+package com.sme.afs.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Version counter of the virtual path tree, incremented by every create, move and delete.
+ * The table holds a single row with id {@link #SINGLETON_ID}.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "virtual_path_tree_version")
+public class VirtualPathTreeVersion {
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private long version;
+}
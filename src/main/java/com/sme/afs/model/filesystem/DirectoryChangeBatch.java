@@ -0,0 +1,18 @@
+package com.sme.afs.model.filesystem;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Changes of the monitored directories collected over one coalescing window, at most one per path.
+ */
+@Getter
+@RequiredArgsConstructor
+public class DirectoryChangeBatch {
+    private final List<DirectoryChangeEvent> changes;
+    private final int receivedEvents;
+    private final Instant firstEventAt;
+}
@@ -12,7 +12,11 @@ public class DirectoryChangeEvent {
     public enum EventType {
         CREATED,
         MODIFIED,
-        DELETED
+        DELETED,
+        /**
+         * Change events of the directory were lost; its entries must be rescanned.
+         */
+        OVERFLOW
     }
 
     private final Path path;
@@ -37,6 +37,18 @@ public interface BlobUrlRepository extends JpaRepository<BlobUrl, String> {
     long countActiveUrlsByUser(@Param("createdBy") String createdBy,
                                @Param("currentTime") LocalDateTime currentTime);
 
+    /**
+     * Count active blob URLs grouped by creator and expiration time.
+     * Batch-created URLs share an expiration time, so this stays compact
+     * and is used to rebuild the in-memory quota counters.
+     *
+     * @param currentTime Current timestamp to compare against
+     * @return Active URL counts per creator and expiration time
+     */
+    @Query("SELECT b.createdBy AS createdBy, b.expiresAt AS expiresAt, COUNT(b) AS urlCount " +
+           "FROM BlobUrl b WHERE b.expiresAt > :currentTime GROUP BY b.createdBy, b.expiresAt")
+    List<ActiveUrlCount> countActiveUrlsByUserAndExpiry(@Param("currentTime") LocalDateTime currentTime);
+
     /**
      * Delete all expired blob URLs.
      * This is used for cleanup operations.
@@ -110,4 +122,15 @@ public interface BlobUrlRepository extends JpaRepository<BlobUrl, String> {
     @Query("SELECT b FROM BlobUrl b WHERE b.expiresAt > :currentTime AND b.expiresAt <= :expirationWindow")
     List<BlobUrl> findUrlsExpiringWithin(@Param("currentTime") LocalDateTime currentTime,
                                          @Param("expirationWindow") LocalDateTime expirationWindow);
-}
\ No newline at end of file
+
+    /**
+     * Projection of active blob URL counts per creator and expiration time.
+     */
+    interface ActiveUrlCount {
+        String getCreatedBy();
+
+        LocalDateTime getExpiresAt();
+
+        long getUrlCount();
+    }
+}
@@ -0,0 +1,35 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.ContentBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    /**
+     * Records one more link to a blob.
+     *
+     * @return 1 if the blob is known, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount + 1, b.lastLinkedAt = :now WHERE b.checksum = :checksum")
+    int incrementRefCount(@Param("checksum") String checksum, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ContentBlob b SET b.refCount = :refCount WHERE b.checksum = :checksum")
+    int updateRefCount(@Param("checksum") String checksum, @Param("refCount") int refCount);
+
+    /**
+     * Finds blobs in checksum order, for the sweep.
+     */
+    @Query("SELECT b FROM ContentBlob b WHERE b.checksum > :afterChecksum ORDER BY b.checksum")
+    List<ContentBlob> findPage(@Param("afterChecksum") String afterChecksum, Pageable pageable);
+}
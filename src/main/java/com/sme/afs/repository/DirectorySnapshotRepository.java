@@ -0,0 +1,38 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.DirectorySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DirectorySnapshotRepository extends JpaRepository<DirectorySnapshot, String> {
+
+    @Query("SELECT s.path AS path, s.modifiedAt AS modifiedAt FROM DirectorySnapshot s")
+    List<SnapshotEntry> findAllEntries();
+
+    @Modifying
+    @Query("UPDATE DirectorySnapshot s SET s.modifiedAt = :modifiedAt, s.scannedAt = :scannedAt WHERE s.path = :path")
+    int updateModifiedAt(@Param("path") String path,
+                         @Param("modifiedAt") LocalDateTime modifiedAt,
+                         @Param("scannedAt") LocalDateTime scannedAt);
+
+    @Modifying
+    @Query("DELETE FROM DirectorySnapshot s WHERE s.path IN :paths")
+    int deleteByPathIn(@Param("paths") Collection<String> paths);
+
+    /**
+     * Projection of the path and modification time of a snapshot.
+     */
+    interface SnapshotEntry {
+        String getPath();
+
+        LocalDateTime getModifiedAt();
+    }
+}
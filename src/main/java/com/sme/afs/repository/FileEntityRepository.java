@@ -1,20 +1,136 @@
 package com.sme.afs.repository;
 
 import com.sme.afs.model.FileEntity;
+import com.sme.afs.model.VirtualPath;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface FileEntityRepository extends JpaRepository<FileEntity, Long> {
+public interface FileEntityRepository extends JpaRepository<FileEntity, Long>, FileEntityRepositoryCustom {
     Optional<FileEntity> findByVirtualPath_VirtualPathAndIsDeletedFalse(String virtualPath);
     List<FileEntity> findByGroupIdAndIsDeletedFalse(Long groupId);
+
+    Optional<FileEntity> findByPathAndIsDeletedFalse(String path);
     
-    @Query("SELECT f FROM FileEntity f WHERE f.virtualPath.virtualPath LIKE CONCAT(:parentPath, '/%') AND f.isDeleted = false")
-    List<FileEntity> findChildrenByPath(String parentPath);
+    /**
+     * Finds the non-deleted entries directly inside a directory, ordered by name.
+     * Served by the partial (parent_path, name) index.
+     */
+    @Query("SELECT f FROM FileEntity f WHERE f.parentPath = :parentPath AND f.isDeleted = false ORDER BY f.name")
+    List<FileEntity> findChildrenByPath(@Param("parentPath") String parentPath);
+
+    /**
+     * Finds the non-deleted entries of a directory with the given names.
+     */
+    @Query("SELECT f FROM FileEntity f WHERE f.parentPath = :parentPath AND f.name IN :names AND f.isDeleted = false")
+    List<FileEntity> findChildrenByPathAndNameIn(@Param("parentPath") String parentPath,
+                                                 @Param("names") Collection<String> names);
+
+    @Query("SELECT f.name FROM FileEntity f WHERE f.parentPath = :parentPath AND f.isDeleted = false")
+    List<String> findChildNamesByPath(@Param("parentPath") String parentPath);
+
+    /**
+     * Counts the non-deleted files and subdirectories of a directory and sums the file sizes.
+     */
+    @Query("SELECT f.isDirectory AS directory, COUNT(f) AS entryCount, COALESCE(SUM(f.size), 0) AS totalSize " +
+           "FROM FileEntity f WHERE f.parentPath = :parentPath AND f.isDeleted = false GROUP BY f.isDirectory")
+    List<ChildTotals> sumChildrenByPath(@Param("parentPath") String parentPath);
+
+    boolean existsByPathAndIsDirectoryTrueAndIsDeletedFalse(String path);
+
+    /**
+     * Counts the non-deleted files of an entry and everything below it and sums their sizes.
+     */
+    @Query("SELECT COUNT(f) AS fileCount, COALESCE(SUM(f.size), 0) AS totalSize FROM FileEntity f " +
+           "WHERE (f.path = :path OR f.path LIKE :descendantPattern ESCAPE '\\') " +
+           "AND f.isDirectory = false AND f.isDeleted = false")
+    SubtreeTotals sumFilesInSubtree(@Param("path") String path,
+                                    @Param("descendantPattern") String descendantPattern);
+
+    @Query("SELECT COUNT(f) AS fileCount, COALESCE(SUM(f.size), 0) AS totalSize FROM FileEntity f " +
+           "WHERE f.path LIKE :descendantPattern ESCAPE '\\' AND f.isDirectory = false AND f.isDeleted = false")
+    SubtreeTotals sumDescendantFiles(@Param("descendantPattern") String descendantPattern);
+
+    /**
+     * Finds all non-deleted entries below a directory.
+     * Served by the partial path text_pattern_ops index.
+     */
+    default List<FileEntity> findAllByBasePath(String basePath) {
+        return findByPathPattern(VirtualPath.descendantPattern(basePath));
+    }
+
+    @Query("SELECT f FROM FileEntity f WHERE f.path LIKE :pattern ESCAPE '\\' AND f.isDeleted = false")
+    List<FileEntity> findByPathPattern(@Param("pattern") String pattern);
     
     boolean existsByVirtualPath_VirtualPathAndIsDeletedFalse(String virtualPath);
+
+    /**
+     * Soft-deletes an entry and, if it is a directory, everything below it in a single statement.
+     *
+     * @param path              Path of the entry
+     * @param descendantPattern LIKE pattern matching all descendants, escaped with backslashes
+     * @param deletedAt         Deletion timestamp
+     * @return number of entries marked as deleted
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE FileEntity f SET f.isDeleted = true, f.deletedAt = :deletedAt " +
+           "WHERE (f.path = :path OR f.path LIKE :descendantPattern ESCAPE '\\') AND f.isDeleted = false")
+    int markSubtreeDeleted(@Param("path") String path,
+                           @Param("descendantPattern") String descendantPattern,
+                           @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE FileEntity f SET f.isDeleted = true, f.deletedAt = :deletedAt " +
+           "WHERE f.path LIKE :descendantPattern ESCAPE '\\' AND f.isDeleted = false")
+    int markDescendantsDeleted(@Param("descendantPattern") String descendantPattern,
+                               @Param("deletedAt") LocalDateTime deletedAt);
+
+    /**
+     * Finds non-deleted files without a checksum, ordered by id, for the checksum backfill.
+     */
+    @Query("SELECT f FROM FileEntity f WHERE f.id > :afterId AND f.checksum IS NULL " +
+           "AND f.isDirectory = false AND f.isDeleted = false ORDER BY f.id")
+    List<FileEntity> findMissingChecksums(@Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Stores the checksum of a file, provided the row still describes the content that was hashed.
+     *
+     * @return 1 if the checksum was stored, 0 if the file changed or is gone
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE FileEntity f SET f.checksum = :checksum WHERE f.path = :path AND f.isDeleted = false " +
+           "AND f.isDirectory = false AND f.size = :size AND f.modifiedAt = :modifiedAt")
+    int updateChecksumIfUnchanged(@Param("path") String path,
+                                  @Param("checksum") String checksum,
+                                  @Param("size") long size,
+                                  @Param("modifiedAt") LocalDateTime modifiedAt);
+
+    /**
+     * Projection of the number and total size of either the files or the subdirectories of a directory.
+     */
+    interface ChildTotals {
+        boolean isDirectory();
+
+        long getEntryCount();
+
+        long getTotalSize();
+    }
+
+    /**
+     * Projection of the number and total size of the files in a subtree.
+     */
+    interface SubtreeTotals {
+        long getFileCount();
+
+        long getTotalSize();
+    }
 }
@@ -0,0 +1,39 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.FileEntity;
+
+import java.util.List;
+
+public interface FileEntityRepositoryCustom {
+
+    /**
+     * Finds a page of the non-deleted entries of a directory using keyset pagination.
+     * Entries are ordered by the sort property, then by name; the page starts after the entry
+     * with the given key and name. Served by the partial (parent_path, property, name) indexes.
+     *
+     * @param parentPath Path of the directory
+     * @param property   Sorted property: "name", "size" or "modifiedAt"
+     * @param descending Whether to sort in descending order
+     * @param afterKey   Sort key of the last entry of the previous page, null for the first page
+     * @param afterName  Name of the last entry of the previous page, null for the first page
+     * @param limit      Maximum number of entries to return
+     * @return the entries of the page
+     */
+    List<FileEntity> findChildrenPage(String parentPath, String property, boolean descending,
+                                      Object afterKey, String afterName, int limit);
+
+    /**
+     * Finds a page of non-deleted entries whose name, or the name of one of their tags, matches
+     * a pattern, using keyset pagination ordered by name, then path.
+     *
+     * @param termPattern  Lower-case LIKE pattern, escaped with backslashes
+     * @param scopePattern LIKE pattern matching the searched subtree, null for everything
+     * @param directory    Directory flag to match, null for files and directories
+     * @param afterName    Name of the last entry of the previous page, null for the first page
+     * @param afterPath    Path of the last entry of the previous page, null for the first page
+     * @param limit        Maximum number of entries to return
+     * @return the entries of the page
+     */
+    List<FileEntity> findSearchPage(String termPattern, String scopePattern, Boolean directory,
+                                    String afterName, String afterPath, int limit);
+}
@@ -0,0 +1,102 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.FileEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.List;
+import java.util.Set;
+
+class FileEntityRepositoryCustomImpl implements FileEntityRepositoryCustom {
+
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("name", "size", "modifiedAt");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private String nameExpression;
+
+    @Override
+    public List<FileEntity> findChildrenPage(String parentPath, String property, boolean descending,
+                                             Object afterKey, String afterName, int limit) {
+        // The property is concatenated into the query, so it must come from the fixed set
+        if (!SORTABLE_PROPERTIES.contains(property)) {
+            throw new IllegalArgumentException("Unsupported sort property: " + property);
+        }
+        String direction = descending ? "DESC" : "ASC";
+        String after = descending ? "<" : ">";
+        String name = nameExpression();
+        String key = property.equals("name") ? name : "f." + property;
+
+        StringBuilder jpql = new StringBuilder(
+            "SELECT f FROM FileEntity f WHERE f.parentPath = :parentPath AND f.isDeleted = false");
+        if (afterName != null) {
+            jpql.append(" AND (").append(key).append(' ').append(after).append(" :afterKey")
+                .append(" OR (").append(key).append(" = :afterKey AND ").append(name).append(' ').append(after)
+                .append(" :afterName))");
+        }
+        jpql.append(" ORDER BY ").append(key).append(' ').append(direction);
+        if (!property.equals("name")) {
+            jpql.append(", ").append(name).append(' ').append(direction);
+        }
+
+        TypedQuery<FileEntity> query = entityManager.createQuery(jpql.toString(), FileEntity.class)
+            .setParameter("parentPath", parentPath)
+            .setMaxResults(limit);
+        if (afterName != null) {
+            query.setParameter("afterKey", afterKey).setParameter("afterName", afterName);
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public List<FileEntity> findSearchPage(String termPattern, String scopePattern, Boolean directory,
+                                           String afterName, String afterPath, int limit) {
+        // lower(name) matches the expression of the trigram indexes
+        StringBuilder jpql = new StringBuilder(
+            "SELECT f FROM FileEntity f WHERE f.isDeleted = false" +
+            " AND (LOWER(f.name) LIKE :term ESCAPE '\\'" +
+            " OR EXISTS (SELECT t.id FROM f.tags t WHERE LOWER(t.name) LIKE :term ESCAPE '\\'))");
+        if (scopePattern != null) {
+            jpql.append(" AND f.path LIKE :scope ESCAPE '\\'");
+        }
+        if (directory != null) {
+            jpql.append(" AND f.isDirectory = :directory");
+        }
+        if (afterPath != null) {
+            jpql.append(" AND (f.name > :afterName OR (f.name = :afterName AND f.path > :afterPath))");
+        }
+        jpql.append(" ORDER BY f.name, f.path");
+
+        TypedQuery<FileEntity> query = entityManager.createQuery(jpql.toString(), FileEntity.class)
+            .setParameter("term", termPattern)
+            .setMaxResults(limit);
+        if (scopePattern != null) {
+            query.setParameter("scope", scopePattern);
+        }
+        if (directory != null) {
+            query.setParameter("directory", directory);
+        }
+        if (afterPath != null) {
+            query.setParameter("afterName", afterName).setParameter("afterPath", afterPath);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Name compared by code point, the order in which directories listed from the disk are sorted,
+     * so a cursor stays valid when a listing moves between the index and the disk. PostgreSQL sorts
+     * by the database collation unless told otherwise; H2 already compares by character.
+     */
+    private String nameExpression() {
+        if (nameExpression == null) {
+            boolean postgres = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+            nameExpression = postgres ? "collate(f.name as code_point)" : "f.name";
+        }
+        return nameExpression;
+    }
+}
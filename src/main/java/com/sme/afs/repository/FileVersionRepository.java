@@ -2,12 +2,28 @@ package com.sme.afs.repository;
 
 import com.sme.afs.model.FileVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface FileVersionRepository extends JpaRepository<FileVersion, Long> {
     List<FileVersion> findByFileIdOrderByVersionNumberDesc(Long fileId);
     FileVersion findTopByFileIdOrderByVersionNumberDesc(Long fileId);
+
+    /**
+     * Finds the ids of the live files of a subtree that have versions.
+     */
+    @Query("SELECT DISTINCT f.id FROM FileVersion v JOIN v.file f " +
+           "WHERE (f.path = :path OR f.path LIKE :descendantPattern ESCAPE '\\') AND f.isDeleted = false")
+    List<Long> findVersionedFileIdsInSubtree(@Param("path") String path,
+                                             @Param("descendantPattern") String descendantPattern);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM FileVersion v WHERE v.file.id IN :fileIds")
+    int deleteByFileIdIn(@Param("fileIds") Collection<Long> fileIds);
 }
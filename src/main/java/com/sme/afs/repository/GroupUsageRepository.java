@@ -0,0 +1,38 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.GroupUsage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface GroupUsageRepository extends JpaRepository<GroupUsage, Long> {
+
+    /**
+     * Adjusts the counters of a group by the given amounts.
+     *
+     * @return 1 if the group has a row, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE GroupUsage u SET u.usedBytes = u.usedBytes + :bytes, u.fileCount = u.fileCount + :files " +
+           "WHERE u.groupId = :groupId")
+    int addUsage(@Param("groupId") Long groupId, @Param("bytes") long bytes, @Param("files") long files);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE GroupUsage u SET u.usedBytes = :bytes, u.fileCount = :files WHERE u.groupId = :groupId")
+    int setUsage(@Param("groupId") Long groupId, @Param("bytes") long bytes, @Param("files") long files);
+
+    /**
+     * Reads the counters of a group and locks them until the end of the transaction, so that
+     * no adjustment is lost while the group is recounted.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM GroupUsage u WHERE u.groupId = :groupId")
+    Optional<GroupUsage> findForUpdate(@Param("groupId") Long groupId);
+}
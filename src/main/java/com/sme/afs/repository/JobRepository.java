@@ -0,0 +1,45 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.Job;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface JobRepository extends JpaRepository<Job, String> {
+
+    List<Job> findTop100ByOwnerOrderByCreatedAtDesc(String owner);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Job j SET j.state = :state, j.startedAt = :startedAt WHERE j.id = :id")
+    int markStarted(@Param("id") String id,
+                    @Param("state") Job.State state,
+                    @Param("startedAt") LocalDateTime startedAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Job j SET j.totalItems = :totalItems, j.processedItems = :processedItems, " +
+           "j.totalBytes = :totalBytes, j.processedBytes = :processedBytes WHERE j.id = :id")
+    int updateProgress(@Param("id") String id,
+                       @Param("totalItems") long totalItems,
+                       @Param("processedItems") long processedItems,
+                       @Param("totalBytes") long totalBytes,
+                       @Param("processedBytes") long processedBytes);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Job j SET j.state = :state, j.error = :error, j.finishedAt = :finishedAt " +
+           "WHERE j.state IN :unfinished")
+    int finishAll(@Param("unfinished") Collection<Job.State> unfinished,
+                  @Param("state") Job.State state,
+                  @Param("error") String error,
+                  @Param("finishedAt") LocalDateTime finishedAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Job j WHERE j.finishedAt < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
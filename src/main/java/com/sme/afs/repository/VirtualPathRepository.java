@@ -1,9 +1,13 @@
 package com.sme.afs.repository;
 
+import com.sme.afs.model.User;
 import com.sme.afs.model.VirtualPath;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,18 +15,77 @@ import java.util.Optional;
 public interface VirtualPathRepository extends JpaRepository<VirtualPath, Long> {
     Optional<VirtualPath> findByVirtualPathAndIsDeletedFalse(String virtualPath);
     
-    @Query("SELECT v FROM VirtualPath v WHERE v.virtualPath LIKE :parentPath || '/%' AND v.isDeleted = false")
-    List<VirtualPath> findChildrenByPath(String parentPath);
+    /**
+     * Finds the direct, non-deleted children of a virtual path, ordered by name.
+     * Served by the partial (depth, virtual_path text_pattern_ops) index.
+     */
+    default List<VirtualPath> findChildrenByPath(String parentPath) {
+        return findByDepthAndPathPattern(VirtualPath.depthOf(parentPath) + 1, VirtualPath.descendantPattern(parentPath));
+    }
+
+    @Query("SELECT v FROM VirtualPath v WHERE v.depth = :depth " +
+           "AND v.virtualPath LIKE :pattern ESCAPE '\\' AND v.isDeleted = false ORDER BY v.name")
+    List<VirtualPath> findByDepthAndPathPattern(@Param("depth") int depth, @Param("pattern") String pattern);
     
     List<VirtualPath> findByParentIdAndIsDeletedFalse(Long parentId);
     
     boolean existsByVirtualPathAndIsDeletedFalse(String virtualPath);
+
+    boolean existsByVirtualPath(String virtualPath);
     
     Optional<VirtualPath> findByPhysicalPathAndIsDeletedFalse(String physicalPath);
     
-    @Query("SELECT v FROM VirtualPath v WHERE v.virtualPath LIKE CONCAT(:basePath, '/%') AND v.isDeleted = false")
-    List<VirtualPath> findAllByBasePathAndIsDeletedFalse(String basePath);
+    /**
+     * Finds all non-deleted descendants of a virtual path.
+     * Served by the partial virtual_path text_pattern_ops index.
+     */
+    default List<VirtualPath> findAllByBasePathAndIsDeletedFalse(String basePath) {
+        return findByPathPattern(VirtualPath.descendantPattern(basePath));
+    }
+
+    @Query("SELECT v FROM VirtualPath v WHERE v.virtualPath LIKE :pattern ESCAPE '\\' AND v.isDeleted = false")
+    List<VirtualPath> findByPathPattern(@Param("pattern") String pattern);
     
     @Query("SELECT COUNT(v) > 0 FROM VirtualPath v WHERE v.parent.id = :parentId AND v.name = :name AND v.isDeleted = false")
     boolean existsByParentIdAndNameAndIsDeletedFalse(Long parentId, String name);
+
+    /**
+     * Soft-deletes up to {@code batchSize} non-deleted entries of a subtree in a single statement.
+     * Call repeatedly until it returns less than {@code batchSize} to delete the whole subtree.
+     *
+     * @param path              Virtual path of the subtree root
+     * @param descendantPattern LIKE pattern matching all descendants, escaped with backslashes
+     * @param deletedAt         Deletion timestamp
+     * @param deletedBy         User deleting the subtree
+     * @param batchSize         Maximum number of entries to update
+     * @return number of entries marked as deleted
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE VirtualPath v SET v.isDeleted = true, v.deletedAt = :deletedAt, v.deletedBy = :deletedBy " +
+           "WHERE v.id IN (SELECT s.id FROM VirtualPath s " +
+           "WHERE (s.virtualPath = :path OR s.virtualPath LIKE :descendantPattern ESCAPE '\\') " +
+           "AND s.isDeleted = false ORDER BY s.id LIMIT :batchSize)")
+    int markSubtreeDeleted(@Param("path") String path,
+                           @Param("descendantPattern") String descendantPattern,
+                           @Param("deletedAt") LocalDateTime deletedAt,
+                           @Param("deletedBy") User deletedBy,
+                           @Param("batchSize") int batchSize);
+
+    /**
+     * Replaces the path prefix of all non-deleted descendants of a moved directory in a single statement.
+     *
+     * @param descendantPattern LIKE pattern matching the descendants' old paths, escaped with backslashes
+     * @param oldPathLength     Length of the directory's old path
+     * @param newPath           New path of the directory
+     * @param depthDelta        Change in depth of the directory
+     * @return number of descendants updated
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE VirtualPath v SET v.virtualPath = CONCAT(:newPath, SUBSTRING(v.virtualPath, :oldPathLength + 1)), " +
+           "v.depth = v.depth + :depthDelta " +
+           "WHERE v.virtualPath LIKE :descendantPattern ESCAPE '\\' AND v.isDeleted = false")
+    int rewriteDescendantPaths(@Param("descendantPattern") String descendantPattern,
+                               @Param("oldPathLength") int oldPathLength,
+                               @Param("newPath") String newPath,
+                               @Param("depthDelta") int depthDelta);
 }
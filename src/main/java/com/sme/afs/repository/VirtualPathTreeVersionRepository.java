@@ -0,0 +1,26 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.VirtualPathTreeVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface VirtualPathTreeVersionRepository extends JpaRepository<VirtualPathTreeVersion, Integer> {
+
+    @Query("SELECT v.version FROM VirtualPathTreeVersion v WHERE v.id = " + VirtualPathTreeVersion.SINGLETON_ID)
+    Optional<Long> findCurrentVersion();
+
+    /**
+     * Increments the tree version. The row stays locked until the transaction ends,
+     * which serializes concurrent tree changes.
+     *
+     * @return number of rows updated, 0 if the version row does not exist
+     */
+    @Modifying
+    @Query("UPDATE VirtualPathTreeVersion v SET v.version = v.version + 1 WHERE v.id = " + VirtualPathTreeVersion.SINGLETON_ID)
+    int incrementVersion();
+}
@@ -0,0 +1,147 @@
+package com.sme.afs.service;
+
+import com.sme.afs.model.BlobUrl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Service for streaming ZIP archives of directories and blob URL bundles.
+ * <p>
+ * Archives are written on the fly directly to the given output stream: the directory tree is
+ * walked lazily and every file is copied into the archive as it is visited, so no temporary
+ * archive is created and memory use does not depend on the number or size of the files.
+ * ZIP64 extensions are used automatically for archives and entries larger than 4 GB.
+ */
+@Slf4j
+@Service
+public class ArchiveService {
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * File extensions whose content is already compressed. Compressing these again costs
+     * CPU without reducing the size, so they are written without compression.
+     */
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "lz4", "jar", "war", "apk",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+            "mp3", "m4a", "aac", "ogg", "opus", "flac",
+            "mp4", "m4v", "mov", "mkv", "avi", "webm",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub");
+
+    /**
+     * Writes a ZIP archive of a directory tree to the output stream.
+     * Entries are placed under a top-level folder named after the directory.
+     * Symbolic links are skipped and unreadable files are logged and left out.
+     *
+     * @param directory Real path of the directory to archive
+     * @param out       Stream to write the archive to; it is not closed
+     * @throws IOException if writing to the output stream fails
+     */
+    public void writeDirectory(Path directory, OutputStream out) throws IOException {
+        Path rootName = directory.getFileName();
+        String prefix = rootName != null ? rootName + "/" : "";
+
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE));
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                String entryName = prefix + toEntryName(directory.relativize(dir));
+                if (!entryName.isEmpty()) {
+                    ZipEntry entry = new ZipEntry(entryName.endsWith("/") ? entryName : entryName + "/");
+                    entry.setLastModifiedTime(attrs.lastModifiedTime());
+                    zip.putNextEntry(entry);
+                    zip.closeEntry();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    writeFileEntry(zip, file, prefix + toEntryName(directory.relativize(file)), attrs);
+                } else {
+                    log.debug("Skipping non-regular file in archive: {}", file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                log.warn("Skipping unreadable file in archive: {}: {}", file, exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Writes a ZIP archive containing the files of several blob URLs to the output stream.
+     * Entries use the original filenames; duplicate names get a numeric suffix.
+     *
+     * @param blobUrls Validated blob URLs whose hard links should be archived
+     * @param out      Stream to write the archive to; it is not closed
+     * @throws IOException if a file cannot be read or writing to the output stream fails
+     */
+    public void writeBlobBundle(List<BlobUrl> blobUrls, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE));
+        Set<String> usedNames = new HashSet<>();
+        for (BlobUrl blobUrl : blobUrls) {
+            Path hardLink = Paths.get(blobUrl.getHardLinkPath());
+            BasicFileAttributes attrs = Files.readAttributes(hardLink, BasicFileAttributes.class);
+            writeFileEntry(zip, hardLink, uniqueName(blobUrl.getFilename(), usedNames), attrs);
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    private void writeFileEntry(ZipOutputStream zip, Path file, String entryName, BasicFileAttributes attrs)
+            throws IOException {
+        ZipEntry entry = new ZipEntry(entryName);
+        entry.setLastModifiedTime(attrs.lastModifiedTime());
+        // STORED entries need the CRC up front, which would mean reading every file twice.
+        // Deflating at level 0 writes stored blocks in a single pass instead.
+        zip.setLevel(isCompressed(entryName) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zip.putNextEntry(entry);
+        Files.copy(file, zip);
+        zip.closeEntry();
+    }
+
+    private boolean isCompressed(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private String toEntryName(Path relativePath) {
+        return relativePath.toString().replace('\\', '/');
+    }
+
+    private String uniqueName(String filename, Set<String> usedNames) {
+        String name = filename;
+        int dot = filename.lastIndexOf('.');
+        String base = dot > 0 ? filename.substring(0, dot) : filename;
+        String extension = dot > 0 ? filename.substring(dot) : "";
+        for (int i = 1; !usedNames.add(name); i++) {
+            name = base + " (" + i + ")" + extension;
+        }
+        return name;
+    }
+}
@@ -0,0 +1,231 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.BlobUrlProperties;
+import com.sme.afs.dto.BandwidthStatsResponse;
+import com.sme.afs.service.ratelimit.ByteThrottle;
+import com.sme.afs.service.ratelimit.ClientAddressKey;
+import com.sme.afs.service.ratelimit.KeyedRateLimiter;
+import com.sme.afs.service.ratelimit.ThrottledOutputStream;
+import com.sme.afs.service.ratelimit.ThrottledResource;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte-rate shaping for file and blob URL downloads.
+ * <p>
+ * Every download stream acquires its bytes chunk by chunk from token buckets for its user,
+ * its client IP and the whole node; each configured rate caps the sustained throughput with
+ * a burst of one second. A chunk is reserved from all of these buckets at once and the stream
+ * then sleeps for the longest of their waits, so waiting for one limit does not hold back
+ * tokens taken from another, and later streams queue behind the reservations already made.
+ * The chunk size of a stream is divided by the number of streams its user has open, so the
+ * parallel downloads of one user together reserve about as much per chunk as a single
+ * download; this only evens out users, not the streams of different users on one address.
+ */
+@Service
+@Slf4j
+public class BandwidthThrottleService {
+
+    private static final int MAX_KEYS_PER_LIMITER = 10_000;
+    private static final int MIN_CHUNK_SIZE = 4 * 1024;
+    private static final long EVICTION_INTERVAL_MS = 60_000;
+
+    private final BlobUrlProperties blobUrlProperties;
+    private final KeyedRateLimiter<String> bytesByUser;
+    private final KeyedRateLimiter<ClientAddressKey> bytesByIp;
+    private final KeyedRateLimiter<Boolean> bytesGlobal;
+    private final ConcurrentHashMap<String, AtomicInteger> streamsByUser = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder throttledBytes = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+
+    public BandwidthThrottleService(BlobUrlProperties blobUrlProperties) {
+        this.blobUrlProperties = blobUrlProperties;
+        this.bytesByUser = new KeyedRateLimiter<>("bandwidth-user",
+                () -> limit(bandwidth().getPerUserPerSecond().toBytes()), MAX_KEYS_PER_LIMITER);
+        this.bytesByIp = new KeyedRateLimiter<>("bandwidth-ip",
+                () -> limit(bandwidth().getPerIpPerSecond().toBytes()), MAX_KEYS_PER_LIMITER);
+        this.bytesGlobal = new KeyedRateLimiter<>("bandwidth-global",
+                () -> limit(bandwidth().getGlobalPerSecond().toBytes()), 1);
+    }
+
+    /**
+     * Whether any bandwidth limit is configured and rate limiting is enabled.
+     *
+     * @return true if downloads are throttled
+     */
+    public boolean isEnabled() {
+        var rl = blobUrlProperties.getRateLimit();
+        if (rl == null || !rl.isEnabled() || rl.getBandwidth() == null) {
+            return false;
+        }
+        var bw = rl.getBandwidth();
+        return bw.getGlobalPerSecond().toBytes() > 0
+                || bw.getPerUserPerSecond().toBytes() > 0
+                || bw.getPerIpPerSecond().toBytes() > 0;
+    }
+
+    /**
+     * Wraps a download resource so that reading it is throttled.
+     *
+     * @param resource The resource to download
+     * @param username Authenticated user, or null for anonymous downloads
+     * @param clientIp Client address, or null if unknown
+     * @return the throttled resource, or the resource itself if throttling is disabled
+     */
+    public Resource throttle(Resource resource, String username, String clientIp) {
+        if (!isEnabled()) {
+            return resource;
+        }
+        return new ThrottledResource(resource, () -> open(username, clientIp));
+    }
+
+    /**
+     * Wraps a response stream so that writing to it is throttled.
+     * Closing the returned stream ends the throttle without closing the response stream.
+     *
+     * @param out      The response stream
+     * @param username Authenticated user, or null for anonymous downloads
+     * @param clientIp Client address, or null if unknown
+     * @return the throttled stream
+     */
+    public OutputStream throttle(OutputStream out, String username, String clientIp) {
+        if (!isEnabled()) {
+            return out;
+        }
+        return new ThrottledOutputStream(out, open(username, clientIp));
+    }
+
+    /**
+     * Gets the download and throttling counters since startup.
+     *
+     * @return Bandwidth statistics
+     */
+    public BandwidthStatsResponse getStats() {
+        BandwidthStatsResponse stats = new BandwidthStatsResponse();
+        stats.setEnabled(isEnabled());
+        stats.setActiveStreams(activeStreams.get());
+        stats.setTotalBytes(totalBytes.sum());
+        stats.setThrottledBytes(throttledBytes.sum());
+        stats.setThrottledMillis(TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum()));
+        return stats;
+    }
+
+    /**
+     * Periodically drops buckets of users and addresses that have stopped downloading.
+     */
+    @Scheduled(fixedDelay = EVICTION_INTERVAL_MS)
+    public void evictIdleBuckets() {
+        bytesByUser.evictRefilled();
+        bytesByIp.evictRefilled();
+    }
+
+    ByteThrottle open(String username, String clientIp) {
+        return new StreamThrottle(username, clientIp);
+    }
+
+    private BlobUrlProperties.RateLimit.BandwidthLimit bandwidth() {
+        return blobUrlProperties.getRateLimit().getBandwidth();
+    }
+
+    private Bandwidth limit(long bytesPerSecond) {
+        // Capacity must hold at least one chunk, or a waiting stream could never proceed
+        long capacity = Math.max(bytesPerSecond, bandwidth().getChunkSize().toBytes());
+        return Bandwidth.classic(capacity, Refill.greedy(bytesPerSecond, Duration.ofSeconds(1)));
+    }
+
+    private final class StreamThrottle implements ByteThrottle {
+
+        private final String username;
+        private final ClientAddressKey client;
+        private final AtomicInteger userStreams;
+        private final long perUser;
+        private final long perIp;
+        private final long global;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private StreamThrottle(String username, String clientIp) {
+            var bw = bandwidth();
+            this.perUser = username != null ? bw.getPerUserPerSecond().toBytes() : 0;
+            this.perIp = clientIp != null ? bw.getPerIpPerSecond().toBytes() : 0;
+            this.global = bw.getGlobalPerSecond().toBytes();
+            this.username = username;
+            this.client = clientIp != null ? ClientAddressKey.of(clientIp) : null;
+            this.userStreams = username != null
+                    ? streamsByUser.compute(username, (u, count) -> {
+                        AtomicInteger streams = count != null ? count : new AtomicInteger();
+                        streams.incrementAndGet();
+                        return streams;
+                    })
+                    : new AtomicInteger(1);
+            activeStreams.incrementAndGet();
+        }
+
+        @Override
+        public int chunkSize() {
+            int chunkSize = (int) Math.min(Integer.MAX_VALUE, bandwidth().getChunkSize().toBytes());
+            return Math.max(MIN_CHUNK_SIZE, chunkSize / Math.max(1, userStreams.get()));
+        }
+
+        @Override
+        public void acquire(int bytes) throws InterruptedIOException {
+            long wait = 0;
+            if (perUser > 0) {
+                wait = Math.max(wait, reserve(bytesByUser.bucket(username), bytes));
+            }
+            if (perIp > 0) {
+                wait = Math.max(wait, reserve(bytesByIp.bucket(client), bytes));
+            }
+            if (global > 0) {
+                wait = Math.max(wait, reserve(bytesGlobal.bucket(Boolean.TRUE), bytes));
+            }
+            totalBytes.add(bytes);
+            if (wait > 0) {
+                throttledBytes.add(bytes);
+                throttledNanos.add(wait);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for download bandwidth");
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            activeStreams.decrementAndGet();
+            if (username != null) {
+                streamsByUser.computeIfPresent(username, (u, count) -> count.decrementAndGet() > 0 ? count : null);
+            }
+        }
+
+        /**
+         * Takes the bytes from a bucket, going into debt if it holds too few tokens.
+         *
+         * @return nanoseconds until the debt is paid off, 0 if the bytes were available
+         */
+        private long reserve(Bucket bucket, int bytes) {
+            return bucket.consumeIgnoringRateLimits(bytes);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.BlobUrlProperties;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.repository.BlobUrlRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Per-node quota for concurrent blob URLs.
+ * <p>
+ * Keeps the number of active URLs (globally and per user) in memory so that the limit check
+ * on the creation path needs no database round trip, and makes check-and-reserve atomic so
+ * parallel creations cannot overshoot the limit. Reservations expire together with their URLs.
+ * <p>
+ * The counters are rebuilt from the database on startup and periodically, which picks up URLs
+ * created or removed by other nodes. Reservations that are not yet committed, or that committed
+ * while the database snapshot was being read, are carried over so they are never lost.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlobUrlQuotaService {
+
+    private final BlobUrlRepository blobUrlRepository;
+    private final BlobUrlProperties blobUrlProperties;
+
+    // All fields below are guarded by "this"
+    private final PriorityQueue<Reservation> active =
+            new PriorityQueue<>(Comparator.comparing((Reservation r) -> r.expiresAt));
+    private final Map<String, Long> activeByUser = new HashMap<>();
+    private final Set<Reservation> recent = new HashSet<>();
+    private long activeTotal;
+    private volatile boolean loaded;
+
+    /**
+     * Reserves quota for new blob URLs.
+     * The reservation is released automatically if the surrounding transaction rolls back.
+     *
+     * @param username  User creating the URLs
+     * @param count     Number of URLs to create
+     * @param expiresAt When the URLs expire and the quota is returned
+     * @return the reservation, to be passed to {@link #release(Reservation)} on failure
+     * @throws AfsException if the global or per-user limit would be exceeded
+     */
+    public Reservation reserve(String username, int count, LocalDateTime expiresAt) {
+        if (!loaded) {
+            reconcile();
+        }
+
+        Reservation reservation = new Reservation(username, count, expiresAt);
+        synchronized (this) {
+            evictExpired(LocalDateTime.now());
+
+            long maxTotal = blobUrlProperties.getMaxConcurrentUrls();
+            if (activeTotal + count > maxTotal) {
+                throw new AfsException(ErrorCode.VALIDATION_FAILED,
+                    "Maximum concurrent blob URLs limit reached: " + maxTotal);
+            }
+            long maxPerUser = blobUrlProperties.getMaxConcurrentUrlsPerUser();
+            if (maxPerUser > 0 && activeByUser.getOrDefault(username, 0L) + count > maxPerUser) {
+                throw new AfsException(ErrorCode.VALIDATION_FAILED,
+                    "Maximum concurrent blob URLs per user limit reached: " + maxPerUser);
+            }
+
+            add(reservation);
+            recent.add(reservation);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        markCommitted(reservation);
+                    } else {
+                        release(reservation);
+                    }
+                }
+            });
+        } else {
+            markCommitted(reservation);
+        }
+        return reservation;
+    }
+
+    /**
+     * Returns the quota held by a reservation whose URLs were not created.
+     * Releasing the same reservation more than once has no effect.
+     *
+     * @param reservation The reservation to release
+     */
+    public synchronized void release(Reservation reservation) {
+        recent.remove(reservation);
+        if (active.remove(reservation)) {
+            subtract(reservation);
+        }
+    }
+
+    /**
+     * Gets the number of active URLs as currently tracked by this node.
+     *
+     * @return Number of active blob URLs
+     */
+    public synchronized long getActiveCount() {
+        evictExpired(LocalDateTime.now());
+        return activeTotal;
+    }
+
+    /**
+     * Rebuilds the counters from the database on application startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    /**
+     * Periodically rebuilds the counters from the database to correct drift,
+     * e.g. from URLs created or deleted by other nodes.
+     */
+    @Scheduled(fixedDelayString = "#{@blobUrlProperties.quotaReconcileInterval.toMillis()}")
+    public void reconcilePeriodically() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("Failed to reconcile blob URL quota with database: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the counters from the active URLs stored in the database.
+     */
+    public void reconcile() {
+        long snapshotStart = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        List<BlobUrlRepository.ActiveUrlCount> rows = blobUrlRepository.countActiveUrlsByUserAndExpiry(now);
+
+        synchronized (this) {
+            active.clear();
+            activeByUser.clear();
+            activeTotal = 0;
+
+            for (BlobUrlRepository.ActiveUrlCount row : rows) {
+                add(new Reservation(row.getCreatedBy(), row.getUrlCount(), row.getExpiresAt()));
+            }
+            // Reservations committed before the snapshot are part of the rows read above
+            recent.removeIf(r -> r.isCommittedBefore(snapshotStart));
+            recent.forEach(this::add);
+            evictExpired(now);
+            loaded = true;
+
+            log.debug("Reconciled blob URL quota: {} active URLs for {} users", activeTotal, activeByUser.size());
+        }
+    }
+
+    private synchronized void markCommitted(Reservation reservation) {
+        reservation.committedAt = System.nanoTime();
+        reservation.committed = true;
+    }
+
+    private void add(Reservation reservation) {
+        active.add(reservation);
+        activeTotal += reservation.count;
+        activeByUser.merge(reservation.username, reservation.count, Long::sum);
+    }
+
+    private void subtract(Reservation reservation) {
+        activeTotal -= reservation.count;
+        activeByUser.computeIfPresent(reservation.username,
+                (user, current) -> current > reservation.count ? current - reservation.count : null);
+    }
+
+    private void evictExpired(LocalDateTime now) {
+        while (!active.isEmpty() && !active.peek().expiresAt.isAfter(now)) {
+            subtract(active.poll());
+        }
+    }
+
+    /**
+     * Quota held for a group of URLs created by one user with the same expiration time.
+     */
+    public static final class Reservation {
+        private final String username;
+        private final long count;
+        private final LocalDateTime expiresAt;
+        private boolean committed;
+        private long committedAt;
+
+        private Reservation(String username, long count, LocalDateTime expiresAt) {
+            this.username = username;
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isCommittedBefore(long nanoTime) {
+            return committed && committedAt - nanoTime < 0;
+        }
+    }
+}
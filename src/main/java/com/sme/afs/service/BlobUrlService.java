@@ -6,7 +6,8 @@ import com.sme.afs.error.ErrorCode;
 import com.sme.afs.exception.AfsException;
 import com.sme.afs.model.BlobUrl;
 import com.sme.afs.repository.BlobUrlRepository;
-import lombok.RequiredArgsConstructor;
+import com.sme.afs.service.ratelimit.ClientAddressKey;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
@@ -15,21 +16,27 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Core service for blob URL management.
  * Handles creation, validation, and retrieval of temporary download URLs using hard links.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class BlobUrlService {
 
@@ -38,10 +45,41 @@ public class BlobUrlService {
     private final HardLinkManager hardLinkManager;
     private final FileService fileService;
     private final BlobUrlProperties blobUrlProperties;
+    private final BlobUrlQuotaService blobUrlQuotaService;
+    private final ExecutorService linkExecutor;
+
+    public BlobUrlService(BlobUrlRepository blobUrlRepository,
+                          TokenService tokenService,
+                          HardLinkManager hardLinkManager,
+                          FileService fileService,
+                          BlobUrlProperties blobUrlProperties,
+                          BlobUrlQuotaService blobUrlQuotaService) {
+        this.blobUrlRepository = blobUrlRepository;
+        this.tokenService = tokenService;
+        this.hardLinkManager = hardLinkManager;
+        this.fileService = fileService;
+        this.blobUrlProperties = blobUrlProperties;
+        this.blobUrlQuotaService = blobUrlQuotaService;
+        // Shared by all batch requests, so concurrent batches cannot multiply the link threads
+        AtomicInteger counter = new AtomicInteger();
+        this.linkExecutor = Executors.newFixedThreadPool(Math.max(1, blobUrlProperties.getBatchLinkParallelism()), r -> {
+            Thread thread = new Thread(r, "blob-link-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     @Autowired(required = false)
     private RateLimitService rateLimitService;
 
+    @Autowired(required = false)
+    private BandwidthThrottleService bandwidthThrottleService;
+
+    @PreDestroy
+    public void shutdown() {
+        linkExecutor.shutdown();
+    }
+
     /**
      * Creates a temporary blob URL for the specified file.
      * Creates a hard link to the original file and returns URL information.
@@ -61,12 +99,20 @@ public class BlobUrlService {
             throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot create blob URL for directory");
         }
 
-        // Check concurrent URL limits
-        validateConcurrentLimits();
+        // Reserve quota against the concurrent URL limits
+        LocalDateTime createdAt = LocalDateTime.now();
+        LocalDateTime expiresAt = createdAt.plus(blobUrlProperties.getDefaultExpiration());
+        BlobUrlQuotaService.Reservation reservation = blobUrlQuotaService.reserve(createdBy, 1, expiresAt);
 
         // Get the actual file path from FileService
-        Path originalPath = getOriginalFilePath(filePath);
-        
+        Path originalPath;
+        try {
+            originalPath = getOriginalFilePath(filePath);
+        } catch (RuntimeException e) {
+            blobUrlQuotaService.release(reservation);
+            throw e;
+        }
+
         // Generate secure token and create the hard link path
         String token = tokenService.generateSecureToken();
         Path tempDir = Paths.get(blobUrlProperties.getTempDirectory());
@@ -88,8 +134,8 @@ public class BlobUrlService {
                     .filename(fileInfo.getName())
                     .contentType(fileInfo.getMimeType() != null ? fileInfo.getMimeType() : "application/octet-stream")
                     .fileSize(fileInfo.getSize())
-                    .createdAt(LocalDateTime.now())
-                    .expiresAt(LocalDateTime.now().plus(blobUrlProperties.getDefaultExpiration()))
+                    .createdAt(createdAt)
+                    .expiresAt(expiresAt)
                     .createdBy(createdBy)
                     .build();
 
@@ -102,14 +148,102 @@ public class BlobUrlService {
             log.error("Failed to create hard link for file: {}", filePath, e);
             // Clean up any partial state
             cleanupFailedCreation(hardLinkPath, token);
+            blobUrlQuotaService.release(reservation);
             throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to create temporary download link: " + e.getMessage());
         } catch (Exception e) {
             log.error("Unexpected error creating blob URL for file: {}", filePath, e);
             cleanupFailedCreation(hardLinkPath, token);
+            blobUrlQuotaService.release(reservation);
             throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to create blob URL");
         }
     }
 
+    /**
+     * Creates temporary blob URLs for several files at once.
+     * Quota for the whole batch is reserved in one step, every path is resolved
+     * in a single pass, hard links are created in parallel and all rows are inserted in one
+     * JDBC batch. The operation is all-or-nothing: if any link or row cannot be created,
+     * the links created so far are removed again.
+     *
+     * @param filePaths Paths to the files (relative to FileService root)
+     * @param createdBy Username of the user creating the blob URLs
+     * @return BlobUrl entities in the order of the requested paths
+     * @throws AfsException if validation fails or any hard link cannot be created
+     */
+    @Transactional
+    public List<BlobUrl> createBlobUrls(List<String> filePaths, String createdBy) {
+        if (filePaths == null || filePaths.isEmpty()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "At least one file path is required");
+        }
+        if (filePaths.size() > blobUrlProperties.getMaxBatchSize()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED,
+                "Maximum batch size exceeded: " + blobUrlProperties.getMaxBatchSize());
+        }
+        log.info("Creating {} blob URLs by user: {}", filePaths.size(), createdBy);
+
+        // Reserve quota for the whole batch at once
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(blobUrlProperties.getDefaultExpiration());
+        BlobUrlQuotaService.Reservation reservation =
+                blobUrlQuotaService.reserve(createdBy, filePaths.size(), expiresAt);
+        try {
+            return createBatch(filePaths, createdBy, now, expiresAt);
+        } catch (RuntimeException e) {
+            blobUrlQuotaService.release(reservation);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the hard links and rows for a batch whose quota has already been reserved.
+     */
+    private List<BlobUrl> createBatch(List<String> filePaths, String createdBy,
+                                      LocalDateTime now, LocalDateTime expiresAt) {
+        // Resolve and validate every source before touching the temp directory
+        List<FileService.ResolvedFile> sources = new ArrayList<>(filePaths.size());
+        for (String filePath : filePaths) {
+            sources.add(resolveSourceFile(filePath));
+        }
+
+        Path tempDir = Paths.get(blobUrlProperties.getTempDirectory());
+        try {
+            Files.createDirectories(tempDir);
+        } catch (IOException e) {
+            log.error("Failed to create temporary directory: {}", tempDir, e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to create temporary download links");
+        }
+
+        List<BlobUrl> blobUrls = new ArrayList<>(sources.size());
+        for (FileService.ResolvedFile source : sources) {
+            String token = tokenService.generateSecureToken();
+            FileInfoResponse fileInfo = source.info();
+            blobUrls.add(BlobUrl.builder()
+                    .token(token)
+                    .originalPath(source.realPath().toString())
+                    .hardLinkPath(tempDir.resolve(token).toString())
+                    .filename(fileInfo.getName())
+                    .contentType(fileInfo.getMimeType() != null ? fileInfo.getMimeType() : "application/octet-stream")
+                    .fileSize(fileInfo.getSize())
+                    .createdAt(now)
+                    .expiresAt(expiresAt)
+                    .createdBy(createdBy)
+                    .build());
+        }
+
+        List<Path> createdLinks = createHardLinks(blobUrls);
+        try {
+            List<BlobUrl> saved = blobUrlRepository.saveAll(blobUrls);
+            // Flush now so that insert failures surface while the links can still be rolled back
+            blobUrlRepository.flush();
+            log.info("Successfully created {} blob URLs by user: {}", saved.size(), createdBy);
+            return saved;
+        } catch (Exception e) {
+            log.error("Failed to store {} blob URLs, removing created hard links", blobUrls.size(), e);
+            deleteHardLinks(createdLinks);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to create blob URLs");
+        }
+    }
+
     /**
      * Gets the status and metadata of a blob URL by token.
      *
@@ -148,20 +282,72 @@ public class BlobUrlService {
     public Resource validateAndGetFile(String token, String clientIp, String username) {
         log.debug("Validating token and getting file for download: {} from IP: {}", token, clientIp);
 
+        checkDownloadRateLimits(clientIp, username);
+
+        // Delegate to existing validation logic
+        Resource resource = validateAndGetFile(token);
+        return bandwidthThrottleService != null
+                ? bandwidthThrottleService.throttle(resource, username, clientIp)
+                : resource;
+    }
+
+    /**
+     * Validates several tokens for a bundled download with rate limiting checks.
+     * Rate limits are applied once for the whole bundle; the bundle is rejected
+     * if any of the tokens is invalid, expired, or its file is no longer available.
+     *
+     * @param tokens   The blob URL tokens to bundle
+     * @param clientIp Client IP address for rate limiting
+     * @param username Authenticated username for rate limiting, may be null
+     * @return BlobUrl entities in the order of the tokens
+     * @throws AfsException if the bundle is too large, rate limited, or a token is not valid
+     */
+    @Transactional(readOnly = true)
+    public List<BlobUrl> validateBundle(List<String> tokens, String clientIp, String username) {
+        if (tokens == null || tokens.isEmpty()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "At least one token is required");
+        }
+        if (tokens.size() > blobUrlProperties.getMaxBatchSize()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED,
+                "Maximum batch size exceeded: " + blobUrlProperties.getMaxBatchSize());
+        }
+        log.debug("Validating bundle of {} tokens from IP: {}", tokens.size(), clientIp);
+
+        checkDownloadRateLimits(clientIp, username);
+
+        List<BlobUrl> blobUrls = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            BlobUrl blobUrl = getBlobUrlStatus(token)
+                    .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND, "Download URL is invalid or expired"));
+            Path hardLinkPath = Paths.get(blobUrl.getHardLinkPath());
+            if (!Files.isReadable(hardLinkPath)) {
+                log.error("Hard link file not found or not readable: {}", hardLinkPath);
+                throw new AfsException(ErrorCode.NOT_FOUND, "Download file is no longer available");
+            }
+            blobUrls.add(blobUrl);
+        }
+        return blobUrls;
+    }
+
+    /**
+     * Applies the per-IP, per-user and token validation rate limits for a download request.
+     */
+    private void checkDownloadRateLimits(String clientIp, String username) {
         // Rate limiting checks (optional if service is available and enabled)
         try {
-            if (rateLimitService != null && blobUrlProperties.getRateLimit().isEnabled()) {
-                if (clientIp != null && !rateLimitService.isAllowed("download:ip:" + clientIp)) {
+            if (rateLimitService != null && rateLimitService.isEnabled()) {
+                String clientAddress = clientIp != null ? clientIp : "unknown";
+                ClientAddressKey client = ClientAddressKey.of(clientAddress);
+                if (clientIp != null && !rateLimitService.tryAcquireDownloadByIp(client, clientAddress)) {
                     throw new AfsException(ErrorCode.TOO_MANY_REQUESTS,
                             "Rate limit exceeded for IP address. Please try again later.");
                 }
-                if (username != null && !username.isBlank() && !rateLimitService.isAllowed("download:user:" + username)) {
+                if (username != null && !username.isBlank() && !rateLimitService.tryAcquireDownloadByUser(username)) {
                     throw new AfsException(ErrorCode.TOO_MANY_REQUESTS,
                             "Rate limit exceeded for user. Please try again later.");
                 }
                 // Limit token validation attempts per IP to avoid brute force
-                String key = clientIp != null ? clientIp : "unknown";
-                if (!rateLimitService.isAllowed("token:validation:" + key)) {
+                if (!rateLimitService.tryAcquireTokenValidation(client, clientAddress)) {
                     throw new AfsException(ErrorCode.TOO_MANY_REQUESTS,
                             "Too many token validation attempts. Please try again later.");
                 }
@@ -173,9 +359,6 @@ public class BlobUrlService {
             // If rate limiter fails for any reason, don't block download but log it
             log.warn("Rate limiting check failed, allowing request to proceed: {}", e.getMessage());
         }
-
-        // Delegate to existing validation logic
-        return validateAndGetFile(token);
     }
 
     /**
@@ -298,17 +481,6 @@ public class BlobUrlService {
         return blobUrlRepository.countActiveUrlsByUser(username, LocalDateTime.now());
     }
 
-    /**
-     * Validates concurrent URL limits to prevent system overload.
-     */
-    private void validateConcurrentLimits() {
-        long activeCount = blobUrlRepository.countActiveUrls(LocalDateTime.now());
-        if (activeCount >= blobUrlProperties.getMaxConcurrentUrls()) {
-            throw new AfsException(ErrorCode.VALIDATION_FAILED, 
-                "Maximum concurrent blob URLs limit reached: " + blobUrlProperties.getMaxConcurrentUrls());
-        }
-    }
-
     /**
      * Gets the original file path from FileService.
      * This method handles the path resolution logic specific to FileService.
@@ -331,6 +503,66 @@ public class BlobUrlService {
         }
     }
 
+    /**
+     * Resolves a source file for batch creation, translating unexpected failures
+     * the same way {@link #getOriginalFilePath(String)} does.
+     */
+    private FileService.ResolvedFile resolveSourceFile(String filePath) {
+        try {
+            return fileService.resolveFile(filePath);
+        } catch (AfsException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error resolving file path", e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to process file request");
+        }
+    }
+
+    /**
+     * Creates the hard links for a batch in parallel on the shared link executor, which runs at
+     * most {@code afs.blob-urls.batch-link-parallelism} links at a time across all requests.
+     * If any link fails, all links created by this call are removed before the error is raised.
+     *
+     * @return Paths of the created hard links
+     */
+    private List<Path> createHardLinks(List<BlobUrl> blobUrls) {
+        List<Path> createdLinks = Collections.synchronizedList(new ArrayList<>(blobUrls.size()));
+        try {
+            CompletableFuture<?>[] futures = blobUrls.stream()
+                    .map(blobUrl -> CompletableFuture.runAsync(() -> {
+                        Path hardLinkPath = Paths.get(blobUrl.getHardLinkPath());
+                        try {
+                            hardLinkManager.createHardLink(Paths.get(blobUrl.getOriginalPath()), hardLinkPath);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        createdLinks.add(hardLinkPath);
+                    }, linkExecutor))
+                    .toArray(CompletableFuture[]::new);
+            // allOf completes only after every task has finished, so createdLinks is complete on failure
+            CompletableFuture.allOf(futures).join();
+            return createdLinks;
+        } catch (CompletionException e) {
+            log.error("Failed to create hard links for batch of {} files, rolling back {} links",
+                    blobUrls.size(), createdLinks.size(), e.getCause());
+            deleteHardLinks(createdLinks);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to create temporary download links");
+        }
+    }
+
+    /**
+     * Removes hard links created by a failed batch, continuing past individual failures.
+     */
+    private void deleteHardLinks(List<Path> hardLinkPaths) {
+        for (Path hardLinkPath : hardLinkPaths) {
+            try {
+                hardLinkManager.deleteHardLink(hardLinkPath);
+            } catch (Exception cleanupError) {
+                log.warn("Failed to remove hard link during rollback: {}", hardLinkPath, cleanupError);
+            }
+        }
+    }
+
     /**
      * Cleans up any partial state from a failed blob URL creation.
      */
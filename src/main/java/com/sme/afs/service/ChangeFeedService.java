@@ -0,0 +1,329 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.ChangeFeedEvent;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.model.filesystem.DirectoryChangeBatch;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.service.permission.CompiledPermissions;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams directory changes to clients as server-sent events.
+ * <p>
+ * Each subscriber watches a set of paths and owns a bounded queue. Change batches are fanned
+ * out by offering each matching change to the queues, which never blocks the delivery of the
+ * directory monitor; a small shared pool then writes the queues to the connections, one drain
+ * at a time per subscriber. A subscriber whose queue is full loses its queued changes and
+ * receives a single {@code resync} event instead, after which it should list its paths again.
+ * <p>
+ * A write to a connection can block when the client stops reading. A feed whose current send
+ * has not finished within {@code shared-folder.change-feed-send-timeout-millis} is closed and
+ * its sender thread interrupted, so a few stalled clients cannot hold up every other feed.
+ */
+@Slf4j
+@Service
+public class ChangeFeedService {
+
+    public static final String CHANGE_EVENT = "change";
+    public static final String RESYNC_EVENT = "resync";
+
+    private static final int SENDER_THREADS = 2;
+    private static final long HEARTBEAT_INTERVAL_MS = 30_000;
+
+    private final SharedFolderProperties properties;
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService sender = Executors.newFixedThreadPool(SENDER_THREADS, r -> {
+        Thread thread = new Thread(r, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChangeFeedService(SharedFolderProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Opens a change feed for paths relative to the shared folder root.
+     *
+     * @param paths Paths to receive changes for, including everything below them
+     * @return the emitter streaming the changes
+     * @throws AfsException if no path is given or too many feeds are open
+     */
+    public SseEmitter subscribe(Collection<String> paths) {
+        if (paths == null || paths.isEmpty()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "At least one path is required");
+        }
+
+        List<String> normalized = paths.stream().map(CompiledPermissions::normalize).distinct().toList();
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), normalized, emitter,
+            Math.max(1, properties.getChangeFeedQueueCapacity()));
+        // Feeds are only added here, so checking and adding under one lock keeps the count at the limit
+        synchronized (subscribers) {
+            if (subscribers.size() >= properties.getChangeFeedMaxSubscribers()) {
+                throw new AfsException(ErrorCode.TOO_MANY_REQUESTS, "Too many open change feeds");
+            }
+            subscribers.put(subscriber.id, subscriber);
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber.id));
+        emitter.onTimeout(() -> subscribers.remove(subscriber.id));
+        emitter.onError(e -> subscribers.remove(subscriber.id));
+        log.debug("Opened change feed {} for {}", subscriber.id, normalized);
+        return emitter;
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(properties.getChangeFeedTimeoutMillis());
+    }
+
+    /**
+     * Gets the number of open change feeds.
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Fans a batch of changes out to the subscribers watching the changed paths.
+     */
+    @EventListener
+    public void onDirectoryChanges(DirectoryChangeBatch batch) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Path root = rootLocation();
+        if (root == null) {
+            return;
+        }
+        for (DirectoryChangeEvent change : batch.getChanges()) {
+            Path path = change.getPath().toAbsolutePath().normalize();
+            if (!path.startsWith(root)) {
+                continue;
+            }
+            ChangeFeedEvent event = new ChangeFeedEvent(relativePath(root, path), typeOf(change.getEventType()),
+                change.getTimestamp());
+            for (Subscriber subscriber : subscribers.values()) {
+                if (subscriber.watches(event.getPath())) {
+                    subscriber.offer(event);
+                }
+            }
+        }
+        subscribers.values().forEach(this::scheduleDrain);
+    }
+
+    /**
+     * Sends a comment to every feed, so that proxies keep idle connections open and closed
+     * connections are detected.
+     */
+    @Scheduled(fixedDelay = HEARTBEAT_INTERVAL_MS)
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers.values()) {
+            try {
+                sender.execute(() -> subscriber.send(SseEmitter.event().comment("heartbeat")));
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes the feeds whose current send has been blocked for longer than the send timeout.
+     */
+    @Scheduled(fixedDelayString = "${shared-folder.change-feed-send-timeout-millis:10000}")
+    public void closeStalledFeeds() {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getChangeFeedSendTimeoutMillis());
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers.values()) {
+            long startedAt = subscriber.sendStartedAt;
+            if (startedAt != 0 && now - startedAt > timeoutNanos) {
+                log.debug("Closing change feed {}: send timed out", subscriber.id);
+                // Completing the emitter waits for the lock the blocked send holds, so the sender
+                // completes it once the send returns; this thread only detaches and interrupts
+                subscriber.detach();
+                Thread thread = subscriber.sendingThread;
+                // Only while the same send is still blocked, not a later one of the thread
+                if (thread != null && subscriber.sendStartedAt == startedAt) {
+                    thread.interrupt();
+                } else {
+                    // The send returned, possibly before the sender saw the feed detached
+                    completeLater(subscriber);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        subscribers.values().forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private void completeLater(Subscriber subscriber) {
+        try {
+            sender.execute(() -> subscriber.complete(null));
+        } catch (RejectedExecutionException e) {
+            // Shutting down, which completes the emitters
+        }
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (!subscriber.hasPending() || !subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sender.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            while (subscriber.hasPending() && subscribers.containsKey(subscriber.id)) {
+                if (subscriber.resync.getAndSet(false)) {
+                    subscriber.queue.clear();
+                    subscriber.send(SseEmitter.event().name(RESYNC_EVENT).data(subscriber.paths));
+                    continue;
+                }
+                ChangeFeedEvent event = subscriber.queue.poll();
+                if (event != null) {
+                    subscriber.send(SseEmitter.event().name(CHANGE_EVENT).data(event));
+                }
+            }
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // A change may have been offered after the loop ended but before the flag was cleared
+        scheduleDrain(subscriber);
+    }
+
+    private String typeOf(DirectoryChangeEvent.EventType type) {
+        return type == DirectoryChangeEvent.EventType.OVERFLOW ? "RESCAN" : type.name();
+    }
+
+    private Path rootLocation() {
+        String basePath = properties.getBasePath();
+        return basePath == null || basePath.isBlank() ? null : Path.of(basePath).toAbsolutePath().normalize();
+    }
+
+    private String relativePath(Path root, Path path) {
+        return "/" + root.relativize(path).toString().replace('\\', '/');
+    }
+
+    private final class Subscriber {
+
+        private final String id;
+        private final List<String> paths;
+        private final SseEmitter emitter;
+        private final Queue<ChangeFeedEvent> queue;
+        private final AtomicBoolean resync = new AtomicBoolean();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean detached;
+        private volatile long sendStartedAt;
+        private volatile Thread sendingThread;
+
+        private Subscriber(String id, List<String> paths, SseEmitter emitter, int capacity) {
+            this.id = id;
+            this.paths = paths;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private boolean watches(String path) {
+            for (String watched : paths) {
+                if (VirtualPath.isAncestorPath(watched, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void offer(ChangeFeedEvent event) {
+            if (resync.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // The client fell behind; the queued changes are superseded by a full resync
+                resync.set(true);
+            }
+        }
+
+        private boolean hasPending() {
+            return resync.get() || !queue.isEmpty();
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            if (detached) {
+                return;
+            }
+            sendingThread = Thread.currentThread();
+            sendStartedAt = System.nanoTime();
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Closing change feed {}: {}", id, e.getMessage());
+                close(e);
+            } finally {
+                sendStartedAt = 0;
+                sendingThread = null;
+                if (detached) {
+                    complete(null);
+                }
+            }
+        }
+
+        /**
+         * Closes the feed. Must not be called while a send to the emitter may be blocked.
+         */
+        private void close(Throwable error) {
+            detach();
+            complete(error);
+        }
+
+        /**
+         * Stops sending to the feed without touching the emitter.
+         */
+        private void detach() {
+            detached = true;
+            if (subscribers.remove(id) != null) {
+                queue.clear();
+            }
+        }
+
+        private void complete(Throwable error) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            if (error != null) {
+                emitter.completeWithError(error);
+            } else {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.repository.FileEntityRepository;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SHA-256 content checksums of indexed files.
+ * <p>
+ * Uploads are hashed while they are written (see {@link FileService#store}). Files that reach
+ * the index any other way are hashed by a background backfill, which walks the rows without a
+ * checksum in id order and reads each file sequentially through a large direct buffer. The
+ * backfill runs on a single minimum-priority thread and draws every buffer from a token bucket
+ * of {@code shared-folder.checksum-backfill-rate} bytes per second, so it cannot take more
+ * than that share of the disk from user traffic.
+ * <p>
+ * A checksum is only stored if the row still has the size and modification time the file had
+ * while it was hashed; the indexer clears the checksum of every file whose content changes.
+ */
+@Slf4j
+@Service
+public class ChecksumService {
+
+    public static final String ALGORITHM = "SHA-256";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileEntityRepository fileEntityRepository;
+    private final SharedFolderProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Bucket ioBudget;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "checksum-backfill");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public ChecksumService(FileEntityRepository fileEntityRepository,
+                           SharedFolderProperties properties,
+                           PlatformTransactionManager transactionManager) {
+        this.fileEntityRepository = fileEntityRepository;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        long rate = properties.getChecksumBackfillRate().toBytes();
+        // Capacity must hold at least one buffer, or a read could never proceed
+        this.ioBudget = rate > 0
+            ? Bucket.builder()
+                .addLimit(Bandwidth.classic(Math.max(rate, BUFFER_SIZE), Refill.greedy(rate, Duration.ofSeconds(1))))
+                .build()
+            : null;
+    }
+
+    /**
+     * Creates a digest of the checksum algorithm.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not supported", e);
+        }
+    }
+
+    /**
+     * Finishes a digest and encodes it the way checksums are stored.
+     */
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Periodically starts a backfill run unless one is still running.
+     */
+    @Scheduled(fixedDelayString = "${shared-folder.checksum-backfill-interval-millis:300000}",
+               initialDelayString = "${shared-folder.checksum-backfill-interval-millis:300000}")
+    public void scheduleBackfill() {
+        if (!properties.isChecksumBackfill() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.submit(() -> {
+                try {
+                    backfill();
+                } catch (Exception e) {
+                    log.error("Checksum backfill failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Hashes all indexed files that have no checksum yet.
+     *
+     * @return number of checksums stored
+     */
+    public int backfill() {
+        int batchSize = Math.max(1, properties.getChecksumBackfillBatchSize());
+        long afterId = 0;
+        int stored = 0;
+        long start = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            List<FileEntity> batch = fileEntityRepository.findMissingChecksums(afterId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (FileEntity file : batch) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                if (hashAndStore(file)) {
+                    stored++;
+                }
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        if (stored > 0) {
+            log.info("Stored {} checksums in {} ms", stored, (System.nanoTime() - start) / 1_000_000);
+        }
+        return stored;
+    }
+
+    private boolean hashAndStore(FileEntity file) {
+        Path path = Path.of(file.getPhysicalPath());
+        try {
+            BasicFileAttributes before = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!matches(file, before)) {
+                // Changed since it was indexed; the indexer will update the row first
+                return false;
+            }
+            String checksum = hash(path);
+            BasicFileAttributes after = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!matches(file, after)) {
+                return false;
+            }
+            Integer updated = transactionTemplate.execute(status -> fileEntityRepository.updateChecksumIfUnchanged(
+                file.getPath(), checksum, file.getSize(), file.getModifiedAt()));
+            return updated != null && updated > 0;
+        } catch (InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            log.debug("Skipping checksum of {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean matches(FileEntity file, BasicFileAttributes attrs) {
+        return attrs.isRegularFile()
+            && attrs.size() == file.getSize()
+            && FileIndexService.toLocalDateTime(attrs.lastModifiedTime().toInstant()).equals(file.getModifiedAt());
+    }
+
+    /**
+     * Computes the checksum of a file, reading it sequentially within the I/O budget.
+     */
+    String hash(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (true) {
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                // Charged after the read, so small files and the final short read cost what they read
+                acquire(read);
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest);
+    }
+
+    private void acquire(int bytes) throws InterruptedIOException {
+        if (ioBudget == null) {
+            return;
+        }
+        try {
+            ioBudget.asBlocking().consume(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for checksum I/O budget");
+        }
+    }
+}
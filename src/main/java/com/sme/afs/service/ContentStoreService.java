@@ -0,0 +1,309 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.ContentBlob;
+import com.sme.afs.repository.ContentBlobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store that keeps one copy of identical uploads.
+ * <p>
+ * With {@code shared-folder.dedupe-uploads} enabled, {@link FileService#store} streams every
+ * upload into {@code system/metadata/content/incoming} while hashing it. If a blob with the
+ * same checksum already exists under {@code system/metadata/content/blobs}, the target is
+ * created as a hard link to it and the upload is discarded; otherwise the upload becomes the
+ * new blob and the target a link to it. Files that share a blob share one inode, so the store
+ * only suits content that is replaced rather than edited in place, which is how uploads work.
+ * <p>
+ * The {@code content_blobs} table counts the links of every blob. Uploads increment it; files
+ * deleted through the API or on disk are picked up by a periodic sweep, which recounts the
+ * links from the filesystem and removes blobs that no file refers to any more. If the target
+ * cannot be linked, e.g. because the group folder is on another filesystem, the upload is
+ * moved into place as a plain file.
+ */
+@Slf4j
+@Service
+public class ContentStoreService {
+
+    static final String CONTENT_DIRECTORY = "system/metadata/content";
+    static final String BLOBS = "blobs";
+    static final String INCOMING = "incoming";
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int SWEEP_BATCH_SIZE = 500;
+    private static final Duration INCOMING_MAX_AGE = Duration.ofHours(1);
+
+    private final ContentBlobRepository contentBlobRepository;
+    private final HardLinkManager hardLinkManager;
+    private final SharedFolderProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "content-sweep");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public ContentStoreService(ContentBlobRepository contentBlobRepository,
+                               HardLinkManager hardLinkManager,
+                               SharedFolderProperties properties,
+                               PlatformTransactionManager transactionManager) {
+        this.contentBlobRepository = contentBlobRepository;
+        this.hardLinkManager = hardLinkManager;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Stores content at the target path, sharing the blob of identical content stored before.
+     *
+     * @param in     Content to store; it is closed
+     * @param target Path of the new file, which must not exist
+     * @return the checksum of the content and whether an existing blob was reused
+     * @throws IOException if the content cannot be written
+     */
+    public StoredContent store(InputStream in, Path target) throws IOException {
+        Path root = contentRoot();
+        Path temp = Files.createTempFile(Files.createDirectories(root.resolve(INCOMING)), "upload-", ".part");
+        try {
+            MessageDigest digest = ChecksumService.newDigest();
+            try (InputStream hashed = new DigestInputStream(in, digest)) {
+                Files.copy(hashed, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String checksum = ChecksumService.toHex(digest);
+            long size = Files.size(temp);
+            synchronized (lockFor(checksum)) {
+                return new StoredContent(checksum, place(temp, blobPath(root, checksum), target, checksum, size));
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Periodically starts a sweep unless one is still running.
+     */
+    @Scheduled(fixedDelayString = "${shared-folder.dedupe-sweep-interval-millis:3600000}",
+               initialDelayString = "${shared-folder.dedupe-sweep-interval-millis:3600000}")
+    public void scheduleSweep() {
+        if (!properties.isDedupeUploads() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.submit(() -> {
+                try {
+                    sweep();
+                } catch (Exception e) {
+                    log.error("Content store sweep failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Recounts the links of every blob, removes blobs without links and forgets blobs whose
+     * file is gone. Abandoned partial uploads are deleted as well.
+     *
+     * @return number of blobs removed
+     */
+    public int sweep() throws IOException {
+        Path root = contentRoot();
+        Path blobs = root.resolve(BLOBS);
+        deleteAbandonedUploads(root.resolve(INCOMING));
+        if (!Files.isDirectory(blobs)) {
+            return 0;
+        }
+        if (!Files.getFileStore(blobs).supportsFileAttributeView("unix")) {
+            // Without link counts every blob would look unreferenced
+            log.warn("Link counts are not available for {}; skipping content store sweep", blobs);
+            return 0;
+        }
+
+        int removed = 0;
+        try (Stream<Path> stream = Files.walk(blobs, 2)) {
+            for (Path blob : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return removed;
+                }
+                if (recount(blob)) {
+                    removed++;
+                }
+            }
+        }
+
+        String after = "";
+        while (!Thread.currentThread().isInterrupted()) {
+            List<ContentBlob> page = contentBlobRepository.findPage(after, PageRequest.of(0, SWEEP_BATCH_SIZE));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (ContentBlob row : page) {
+                synchronized (lockFor(row.getChecksum())) {
+                    if (!Files.exists(blobPath(root, row.getChecksum()))) {
+                        transactionTemplate.executeWithoutResult(status ->
+                            contentBlobRepository.deleteById(row.getChecksum()));
+                    }
+                }
+            }
+            after = page.get(page.size() - 1).getChecksum();
+        }
+        if (removed > 0) {
+            log.info("Removed {} unreferenced blobs from the content store", removed);
+        }
+        return removed;
+    }
+
+    private boolean place(Path temp, Path blob, Path target, String checksum, long size) throws IOException {
+        if (Files.isRegularFile(blob) && Files.size(blob) == size) {
+            if (!tryLink(blob, target)) {
+                Files.move(temp, target);
+                return false;
+            }
+            recordLink(checksum, size);
+            return true;
+        }
+        // Link the upload into place before it joins the store, so a target that cannot be
+        // linked falls back to a plain move without leaving an unreferenced blob behind
+        if (!tryLink(temp, target)) {
+            Files.move(temp, target);
+            return false;
+        }
+        Files.createDirectories(blob.getParent());
+        Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recordLink(checksum, size);
+        return false;
+    }
+
+    private boolean tryLink(Path source, Path target) {
+        try {
+            hardLinkManager.createHardLink(source, target);
+            return true;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            log.warn("Storing {} without deduplication: {}", target, e.getMessage());
+            return false;
+        }
+    }
+
+    private void recordLink(String checksum, long size) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                if (contentBlobRepository.incrementRefCount(checksum, now) == 0) {
+                    contentBlobRepository.save(new ContentBlob(checksum, size, 1, now));
+                }
+            });
+        } catch (DataAccessException e) {
+            // The file is in place; the next sweep recounts the links from disk
+            log.warn("Failed to record link to blob {}: {}", checksum, e.getMessage());
+        }
+    }
+
+    private boolean recount(Path blob) {
+        String checksum = blob.getFileName().toString();
+        synchronized (lockFor(checksum)) {
+            try {
+                int links = hardLinkManager.getHardLinkCount(blob) - 1;
+                if (links <= 0) {
+                    Files.deleteIfExists(blob);
+                    transactionTemplate.executeWithoutResult(status -> {
+                        if (contentBlobRepository.existsById(checksum)) {
+                            contentBlobRepository.deleteById(checksum);
+                        }
+                    });
+                    return true;
+                }
+                long size = Files.size(blob);
+                transactionTemplate.executeWithoutResult(status -> {
+                    var row = contentBlobRepository.findById(checksum);
+                    if (row.isEmpty()) {
+                        contentBlobRepository.save(new ContentBlob(checksum, size, links, LocalDateTime.now()));
+                    } else if (row.get().getRefCount() != links) {
+                        contentBlobRepository.updateRefCount(checksum, links);
+                    }
+                });
+            } catch (IOException e) {
+                log.debug("Skipping blob {}: {}", blob, e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private void deleteAbandonedUploads(Path incoming) throws IOException {
+        if (!Files.isDirectory(incoming)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(INCOMING_MAX_AGE);
+        try (Stream<Path> stream = Files.list(incoming)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attrs.isRegularFile() && attrs.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    log.debug("Skipping abandoned upload {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Path contentRoot() {
+        return Path.of(properties.getBasePath()).toAbsolutePath().normalize().resolve(CONTENT_DIRECTORY);
+    }
+
+    private static Path blobPath(Path root, String checksum) {
+        return root.resolve(BLOBS).resolve(checksum.substring(0, 2)).resolve(checksum);
+    }
+
+    private Object lockFor(String checksum) {
+        return locks[Math.floorMod(checksum.hashCode(), locks.length)];
+    }
+
+    /**
+     * Outcome of storing content.
+     *
+     * @param checksum     Hex-encoded SHA-256 of the content
+     * @param deduplicated true if the file links to a blob that existed before
+     */
+    public record StoredContent(String checksum, boolean deduplicated) {
+    }
+}
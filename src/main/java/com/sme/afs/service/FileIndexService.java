@@ -0,0 +1,537 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.model.filesystem.DirectoryChangeBatch;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.repository.FileVersionRepository;
+import com.sme.afs.service.filesystem.DirectoryMonitorService;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the files table in sync with the shared folder on disk.
+ * <p>
+ * After startup the whole base path is crawled one directory at a time. The entries of a
+ * directory are compared with their rows by size, modification time and type; only new and
+ * changed entries are written, in transactions of {@code shared-folder.index-batch-size}
+ * entries whose inserts and updates go out as JDBC batches. Rows of entries that are gone
+ * are soft-deleted together with their subtree, and the versions of their files removed.
+ * A moved or renamed file is indexed as a new row, so it starts a new version history.
+ * <p>
+ * Afterwards, rows are kept current from {@link DirectoryChangeBatch}es of the whole monitored
+ * tree; a directory whose events were lost is rescanned. All indexing runs on a single thread,
+ * so the crawl and event updates never write the same rows concurrently.
+ */
+@Slf4j
+@Service
+public class FileIndexService {
+
+    /**
+     * Number of changed entries of one directory within a batch above which the directory is
+     * synced as a whole.
+     */
+    private static final int RESYNC_THRESHOLD = 32;
+
+    private final FileEntityRepository fileEntityRepository;
+    private final FileVersionRepository fileVersionRepository;
+    private final SharedFolderProperties properties;
+    private final DirectoryMonitorService directoryMonitorService;
+    private final QuotaService quotaService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private volatile boolean crawlCompleted;
+
+    public FileIndexService(FileEntityRepository fileEntityRepository,
+                            FileVersionRepository fileVersionRepository,
+                            SharedFolderProperties properties,
+                            DirectoryMonitorService directoryMonitorService,
+                            QuotaService quotaService,
+                            PlatformTransactionManager transactionManager) {
+        this.fileEntityRepository = fileEntityRepository;
+        this.fileVersionRepository = fileVersionRepository;
+        this.properties = properties;
+        this.directoryMonitorService = directoryMonitorService;
+        this.quotaService = quotaService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Starts the initial crawl and change monitoring of the base path on application startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexOnStartup() {
+        if (!properties.isIndexOnStartup()) {
+            return;
+        }
+        Path root = rootLocation();
+        if (root == null || !Files.isDirectory(root)) {
+            log.warn("Not indexing shared folder, base path is not a directory: {}", properties.getBasePath());
+            return;
+        }
+        if (!directoryMonitorService.isMonitoring(root)) {
+            directoryMonitorService.startMonitoring(root);
+        }
+        enqueue(() -> {
+            try {
+                crawl(root);
+                crawlCompleted = true;
+            } catch (Exception e) {
+                log.error("Indexing of {} failed", root, e);
+            }
+        });
+    }
+
+    /**
+     * Queues the paths of a batch of changes for indexing. Directories with many changed entries
+     * are synced once as a whole instead of entry by entry.
+     */
+    @EventListener
+    public void onDirectoryChanges(DirectoryChangeBatch batch) {
+        Path root = rootLocation();
+        if (root == null) {
+            return;
+        }
+        Map<Path, List<DirectoryChangeEvent>> byParent = new LinkedHashMap<>();
+        for (DirectoryChangeEvent event : batch.getChanges()) {
+            Path path = event.getPath().toAbsolutePath().normalize();
+            if (!path.startsWith(root) || SharedFolderValidator.isInternalPath(root, path)) {
+                continue;
+            }
+            if (event.getEventType() == DirectoryChangeEvent.EventType.OVERFLOW) {
+                rescan(root, path);
+            } else if (!path.equals(root)) {
+                byParent.computeIfAbsent(path.getParent(), p -> new ArrayList<>()).add(event);
+            }
+        }
+
+        byParent.forEach((parent, events) -> {
+            boolean resync = events.size() >= RESYNC_THRESHOLD;
+            if (resync) {
+                rescan(root, parent);
+            }
+            for (DirectoryChangeEvent event : events) {
+                boolean created = event.getEventType() == DirectoryChangeEvent.EventType.CREATED;
+                // A resync of the parent covers everything but the contents of new directories
+                if (!resync || (created && Files.isDirectory(event.getPath(), LinkOption.NOFOLLOW_LINKS))) {
+                    refresh(event.getPath(), created);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a directory whose change events were lost for a sync of its direct entries.
+     */
+    private void rescan(Path root, Path directory) {
+        enqueue(() -> {
+            try {
+                syncDirectory(root, directory, listDirectory(root, directory), new IndexStats());
+            } catch (Exception e) {
+                log.warn("Failed to rescan {}: {}", directory, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Queues a path for indexing after it was changed through the API, without waiting for
+     * the change event of the directory monitor. Until it has been indexed,
+     * {@link #isCurrent(Path)} reports the index as not current.
+     *
+     * @param path    Absolute path of the changed entry
+     * @param descend Whether to crawl the path recursively if it is a directory
+     */
+    public void refresh(Path path, boolean descend) {
+        Path root = rootLocation();
+        Path normalized = path.toAbsolutePath().normalize();
+        if (root == null || !normalized.startsWith(root) || normalized.equals(root)) {
+            return;
+        }
+        enqueue(() -> {
+            try {
+                indexPath(root, normalized, descend);
+            } catch (Exception e) {
+                log.warn("Failed to index {}: {}", normalized, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Queues a file for indexing after its content was written through the API, together with
+     * the checksum computed while writing. The checksum is stored only if the file still has
+     * the given size and modification time once it has been indexed.
+     *
+     * @param file     Absolute path of the written file
+     * @param checksum Hex-encoded SHA-256 of the written content
+     * @param attrs    Attributes of the file right after writing
+     */
+    public void refresh(Path file, String checksum, BasicFileAttributes attrs) {
+        Path root = rootLocation();
+        Path normalized = file.toAbsolutePath().normalize();
+        if (root == null || !normalized.startsWith(root) || normalized.equals(root)) {
+            return;
+        }
+        enqueue(() -> {
+            try {
+                indexPath(root, normalized, false);
+                transactionTemplate.executeWithoutResult(status -> fileEntityRepository.updateChecksumIfUnchanged(
+                    relativePath(root, normalized), checksum, attrs.size(),
+                    toLocalDateTime(attrs.lastModifiedTime().toInstant())));
+            } catch (Exception e) {
+                log.warn("Failed to index {}: {}", normalized, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Checks whether the rows of a directory's entries can be trusted without looking at the disk:
+     * the initial crawl has finished, no changes are waiting to be indexed and the directory is
+     * monitored, so any later change will be indexed as well.
+     *
+     * @param directory Absolute path of the directory
+     * @return true if the index is current for the directory
+     */
+    public boolean isCurrent(Path directory) {
+        return crawlCompleted
+            && pendingTasks.get() == 0
+            && directoryMonitorService.isMonitoring(directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Indexes a directory tree, writing only entries that changed since the last run.
+     *
+     * @param directory Directory to crawl, inside the base path
+     * @return statistics of the crawl
+     */
+    public IndexStats crawl(Path directory) {
+        Path root = rootLocation();
+        IndexStats stats = new IndexStats();
+        long start = System.nanoTime();
+
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(directory);
+        while (!pending.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            Path dir = pending.pop();
+            Map<String, BasicFileAttributes> entries;
+            try {
+                entries = listDirectory(root, dir);
+            } catch (IOException e) {
+                log.warn("Skipping unreadable directory {}: {}", dir, e.getMessage());
+                continue;
+            }
+            syncDirectory(root, dir, entries, stats);
+            entries.forEach((name, attrs) -> {
+                if (attrs.isDirectory()) {
+                    pending.push(dir.resolve(name));
+                }
+            });
+            stats.directories++;
+        }
+
+        log.info("Indexed {} in {} ms: {} directories, {} entries, {} inserted, {} updated, {} deleted",
+            directory, (System.nanoTime() - start) / 1_000_000, stats.directories, stats.scanned,
+            stats.inserted, stats.updated, stats.deleted);
+        return stats;
+    }
+
+    /**
+     * Indexes a single changed path. A path that no longer exists is removed with its subtree.
+     *
+     * @param root    Base path
+     * @param path    Changed path
+     * @param descend Whether to crawl a directory recursively, e.g. a newly created one,
+     *                instead of only syncing its direct entries
+     */
+    void indexPath(Path root, Path path, boolean descend) throws IOException {
+        if (SharedFolderValidator.isInternalPath(root, path)) {
+            return;
+        }
+        String relativePath = relativePath(root, path);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            transactionTemplate.executeWithoutResult(status -> {
+                QuotaService.UsageDelta usage = new QuotaService.UsageDelta();
+                markSubtreeDeleted(relativePath, usage);
+                quotaService.apply(usage);
+            });
+            return;
+        }
+        if (!attrs.isRegularFile() && !attrs.isDirectory()) {
+            return;
+        }
+
+        IndexStats stats = new IndexStats();
+        Map<String, BasicFileAttributes> entry = Map.of(path.getFileName().toString(), attrs);
+        transactionTemplate.executeWithoutResult(status ->
+            upsertChunk(root, path.getParent(), FileEntity.parentOf(relativePath), entry, stats));
+        if (attrs.isDirectory()) {
+            if (descend) {
+                crawl(path);
+            } else {
+                // Entries were added to or removed from the directory
+                syncDirectory(root, path, listDirectory(root, path), stats);
+            }
+        }
+    }
+
+    private void enqueue(Runnable task) {
+        pendingTasks.incrementAndGet();
+        try {
+            executor.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    pendingTasks.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingTasks.decrementAndGet();
+            log.debug("Indexer is shut down, dropping task");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void syncDirectory(Path root, Path dir, Map<String, BasicFileAttributes> entries, IndexStats stats) {
+        String parentPath = relativePath(root, dir);
+        int batchSize = Math.max(1, properties.getIndexBatchSize());
+
+        List<String> names = new ArrayList<>(entries.keySet());
+        for (int from = 0; from < names.size(); from += batchSize) {
+            Map<String, BasicFileAttributes> chunk = new LinkedHashMap<>();
+            for (String name : names.subList(from, Math.min(names.size(), from + batchSize))) {
+                chunk.put(name, entries.get(name));
+            }
+            transactionTemplate.executeWithoutResult(status -> upsertChunk(root, dir, parentPath, chunk, stats));
+        }
+        stats.scanned += entries.size();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            QuotaService.UsageDelta usage = new QuotaService.UsageDelta();
+            for (String name : fileEntityRepository.findChildNamesByPath(parentPath)) {
+                if (!entries.containsKey(name)) {
+                    stats.deleted += markSubtreeDeleted(childPath(parentPath, name), usage);
+                }
+            }
+            quotaService.apply(usage);
+        });
+    }
+
+    private void upsertChunk(Path root, Path dir, String parentPath,
+                             Map<String, BasicFileAttributes> chunk, IndexStats stats) {
+        Map<String, FileEntity> existing = fileEntityRepository
+            .findChildrenByPathAndNameIn(parentPath, chunk.keySet()).stream()
+            .collect(Collectors.toMap(FileEntity::getName, Function.identity()));
+
+        List<FileEntity> changed = new ArrayList<>();
+        List<String> replacedDirectories = new ArrayList<>();
+        QuotaService.UsageDelta usage = new QuotaService.UsageDelta();
+        for (Map.Entry<String, BasicFileAttributes> e : chunk.entrySet()) {
+            String name = e.getKey();
+            BasicFileAttributes attrs = e.getValue();
+            FileEntity entity = existing.get(name);
+            if (entity == null) {
+                entity = new FileEntity();
+                entity.setName(name);
+                entity.setPath(childPath(parentPath, name));
+                entity.setCreatedAt(toLocalDateTime(attrs.creationTime().toInstant()));
+                stats.inserted++;
+            } else if (isUnchanged(entity, attrs)) {
+                continue;
+            } else {
+                if (entity.isDirectory() && !attrs.isDirectory()) {
+                    replacedDirectories.add(entity.getPath());
+                }
+                // The content may have changed; the checksum backfill hashes it again
+                entity.setChecksum(null);
+                stats.updated++;
+                if (!entity.isDirectory()) {
+                    usage.add(entity.getPath(), -entity.getSize(), -1);
+                }
+            }
+            if (!attrs.isDirectory()) {
+                usage.add(entity.getPath(), attrs.size(), 1);
+            }
+            Path physical = dir.resolve(name);
+            entity.setPhysicalPath(physical.toString());
+            entity.setDirectory(attrs.isDirectory());
+            entity.setSize(attrs.isDirectory() ? 0L : attrs.size());
+            entity.setModifiedAt(toLocalDateTime(attrs.lastModifiedTime().toInstant()));
+            entity.setMimeType(attrs.isDirectory() ? null : probeContentType(physical));
+            changed.add(entity);
+        }
+        fileEntityRepository.saveAll(changed);
+
+        // A directory was replaced by a file; its old contents are gone
+        for (String path : replacedDirectories) {
+            String descendantPattern = VirtualPath.descendantPattern(path);
+            if (quotaService.isTracking()) {
+                FileEntityRepository.SubtreeTotals removed = fileEntityRepository.sumDescendantFiles(descendantPattern);
+                usage.removeSubtree(path, removed.getTotalSize(), removed.getFileCount());
+            }
+            deleteVersions(path, descendantPattern);
+            stats.deleted += fileEntityRepository.markDescendantsDeleted(descendantPattern, LocalDateTime.now());
+        }
+        quotaService.apply(usage);
+    }
+
+    /**
+     * Soft-deletes an entry with everything below it, recording the removed files for the
+     * group usage counters.
+     *
+     * @return number of entries marked as deleted
+     */
+    private int markSubtreeDeleted(String path, QuotaService.UsageDelta usage) {
+        String descendantPattern = VirtualPath.descendantPattern(path);
+        if (quotaService.isTracking()) {
+            FileEntityRepository.SubtreeTotals removed = fileEntityRepository.sumFilesInSubtree(path, descendantPattern);
+            usage.removeSubtree(path, removed.getTotalSize(), removed.getFileCount());
+        }
+        deleteVersions(path, descendantPattern);
+        return fileEntityRepository.markSubtreeDeleted(path, descendantPattern, LocalDateTime.now());
+    }
+
+    /**
+     * Deletes the versions of the files of a subtree. The rows go with the current transaction;
+     * the version files, which are not charged to any quota, are removed once it commits.
+     */
+    private void deleteVersions(String path, String descendantPattern) {
+        List<Long> fileIds = fileVersionRepository.findVersionedFileIdsInSubtree(path, descendantPattern);
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        fileVersionRepository.deleteByFileIdIn(fileIds);
+        Path versions = rootLocation().resolve(FileVersionService.VERSIONS_DIRECTORY);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (Long fileId : fileIds) {
+                    try {
+                        FileSystemUtils.deleteRecursively(versions.resolve(String.valueOf(fileId)));
+                    } catch (IOException e) {
+                        log.warn("Failed to remove versions of file {}: {}", fileId, e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    private boolean isUnchanged(FileEntity entity, BasicFileAttributes attrs) {
+        return entity.isDirectory() == attrs.isDirectory()
+            && entity.getSize() == (attrs.isDirectory() ? 0L : attrs.size())
+            && toLocalDateTime(attrs.lastModifiedTime().toInstant()).equals(entity.getModifiedAt());
+    }
+
+    /**
+     * Lists the entries of a directory that are indexed: regular files and directories that
+     * are not {@link SharedFolderValidator#isInternalPath(Path, Path) internal}.
+     */
+    private Map<String, BasicFileAttributes> listDirectory(Path root, Path dir) throws IOException {
+        Map<String, BasicFileAttributes> entries = new LinkedHashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                if (SharedFolderValidator.isInternalPath(root, child.toAbsolutePath().normalize())) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                    // Symbolic links and special files are not indexed
+                    if (attrs.isRegularFile() || attrs.isDirectory()) {
+                        entries.put(child.getFileName().toString(), attrs);
+                    }
+                } catch (IOException e) {
+                    log.debug("Skipping unreadable entry {}: {}", child, e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private Path rootLocation() {
+        String basePath = properties.getBasePath();
+        return basePath == null || basePath.isBlank() ? null : Path.of(basePath).toAbsolutePath().normalize();
+    }
+
+    private String relativePath(Path root, Path path) {
+        String relative = root.relativize(path).toString().replace('\\', '/');
+        return "/" + relative;
+    }
+
+    private String childPath(String parentPath, String name) {
+        return parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+    }
+
+    private String probeContentType(Path path) {
+        try {
+            return Files.probeContentType(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts a file time to the stored precision; the database keeps microseconds,
+     * so comparing at nanosecond precision would report every file as changed.
+     */
+    static LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofInstant(instant.truncatedTo(ChronoUnit.MICROS), ZoneId.systemDefault());
+    }
+
+    /**
+     * Counters of one indexing run.
+     */
+    @Getter
+    public static final class IndexStats {
+        private int directories;
+        private int scanned;
+        private int inserted;
+        private int updated;
+        private int deleted;
+    }
+}
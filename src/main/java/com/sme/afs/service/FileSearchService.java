@@ -0,0 +1,96 @@
+package com.sme.afs.service;
+
+import com.sme.afs.dto.FileInfoResponse;
+import com.sme.afs.dto.SearchResponse;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.service.listing.IndexListingSource;
+import com.sme.afs.service.permission.CompiledPermissions;
+import com.sme.afs.service.permission.Permission;
+import com.sme.afs.service.search.SearchQuery;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searches file and tag names in the file index.
+ * <p>
+ * Matching runs in the database against the trigram indexes on {@code lower(name)}, so a
+ * search never walks the disk; results reflect the index as written by {@link FileIndexService}.
+ * Results the user may not read are dropped, and further rows are fetched until the page is
+ * full, so a page is only short when the search is exhausted.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileSearchService {
+
+    /**
+     * Upper bound on the rows examined for one page, so a user who can read few of many matches
+     * cannot make a single request scan the whole index.
+     */
+    private static final int MAX_EXAMINED_ROWS = 20_000;
+
+    private final FileEntityRepository fileEntityRepository;
+    private final PermissionService permissionService;
+
+    /**
+     * Finds one page of entries whose name or tag contains the search term.
+     *
+     * @param username Authenticated user, used to filter unreadable results
+     * @param query    Term, scope and page
+     * @return the matching entries ordered by name, then path
+     */
+    @Transactional(readOnly = true)
+    public SearchResponse search(String username, SearchQuery query) {
+        String scopePattern = query.scope().equals("/") ? null : VirtualPath.descendantPattern(query.scope());
+        CompiledPermissions permissions = permissionService.isEnforced() && username != null
+            ? permissionService.getPermissions(username)
+            : CompiledPermissions.UNRESTRICTED;
+
+        List<FileEntity> page = new ArrayList<>();
+        String afterName = query.afterName();
+        String afterPath = query.afterPath();
+        int examined = 0;
+        boolean exhausted = false;
+        while (page.size() <= query.limit() && examined < MAX_EXAMINED_ROWS) {
+            int fetch = query.limit() + 1 - page.size();
+            List<FileEntity> rows = fileEntityRepository.findSearchPage(query.termPattern(), scopePattern,
+                query.type().directory(), afterName, afterPath, fetch);
+            examined += rows.size();
+            for (FileEntity row : rows) {
+                if (permissions.allows(row.getPath(), Permission.READ)) {
+                    page.add(row);
+                }
+            }
+            if (rows.size() < fetch) {
+                exhausted = true;
+                break;
+            }
+            FileEntity last = rows.get(rows.size() - 1);
+            afterName = last.getName();
+            afterPath = last.getPath();
+        }
+
+        String nextCursor = null;
+        if (page.size() > query.limit()) {
+            page = page.subList(0, query.limit());
+            nextCursor = SearchQuery.cursorAfter(page.get(page.size() - 1).getPath());
+        } else if (!exhausted) {
+            // Examination limit reached; continue after the last examined row
+            nextCursor = SearchQuery.cursorAfter(afterPath);
+        }
+        List<FileInfoResponse> entries = page.stream().map(IndexListingSource::toFileInfo).toList();
+        SearchResponse response = new SearchResponse();
+        response.setQuery(query.term());
+        response.setPath(query.scope());
+        response.setEntries(entries);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+}
@@ -1,10 +1,21 @@
 package com.sme.afs.service;
 
 import com.sme.afs.config.SharedFolderConfig;
+import com.sme.afs.config.SharedFolderProperties;
 import com.sme.afs.dto.FileInfoResponse;
 import com.sme.afs.dto.FileListResponse;
+import com.sme.afs.dto.FileVersionResponse;
+import com.sme.afs.dto.JobResponse;
 import com.sme.afs.error.ErrorCode;
 import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Job;
+import com.sme.afs.service.copy.FileCopier;
+import com.sme.afs.service.job.JobContext;
+import com.sme.afs.service.job.JobService;
+import com.sme.afs.service.listing.DirectoryPage;
+import com.sme.afs.service.listing.IndexListingSource;
+import com.sme.afs.service.listing.ListingQuery;
+import com.sme.afs.service.listing.ListingSource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
@@ -13,13 +24,21 @@ import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.nio.file.*;
-import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Stream;
 
 @Slf4j
@@ -27,9 +46,34 @@ import java.util.stream.Stream;
 public class FileService {
 
     private final Path rootLocation;
+    private final SharedFolderProperties properties;
+    private final FileIndexService fileIndexService;
+    private final ContentStoreService contentStoreService;
+    private final FileVersionService fileVersionService;
+    private final JobService jobService;
+    private final FileCopier fileCopier;
+    private final QuotaService quotaService;
+    private final ListingSource indexListingSource;
+    private final ListingSource diskListingSource = new DiskListingSource();
 
-    public FileService(SharedFolderConfig sharedFolderConfig) {
+    public FileService(SharedFolderConfig sharedFolderConfig,
+                       SharedFolderProperties properties,
+                       FileIndexService fileIndexService,
+                       ContentStoreService contentStoreService,
+                       FileVersionService fileVersionService,
+                       JobService jobService,
+                       FileCopier fileCopier,
+                       QuotaService quotaService,
+                       IndexListingSource indexListingSource) {
         this.rootLocation = Path.of(sharedFolderConfig.getBasePath()).toAbsolutePath().normalize();
+        this.properties = properties;
+        this.fileIndexService = fileIndexService;
+        this.contentStoreService = contentStoreService;
+        this.fileVersionService = fileVersionService;
+        this.jobService = jobService;
+        this.fileCopier = fileCopier;
+        this.quotaService = quotaService;
+        this.indexListingSource = indexListingSource;
         
         // Fail-fast validation: ensure root location exists and is a directory
         if (!Files.exists(rootLocation)) {
@@ -65,6 +109,7 @@ public class FileService {
             }
 
             Files.createDirectories(dirPath);
+            fileIndexService.refresh(dirPath, true);
             return createFileInfo(dirPath);
         } catch (IOException e) {
             log.error("Failed to create directory {}: {}", path, e, e);
@@ -82,11 +127,81 @@ public class FileService {
             } else {
                 Files.delete(filePath);
             }
+            fileIndexService.refresh(filePath, false);
         } catch (IOException e) {
             throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to delete: " + e.getMessage());
         }
     }
 
+    /**
+     * Starts a job that deletes a file or directory tree, reporting every removed entry.
+     *
+     * @param path     Path to the entry (relative to the root location)
+     * @param username User deleting the entry, or null
+     * @return the queued job
+     */
+    public JobResponse submitDelete(String path, String username) {
+        Path filePath = getAbsolutePath(path).normalize();
+        validatePath(filePath);
+        if (filePath.equals(rootLocation)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot delete the root directory");
+        }
+        if (!Files.exists(filePath, LinkOption.NOFOLLOW_LINKS)) {
+            throw new AfsException(ErrorCode.NOT_FOUND, "File not found");
+        }
+        return jobService.submit(Job.Type.DELETE, username, relativePath(filePath), null, context -> {
+            try {
+                deleteTree(filePath, context, true);
+            } finally {
+                fileIndexService.refresh(filePath, false);
+            }
+        });
+    }
+
+    /**
+     * Starts a job that moves a file or directory tree. Within a filesystem the move is a
+     * rename; across filesystems the tree is copied and the source deleted afterwards.
+     *
+     * @param sourcePath Path of the entry to move (relative to the root location)
+     * @param targetPath Path to move it to, which must not exist
+     * @param username   User moving the entry, or null
+     * @return the queued job
+     */
+    public JobResponse submitMove(String sourcePath, String targetPath, String username) {
+        Path source = getAbsolutePath(sourcePath).normalize();
+        validatePath(source);
+        if (source.equals(rootLocation)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot move the root directory");
+        }
+        if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+            throw new AfsException(ErrorCode.NOT_FOUND, "File not found");
+        }
+        Path target = resolveNewPath(targetPath);
+        if (target.startsWith(source)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot move a directory into itself");
+        }
+        QuotaService.Reservation reservation =
+            quotaService.reserveTransfer(relativePath(source), relativePath(target), true);
+        try {
+            return jobService.submit(Job.Type.MOVE, username, relativePath(source), relativePath(target), context -> {
+                boolean moved = false;
+                try {
+                    moveTree(source, target, context);
+                    moved = true;
+                } finally {
+                    if (!moved) {
+                        quotaService.release(reservation);
+                    }
+                    fileIndexService.refresh(source, false);
+                    fileIndexService.refresh(target, true);
+                }
+            });
+        } catch (RuntimeException e) {
+            quotaService.release(reservation);
+            throw e;
+        }
+    }
+
     public FileInfoResponse getFileInfo(String path) {
         Path filePath = getAbsolutePath(path);
         validatePath(filePath);
@@ -97,26 +212,36 @@ public class FileService {
     }
 
     public FileListResponse listDirectory(String path) {
-        Path dirPath = getAbsolutePath(path);
-        validatePath(dirPath);
+        return listDirectory(path, ListingQuery.ALL);
+    }
 
-        try (Stream<Path> stream = Files.list(dirPath)) {
-            List<FileInfoResponse> entries = stream
-                    .map(this::createFileInfo)
-                    .collect(Collectors.toList());
+    /**
+     * Lists one page of a directory. The listing is served from the file index while it is
+     * current for the directory, and from the disk otherwise.
+     *
+     * @param path  Path to the directory (relative to the root location)
+     * @param query Sort order and page
+     * @return the entries of the page with the totals of the whole directory
+     */
+    public FileListResponse listDirectory(String path, ListingQuery query) {
+        Path dirPath = getAbsolutePath(path).normalize();
+        validatePath(dirPath);
+        String relativePath = "/" + rootLocation.relativize(dirPath).toString().replace('\\', '/');
 
-            FileListResponse response = new FileListResponse();
-            response.setPath(path);
-            response.setEntries(entries);
-            response.setTotalSize(entries.stream().mapToLong(FileInfoResponse::getSize).sum());
-            response.setTotalFiles((int) entries.stream().filter(e -> !e.isDirectory()).count());
-            response.setTotalDirectories((int) entries.stream().filter(FileInfoResponse::isDirectory).count());
+        Optional<DirectoryPage> page = properties.isIndexedListings()
+            ? indexListingSource.list(dirPath, relativePath, query)
+            : Optional.empty();
+        DirectoryPage result = page.or(() -> diskListingSource.list(dirPath, path, query)).orElseThrow();
 
-            return response;
-        } catch (IOException e) {
-            log.error("Failed to list directory at {}: {}", dirPath, e, e);
-            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to list directory");
-        }
+        FileListResponse response = new FileListResponse();
+        response.setPath(path);
+        response.setEntries(result.entries());
+        response.setNextCursor(result.nextCursor());
+        response.setTotalSize(result.totalSize());
+        response.setTotalFiles(result.totalFiles());
+        response.setTotalDirectories(result.totalDirectories());
+        response.setSource(result.source());
+        return response;
     }
 
     public Resource loadAsResource(String path) {
@@ -148,7 +273,116 @@ public class FileService {
         }
     }
 
+    /**
+     * Resolves a user-supplied path to the real path of a regular file together with its metadata.
+     * Applies the same checks as {@link #loadAsResource(String)} but reads the file attributes only once,
+     * which keeps bulk operations from stat-ing every file several times.
+     *
+     * @param path Path to the file (relative to the root location)
+     * @return the resolved real path and file metadata
+     * @throws AfsException if the path is invalid, outside the root, missing or a directory
+     */
+    public ResolvedFile resolveFile(String path) {
+        Path filePath = getAbsolutePath(path);
+        validatePath(filePath);
+        Path real;
+        BasicFileAttributes attrs;
+        try {
+            real = filePath.toRealPath(); // resolves symlinks
+            attrs = Files.readAttributes(real, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new AfsException(ErrorCode.NOT_FOUND, "File not found");
+        } catch (IOException e) {
+            log.error("Failed to read file {}: {}", path, e, e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to read file");
+        }
+        if (!real.startsWith(rootLocation)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path resolves outside of root directory");
+        }
+        if (attrs.isDirectory()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot download a directory");
+        }
+        return new ResolvedFile(real, createFileInfo(real, attrs));
+    }
+
+    /**
+     * Resolves a user-supplied path to the real path of a directory inside the root location.
+     *
+     * @param path Path to the directory (relative to the root location)
+     * @return the resolved real path of the directory
+     * @throws AfsException if the path is invalid, outside the root, missing or not a directory
+     */
+    public Path resolveDirectory(String path) {
+        Path dirPath = getAbsolutePath(path);
+        validatePath(dirPath);
+        Path real;
+        try {
+            real = dirPath.toRealPath(); // resolves symlinks
+        } catch (NoSuchFileException e) {
+            throw new AfsException(ErrorCode.NOT_FOUND, "Directory not found");
+        } catch (IOException e) {
+            log.error("Failed to read directory {}: {}", path, e, e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to read directory");
+        }
+        if (!real.startsWith(rootLocation)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path resolves outside of root directory");
+        }
+        if (!Files.isDirectory(real)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path is not a directory");
+        }
+        return real;
+    }
+
+    /**
+     * Resolves a user-supplied path to the real path of an existing file or directory inside the root location.
+     *
+     * @param path Path to the entry (relative to the root location)
+     * @return the resolved real path
+     * @throws AfsException if the path is invalid, outside the root or missing
+     */
+    public Path resolveExisting(String path) {
+        Path filePath = getAbsolutePath(path);
+        validatePath(filePath);
+        Path real;
+        try {
+            real = filePath.toRealPath(); // resolves symlinks
+        } catch (NoSuchFileException e) {
+            throw new AfsException(ErrorCode.NOT_FOUND, "File not found");
+        } catch (IOException e) {
+            log.error("Failed to read file {}: {}", path, e, e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to read file");
+        }
+        if (!real.startsWith(rootLocation)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path resolves outside of root directory");
+        }
+        return real;
+    }
+
+    /**
+     * Resolves a user-supplied path for a new entry. The parent directory must exist inside the
+     * root location and the entry itself must not exist.
+     *
+     * @param path Path of the new entry (relative to the root location)
+     * @return the absolute path of the new entry below the real path of its parent
+     * @throws AfsException if the path is invalid, outside the root, has no parent directory or exists
+     */
+    public Path resolveNewPath(String path) {
+        Path target = getAbsolutePath(path).normalize();
+        validatePath(target);
+        if (target.equals(rootLocation) || target.getFileName() == null) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Invalid target path");
+        }
+        Path parent = resolveDirectory("/" + rootLocation.relativize(target.getParent()).toString().replace('\\', '/'));
+        Path resolved = parent.resolve(target.getFileName().toString());
+        if (Files.exists(resolved, LinkOption.NOFOLLOW_LINKS)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Target already exists");
+        }
+        return resolved;
+    }
+
     public FileInfoResponse move(String sourcePath, String targetPath) {
+        QuotaService.Reservation reservation = null;
+        boolean moved = false;
         try {
             Path source = getAbsolutePath(sourcePath);
             Path target = getAbsolutePath(targetPath);
@@ -159,14 +393,26 @@ public class FileService {
                 throw new AfsException(ErrorCode.VALIDATION_FAILED, "Target already exists");
             }
 
+            // Charged to the groups the entry enters; counted once the target has been indexed
+            reservation = quotaService.reserveTransfer(
+                relativePath(source.normalize()), relativePath(target.normalize()), true);
             Files.move(source, target);
+            moved = true;
+            fileIndexService.refresh(source, false);
+            fileIndexService.refresh(target, true);
             return createFileInfo(target);
         } catch (IOException e) {
             throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to move: " + e.getMessage());
+        } finally {
+            if (reservation != null && !moved) {
+                quotaService.release(reservation);
+            }
         }
     }
 
     public FileInfoResponse rename(String path, String newName) {
+        QuotaService.Reservation reservation = null;
+        boolean renamed = false;
         try {
             Path source = getAbsolutePath(path);
             Path target = source.resolveSibling(newName);
@@ -177,14 +423,26 @@ public class FileService {
                 throw new AfsException(ErrorCode.VALIDATION_FAILED, "Target already exists");
             }
 
+            // A renamed directory can become the base path of another group
+            reservation = quotaService.reserveTransfer(
+                relativePath(source.normalize()), relativePath(target.normalize()), true);
             Files.move(source, target);
+            renamed = true;
+            fileIndexService.refresh(source, false);
+            fileIndexService.refresh(target, true);
             return createFileInfo(target);
         } catch (IOException e) {
             throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to rename: " + e.getMessage());
+        } finally {
+            if (reservation != null && !renamed) {
+                quotaService.release(reservation);
+            }
         }
     }
 
     public FileInfoResponse store(MultipartFile file, String path) {
+        QuotaService.Reservation reservation = null;
+        boolean stored = false;
         try {
             Path targetPath = getAbsolutePath(path);
             validatePath(targetPath);
@@ -193,31 +451,194 @@ public class FileService {
                 throw new AfsException(ErrorCode.VALIDATION_FAILED, "File already exists");
             }
 
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-            return createFileInfo(targetPath);
+            // Checked before any byte is written; counted once the file has been indexed
+            reservation = quotaService.reserve(relativePath(targetPath.normalize()), file.getSize(), 1);
+            String checksum = write(file, targetPath);
+            stored = true;
+            BasicFileAttributes attrs = Files.readAttributes(targetPath, BasicFileAttributes.class);
+            fileIndexService.refresh(targetPath, checksum, attrs);
+            return createFileInfo(targetPath, attrs);
         } catch (IOException e) {
             log.error("Failed to store file to {}: {}", path, e, e);
             throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to store file");
+        } finally {
+            if (reservation != null && !stored) {
+                quotaService.release(reservation);
+            }
+        }
+    }
+
+    /**
+     * Stores an upload, replacing the file at the path if there is one. The new content is
+     * written next to the file and renamed over it, so the file is never partially written;
+     * with versioning enabled the previous content is kept as a {@link com.sme.afs.model.FileVersion}.
+     *
+     * @param file     Uploaded content
+     * @param path     Path of the file (relative to the root location)
+     * @param username User replacing the file, or null
+     * @return the stored file
+     */
+    public FileInfoResponse replace(MultipartFile file, String path, String username) {
+        Path targetPath = getAbsolutePath(path);
+        validatePath(targetPath);
+        if (!Files.exists(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+            return store(file, path);
+        }
+        if (!Files.isRegularFile(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot replace a directory");
+        }
+
+        QuotaService.Reservation reservation;
+        try {
+            reservation = quotaService.reserve(relativePath(targetPath.normalize()),
+                file.getSize() - Files.size(targetPath), 0);
+        } catch (IOException e) {
+            log.error("Failed to read file {}: {}", path, e, e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to replace file");
+        }
+        Path staged = targetPath.resolveSibling("." + targetPath.getFileName() + "." + UUID.randomUUID()
+            + SharedFolderValidator.STAGING_SUFFIX);
+        boolean stored = false;
+        try {
+            String checksum = write(file, staged);
+            if (properties.isVersioning()) {
+                fileVersionService.replace(targetPath, staged, username);
+            } else {
+                Files.move(staged, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            stored = true;
+            BasicFileAttributes attrs = Files.readAttributes(targetPath, BasicFileAttributes.class);
+            fileIndexService.refresh(targetPath, checksum, attrs);
+            return createFileInfo(targetPath, attrs);
+        } catch (IOException e) {
+            log.error("Failed to replace file {}: {}", path, e, e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to replace file");
+        } finally {
+            if (!stored) {
+                quotaService.release(reservation);
+            }
+            try {
+                Files.deleteIfExists(staged);
+            } catch (IOException e) {
+                log.warn("Failed to delete staged upload {}: {}", staged, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lists the kept versions of a file, newest first.
+     *
+     * @param path Path to the file (relative to the root location)
+     * @return the versions of the file
+     */
+    public List<FileVersionResponse> listVersions(String path) {
+        Path filePath = getAbsolutePath(path);
+        validatePath(filePath);
+        if (!Files.exists(filePath, LinkOption.NOFOLLOW_LINKS)) {
+            throw new AfsException(ErrorCode.NOT_FOUND, "File not found");
+        }
+        return fileVersionService.listVersions(filePath);
+    }
+
+    /**
+     * Writes an upload to a new file and returns the checksum of its content.
+     */
+    private String write(MultipartFile file, Path targetPath) throws IOException {
+        if (properties.isDedupeUploads()) {
+            return contentStoreService.store(file.getInputStream(), targetPath).checksum();
+        }
+        // Hash the bytes as they are written instead of reading the file again afterwards
+        MessageDigest digest = ChecksumService.newDigest();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, targetPath);
+        }
+        return ChecksumService.toHex(digest);
+    }
+
+    private void moveTree(Path source, Path target, JobContext context) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            context.addTotal(1, 0);
+            context.addProcessed(1, 0);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Another filesystem: the progress reported is that of the copy
+            fileCopier.copyTree(source, target, context);
+            deleteTree(source, context, false);
         }
     }
 
+    private void deleteTree(Path path, JobContext context, boolean report) throws IOException {
+        if (report) {
+            Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    context.checkCancelled();
+                    context.addTotal(1, 0);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    context.addTotal(1, attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                context.checkCancelled();
+                Files.delete(file);
+                if (report) {
+                    context.addProcessed(1, attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                if (report) {
+                    context.addProcessed(1, 0);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private String relativePath(Path path) {
+        return "/" + rootLocation.relativize(path).toString().replace('\\', '/');
+    }
+
     private FileInfoResponse createFileInfo(Path path) {
+        try {
+            return createFileInfo(path, Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (IOException e) {
+            log.error("Failed to read file info {}: {}", path, e, e);
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to read file info");
+        }
+    }
+
+    private FileInfoResponse createFileInfo(Path path, BasicFileAttributes attrs) {
         try {
             FileInfoResponse info = new FileInfoResponse();
             info.setName(path.getFileName().toString());
             info.setPath(rootLocation.relativize(path).toString());
-            info.setDirectory(Files.isDirectory(path));
+            info.setDirectory(attrs.isDirectory());
 
-            if (!Files.isDirectory(path)) {
-                info.setSize(Files.size(path));
+            if (!attrs.isDirectory()) {
+                info.setSize(attrs.size());
                 info.setMimeType(Files.probeContentType(path));
             }
 
             info.setCreatedAt(LocalDateTime.ofInstant(
-                    ((FileTime) Files.getAttribute(path, "creationTime")).toInstant(),
+                    attrs.creationTime().toInstant(),
                     ZoneId.systemDefault()));
             info.setModifiedAt(LocalDateTime.ofInstant(
-                    Files.getLastModifiedTime(path).toInstant(),
+                    attrs.lastModifiedTime().toInstant(),
                     ZoneId.systemDefault()));
 
             return info;
@@ -240,4 +661,75 @@ public class FileService {
             throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path is outside of root directory");
         }
     }
+
+    /**
+     * Lists directories with {@link Files#list(Path)} and one stat per entry, sorting and
+     * paginating in memory. Lists the same entries as the index: regular files and directories
+     * that are not {@link SharedFolderValidator#isInternalPath(Path, Path) internal}.
+     */
+    private final class DiskListingSource implements ListingSource {
+
+        private static final String NAME = "disk";
+
+        @Override
+        public Optional<DirectoryPage> list(Path directory, String path, ListingQuery query) {
+            List<FileInfoResponse> all = new ArrayList<>();
+            try (Stream<Path> stream = Files.list(directory)) {
+                for (Path child : (Iterable<Path>) stream::iterator) {
+                    if (SharedFolderValidator.isInternalPath(rootLocation, child.toAbsolutePath().normalize())) {
+                        continue;
+                    }
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        log.debug("Skipping unreadable entry {}: {}", child, e.getMessage());
+                        continue;
+                    }
+                    // Symbolic links and special files are not indexed either
+                    if (attrs.isRegularFile() || attrs.isDirectory()) {
+                        all.add(createFileInfo(child, attrs));
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Failed to list directory at {}: {}", directory, e, e);
+                throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to list directory");
+            }
+
+            Comparator<FileInfoResponse> order = query.sort().comparator(query.descending());
+            all.sort(order);
+
+            int from = 0;
+            if (!query.isFirstPage()) {
+                FileInfoResponse after = new FileInfoResponse();
+                after.setName(query.afterName());
+                setKey(after, query);
+                int index = Collections.binarySearch(all, after, order);
+                from = index >= 0 ? index + 1 : -index - 1;
+            }
+            int to = (int) Math.min(all.size(), (long) from + query.limit());
+            List<FileInfoResponse> entries = all.subList(from, to);
+            String nextCursor = to < all.size() ? query.cursorAfter(entries.get(entries.size() - 1)) : null;
+
+            return Optional.of(new DirectoryPage(new ArrayList<>(entries), nextCursor,
+                all.stream().mapToLong(FileInfoResponse::getSize).sum(),
+                (int) all.stream().filter(e -> !e.isDirectory()).count(),
+                (int) all.stream().filter(FileInfoResponse::isDirectory).count(),
+                NAME));
+        }
+
+        private void setKey(FileInfoResponse entry, ListingQuery query) {
+            switch (query.sort()) {
+                case SIZE -> entry.setSize((Long) query.afterKey());
+                case MODIFIED_AT -> entry.setModifiedAt((LocalDateTime) query.afterKey());
+                case NAME -> { }
+            }
+        }
+    }
+
+    /**
+     * A file resolved to its real location on disk together with its metadata.
+     */
+    public record ResolvedFile(Path realPath, FileInfoResponse info) {
+    }
 }
@@ -0,0 +1,237 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.FileVersionResponse;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.model.FileVersion;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.repository.FileVersionRepository;
+import com.sme.afs.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Copy-on-write versions of files replaced through the API.
+ * <p>
+ * Replacing a file never writes into it. The new content is staged next to the file, the
+ * current inode is hard-linked into {@code system/metadata/versions/<file id>/<version>} and
+ * the staged file is then renamed over the original, so keeping a version costs one link and
+ * one rename regardless of the file size, and readers see either the old or the new content.
+ * The {@link FileVersion} row is written in the same transaction; if the rename fails, the
+ * link is removed and the row rolled back.
+ * <p>
+ * On filesystems without hard links the current content is copied into the versions area
+ * instead.
+ * <p>
+ * Versions are not charged to group quotas, so only the newest
+ * {@code shared-folder.max-versions-per-file} of every file are kept, and the indexer removes
+ * them together with the row of their file when the file is deleted, moved or renamed.
+ */
+@Slf4j
+@Service
+public class FileVersionService {
+
+    static final String VERSIONS_DIRECTORY = "system/metadata/versions";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final FileVersionRepository fileVersionRepository;
+    private final FileEntityRepository fileEntityRepository;
+    private final UserRepository userRepository;
+    private final FileIndexService fileIndexService;
+    private final HardLinkManager hardLinkManager;
+    private final SharedFolderProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public FileVersionService(FileVersionRepository fileVersionRepository,
+                              FileEntityRepository fileEntityRepository,
+                              UserRepository userRepository,
+                              FileIndexService fileIndexService,
+                              HardLinkManager hardLinkManager,
+                              SharedFolderProperties properties,
+                              PlatformTransactionManager transactionManager) {
+        this.fileVersionRepository = fileVersionRepository;
+        this.fileEntityRepository = fileEntityRepository;
+        this.userRepository = userRepository;
+        this.fileIndexService = fileIndexService;
+        this.hardLinkManager = hardLinkManager;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Replaces a file with staged content, keeping the current content as a new version.
+     *
+     * @param target   Absolute path of the existing file
+     * @param staged   Absolute path of the new content, in the same directory as the target
+     * @param username User replacing the file, or null
+     * @return the version that holds the previous content
+     * @throws IOException if the version cannot be created or the staged file not renamed
+     */
+    public FileVersion replace(Path target, Path staged, String username) throws IOException {
+        Path root = rootLocation();
+        Path normalized = target.toAbsolutePath().normalize();
+        String relativePath = "/" + root.relativize(normalized).toString().replace('\\', '/');
+
+        synchronized (lockFor(relativePath)) {
+            FileEntity file = indexedFile(root, normalized, relativePath);
+            FileVersion version;
+            try {
+                version = transactionTemplate.execute(status -> {
+                    try {
+                        return createVersion(root, normalized, staged, file, username);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            pruneVersions(file);
+            return version;
+        }
+    }
+
+    /**
+     * Lists the versions of a file, newest first.
+     *
+     * @param target Absolute path of the file
+     * @return the versions of the file, empty if it has none or is not indexed
+     */
+    public List<FileVersionResponse> listVersions(Path target) {
+        Path root = rootLocation();
+        String relativePath = "/" + root.relativize(target.toAbsolutePath().normalize()).toString().replace('\\', '/');
+        return fileEntityRepository.findByPathAndIsDeletedFalse(relativePath)
+            .map(file -> fileVersionRepository.findByFileIdOrderByVersionNumberDesc(file.getId()).stream()
+                .map(this::toResponse)
+                .toList())
+            .orElse(List.of());
+    }
+
+    private FileVersion createVersion(Path root, Path target, Path staged, FileEntity file, String username)
+            throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        FileVersion latest = fileVersionRepository.findTopByFileIdOrderByVersionNumberDesc(file.getId());
+        int versionNumber = latest != null ? latest.getVersionNumber() + 1 : 1;
+        Path versionPath = root.resolve(VERSIONS_DIRECTORY)
+            .resolve(String.valueOf(file.getId()))
+            .resolve(String.valueOf(versionNumber));
+
+        FileVersion version = new FileVersion();
+        version.setFile(file);
+        version.setVersionNumber(versionNumber);
+        version.setSize(attrs.size());
+        version.setPhysicalPath(versionPath.toString());
+        version.setChecksum(isCurrent(file, attrs) ? file.getChecksum() : null);
+        version.setCreatedAt(LocalDateTime.now());
+        version.setCreatedBy(username != null ? userRepository.findByUsername(username).orElse(null) : null);
+        fileVersionRepository.saveAndFlush(version);
+
+        // Left behind by a replace that was rolled back
+        Files.deleteIfExists(versionPath);
+        preserve(target, versionPath);
+        try {
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(versionPath);
+            throw e;
+        }
+        log.debug("Kept version {} of {} at {}", versionNumber, target, versionPath);
+        return version;
+    }
+
+    /**
+     * Removes the oldest versions of a file beyond {@code shared-folder.max-versions-per-file}.
+     * The rows are deleted first, so a version file that cannot be removed is only left behind
+     * on disk and never listed.
+     */
+    private void pruneVersions(FileEntity file) {
+        int keep = Math.max(1, properties.getMaxVersionsPerFile());
+        List<FileVersion> expired = transactionTemplate.execute(status -> {
+            List<FileVersion> versions = fileVersionRepository.findByFileIdOrderByVersionNumberDesc(file.getId());
+            if (versions.size() <= keep) {
+                return List.<FileVersion>of();
+            }
+            List<FileVersion> oldest = versions.subList(keep, versions.size());
+            fileVersionRepository.deleteAllInBatch(oldest);
+            return oldest;
+        });
+        for (FileVersion version : expired) {
+            try {
+                Files.deleteIfExists(Path.of(version.getPhysicalPath()));
+            } catch (IOException e) {
+                log.warn("Failed to remove expired version {}: {}", version.getPhysicalPath(), e.getMessage());
+            }
+        }
+    }
+
+    private void preserve(Path target, Path versionPath) throws IOException {
+        try {
+            hardLinkManager.createHardLink(target, versionPath);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            log.warn("Copying {} into the versions area: {}", target, e.getMessage());
+            Files.createDirectories(versionPath.getParent());
+            Files.copy(target, versionPath, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private FileEntity indexedFile(Path root, Path target, String relativePath) throws IOException {
+        Optional<FileEntity> file = fileEntityRepository.findByPathAndIsDeletedFalse(relativePath);
+        if (file.isEmpty()) {
+            // Written since the indexer last saw its directory
+            try {
+                fileIndexService.indexPath(root, target, false);
+            } catch (DataIntegrityViolationException e) {
+                // The indexer inserted the row at the same time; it is committed by now
+                log.debug("{} was indexed concurrently: {}", relativePath, e.getMessage());
+            }
+            file = fileEntityRepository.findByPathAndIsDeletedFalse(relativePath);
+        }
+        return file.filter(f -> !f.isDirectory())
+            .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND, "File not found"));
+    }
+
+    private boolean isCurrent(FileEntity file, BasicFileAttributes attrs) {
+        return file.getSize() == attrs.size()
+            && FileIndexService.toLocalDateTime(attrs.lastModifiedTime().toInstant()).equals(file.getModifiedAt());
+    }
+
+    private FileVersionResponse toResponse(FileVersion version) {
+        FileVersionResponse response = new FileVersionResponse();
+        response.setVersionNumber(version.getVersionNumber());
+        response.setSize(version.getSize());
+        response.setChecksum(version.getChecksum());
+        response.setCreatedAt(version.getCreatedAt());
+        response.setCreatedBy(version.getCreatedBy() != null ? version.getCreatedBy().getUsername() : null);
+        response.setComment(version.getComment());
+        return response;
+    }
+
+    private Path rootLocation() {
+        return Path.of(properties.getBasePath()).toAbsolutePath().normalize();
+    }
+
+    private Object lockFor(String path) {
+        return locks[Math.floorMod(path.hashCode(), locks.length)];
+    }
+}
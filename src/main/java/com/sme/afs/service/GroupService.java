@@ -8,6 +8,7 @@ import com.sme.afs.model.GroupPermission;
 import com.sme.afs.model.User;
 import com.sme.afs.repository.GroupRepository;
 import com.sme.afs.repository.UserRepository;
+import com.sme.afs.service.permission.CompiledPermissions;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,6 +21,8 @@ import java.util.stream.Collectors;
 public class GroupService {
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
+    private final PermissionService permissionService;
+    private final QuotaService quotaService;
 
     @Transactional
     public GroupDTO createGroup(CreateGroupRequest request) {
@@ -31,9 +34,10 @@ public class GroupService {
         Group group = new Group();
         group.setName(request.getName());
         group.setDescription(request.getDescription());
-        group.setBasePath(request.getBasePath());
+        group.setBasePath(CompiledPermissions.normalize(request.getBasePath()));
 
         Group savedGroup = groupRepository.save(group);
+        quotaService.invalidate(savedGroup.getId());
         return GroupDTO.fromGroup(savedGroup);
     }
 
@@ -56,6 +60,7 @@ public class GroupService {
         permissions.setCanUpload(request.getCanUpload());
 
         Group savedGroup = groupRepository.save(group);
+        permissionService.invalidateAll();
         return GroupDTO.fromGroup(savedGroup);
     }
 
@@ -64,11 +69,29 @@ public class GroupService {
         Group group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND, "Group not found"));
 
-        group.setBasePath(request.getBasePath());
+        group.setBasePath(CompiledPermissions.normalize(request.getBasePath()));
         Group savedGroup = groupRepository.save(group);
+        permissionService.invalidateAll();
+        quotaService.invalidate(groupId);
         return GroupDTO.fromGroup(savedGroup);
     }
 
+    @Transactional
+    public GroupDTO updateGroupQuota(Long groupId, UpdateGroupQuotaRequest request) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND, "Group not found"));
+
+        group.setQuotaBytes(request.getQuotaBytes());
+        group.setQuotaFiles(request.getQuotaFiles());
+        Group savedGroup = groupRepository.save(group);
+        quotaService.invalidate(groupId);
+        return GroupDTO.fromGroup(savedGroup);
+    }
+
+    public GroupUsageResponse getGroupUsage(Long groupId) {
+        return quotaService.getUsage(groupId);
+    }
+
     @Transactional
     public GroupDTO addUserToGroup(Long groupId, Long userId) {
         Group group = groupRepository.findById(groupId)
@@ -85,6 +108,7 @@ public class GroupService {
         user.getGroups().add(group);
         
         Group savedGroup = groupRepository.save(group);
+        permissionService.invalidateUser(user.getUsername());
         return GroupDTO.fromGroup(savedGroup);
     }
 
@@ -104,6 +128,7 @@ public class GroupService {
         user.getGroups().remove(group);
         
         Group savedGroup = groupRepository.save(group);
+        permissionService.invalidateUser(user.getUsername());
         return GroupDTO.fromGroup(savedGroup);
     }
 
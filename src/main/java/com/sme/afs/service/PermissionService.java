@@ -0,0 +1,150 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Role;
+import com.sme.afs.model.User;
+import com.sme.afs.repository.UserRepository;
+import com.sme.afs.service.permission.CompiledPermissions;
+import com.sme.afs.service.permission.Permission;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates group permissions on file paths.
+ * <p>
+ * The groups of a user are compiled once into {@link CompiledPermissions} and cached per user,
+ * so a check on the file hot path is a map read plus one hash lookup per path segment.
+ * Administrators may access everything.
+ * <p>
+ * Cached rights are invalidated when a user's groups or roles change and when the permissions
+ * or base path of a group change. Invalidation happens immediately and again after the change
+ * commits, and every invalidation bumps a generation counter; a compilation that overlapped an
+ * invalidation is not cached, so rights read from the old state never outlive the change.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PermissionService {
+
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    private final UserRepository userRepository;
+    private final SharedFolderProperties sharedFolderProperties;
+
+    private final ConcurrentHashMap<String, CompiledPermissions> permissionsByUser = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Whether file operations are checked against group permissions.
+     *
+     * @return true if permissions are enforced
+     */
+    public boolean isEnforced() {
+        return sharedFolderProperties.isEnforcePermissions();
+    }
+
+    /**
+     * Checks that a user has a permission on a path. Does nothing if permissions are not enforced.
+     *
+     * @param username   Authenticated user
+     * @param path       Path relative to the shared folder root
+     * @param permission Required permission
+     * @throws AfsException with {@link ErrorCode#ACCESS_DENIED} if the permission is not granted
+     */
+    public void checkPermission(String username, String path, Permission permission) {
+        if (!isEnforced()) {
+            return;
+        }
+        if (username == null || !hasPermission(username, path, permission)) {
+            throw new AfsException(ErrorCode.ACCESS_DENIED,
+                "Missing " + permission.name().toLowerCase() + " permission on " + path);
+        }
+    }
+
+    /**
+     * Checks whether a user has a permission on a path.
+     *
+     * @param username   Authenticated user
+     * @param path       Path relative to the shared folder root
+     * @param permission Permission to check
+     * @return true if one of the user's groups grants the permission on the path or an ancestor
+     */
+    public boolean hasPermission(String username, String path, Permission permission) {
+        return getPermissions(username).allows(path, permission);
+    }
+
+    /**
+     * Gets the compiled rights of a user, compiling and caching them if needed.
+     *
+     * @param username Authenticated user
+     * @return the compiled rights, {@link CompiledPermissions#NONE} for unknown users
+     */
+    public CompiledPermissions getPermissions(String username) {
+        CompiledPermissions cached = permissionsByUser.get(username);
+        if (cached != null) {
+            return cached;
+        }
+
+        long compiledAt = generation.get();
+        CompiledPermissions compiled = userRepository.findByUsername(username)
+            .map(this::compile)
+            .orElse(CompiledPermissions.NONE);
+
+        if (permissionsByUser.size() >= MAX_CACHED_USERS) {
+            permissionsByUser.clear();
+        }
+        permissionsByUser.put(username, compiled);
+        if (generation.get() != compiledAt) {
+            // Invalidated while compiling; the result may reflect the old state
+            permissionsByUser.remove(username, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Drops the cached rights of a user, e.g. after a group membership or role change.
+     *
+     * @param username The user
+     */
+    public void invalidateUser(String username) {
+        invalidate(() -> permissionsByUser.remove(username));
+    }
+
+    /**
+     * Drops the cached rights of all users, e.g. after the permissions or base path of a group changed.
+     */
+    public void invalidateAll() {
+        invalidate(permissionsByUser::clear);
+    }
+
+    private void invalidate(Runnable eviction) {
+        generation.incrementAndGet();
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private CompiledPermissions compile(User user) {
+        if (user.getRoles().contains(Role.ROLE_ADMIN)) {
+            return CompiledPermissions.UNRESTRICTED;
+        }
+        CompiledPermissions compiled = CompiledPermissions.compile(user.getGroups());
+        log.debug("Compiled permissions of {}: {} path prefixes", user.getUsername(), compiled.prefixCount());
+        return compiled;
+    }
+}
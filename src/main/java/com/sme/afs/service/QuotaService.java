@@ -0,0 +1,469 @@
+package com.sme.afs.service;
+
+import com.sme.afs.dto.GroupUsageResponse;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.model.Group;
+import com.sme.afs.model.GroupUsage;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.repository.GroupRepository;
+import com.sme.afs.repository.GroupUsageRepository;
+import com.sme.afs.service.permission.CompiledPermissions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Storage usage and quotas of groups.
+ * <p>
+ * Every group has a row in {@code group_usage} with the number and total size of the files
+ * below its base path. The indexer adjusts the rows of the affected groups in the transaction
+ * that writes the changed entries, so uploads, deletes and moves through the API and changes
+ * picked up by the directory monitor are each counted once, when they reach the index. Every
+ * {@code shared-folder.quota-reconcile-interval-millis} the groups are recounted from the
+ * index to correct any drift.
+ * <p>
+ * Uploads reserve their size before any byte is written, and moves and copies into another
+ * group's base path reserve the size of the entry before it is transferred. The check reads
+ * the counter rows of the groups containing the target by primary key, so it costs the same
+ * however many files a group holds. A reservation is kept until the indexer has counted the
+ * written or transferred entry, so parallel writes cannot overshoot a quota together.
+ */
+@Slf4j
+@Service
+public class QuotaService {
+
+    private static final long RESERVATION_TTL_MINUTES = 10;
+
+    private final GroupRepository groupRepository;
+    private final GroupUsageRepository groupUsageRepository;
+    private final FileEntityRepository fileEntityRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Groups by normalized base path; null until loaded.
+     */
+    private volatile Map<String, List<GroupQuota>> groupsByPath;
+
+    // Guarded by "this"
+    private final List<Reservation> reservations = new ArrayList<>();
+    private final Map<Long, long[]> reservedByGroup = new HashMap<>();
+
+    public QuotaService(GroupRepository groupRepository,
+                        GroupUsageRepository groupUsageRepository,
+                        FileEntityRepository fileEntityRepository,
+                        PlatformTransactionManager transactionManager) {
+        this.groupRepository = groupRepository;
+        this.groupUsageRepository = groupUsageRepository;
+        this.fileEntityRepository = fileEntityRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Counter rows are also written after commit and while the indexer's transaction is open
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Reserves quota for content about to be written.
+     *
+     * @param path  Path of the written file (relative to the root location)
+     * @param bytes Number of bytes the write adds
+     * @param files Number of files the write adds
+     * @return the reservation, to be passed to {@link #release(Reservation)} if the write fails
+     * @throws AfsException with {@link ErrorCode#QUOTA_EXCEEDED} if a group containing the path
+     *                      would exceed its quota
+     */
+    public Reservation reserve(String path, long bytes, long files) {
+        String normalized = CompiledPermissions.normalize(path);
+        List<GroupQuota> limited = groupsOf(normalized).stream()
+            .filter(GroupQuota::isLimited)
+            .toList();
+        return reserve(new Reservation(normalized, Math.max(0, bytes), Math.max(0, files), limited));
+    }
+
+    /**
+     * Reserves quota for an entry about to be moved or copied, sized from the index. Only the
+     * groups that contain the target and do not count the entry yet are charged: a move within
+     * a group's base path costs that group nothing, a copy is charged to every group containing
+     * the target.
+     *
+     * @param sourcePath Path of the moved or copied entry (relative to the root location)
+     * @param targetPath Path it is moved or copied to
+     * @param move       Whether the entry leaves the source path
+     * @return the reservation, to be passed to {@link #release(Reservation)} if the operation fails
+     * @throws AfsException with {@link ErrorCode#QUOTA_EXCEEDED} if a group containing the target
+     *                      would exceed its quota
+     */
+    public Reservation reserveTransfer(String sourcePath, String targetPath, boolean move) {
+        String source = CompiledPermissions.normalize(sourcePath);
+        String target = CompiledPermissions.normalize(targetPath);
+        Set<Long> counting = move
+            ? groupsOf(source).stream().map(GroupQuota::groupId).collect(Collectors.toSet())
+            : Set.of();
+        List<GroupQuota> limited = groupsOf(target).stream()
+            .filter(GroupQuota::isLimited)
+            .filter(group -> !counting.contains(group.groupId()))
+            .toList();
+        if (limited.isEmpty()) {
+            return new Reservation(target, 0, 0, limited);
+        }
+        FileEntityRepository.SubtreeTotals totals = fileEntityRepository.sumFilesInSubtree(
+            source, VirtualPath.descendantPattern(source));
+        return reserve(new Reservation(target, totals.getTotalSize(), totals.getFileCount(), limited));
+    }
+
+    private Reservation reserve(Reservation reservation) {
+        List<GroupQuota> limited = reservation.groups;
+        if (limited.isEmpty()) {
+            return reservation;
+        }
+
+        synchronized (this) {
+            expireReservations();
+            // Read under the lock: a reservation is settled only after its file was counted
+            Map<Long, GroupUsage> usage = groupUsageRepository.findAllById(reservation.groupIds()).stream()
+                .collect(Collectors.toMap(GroupUsage::getGroupId, Function.identity()));
+            for (GroupQuota group : limited) {
+                GroupUsage used = usage.get(group.groupId());
+                long[] reserved = reservedByGroup.getOrDefault(group.groupId(), new long[2]);
+                long usedBytes = (used != null ? used.getUsedBytes() : 0) + reserved[0] + reservation.bytes;
+                long usedFiles = (used != null ? used.getFileCount() : 0) + reserved[1] + reservation.files;
+                if (group.quotaBytes() != null && reservation.bytes > 0 && usedBytes > group.quotaBytes()) {
+                    throw new AfsException(ErrorCode.QUOTA_EXCEEDED,
+                        "Storage quota of group " + group.name() + " exceeded: " + group.quotaBytes() + " bytes");
+                }
+                if (group.quotaFiles() != null && reservation.files > 0 && usedFiles > group.quotaFiles()) {
+                    throw new AfsException(ErrorCode.QUOTA_EXCEEDED,
+                        "File quota of group " + group.name() + " exceeded: " + group.quotaFiles() + " files");
+                }
+            }
+            reservations.add(reservation);
+            adjustReserved(reservation, 1);
+        }
+        return reservation;
+    }
+
+    /**
+     * Returns a reservation whose write failed.
+     */
+    public synchronized void release(Reservation reservation) {
+        if (reservations.remove(reservation)) {
+            adjustReserved(reservation, -1);
+        }
+    }
+
+    /**
+     * Writes the usage changes of an indexer transaction to the counters of the affected
+     * groups. Must be called in the transaction that writes the changed entries.
+     */
+    public void apply(UsageDelta delta) {
+        Map<String, List<GroupQuota>> groups = groups();
+        if (delta.isEmpty() || groups.isEmpty()) {
+            return;
+        }
+
+        Map<Long, long[]> byGroup = new HashMap<>();
+        delta.changes.forEach((path, change) -> {
+            for (GroupQuota group : groupsOf(path)) {
+                long[] total = byGroup.computeIfAbsent(group.groupId(), id -> new long[2]);
+                total[0] += change[0];
+                total[1] += change[1];
+            }
+        });
+        byGroup.forEach((groupId, change) -> {
+            if (change[0] != 0 || change[1] != 0) {
+                groupUsageRepository.addUsage(groupId, change[0], change[1]);
+            }
+        });
+        // Groups whose base path was inside a removed directory have nothing left
+        for (String removed : delta.removedSubtrees) {
+            groups.forEach((basePath, quotas) -> {
+                if (basePath.startsWith(removed.equals("/") ? "/" : removed + "/")) {
+                    quotas.forEach(group -> groupUsageRepository.setUsage(group.groupId(), 0, 0));
+                }
+            });
+        }
+
+        Set<String> counted = new HashSet<>(delta.changes.keySet());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    settle(counted);
+                }
+            });
+        } else {
+            settle(counted);
+        }
+    }
+
+    /**
+     * Whether any group is counted, i.e. whether the indexer needs to collect usage changes.
+     */
+    public boolean isTracking() {
+        return !groups().isEmpty();
+    }
+
+    /**
+     * Gets the usage and quota of a group.
+     *
+     * @throws AfsException if there is no such group
+     */
+    public GroupUsageResponse getUsage(Long groupId) {
+        Group group = groupRepository.findById(groupId)
+            .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND, "Group not found"));
+        GroupUsageResponse response = new GroupUsageResponse();
+        response.setGroupId(group.getId());
+        response.setBasePath(group.getBasePath());
+        response.setQuotaBytes(group.getQuotaBytes());
+        response.setQuotaFiles(group.getQuotaFiles());
+        groupUsageRepository.findById(groupId).ifPresent(usage -> {
+            response.setUsedBytes(usage.getUsedBytes());
+            response.setFileCount(usage.getFileCount());
+            response.setReconciledAt(usage.getReconciledAt());
+        });
+        return response;
+    }
+
+    /**
+     * Reloads the quotas of all groups and recounts a group once the current transaction has
+     * committed, e.g. after the group was created or its base path or quota changed.
+     *
+     * @param groupId The changed group
+     */
+    public void invalidate(Long groupId) {
+        Runnable refresh = () -> {
+            reload();
+            recount(groupId);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh.run();
+                }
+            });
+        } else {
+            refresh.run();
+        }
+    }
+
+    /**
+     * Periodically recounts the usage of every group from the index, correcting counters that
+     * drifted, e.g. through changes the indexer applied while a group was being created.
+     */
+    @Scheduled(fixedDelayString = "${shared-folder.quota-reconcile-interval-millis:3600000}")
+    public void reconcile() {
+        Map<String, List<GroupQuota>> groups = reload();
+        groups.values().stream()
+            .flatMap(List::stream)
+            .forEach(group -> recount(group.groupId()));
+    }
+
+    private void recount(Long groupId) {
+        GroupQuota group = groups().values().stream()
+            .flatMap(List::stream)
+            .filter(candidate -> candidate.groupId().equals(groupId))
+            .findFirst()
+            .orElse(null);
+        if (group == null) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // The lock makes indexer transactions wait, so their changes are either counted
+            // below or applied on top of the recounted values
+            GroupUsage usage = groupUsageRepository.findForUpdate(groupId).orElse(null);
+            if (usage == null) {
+                return;
+            }
+            FileEntityRepository.SubtreeTotals totals = fileEntityRepository.sumFilesInSubtree(
+                group.basePath(), VirtualPath.descendantPattern(group.basePath()));
+            if (usage.getReconciledAt() != null
+                    && (usage.getUsedBytes() != totals.getTotalSize() || usage.getFileCount() != totals.getFileCount())) {
+                log.info("Corrected usage of group {}: {} -> {} bytes, {} -> {} files", group.name(),
+                    usage.getUsedBytes(), totals.getTotalSize(), usage.getFileCount(), totals.getFileCount());
+            }
+            usage.setUsedBytes(totals.getTotalSize());
+            usage.setFileCount(totals.getFileCount());
+            usage.setReconciledAt(LocalDateTime.now());
+            groupUsageRepository.save(usage);
+        });
+    }
+
+    private Map<String, List<GroupQuota>> groups() {
+        Map<String, List<GroupQuota>> groups = groupsByPath;
+        return groups != null ? groups : reload();
+    }
+
+    /**
+     * Loads the base paths and quotas of all groups and creates missing counter rows.
+     */
+    private synchronized Map<String, List<GroupQuota>> reload() {
+        List<Group> groups = groupRepository.findAll();
+        Set<Long> counted = groupUsageRepository.findAll().stream()
+            .map(GroupUsage::getGroupId)
+            .collect(Collectors.toSet());
+        for (Group group : groups) {
+            if (!counted.contains(group.getId())) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                        groupUsageRepository.save(new GroupUsage(group.getId())));
+                } catch (DataIntegrityViolationException e) {
+                    log.debug("Usage row of group {} was created concurrently", group.getId());
+                }
+            }
+        }
+
+        Map<String, List<GroupQuota>> byPath = new HashMap<>();
+        for (Group group : groups) {
+            String basePath = CompiledPermissions.normalize(group.getBasePath());
+            byPath.computeIfAbsent(basePath, path -> new ArrayList<>()).add(new GroupQuota(group.getId(),
+                group.getName(), basePath, group.getQuotaBytes(), group.getQuotaFiles()));
+        }
+        groupsByPath = Map.copyOf(byPath);
+        return groupsByPath;
+    }
+
+    /**
+     * Finds the groups whose base path is the path or one of its ancestors.
+     */
+    private List<GroupQuota> groupsOf(String path) {
+        Map<String, List<GroupQuota>> groups = groups();
+        if (groups.isEmpty()) {
+            return List.of();
+        }
+        List<GroupQuota> found = new ArrayList<>();
+        for (String p = path; ; p = FileEntity.parentOf(p)) {
+            found.addAll(groups.getOrDefault(p, List.of()));
+            if (p.equals("/")) {
+                return found;
+            }
+        }
+    }
+
+    /**
+     * Settles the reservations of counted paths. A moved or copied directory is counted in
+     * several indexer transactions; its reservation is settled by the first one.
+     */
+    private synchronized void settle(Set<String> paths) {
+        reservations.removeIf(reservation -> {
+            String prefix = reservation.path.equals("/") ? "/" : reservation.path + "/";
+            boolean settled = paths.contains(reservation.path)
+                || paths.stream().anyMatch(path -> path.startsWith(prefix));
+            if (settled) {
+                adjustReserved(reservation, -1);
+            }
+            return settled;
+        });
+    }
+
+    /**
+     * Drops reservations of writes that were never counted, e.g. because indexing failed.
+     * The next reconciliation counts such files.
+     */
+    private void expireReservations() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(RESERVATION_TTL_MINUTES);
+        reservations.removeIf(reservation -> {
+            boolean expired = reservation.createdAt.isBefore(cutoff);
+            if (expired) {
+                adjustReserved(reservation, -1);
+            }
+            return expired;
+        });
+    }
+
+    private void adjustReserved(Reservation reservation, int sign) {
+        for (Long groupId : reservation.groupIds()) {
+            long[] reserved = reservedByGroup.computeIfAbsent(groupId, id -> new long[2]);
+            reserved[0] += sign * reservation.bytes;
+            reserved[1] += sign * reservation.files;
+            if (reserved[0] == 0 && reserved[1] == 0) {
+                reservedByGroup.remove(groupId);
+            }
+        }
+    }
+
+    /**
+     * Base path and limits of a group; null limits mean unlimited.
+     */
+    private record GroupQuota(Long groupId, String name, String basePath, Long quotaBytes, Long quotaFiles) {
+        boolean isLimited() {
+            return quotaBytes != null || quotaFiles != null;
+        }
+    }
+
+    /**
+     * Quota held by a write until its file has been counted.
+     */
+    public static final class Reservation {
+        private final String path;
+        private final long bytes;
+        private final long files;
+        private final List<GroupQuota> groups;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+
+        private Reservation(String path, long bytes, long files, List<GroupQuota> groups) {
+            this.path = path;
+            this.bytes = bytes;
+            this.files = files;
+            this.groups = groups;
+        }
+
+        private List<Long> groupIds() {
+            return groups.stream().map(GroupQuota::groupId).toList();
+        }
+    }
+
+    /**
+     * Usage changes collected by the indexer while writing entries.
+     */
+    public static final class UsageDelta {
+        private final Map<String, long[]> changes = new HashMap<>();
+        private final List<String> removedSubtrees = new ArrayList<>();
+
+        /**
+         * Records a change of the files at a path.
+         *
+         * @param path  Path of the changed entry (relative to the root location)
+         * @param bytes Change of the total file size
+         * @param files Change of the number of files
+         */
+        public void add(String path, long bytes, long files) {
+            long[] change = changes.computeIfAbsent(path, p -> new long[2]);
+            change[0] += bytes;
+            change[1] += files;
+        }
+
+        /**
+         * Records that an entry was removed together with everything below it.
+         *
+         * @param path  Path of the removed entry (relative to the root location)
+         * @param bytes Total size of the removed files
+         * @param files Number of removed files
+         */
+        public void removeSubtree(String path, long bytes, long files) {
+            add(path, -bytes, -files);
+            removedSubtrees.add(path);
+        }
+
+        boolean isEmpty() {
+            return changes.isEmpty();
+        }
+    }
+}
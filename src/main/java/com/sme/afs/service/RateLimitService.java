@@ -1,117 +1,153 @@
 package com.sme.afs.service;
 
 import com.sme.afs.config.BlobUrlProperties;
+import com.sme.afs.service.ratelimit.ClientAddressKey;
+import com.sme.afs.service.ratelimit.KeyedRateLimiter;
 import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Refill;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 
+/**
+ * Rate limiting for blob URL downloads.
+ * <p>
+ * Each limited dimension has its own {@link KeyedRateLimiter}: downloads per client address,
+ * downloads per user and token validation attempts per client address. Client addresses are
+ * keyed by their parsed binary form, which is computed once per request and shared by the
+ * address-based limiters, so no string keys are built on the hot path.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class RateLimitService {
 
-    private final Cache<String, Bucket> cache = CacheBuilder.newBuilder()
-            .maximumSize(10_000)
-            .expireAfterAccess(Duration.ofMinutes(30))
-            .expireAfterWrite(Duration.ofHours(1))
-            .build();
+    private static final int MAX_KEYS_PER_LIMITER = 10_000;
+    private static final long EVICTION_INTERVAL_MS = 60_000;
+
     private final BlobUrlProperties blobUrlProperties;
+    private final KeyedRateLimiter<ClientAddressKey> downloadsByIp;
+    private final KeyedRateLimiter<String> downloadsByUser;
+    private final KeyedRateLimiter<ClientAddressKey> tokenValidations;
 
-    public boolean isAllowed(String key) {
-        if (key == null || key.isBlank()) {
-            log.warn("Rate limit called with empty key; allowing by default");
-            return true;
-        }
+    public RateLimitService(BlobUrlProperties blobUrlProperties) {
+        this.blobUrlProperties = blobUrlProperties;
+        this.downloadsByIp = new KeyedRateLimiter<>("download-ip", this::downloadPerIpLimit, MAX_KEYS_PER_LIMITER);
+        this.downloadsByUser = new KeyedRateLimiter<>("download-user", this::downloadPerUserLimit, MAX_KEYS_PER_LIMITER);
+        this.tokenValidations = new KeyedRateLimiter<>("token-validation", this::tokenValidationLimit, MAX_KEYS_PER_LIMITER);
+    }
+
+    /**
+     * Whether rate limiting is enabled in the configuration.
+     *
+     * @return true if requests should be limited
+     */
+    public boolean isEnabled() {
         var rl = blobUrlProperties.getRateLimit();
-        if (rl == null || !rl.isEnabled()) {
+        return rl != null && rl.isEnabled();
+    }
+
+    /**
+     * Consumes one download from the limit of a client address.
+     *
+     * @param client        Client address key
+     * @param clientAddress Client address the key was built from, for logging
+     * @return true if the download is allowed
+     */
+    public boolean tryAcquireDownloadByIp(ClientAddressKey client, String clientAddress) {
+        return acquire(downloadsByIp, client, "download IP", clientAddress);
+    }
+
+    /**
+     * Consumes one download from the limit of a user.
+     *
+     * @param username Authenticated username
+     * @return true if the download is allowed
+     */
+    public boolean tryAcquireDownloadByUser(String username) {
+        if (username == null || username.isBlank()) {
+            log.warn("Rate limit called with empty username; allowing by default");
             return true;
         }
-        Bucket bucket;
-        try {
-            bucket = cache.get(key, () -> createNewBucket(key));
-        } catch (Exception e) {
-            log.error("Failed to get rate limit bucket from cache for key: {}", key, e);
-            bucket = createNewBucket(key);
-            cache.put(key, bucket);
+        return acquire(downloadsByUser, username, "download user", username);
+    }
+
+    /**
+     * Consumes one token validation attempt from the limit of a client address.
+     *
+     * @param client        Client address key
+     * @param clientAddress Client address the key was built from, for logging
+     * @return true if the attempt is allowed
+     */
+    public boolean tryAcquireTokenValidation(ClientAddressKey client, String clientAddress) {
+        return acquire(tokenValidations, client, "token validation", clientAddress);
+    }
+
+    /**
+     * Periodically drops buckets that have refilled to capacity and hold no state.
+     */
+    @Scheduled(fixedDelay = EVICTION_INTERVAL_MS)
+    public void evictRefilledBuckets() {
+        int removed = downloadsByIp.evictRefilled()
+                + downloadsByUser.evictRefilled()
+                + tokenValidations.evictRefilled();
+        if (removed > 0) {
+            log.debug("Evicted {} refilled rate limit buckets", removed);
         }
-        boolean allowed = bucket.tryConsume(1);
+    }
 
+    private <K> boolean acquire(KeyedRateLimiter<K> limiter, K key, String dimension, String client) {
+        if (!isEnabled()) {
+            return true;
+        }
+        boolean allowed = limiter.tryAcquire(key);
         if (!allowed) {
-            log.warn("Rate limit exceeded for key: {}", key);
+            log.warn("Rate limit exceeded for {}: {}", dimension, client);
         }
-
         return allowed;
     }
 
-    private Bucket createNewBucket(String key) {
-        Bandwidth limit;
+    private Bandwidth downloadPerIpLimit() {
         var rl = blobUrlProperties.getRateLimit();
-        if (rl == null) {
-            return Bucket.builder()
-                    .addLimit(Bandwidth.classic(20, Refill.intervally(20, Duration.ofMinutes(1))))
-                    .build();
+        var cfg = rl != null ? rl.getDownloadPerIp() : null;
+        if (cfg == null) {
+            return defaultLimit();
         }
+        return limit(positiveOrDefault(cfg.getMaxRequests(), 20),
+                Duration.ofMinutes(positiveOrDefault(cfg.getWindowMinutes(), 1)));
+    }
 
-        if (key.startsWith("download:ip:")) {
-            var ipCfg = rl.getDownloadPerIp();
-            if (ipCfg == null) {
-                return Bucket.builder()
-                        .addLimit(Bandwidth.classic(20, Refill.intervally(20, Duration.ofMinutes(1))))
-                        .build();
-            }
-            limit = Bandwidth.classic(
-                    positiveOrDefault(ipCfg.getMaxRequests(), 20),
-                    Refill.intervally(
-                            positiveOrDefault(ipCfg.getMaxRequests(), 20),
-                            Duration.ofMinutes(positiveOrDefault(ipCfg.getWindowMinutes(), 1))
-                    )
-            );
-        } else if (key.startsWith("download:user:")) {
-            var userCfg = rl.getDownloadPerUser();
-            if (userCfg == null) {
-                return Bucket.builder()
-                        .addLimit(Bandwidth.classic(20, Refill.intervally(20, Duration.ofMinutes(1))))
-                        .build();
-            }
-            limit = Bandwidth.classic(
-                    positiveOrDefault(userCfg.getMaxRequests(), 20),
-                    Refill.intervally(
-                            positiveOrDefault(userCfg.getMaxRequests(), 20),
-                            Duration.ofMinutes(positiveOrDefault(userCfg.getWindowMinutes(), 1))
-                    )
-            );
-        } else if (key.startsWith("token:validation:")) {
-            var tv = rl.getTokenValidation();
-            if (tv == null) {
-                return Bucket.builder()
-                        .addLimit(Bandwidth.classic(20, Refill.intervally(20, Duration.ofMinutes(1))))
-                        .build();
-            }
-            limit = Bandwidth.classic(
-                    positiveOrDefault(tv.getMaxRequests(), 20),
-                    Refill.intervally(
-                            positiveOrDefault(tv.getMaxRequests(), 20),
-                            Duration.ofSeconds(positiveOrDefault(tv.getWindowSeconds(), 60))
-                    )
-            );
-        } else {
-            // Default fallback: conservative 20 req/min
-            limit = Bandwidth.classic(20, Refill.intervally(20, Duration.ofMinutes(1)));
+    private Bandwidth downloadPerUserLimit() {
+        var rl = blobUrlProperties.getRateLimit();
+        var cfg = rl != null ? rl.getDownloadPerUser() : null;
+        if (cfg == null) {
+            return defaultLimit();
         }
+        return limit(positiveOrDefault(cfg.getMaxRequests(), 20),
+                Duration.ofMinutes(positiveOrDefault(cfg.getWindowMinutes(), 1)));
+    }
+
+    private Bandwidth tokenValidationLimit() {
+        var rl = blobUrlProperties.getRateLimit();
+        var cfg = rl != null ? rl.getTokenValidation() : null;
+        if (cfg == null) {
+            return defaultLimit();
+        }
+        return limit(positiveOrDefault(cfg.getMaxRequests(), 20),
+                Duration.ofSeconds(positiveOrDefault(cfg.getWindowSeconds(), 60)));
+    }
+
+    private Bandwidth defaultLimit() {
+        // Conservative fallback: 20 req/min
+        return limit(20, Duration.ofMinutes(1));
+    }
 
-        return Bucket.builder()
-                .addLimit(limit)
-                .build();
+    private Bandwidth limit(int maxRequests, Duration window) {
+        return Bandwidth.classic(maxRequests, Refill.intervally(maxRequests, window));
     }
 
     private int positiveOrDefault(int value, int def) {
         return value > 0 ? value : def;
     }
-}
\ No newline at end of file
+}
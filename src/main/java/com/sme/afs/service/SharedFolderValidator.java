@@ -15,6 +15,7 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.UserPrincipal;
 import java.time.LocalDateTime;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
@@ -23,12 +24,45 @@ public class SharedFolderValidator {
     
     private final SharedFolderProperties properties;
 
+    /**
+     * Top-level directories below the base path that hold server data (content store, file
+     * versions, ACLs, logs) rather than user files.
+     */
+    public static final Set<String> SYSTEM_DIRECTORIES = Set.of("system", "logs");
+
+    /**
+     * Suffix of the hidden {@code .<name>.<uuid>.upload} files a replacement is staged in.
+     */
+    public static final String STAGING_SUFFIX = ".upload";
+
+    private static final Pattern STAGING_FILE = Pattern.compile(
+        "\\..+\\.[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}" + Pattern.quote(STAGING_SUFFIX));
+
     public static Path validateAndNormalizePath(String pathStr) throws IOException {
         Path path = Path.of(pathStr).normalize().toAbsolutePath();
         // Option: resolve the canonical path (follows symlinks)
         return path.toRealPath();
     }
 
+    /**
+     * Checks whether a path below the base path is server data that is neither indexed nor
+     * watched nor reconciled: the system directories with everything inside them, and upload
+     * staging files.
+     *
+     * @param root Base path
+     * @param path Absolute, normalized path
+     * @return true if the path is internal
+     */
+    public static boolean isInternalPath(Path root, Path path) {
+        if (!path.startsWith(root) || path.equals(root)) {
+            return false;
+        }
+        if (SYSTEM_DIRECTORIES.contains(root.relativize(path).getName(0).toString())) {
+            return true;
+        }
+        return STAGING_FILE.matcher(path.getFileName().toString()).matches();
+    }
+
     public void validateConfiguration() {
         // Validate package owner first
         validatePackageOwner();
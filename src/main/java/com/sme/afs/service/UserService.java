@@ -27,6 +27,7 @@ public class UserService {
     private final GroupRepository groupRepository;
     private final PasswordEncoder passwordEncoder;
     private final SessionService sessionService;
+    private final PermissionService permissionService;
 
     @Transactional(readOnly = true)
     public List<User> getAllUsers() {
@@ -81,6 +82,8 @@ public class UserService {
             }
             throw e;
         }
+        // Checks before the user existed may have cached empty rights
+        permissionService.invalidateUser(savedUser.getUsername());
         return UserDTO.fromUser(savedUser);
     }
 
@@ -157,6 +160,7 @@ public class UserService {
         }
 
         User updatedUser = userRepository.save(user);
+        permissionService.invalidateUser(updatedUser.getUsername());
         return UserDTO.fromUser(updatedUser);
     }
 
@@ -0,0 +1,445 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.model.VirtualPathTreeVersion;
+import com.sme.afs.repository.VirtualPathRepository;
+import com.sme.afs.repository.VirtualPathTreeVersionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-memory trie of the active virtual paths, one node per path segment.
+ * <p>
+ * Directories are loaded lazily: the children of a directory are read from the database
+ * the first time a lookup passes through it. The number of cached entries is bounded by
+ * {@code shared-folder.virtual-path-cache-max-entries}; when it is exceeded, the children
+ * of the least recently used directories are dropped and reloaded on demand.
+ * <p>
+ * The database stays the source of truth. {@link VirtualPathService} reports every change
+ * through the {@code record*} methods, which increment the tree version in the database and
+ * update the trie in place. Until the changing transaction completes, lookups bypass the trie
+ * and read from the database, so no thread sees or caches uncommitted state; a rollback clears
+ * the trie. Changes made by other nodes are detected by comparing the stored version with the
+ * cached one, at most once per {@code shared-folder.virtual-path-cache-check-interval-millis};
+ * a newer version clears the trie.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VirtualPathCache {
+
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final VirtualPathRepository virtualPathRepository;
+    private final VirtualPathTreeVersionRepository versionRepository;
+    private final SharedFolderProperties properties;
+
+    // All fields below are guarded by "this"
+    private final LinkedHashMap<Node, Boolean> loadedDirectories = new LinkedHashMap<>(16, 0.75f, true);
+    private Node root = Node.directory(null);
+    private int size;
+    private long version = -1;
+    private long generation;
+    private int pendingChanges;
+    private boolean checked;
+    private long lastCheckNanos;
+
+    /**
+     * Cached view of an active virtual path.
+     *
+     * @param id          Id of the virtual path, null for the root "/"
+     * @param virtualPath The virtual path
+     * @param directory   Whether the path is a directory
+     */
+    public record Entry(Long id, String virtualPath, boolean directory) {
+    }
+
+    /**
+     * Looks up an active virtual path. The root "/" always exists.
+     *
+     * @param virtualPath The virtual path
+     * @return the entry, or empty if the path does not exist or is deleted
+     */
+    public Optional<Entry> lookup(String virtualPath) {
+        return read(virtualPath, false,
+            node -> Optional.ofNullable(node).map(n -> n.toEntry(virtualPath)),
+            () -> virtualPathRepository.findByVirtualPathAndIsDeletedFalse(virtualPath)
+                .map(v -> new Entry(v.getId(), v.getVirtualPath(), v.isDirectory())));
+    }
+
+    /**
+     * Checks whether an active virtual path exists.
+     *
+     * @param virtualPath The virtual path
+     * @return true if the path exists and is not deleted
+     */
+    public boolean exists(String virtualPath) {
+        return lookup(virtualPath).isPresent();
+    }
+
+    /**
+     * Looks up the parent directory of a virtual path.
+     *
+     * @param virtualPath The virtual path
+     * @return the parent entry, or empty if the parent does not exist
+     */
+    public Optional<Entry> parent(String virtualPath) {
+        int lastSlash = virtualPath.lastIndexOf('/');
+        return lookup(lastSlash > 0 ? virtualPath.substring(0, lastSlash) : "/");
+    }
+
+    /**
+     * Lists the direct children of a directory.
+     *
+     * @param virtualPath The directory's virtual path
+     * @return the children, empty if the path does not exist or is not a directory
+     */
+    public List<Entry> children(String virtualPath) {
+        String prefix = virtualPath.endsWith("/") ? virtualPath : virtualPath + "/";
+        return read(virtualPath, true,
+            node -> {
+                List<Entry> children = new ArrayList<>();
+                if (node != null && node.children != null) {
+                    node.children.forEach((name, child) -> children.add(child.toEntry(prefix + name)));
+                }
+                return children;
+            },
+            () -> virtualPathRepository.findChildrenByPath(virtualPath).stream()
+                .map(v -> new Entry(v.getId(), v.getVirtualPath(), v.isDirectory()))
+                .toList());
+    }
+
+    /**
+     * Records a newly created virtual path.
+     * Must be called within the creating transaction.
+     *
+     * @param created The saved virtual path
+     */
+    public void recordCreated(VirtualPath created) {
+        String path = created.getVirtualPath();
+        Long id = created.getId();
+        boolean directory = created.isDirectory();
+        applyChange(() -> {
+            Node parent = findLoaded(parentPath(path));
+            if (parent != null) {
+                Node node = directory ? Node.directory(id) : Node.file(id);
+                attach(parent, nameOf(path), node);
+                if (directory) {
+                    // A new directory is known to be empty
+                    node.children = new HashMap<>();
+                    loadedDirectories.put(node, Boolean.TRUE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records the deletion of a virtual path and its subtree.
+     * Must be called within the deleting transaction.
+     *
+     * @param virtualPath The deleted virtual path
+     */
+    public void recordDeleted(String virtualPath) {
+        applyChange(() -> {
+            Node node = detach(virtualPath);
+            if (node != null) {
+                unload(node);
+            }
+        });
+    }
+
+    /**
+     * Records the move of a virtual path and its subtree.
+     * Must be called within the moving transaction.
+     *
+     * @param oldPath Previous virtual path
+     * @param newPath New virtual path
+     */
+    public void recordMoved(String oldPath, String newPath) {
+        applyChange(() -> {
+            Node node = detach(oldPath);
+            Node newParent = findLoaded(parentPath(newPath));
+            if (node != null && newParent != null) {
+                attach(newParent, nameOf(newPath), node);
+            } else if (node != null) {
+                unload(node);
+            }
+        });
+    }
+
+    /**
+     * Drops all cached entries; the next lookup reloads from the database.
+     */
+    public synchronized void invalidate() {
+        clear();
+        version = -1;
+        checked = false;
+    }
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return Number of cached virtual paths
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private <T> T read(String virtualPath, boolean loadTarget, Function<Node, T> reader, Supplier<T> fallback) {
+        ensureFresh();
+        String[] segments = segments(virtualPath);
+
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            String unloadedPath;
+            long loadGeneration;
+            synchronized (this) {
+                if (pendingChanges > 0) {
+                    break;
+                }
+                Node node = root;
+                int depth = 0;
+                while (node.children != null && depth < segments.length) {
+                    loadedDirectories.get(node);
+                    node = node.children.get(segments[depth]);
+                    if (node == null) {
+                        return reader.apply(null);
+                    }
+                    depth++;
+                }
+                if (depth == segments.length && (!loadTarget || !node.directory || node.children != null)) {
+                    return reader.apply(node);
+                }
+                unloadedPath = joinPath(segments, depth);
+                loadGeneration = generation;
+            }
+
+            List<VirtualPath> children = virtualPathRepository.findChildrenByPath(unloadedPath);
+            synchronized (this) {
+                if (loadGeneration == generation && pendingChanges == 0) {
+                    install(unloadedPath, children);
+                }
+            }
+        }
+
+        return fallback.get();
+    }
+
+    private void install(String directoryPath, List<VirtualPath> rows) {
+        Node directory = findNode(directoryPath);
+        if (directory == null || !directory.directory || directory.children != null) {
+            return;
+        }
+        Map<String, Node> children = new HashMap<>(Math.max(4, rows.size() * 4 / 3 + 1));
+        for (VirtualPath row : rows) {
+            children.put(nameOf(row.getVirtualPath()),
+                row.isDirectory() ? Node.directory(row.getId()) : Node.file(row.getId()));
+        }
+        directory.children = children;
+        size += children.size();
+        loadedDirectories.put(directory, Boolean.TRUE);
+        evictIfNeeded(directory);
+    }
+
+    private void evictIfNeeded(Node keep) {
+        int maxEntries = properties.getVirtualPathCacheMaxEntries();
+        while (size > maxEntries && loadedDirectories.size() > 1) {
+            Node eldest = loadedDirectories.keySet().iterator().next();
+            if (eldest == keep) {
+                break;
+            }
+            unload(eldest);
+        }
+    }
+
+    private void unload(Node directory) {
+        if (directory.children == null || !directory.directory) {
+            return;
+        }
+        for (Node child : directory.children.values()) {
+            unload(child);
+        }
+        size -= directory.children.size();
+        directory.children = null;
+        loadedDirectories.remove(directory);
+    }
+
+    private void attach(Node parent, String name, Node node) {
+        Node previous = parent.children.put(name, node);
+        if (previous != null) {
+            unload(previous);
+        } else {
+            size++;
+        }
+    }
+
+    private Node detach(String virtualPath) {
+        Node parent = findLoaded(parentPath(virtualPath));
+        if (parent == null) {
+            return null;
+        }
+        Node node = parent.children.remove(nameOf(virtualPath));
+        if (node != null) {
+            size--;
+        }
+        return node;
+    }
+
+    private void applyChange(Runnable change) {
+        long newVersion = incrementVersion();
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        synchronized (this) {
+            generation++;
+            if (version == newVersion - 1) {
+                change.run();
+            } else {
+                // Missed a change by another node
+                clear();
+            }
+            version = newVersion;
+            if (inTransaction) {
+                pendingChanges++;
+            }
+        }
+
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    synchronized (VirtualPathCache.this) {
+                        pendingChanges--;
+                        if (status != STATUS_COMMITTED) {
+                            invalidate();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private long incrementVersion() {
+        if (versionRepository.incrementVersion() == 0) {
+            VirtualPathTreeVersion treeVersion = new VirtualPathTreeVersion();
+            treeVersion.setId(VirtualPathTreeVersion.SINGLETON_ID);
+            treeVersion.setVersion(1);
+            versionRepository.saveAndFlush(treeVersion);
+            return 1;
+        }
+        return versionRepository.findCurrentVersion().orElse(0L);
+    }
+
+    private void ensureFresh() {
+        long now = System.nanoTime();
+        synchronized (this) {
+            long interval = TimeUnit.MILLISECONDS.toNanos(properties.getVirtualPathCacheCheckIntervalMillis());
+            if (checked && now - lastCheckNanos < interval) {
+                return;
+            }
+            checked = true;
+            lastCheckNanos = now;
+        }
+
+        long currentVersion = versionRepository.findCurrentVersion().orElse(0L);
+        synchronized (this) {
+            // An older stored version means our own change is not committed yet
+            if (currentVersion > version) {
+                if (version >= 0) {
+                    log.debug("Virtual path tree changed from version {} to {}, clearing cache", version, currentVersion);
+                }
+                clear();
+                version = currentVersion;
+            }
+        }
+    }
+
+    private void clear() {
+        root = Node.directory(null);
+        loadedDirectories.clear();
+        size = 0;
+        generation++;
+    }
+
+    private Node findNode(String virtualPath) {
+        Node node = root;
+        for (String segment : segments(virtualPath)) {
+            if (node.children == null) {
+                return null;
+            }
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private Node findLoaded(String directoryPath) {
+        Node node = findNode(directoryPath);
+        return node != null && node.children != null && node.directory ? node : null;
+    }
+
+    private static String[] segments(String virtualPath) {
+        return Arrays.stream(virtualPath.split("/"))
+            .filter(segment -> !segment.isEmpty())
+            .toArray(String[]::new);
+    }
+
+    private static String joinPath(String[] segments, int count) {
+        if (count == 0) {
+            return "/";
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            path.append('/').append(segments[i]);
+        }
+        return path.toString();
+    }
+
+    private static String parentPath(String path) {
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash > 0 ? path.substring(0, lastSlash) : "/";
+    }
+
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static final class Node {
+        private final Long id;
+        private final boolean directory;
+        // null while the children of a directory are not loaded
+        private Map<String, Node> children;
+
+        private Node(Long id, boolean directory, Map<String, Node> children) {
+            this.id = id;
+            this.directory = directory;
+            this.children = children;
+        }
+
+        static Node directory(Long id) {
+            return new Node(id, true, null);
+        }
+
+        static Node file(Long id) {
+            return new Node(id, false, Map.of());
+        }
+
+        Entry toEntry(String virtualPath) {
+            return new Entry(id, virtualPath, directory);
+        }
+    }
+}
@@ -12,30 +12,34 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class VirtualPathService {
-    
+
+    /**
+     * Maximum number of entries soft-deleted per statement, which keeps each statement short
+     * and bounded for very large trees.
+     */
+    static final int DELETE_BATCH_SIZE = 5_000;
+
     private final VirtualPathRepository virtualPathRepository;
     private final SharedFolderValidator sharedFolderValidator;
+    private final VirtualPathCache virtualPathCache;
 
     @Transactional
     public VirtualPath createDirectory(String virtualPath, String physicalPath, User user) {
         validatePaths(virtualPath, physicalPath);
 
-        if (virtualPathRepository.existsByVirtualPathAndIsDeletedFalse(virtualPath)) {
+        if (virtualPathCache.exists(virtualPath)) {
             throw new AfsException(ErrorCode.VALIDATION_FAILED, "Virtual path already exists: " + virtualPath);
         }
 
         String parentVirtualPath = getParentPath(virtualPath);
         VirtualPath parent = null;
         if (!parentVirtualPath.equals("/")) {
-            parent = virtualPathRepository.findByVirtualPathAndIsDeletedFalse(parentVirtualPath)
-                .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND,
-                    "Parent path not found: " + parentVirtualPath));
+            parent = resolveParent(parentVirtualPath, "Parent path not found: ");
         }
 
         VirtualPath vPath = new VirtualPath();
@@ -49,48 +53,103 @@ public class VirtualPathService {
         vPath.setModifiedAt(LocalDateTime.now());
         vPath.setModifiedBy(user);
 
-        return virtualPathRepository.save(vPath);
+        VirtualPath saved = virtualPathRepository.save(vPath);
+        virtualPathCache.recordCreated(saved);
+        return saved;
     }
 
+    /**
+     * Soft-deletes a directory and all of its descendants.
+     *
+     * @param virtualPath Virtual path of the directory
+     * @param user        User deleting the directory
+     * @return number of entries marked as deleted, including the directory itself
+     */
     @Transactional
-    public void deleteDirectory(String virtualPath, User user) {
-        VirtualPath vPath = virtualPathRepository.findByVirtualPathAndIsDeletedFalse(virtualPath)
+    public int deleteDirectory(String virtualPath, User user) {
+        VirtualPathCache.Entry entry = virtualPathCache.lookup(virtualPath)
+            .filter(e -> e.id() != null)
             .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND,
                 "Virtual path not found: " + virtualPath));
 
-        if (!vPath.isDirectory()) {
+        if (!entry.directory()) {
             throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path is not a directory: " + virtualPath);
         }
 
-        markDeleted(vPath, user);
+        int deleted = markSubtreeDeleted(entry.virtualPath(), user);
+        virtualPathCache.recordDeleted(entry.virtualPath());
+        return deleted;
     }
 
+    /**
+     * Moves a directory together with its subtree. The paths of all descendants are rewritten
+     * in a single statement, so the number of round trips does not depend on the tree size.
+     *
+     * @param sourceVirtualPath Current virtual path of the directory
+     * @param targetVirtualPath New virtual path of the directory
+     * @param user              User moving the directory
+     * @return the moved directory
+     */
     @Transactional
     public VirtualPath moveDirectory(String sourceVirtualPath, String targetVirtualPath, User user) {
-        VirtualPath source = virtualPathRepository.findByVirtualPathAndIsDeletedFalse(sourceVirtualPath)
+        if (!targetVirtualPath.startsWith("/")) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Virtual path must be absolute");
+        }
+
+        VirtualPathCache.Entry sourceEntry = virtualPathCache.lookup(sourceVirtualPath)
+            .filter(e -> e.id() != null)
             .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND,
                 "Source path not found: " + sourceVirtualPath));
 
-        if (!source.isDirectory()) {
+        if (!sourceEntry.directory()) {
             throw new AfsException(ErrorCode.VALIDATION_FAILED, "Source is not a directory: " + sourceVirtualPath);
         }
 
-        String targetParentPath = getParentPath(targetVirtualPath);
-        VirtualPath targetParent = virtualPathRepository.findByVirtualPathAndIsDeletedFalse(targetParentPath)
-            .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND,
-                "Target parent path not found: " + targetParentPath));
-
-        if (source.isAncestorOf(targetParent)) {
+        if (VirtualPath.isAncestorPath(sourceEntry.virtualPath(), targetVirtualPath)) {
             throw new AfsException(ErrorCode.VALIDATION_FAILED,
                 "Cannot move directory to its own subdirectory");
         }
 
+        // Soft-deleted entries keep their path and still occupy it, so this cannot use the cache
+        if (virtualPathRepository.existsByVirtualPath(targetVirtualPath)) {
+            throw new AfsException(ErrorCode.CONFLICT, "Target path already exists: " + targetVirtualPath);
+        }
+
+        String targetParentPath = getParentPath(targetVirtualPath);
+        VirtualPath targetParent = null;
+        if (!targetParentPath.equals("/")) {
+            targetParent = resolveParent(targetParentPath, "Target parent path not found: ");
+        }
+
+        VirtualPath source = virtualPathRepository.findById(sourceEntry.id())
+            .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND,
+                "Source path not found: " + sourceVirtualPath));
+        String oldPath = source.getVirtualPath();
         source.setVirtualPath(targetVirtualPath);
+        source.setName(getNameFromPath(targetVirtualPath));
         source.setParent(targetParent);
         source.setModifiedAt(LocalDateTime.now());
         source.setModifiedBy(user);
+        virtualPathRepository.save(source);
+
+        int moved = virtualPathRepository.rewriteDescendantPaths(
+            VirtualPath.descendantPattern(oldPath), oldPath.length(), targetVirtualPath,
+            VirtualPath.depthOf(targetVirtualPath) - VirtualPath.depthOf(oldPath));
+        virtualPathCache.recordMoved(oldPath, targetVirtualPath);
+        log.debug("Moved {} with {} descendants to {}", oldPath, moved, targetVirtualPath);
 
-        return virtualPathRepository.save(source);
+        return source;
+    }
+
+    /**
+     * Resolves a parent directory through the path cache. Returns an uninitialized reference,
+     * so setting it as parent does not load the entity.
+     */
+    private VirtualPath resolveParent(String parentPath, String notFoundMessage) {
+        VirtualPathCache.Entry parent = virtualPathCache.lookup(parentPath)
+            .filter(e -> e.id() != null)
+            .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND, notFoundMessage + parentPath));
+        return virtualPathRepository.getReferenceById(parent.id());
     }
 
     private void validatePaths(String virtualPath, String physicalPath) {
@@ -119,16 +178,19 @@ public class VirtualPathService {
             path.substring(lastSlash + 1) : path;
     }
 
-    private void markDeleted(VirtualPath vPath, User user) {
-        vPath.setDeleted(true);
-        vPath.setDeletedAt(LocalDateTime.now());
-        vPath.setDeletedBy(user);
-        virtualPathRepository.save(vPath);
+    private int markSubtreeDeleted(String virtualPath, User user) {
+        String descendantPattern = VirtualPath.descendantPattern(virtualPath);
+        LocalDateTime now = LocalDateTime.now();
 
-        // Recursively mark children as deleted
-        List<VirtualPath> children = virtualPathRepository.findByParentIdAndIsDeletedFalse(vPath.getId());
-        for (VirtualPath child : children) {
-            markDeleted(child, user);
-        }
+        int total = 0;
+        int updated;
+        do {
+            updated = virtualPathRepository.markSubtreeDeleted(virtualPath, descendantPattern, now, user, DELETE_BATCH_SIZE);
+            total += updated;
+        } while (updated == DELETE_BATCH_SIZE);
+
+        log.debug("Marked {} virtual paths as deleted under {}", total, virtualPath);
+        return total;
     }
+
 }
@@ -0,0 +1,362 @@
+package com.sme.afs.service.batch;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.BatchItemResult;
+import com.sme.afs.dto.BatchResponse;
+import com.sme.afs.dto.MoveRequest;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.service.FileService;
+import com.sme.afs.service.PermissionService;
+import com.sme.afs.service.permission.CompiledPermissions;
+import com.sme.afs.service.permission.Permission;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Deletes, moves and creates many entries in one request.
+ * <p>
+ * A batch is validated as a whole before anything is changed: the user's rights are compiled
+ * once, every path is resolved, and duplicates and entries that depend on each other (a path
+ * inside another deleted or moved path) are rejected. Items that fail validation are reported
+ * and skipped; the others are executed on a pool of {@code shared-folder.batch-parallelism}
+ * threads shared by all batch requests. The response holds one result per item, in request order.
+ * <p>
+ * Directory trees are not deleted on the request thread: each is handed to a delete job, whose
+ * id is returned in the item's result, so a batch request stays short however large the trees are.
+ */
+@Slf4j
+@Service
+public class BatchService {
+
+    private final FileService fileService;
+    private final PermissionService permissionService;
+    private final SharedFolderProperties properties;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    public BatchService(FileService fileService,
+                        PermissionService permissionService,
+                        SharedFolderProperties properties) {
+        this.fileService = fileService;
+        this.permissionService = permissionService;
+        this.properties = properties;
+        this.parallelism = Math.max(1, properties.getBatchParallelism());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "file-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Deletes files and starts jobs that delete directory trees. The result of a directory is
+     * successful once its job has been queued, and carries the id of the job.
+     *
+     * @param paths    Paths to delete (relative to the root location)
+     * @param username User deleting the entries, or null
+     * @return the result of every path
+     * @throws AfsException if the batch is empty or too large
+     */
+    public BatchResponse delete(List<String> paths, String username) {
+        checkSize(paths);
+        CompiledPermissions rights = rights(username);
+        List<Item> items = paths.stream().map(path -> new Item(path, null)).toList();
+
+        Set<String> seen = new HashSet<>();
+        for (Item item : items) {
+            validate(item, () -> {
+                item.normalized = normalize(item.path);
+                if (!seen.add(item.normalized)) {
+                    throw new AfsException(ErrorCode.VALIDATION_FAILED, "Duplicate path in batch");
+                }
+                if (item.normalized.equals("/")) {
+                    throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot delete the root directory");
+                }
+                require(rights, item.normalized, Permission.DELETE);
+                item.directory = Files.isDirectory(fileService.resolveExisting(item.path), LinkOption.NOFOLLOW_LINKS);
+            });
+        }
+        Set<String> deleted = normalizedPaths(items);
+        for (Item item : valid(items)) {
+            validate(item, () -> requireNoAncestorIn(deleted, item.normalized));
+        }
+
+        runParallel(valid(items), item -> {
+            if (item.directory) {
+                item.result.setJobId(fileService.submitDelete(item.path, username).getId());
+            } else {
+                fileService.delete(item.path);
+            }
+        });
+        return toResponse(items);
+    }
+
+    /**
+     * Moves files and directories.
+     *
+     * @param moves    Source and target of every move (relative to the root location)
+     * @param username User moving the entries, or null
+     * @return the result of every move
+     * @throws AfsException if the batch is empty or too large
+     */
+    public BatchResponse move(List<MoveRequest> moves, String username) {
+        checkSize(moves);
+        CompiledPermissions rights = rights(username);
+        List<Item> items = moves.stream()
+            .map(move -> move == null ? new Item(null, null) : new Item(move.getSourcePath(), move.getTargetPath()))
+            .toList();
+
+        Set<String> seenSources = new HashSet<>();
+        Set<String> seenTargets = new HashSet<>();
+        for (Item item : items) {
+            validate(item, () -> {
+                item.normalized = normalize(item.path);
+                item.normalizedTarget = normalize(item.targetPath);
+                if (!seenSources.add(item.normalized) || !seenTargets.add(item.normalizedTarget)) {
+                    throw new AfsException(ErrorCode.VALIDATION_FAILED, "Duplicate path in batch");
+                }
+                require(rights, item.normalized, Permission.DELETE);
+                require(rights, item.normalizedTarget, Permission.WRITE);
+                if (isSameOrInside(item.normalizedTarget, item.normalized)) {
+                    throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot move a directory into itself");
+                }
+                fileService.resolveExisting(item.path);
+                fileService.resolveNewPath(item.targetPath);
+            });
+        }
+        Set<String> sources = normalizedPaths(items);
+        for (Item item : valid(items)) {
+            validate(item, () -> {
+                requireNoAncestorIn(sources, item.normalized);
+                if (sources.contains(item.normalizedTarget) || ancestorIn(sources, item.normalizedTarget) != null) {
+                    throw new AfsException(ErrorCode.VALIDATION_FAILED,
+                        "Target is affected by another move of the batch");
+                }
+            });
+        }
+
+        runParallel(valid(items), item -> fileService.move(item.path, item.targetPath));
+        return toResponse(items);
+    }
+
+    /**
+     * Creates directories. A directory whose parent is created by the same batch is created
+     * after its parent.
+     *
+     * @param paths    Paths of the new directories (relative to the root location)
+     * @param username User creating the directories, or null
+     * @return the result of every path
+     * @throws AfsException if the batch is empty or too large
+     */
+    public BatchResponse createDirectories(List<String> paths, String username) {
+        checkSize(paths);
+        CompiledPermissions rights = rights(username);
+        List<Item> items = paths.stream().map(path -> new Item(path, null)).toList();
+        for (Item item : items) {
+            validate(item, () -> item.normalized = normalize(item.path));
+        }
+
+        // Parents are validated before their children, so a child can rely on a parent of the batch
+        List<Item> byDepth = valid(items).stream()
+            .sorted(Comparator.comparingInt(item -> depth(item.normalized)))
+            .toList();
+        Set<String> seen = new HashSet<>();
+        Set<String> created = new HashSet<>();
+        for (Item item : byDepth) {
+            validate(item, () -> {
+                if (!seen.add(item.normalized)) {
+                    throw new AfsException(ErrorCode.VALIDATION_FAILED, "Duplicate path in batch");
+                }
+                require(rights, item.normalized, Permission.WRITE);
+                if (!created.contains(parent(item.normalized))) {
+                    fileService.resolveNewPath(item.path);
+                }
+                created.add(item.normalized);
+            });
+        }
+
+        Map<Integer, List<Item>> levels = new TreeMap<>();
+        for (Item item : valid(byDepth)) {
+            levels.computeIfAbsent(depth(item.normalized), depth -> new ArrayList<>()).add(item);
+        }
+        for (List<Item> level : levels.values()) {
+            runParallel(level, item -> fileService.createDirectory(item.path));
+        }
+        return toResponse(items);
+    }
+
+    private void checkSize(List<?> entries) {
+        if (entries == null || entries.isEmpty()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "At least one path is required");
+        }
+        if (entries.size() > properties.getBatchMaxSize()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED,
+                "Maximum batch size exceeded: " + properties.getBatchMaxSize());
+        }
+    }
+
+    private CompiledPermissions rights(String username) {
+        if (!permissionService.isEnforced()) {
+            return CompiledPermissions.UNRESTRICTED;
+        }
+        return username != null ? permissionService.getPermissions(username) : CompiledPermissions.NONE;
+    }
+
+    private void require(CompiledPermissions rights, String path, Permission permission) {
+        if (!rights.allows(path, permission)) {
+            throw new AfsException(ErrorCode.ACCESS_DENIED,
+                "Missing " + permission.name().toLowerCase() + " permission on " + path);
+        }
+    }
+
+    private void requireNoAncestorIn(Set<String> paths, String path) {
+        String ancestor = ancestorIn(paths, path);
+        if (ancestor != null) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path is inside " + ancestor + " of the same batch");
+        }
+    }
+
+    private void validate(Item item, Runnable check) {
+        if (item.result.getError() != null) {
+            return;
+        }
+        try {
+            check.run();
+        } catch (AfsException e) {
+            fail(item, e.getErrorCode(), e.getMessage());
+        }
+    }
+
+    private void runParallel(List<Item> items, Consumer<Item> action) {
+        if (items.isEmpty()) {
+            return;
+        }
+        if (items.size() == 1 || parallelism == 1) {
+            items.forEach(item -> execute(item, action));
+            return;
+        }
+        CompletableFuture<?>[] futures = items.stream()
+            .map(item -> CompletableFuture.runAsync(() -> execute(item, action), executor))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private void execute(Item item, Consumer<Item> action) {
+        try {
+            action.accept(item);
+            item.result.setSuccess(true);
+        } catch (AfsException e) {
+            fail(item, e.getErrorCode(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Batch operation on {} failed", item.path, e);
+            fail(item, ErrorCode.INTERNAL_ERROR, "Operation failed");
+        }
+    }
+
+    private static void fail(Item item, ErrorCode errorCode, String message) {
+        item.result.setSuccess(false);
+        item.result.setError(errorCode.code);
+        item.result.setMessage(message);
+    }
+
+    private static BatchResponse toResponse(List<Item> items) {
+        BatchResponse response = new BatchResponse();
+        response.setResults(items.stream().map(item -> item.result).toList());
+        int succeeded = (int) items.stream().filter(item -> item.result.isSuccess()).count();
+        response.setSucceeded(succeeded);
+        response.setFailed(items.size() - succeeded);
+        return response;
+    }
+
+    private static List<Item> valid(List<Item> items) {
+        return items.stream().filter(item -> item.result.getError() == null).toList();
+    }
+
+    private static Set<String> normalizedPaths(List<Item> items) {
+        Set<String> paths = new HashSet<>();
+        for (Item item : valid(items)) {
+            paths.add(item.normalized);
+        }
+        return paths;
+    }
+
+    private static String normalize(String path) {
+        if (path == null || path.isBlank()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path is required");
+        }
+        return CompiledPermissions.normalize(path);
+    }
+
+    /**
+     * Finds the nearest proper ancestor of a normalized path that is in the set, or null.
+     */
+    private static String ancestorIn(Set<String> paths, String path) {
+        for (String ancestor = parent(path); ancestor != null; ancestor = parent(ancestor)) {
+            if (paths.contains(ancestor)) {
+                return ancestor;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSameOrInside(String path, String ancestor) {
+        return path.equals(ancestor) || ancestor.equals("/") || path.startsWith(ancestor + "/");
+    }
+
+    private static String parent(String path) {
+        if (path.equals("/")) {
+            return null;
+        }
+        int slash = path.lastIndexOf('/');
+        return slash == 0 ? "/" : path.substring(0, slash);
+    }
+
+    private static int depth(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private static final class Item {
+        private final String path;
+        private final String targetPath;
+        private final BatchItemResult result = new BatchItemResult();
+        private String normalized;
+        private String normalizedTarget;
+        private boolean directory;
+
+        private Item(String path, String targetPath) {
+            this.path = path;
+            this.targetPath = targetPath;
+            result.setPath(path);
+            result.setTargetPath(targetPath);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.sme.afs.service.copy;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.JobResponse;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Job;
+import com.sme.afs.service.FileIndexService;
+import com.sme.afs.service.FileService;
+import com.sme.afs.service.QuotaService;
+import com.sme.afs.service.job.JobService;
+import com.sme.afs.service.job.JobTask;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+/**
+ * Server-side copies of files and directory trees.
+ * <p>
+ * Single files are copied within the request; directory trees are submitted to the
+ * {@link JobService}, whose status API reports their progress and cancels them. Both are
+ * recorded as {@link Job.Type#COPY} jobs and copied by {@link FileCopier}.
+ */
+@Service
+public class CopyService {
+
+    private final FileService fileService;
+    private final FileIndexService fileIndexService;
+    private final FileCopier fileCopier;
+    private final JobService jobService;
+    private final QuotaService quotaService;
+    private final SharedFolderProperties properties;
+
+    public CopyService(FileService fileService,
+                       FileIndexService fileIndexService,
+                       FileCopier fileCopier,
+                       JobService jobService,
+                       QuotaService quotaService,
+                       SharedFolderProperties properties) {
+        this.fileService = fileService;
+        this.fileIndexService = fileIndexService;
+        this.fileCopier = fileCopier;
+        this.jobService = jobService;
+        this.quotaService = quotaService;
+        this.properties = properties;
+    }
+
+    /**
+     * Copies a file, or starts a job that copies a directory tree.
+     *
+     * @param sourcePath Path of the file or directory to copy (relative to the root location)
+     * @param targetPath Path of the copy, which must not exist
+     * @param recursive  Whether directories may be copied
+     * @param username   User starting the copy, or null
+     * @return the job, finished for files and queued for directories
+     */
+    public JobResponse copy(String sourcePath, String targetPath, boolean recursive, String username) {
+        Path source = fileService.resolveExisting(sourcePath);
+        Path target = fileService.resolveNewPath(targetPath);
+        boolean directory = Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS);
+        if (directory && !recursive) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Copying a directory requires a recursive copy");
+        }
+        if (target.startsWith(source)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Cannot copy a directory into itself");
+        }
+
+        // The copy is charged to the groups containing the target until the indexer counts it
+        QuotaService.Reservation reservation =
+            quotaService.reserveTransfer(relativePath(source), relativePath(target), false);
+        JobTask task = context -> {
+            boolean copied = false;
+            try {
+                fileCopier.copyTree(source, target, context);
+                copied = true;
+            } finally {
+                if (!copied) {
+                    quotaService.release(reservation);
+                }
+                fileIndexService.refresh(target, true);
+            }
+        };
+        if (directory) {
+            try {
+                return jobService.submit(Job.Type.COPY, username, relativePath(source), relativePath(target), task);
+            } catch (RuntimeException e) {
+                quotaService.release(reservation);
+                throw e;
+            }
+        }
+        JobResponse job = jobService.runInline(Job.Type.COPY, username, relativePath(source), relativePath(target), task);
+        if (Job.State.FAILED.name().equals(job.getState())) {
+            throw new AfsException(ErrorCode.INTERNAL_ERROR, "Failed to copy: " + job.getError());
+        }
+        return job;
+    }
+
+    private String relativePath(Path path) {
+        Path root = Path.of(properties.getBasePath()).toAbsolutePath().normalize();
+        return "/" + root.relativize(path).toString().replace('\\', '/');
+    }
+}
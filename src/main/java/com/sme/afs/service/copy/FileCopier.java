@@ -0,0 +1,288 @@
+package com.sme.afs.service.copy;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.service.job.JobContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Copies single files inside the shared folder without moving the content through the heap.
+ * <p>
+ * On copy-on-write filesystems (btrfs, the Synology default, and XFS) files of at least
+ * {@link #REFLINK_MIN_SIZE} are cloned with {@code cp --reflink=always}, which shares the
+ * extents of the source instead of copying them. Smaller files, other filesystems and failed
+ * clones are copied with {@link FileChannel#transferTo}, which the JDK maps to
+ * {@code sendfile}/{@code copy_file_range} so the bytes stay in the kernel. A pair of source
+ * and target filesystems that refuses to clone is not asked again; any other failed clone only
+ * falls back for that one file.
+ */
+@Slf4j
+@Component
+public class FileCopier {
+
+    /**
+     * Smallest file worth starting a {@code cp} process for.
+     */
+    static final long REFLINK_MIN_SIZE = 1024 * 1024;
+
+    private static final long TRANSFER_CHUNK = 64L * 1024 * 1024;
+    private static final long REFLINK_TIMEOUT_SECONDS = 60;
+    private static final Set<String> REFLINK_FILESYSTEMS = Set.of("btrfs", "xfs");
+
+    /**
+     * Messages of {@code cp} that mean the two filesystems cannot clone at all (EOPNOTSUPP,
+     * EXDEV, ENOTTY, EINVAL from XFS without reflink support, or a {@code cp} without the
+     * option), as opposed to a failure of one file such as ENOSPC or EACCES.
+     */
+    private static final List<String> CLONE_UNSUPPORTED_MESSAGES = List.of(
+        "not supported", "invalid cross-device link",
+        "inappropriate ioctl", "invalid argument", "unrecognized option", "invalid option");
+
+    private final SharedFolderProperties properties;
+    private final boolean linux = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("linux");
+    private final Map<StorePair, Boolean> reflinkSupport = new ConcurrentHashMap<>();
+
+    public FileCopier(SharedFolderProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Copies a regular file to a new path and gives it the modification time of the source.
+     * A partially written target is deleted if the copy fails or is cancelled.
+     *
+     * @param source    File to copy
+     * @param target    Path of the copy, which must not exist
+     * @param cancelled Checked between chunks; the copy stops once it returns true
+     * @param progress  Receives the number of bytes copied by each chunk
+     * @return true if the file was cloned rather than copied
+     * @throws IOException if the copy fails; {@link InterruptedIOException} if it was cancelled
+     */
+    public boolean copy(Path source, Path target, BooleanSupplier cancelled, LongConsumer progress)
+            throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            // Checked up front: a clone would overwrite the target, and cleaning up after a
+            // failed copy must not delete a file that was already there
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        boolean cloned = false;
+        try {
+            if (attrs.size() >= REFLINK_MIN_SIZE && reflink(source, target)) {
+                progress.accept(attrs.size());
+                cloned = true;
+            } else {
+                transfer(source, target, attrs.size(), cancelled, progress);
+            }
+            Files.setLastModifiedTime(target, attrs.lastModifiedTime());
+            return cloned;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a file or a directory tree to a new path as a job. The tree is counted first so
+     * that the job reports its total, then recreated entry by entry; symbolic links are
+     * skipped. The partial copy is removed if the job fails or is cancelled.
+     *
+     * @param source  File or directory to copy
+     * @param target  Path of the copy, which must not exist
+     * @param context Job receiving the progress and checked for cancellation
+     * @throws IOException if the copy fails; {@link InterruptedIOException} if it was cancelled
+     */
+    public void copyTree(Path source, Path target, JobContext context) throws IOException {
+        if (!Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+            context.addTotal(1, Files.size(source));
+            copyFile(source, target, context);
+            return;
+        }
+
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                context.checkCancelled();
+                if (attrs.isRegularFile()) {
+                    context.addTotal(1, attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Files.createDirectory(target);
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    context.checkCancelled();
+                    if (!dir.equals(source)) {
+                        Files.createDirectory(target.resolve(source.relativize(dir)));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile()) {
+                        copyFile(file, target.resolve(source.relativize(file)), context);
+                    } else {
+                        log.debug("Skipping non-regular file in copy: {}", file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    if (exc != null) {
+                        throw exc;
+                    }
+                    Files.setLastModifiedTime(target.resolve(source.relativize(dir)), Files.getLastModifiedTime(dir));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            try {
+                FileSystemUtils.deleteRecursively(target);
+            } catch (IOException cleanup) {
+                log.warn("Failed to remove partial copy {}: {}", target, cleanup.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    private void copyFile(Path source, Path target, JobContext context) throws IOException {
+        context.checkCancelled();
+        copy(source, target, context::isCancelRequested, bytes -> context.addProcessed(0, bytes));
+        context.addProcessed(1, 0);
+    }
+
+    private void transfer(Path source, Path target, long size, BooleanSupplier cancelled, LongConsumer progress)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            while (position < size) {
+                if (cancelled.getAsBoolean()) {
+                    throw new InterruptedIOException("Copy cancelled");
+                }
+                long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+                if (transferred <= 0) {
+                    // The source was truncated while it was copied
+                    break;
+                }
+                position += transferred;
+                progress.accept(transferred);
+            }
+        }
+    }
+
+    private boolean reflink(Path source, Path target) {
+        if (!linux || !properties.isCopyReflink()) {
+            return false;
+        }
+        StorePair stores;
+        try {
+            stores = new StorePair(Files.getFileStore(source), Files.getFileStore(target.getParent()));
+        } catch (IOException e) {
+            return false;
+        }
+        boolean supported = reflinkSupport.computeIfAbsent(stores, StorePair::mayClone);
+        if (!supported) {
+            return false;
+        }
+
+        Process process = null;
+        try {
+            ProcessBuilder builder = new ProcessBuilder("cp", "--reflink=always", "--", source.toString(), target.toString())
+                .redirectErrorStream(true);
+            // The messages are matched in English
+            builder.environment().put("LC_ALL", "C");
+            process = builder.start();
+            if (!process.waitFor(REFLINK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Cloning {} timed out; copying instead", source);
+            } else if (process.exitValue() == 0) {
+                return true;
+            } else {
+                String output = readOutput(process);
+                if (isCloneUnsupported(output)) {
+                    log.info("Reflinks are not available from {} to {}; copying instead: {}",
+                        stores.source().name(), stores.target().name(), output);
+                    reflinkSupport.put(stores, false);
+                } else {
+                    log.warn("Failed to clone {}; copying instead: {}", source, output);
+                }
+            }
+        } catch (IOException e) {
+            // cp itself could not be started
+            log.info("Cannot clone files from {} to {}: {}",
+                stores.source().name(), stores.target().name(), e.getMessage());
+            reflinkSupport.put(stores, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            log.warn("Failed to delete partial clone {}: {}", target, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the output of a failed {@code cp --reflink=always} means that the
+     * filesystems cannot clone, rather than that this one file could not be cloned.
+     */
+    static boolean isCloneUnsupported(String output) {
+        String message = output.toLowerCase(Locale.ROOT);
+        return CLONE_UNSUPPORTED_MESSAGES.stream().anyMatch(message::contains);
+    }
+
+    private static String readOutput(Process process) {
+        // cp has exited, so its few lines of output are already buffered in the pipe
+        try (InputStream output = process.getInputStream()) {
+            return new String(output.readAllBytes(), Charset.defaultCharset()).strip();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private record StorePair(FileStore source, FileStore target) {
+
+        /**
+         * Different stores are still tried: btrfs subvolumes are separate mounts of one
+         * filesystem and can share extents, and {@code cp} reports EXDEV where they cannot.
+         */
+        boolean mayClone() {
+            return REFLINK_FILESYSTEMS.contains(source.type().toLowerCase(Locale.ROOT))
+                && REFLINK_FILESYSTEMS.contains(target.type().toLowerCase(Locale.ROOT));
+        }
+    }
+}
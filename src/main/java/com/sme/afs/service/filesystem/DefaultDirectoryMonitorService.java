@@ -1,83 +1,69 @@
 package com.sme.afs.service.filesystem;
 
 import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.service.SharedFolderValidator;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Watches directory trees with a single {@link WatchService} and one dispatcher thread.
+ * <p>
+ * Every directory below a monitored root gets its own watch key in the shared watch service,
+ * so the cost per directory is one kernel watch and two map entries rather than a thread and
+ * a watch service. Subdirectories are registered as they are created. When the kernel drops
+ * events, the affected directory reports an {@link DirectoryChangeEvent.EventType#OVERFLOW}
+ * event so that listeners rescan it, and its subdirectories are registered again.
+ * <p>
+ * Internal paths of a monitored root, i.e. its system directories and upload staging files
+ * (see {@link SharedFolderValidator#isInternalPath(Path, Path)}), are neither watched nor reported.
+ * <p>
+ * Events are passed to the {@link DirectoryChangeCoalescer}, which delivers them in batches.
+ */
 @Slf4j
 @Service
 public class DefaultDirectoryMonitorService implements DirectoryMonitorService {
-    private final Map<Path, WatchService> monitoredDirectories = new HashMap<>();
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
-    private final ApplicationEventPublisher eventPublisher;
 
-    public DefaultDirectoryMonitorService(ApplicationEventPublisher eventPublisher) {
-        this.eventPublisher = eventPublisher;
+    private static final WatchEvent.Kind<?>[] EVENT_KINDS = {
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_DELETE,
+        StandardWatchEventKinds.ENTRY_MODIFY
+    };
+
+    private final DirectoryChangeCoalescer coalescer;
+    private final Set<Path> roots = ConcurrentHashMap.newKeySet();
+    private final Map<Path, WatchKey> keysByDirectory = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> directoriesByKey = new ConcurrentHashMap<>();
+    private final Object lifecycleLock = new Object();
+    private volatile WatchService watchService;
+    private volatile boolean watchLimitReached;
+
+    public DefaultDirectoryMonitorService(DirectoryChangeCoalescer coalescer) {
+        this.coalescer = coalescer;
     }
 
     @Override
     public void startMonitoring(Path directory) {
-        if (isMonitoring(directory)) {
+        Path root = directory.toAbsolutePath().normalize();
+        if (!roots.add(root)) {
             log.warn("Directory {} is already being monitored", directory);
             return;
         }
 
         try {
-            WatchService watchService = FileSystems.getDefault().newWatchService();
-            directory.register(watchService, 
-                StandardWatchEventKinds.ENTRY_CREATE, 
-                StandardWatchEventKinds.ENTRY_DELETE, 
-                StandardWatchEventKinds.ENTRY_MODIFY);
-
-            monitoredDirectories.put(directory, watchService);
-
-            executorService.submit(() -> {
-                while (monitoredDirectories.containsKey(directory)) {
-                    try {
-                        WatchKey key = watchService.take();
-                        for (WatchEvent<?> event : key.pollEvents()) {
-                            WatchEvent.Kind<?> kind = event.kind();
-                            Path context = (Path) event.context();
-                            Path fullPath = directory.resolve(context);
-
-                            DirectoryChangeEvent.EventType eventType;
-                            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-                                eventType = DirectoryChangeEvent.EventType.CREATED;
-                            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
-                                eventType = DirectoryChangeEvent.EventType.DELETED;
-                            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-                                eventType = DirectoryChangeEvent.EventType.MODIFIED;
-                            } else {
-                                continue;
-                            }
-
-                            DirectoryChangeEvent changeEvent = new DirectoryChangeEvent(
-                                fullPath, 
-                                eventType, 
-                                Instant.now()
-                            );
-
-                            eventPublisher.publishEvent(changeEvent);
-                        }
-                        key.reset();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-            });
-
-            log.info("Started monitoring directory: {}", directory);
+            int registered = registerTree(watchService(), root);
+            log.info("Started monitoring directory: {} ({} directories)", root, registered);
         } catch (IOException e) {
+            roots.remove(root);
             log.error("Error starting directory monitoring for {}", directory, e);
             throw new RuntimeException("Failed to start directory monitoring", e);
         }
@@ -85,25 +71,230 @@ public class DefaultDirectoryMonitorService implements DirectoryMonitorService {
 
     @Override
     public void stopMonitoring(Path directory) {
-        WatchService watchService = monitoredDirectories.remove(directory);
-        if (watchService != null) {
-            try {
-                watchService.close();
-                log.info("Stopped monitoring directory: {}", directory);
-            } catch (IOException e) {
-                log.error("Error stopping directory monitoring for {}", directory, e);
+        Path root = directory.toAbsolutePath().normalize();
+        if (!roots.remove(root)) {
+            return;
+        }
+        for (Path dir : new ArrayList<>(keysByDirectory.keySet())) {
+            if (dir.startsWith(root) && roots.stream().noneMatch(dir::startsWith)) {
+                unregister(dir);
             }
         }
+        log.info("Stopped monitoring directory: {}", root);
     }
 
+    /**
+     * Checks whether a directory is watched, either as a monitored root or below one.
+     */
     @Override
     public boolean isMonitoring(Path directory) {
-        return monitoredDirectories.containsKey(directory);
+        return keysByDirectory.containsKey(directory.toAbsolutePath().normalize());
     }
 
-    // Cleanup method to stop all monitoring when service is destroyed
+    /**
+     * Gets the number of watched directories.
+     */
+    public int getWatchedDirectoryCount() {
+        return keysByDirectory.size();
+    }
+
+    @PreDestroy
     public void destroy() {
-        new HashMap<>(monitoredDirectories).keySet().forEach(this::stopMonitoring);
-        executorService.shutdown();
+        synchronized (lifecycleLock) {
+            roots.clear();
+            keysByDirectory.clear();
+            directoriesByKey.clear();
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    log.debug("Error closing watch service: {}", e.getMessage());
+                }
+                watchService = null;
+            }
+        }
+    }
+
+    private WatchService watchService() throws IOException {
+        WatchService service = watchService;
+        if (service != null) {
+            return service;
+        }
+        synchronized (lifecycleLock) {
+            if (watchService == null) {
+                WatchService created = FileSystems.getDefault().newWatchService();
+                Thread dispatcher = new Thread(() -> dispatch(created), "directory-monitor");
+                dispatcher.setDaemon(true);
+                dispatcher.start();
+                watchService = created;
+            }
+            return watchService;
+        }
+    }
+
+    private void dispatch(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path directory = directoriesByKey.get(key);
+            if (directory == null) {
+                key.cancel();
+                continue;
+            }
+            try {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    handle(service, directory, event);
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Error handling change events of {}", directory, e);
+            }
+            if (!key.reset()) {
+                // The directory was deleted or became inaccessible
+                unregister(directory);
+            }
+        }
+    }
+
+    private void handle(WatchService service, Path directory, WatchEvent<?> event) {
+        WatchEvent.Kind<?> kind = event.kind();
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            log.warn("Change events of {} were dropped, rescanning", directory);
+            registerChildren(service, directory);
+            publish(directory, DirectoryChangeEvent.EventType.OVERFLOW);
+            return;
+        }
+
+        Path fullPath = directory.resolve((Path) event.context());
+        if (isInternal(fullPath)) {
+            return;
+        }
+        DirectoryChangeEvent.EventType eventType;
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            eventType = DirectoryChangeEvent.EventType.CREATED;
+            if (Files.isDirectory(fullPath, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerTree(service, fullPath);
+                } catch (IOException e) {
+                    log.warn("Failed to watch new directory {}: {}", fullPath, e.getMessage());
+                }
+            }
+        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            eventType = DirectoryChangeEvent.EventType.DELETED;
+            if (keysByDirectory.containsKey(fullPath)) {
+                // A watch follows its directory when it is moved, so it would report the old path
+                unregisterTree(fullPath);
+            }
+        } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+            eventType = DirectoryChangeEvent.EventType.MODIFIED;
+        } else {
+            return;
+        }
+        publish(fullPath, eventType);
+    }
+
+    private void publish(Path path, DirectoryChangeEvent.EventType eventType) {
+        coalescer.submit(new DirectoryChangeEvent(path, eventType, Instant.now()));
+    }
+
+    /**
+     * Registers a directory and all directories below it. Symbolic links are not followed.
+     *
+     * @return number of newly registered directories
+     */
+    private int registerTree(WatchService service, Path start) throws IOException {
+        int[] registered = {0};
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (isInternal(dir.toAbsolutePath().normalize())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (register(service, dir)) {
+                    registered[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                log.debug("Not watching unreadable directory {}: {}", file, exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return registered[0];
+    }
+
+    /**
+     * Registers the direct subdirectories of a directory that are not watched yet, e.g. ones
+     * whose creation event was lost, together with everything below them.
+     */
+    private void registerChildren(WatchService service, Path directory) {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                Path normalized = child.toAbsolutePath().normalize();
+                if (!keysByDirectory.containsKey(normalized) && Files.isDirectory(normalized, LinkOption.NOFOLLOW_LINKS)) {
+                    registerTree(service, normalized);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to rescan {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private boolean isInternal(Path path) {
+        for (Path root : roots) {
+            if (SharedFolderValidator.isInternalPath(root, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean register(WatchService service, Path dir) {
+        Path normalized = dir.toAbsolutePath().normalize();
+        if (keysByDirectory.containsKey(normalized)) {
+            return false;
+        }
+        try {
+            WatchKey key = normalized.register(service, EVENT_KINDS);
+            directoriesByKey.put(key, normalized);
+            keysByDirectory.put(normalized, key);
+            return true;
+        } catch (IOException e) {
+            // Typically the kernel's watch limit (fs.inotify.max_user_watches on Linux)
+            if (!watchLimitReached) {
+                watchLimitReached = true;
+                log.error("Cannot watch {}, further directories may not be monitored: {}", normalized, e.getMessage());
+            } else {
+                log.debug("Cannot watch {}: {}", normalized, e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private void unregisterTree(Path start) {
+        for (Path dir : new ArrayList<>(keysByDirectory.keySet())) {
+            if (dir.startsWith(start)) {
+                unregister(dir);
+            }
+        }
+    }
+
+    private void unregister(Path dir) {
+        WatchKey key = keysByDirectory.remove(dir);
+        if (key != null) {
+            directoriesByKey.remove(key);
+            key.cancel();
+        }
     }
 }
@@ -0,0 +1,180 @@
+package com.sme.afs.service.filesystem;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.filesystem.DirectoryChangeBatch;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent.EventType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the raw change events of the directory monitor into {@link DirectoryChangeBatch}es.
+ * <p>
+ * Events are collected for {@code shared-folder.monitor-coalesce-window-millis} after the first
+ * one arrives, keeping one event per path, and then handed to a delivery thread that publishes
+ * the batch to the listeners. A bulk copy therefore reaches the listeners as a few batches
+ * instead of one event per write.
+ * <p>
+ * Batches wait for delivery in a bounded queue. When listeners fall behind and the queue is
+ * full, the watcher thread blocks in {@link #submit}; the kernel then queues the events and
+ * eventually reports an overflow, which listeners answer with a rescan.
+ */
+@Slf4j
+@Component
+public class DirectoryChangeCoalescer {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final SharedFolderProperties properties;
+    private final BlockingQueue<DirectoryChangeBatch> batches;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "directory-change-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread deliveryThread;
+
+    private final Object lock = new Object();
+    private Map<Path, DirectoryChangeEvent> pending = new LinkedHashMap<>();
+    private int receivedEvents;
+    private Instant firstEventAt;
+    private long window;
+
+    public DirectoryChangeCoalescer(ApplicationEventPublisher eventPublisher, SharedFolderProperties properties) {
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+        this.batches = new ArrayBlockingQueue<>(Math.max(1, properties.getMonitorBatchQueueCapacity()));
+        this.deliveryThread = new Thread(this::deliver, "directory-change-delivery");
+        this.deliveryThread.setDaemon(true);
+        this.deliveryThread.start();
+    }
+
+    /**
+     * Adds an event to the current window. Blocks while the delivery queue is full.
+     */
+    public void submit(DirectoryChangeEvent event) {
+        DirectoryChangeBatch full = null;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                firstEventAt = event.getTimestamp();
+                long scheduledWindow = window;
+                try {
+                    timer.schedule(() -> flush(scheduledWindow),
+                        Math.max(0, properties.getMonitorCoalesceWindowMillis()), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    return;
+                }
+            }
+            pending.merge(event.getPath(), event, DirectoryChangeCoalescer::merge);
+            receivedEvents++;
+            if (pending.size() >= Math.max(1, properties.getMonitorMaxBatchSize())) {
+                full = takeBatch();
+            }
+        }
+        if (full != null) {
+            enqueue(full);
+        }
+    }
+
+    /**
+     * Delivers the events collected so far without waiting for the window to end.
+     */
+    public void flush() {
+        DirectoryChangeBatch batch;
+        synchronized (lock) {
+            batch = takeBatch();
+        }
+        if (batch != null) {
+            enqueue(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        deliveryThread.interrupt();
+    }
+
+    /**
+     * Combines two events of the same path into the one that leads listeners to the right state.
+     */
+    static DirectoryChangeEvent merge(DirectoryChangeEvent previous, DirectoryChangeEvent next) {
+        EventType before = previous.getEventType();
+        EventType after = next.getEventType();
+        if (before == EventType.OVERFLOW) {
+            return previous;
+        }
+        if (before == EventType.CREATED && after == EventType.MODIFIED) {
+            // Still new to the listeners, which need to index it completely
+            return previous;
+        }
+        return next;
+    }
+
+    private void flush(long scheduledWindow) {
+        DirectoryChangeBatch batch;
+        synchronized (lock) {
+            // The window was already delivered because it reached the maximum batch size
+            if (scheduledWindow != window) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        if (batch != null) {
+            enqueue(batch);
+        }
+    }
+
+    private DirectoryChangeBatch takeBatch() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        DirectoryChangeBatch batch = new DirectoryChangeBatch(
+            new ArrayList<>(pending.values()), receivedEvents, firstEventAt);
+        pending = new LinkedHashMap<>();
+        receivedEvents = 0;
+        firstEventAt = null;
+        window++;
+        return batch;
+    }
+
+    private void enqueue(DirectoryChangeBatch batch) {
+        try {
+            batches.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Dropped {} directory changes while shutting down", batch.getChanges().size());
+        }
+    }
+
+    private void deliver() {
+        while (!Thread.currentThread().isInterrupted()) {
+            DirectoryChangeBatch batch;
+            try {
+                batch = batches.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                log.debug("Delivering {} directory changes coalesced from {} events",
+                    batch.getChanges().size(), batch.getReceivedEvents());
+                eventPublisher.publishEvent(batch);
+            } catch (RuntimeException e) {
+                log.error("Error handling directory change batch", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.sme.afs.service.filesystem;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.DirectorySnapshot;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.repository.DirectorySnapshotRepository;
+import com.sme.afs.service.SharedFolderValidator;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds changes the directory monitor cannot see, such as writes by other hosts over SMB or NFS.
+ * <p>
+ * Every {@code shared-folder.scan-interval-seconds} the base path is compared with the
+ * directory modification times recorded by the previous scan. Adding, removing or renaming an
+ * entry changes the modification time of its directory, so only directories whose time differs
+ * are listed; each of them is reported as an {@link DirectoryChangeEvent.EventType#OVERFLOW}
+ * event through the {@link DirectoryChangeCoalescer}, exactly like a directory whose watch
+ * events were lost, and listeners rescan its entries. Below an unchanged directory the scan
+ * visits only the subdirectories known from the snapshot, without listing the directory.
+ * The system directories of the base path are not scanned.
+ * <p>
+ * The scan runs on a minimum-priority thread, and every stat and directory entry it reads is
+ * drawn from a budget of {@code shared-folder.reconcile-operations-per-second}.
+ */
+@Slf4j
+@Service
+public class DirectoryReconciliationService {
+
+    private final DirectorySnapshotRepository snapshotRepository;
+    private final DirectoryChangeCoalescer coalescer;
+    private final SharedFolderProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Bucket ioBudget;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "directory-reconciler");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public DirectoryReconciliationService(DirectorySnapshotRepository snapshotRepository,
+                                          DirectoryChangeCoalescer coalescer,
+                                          SharedFolderProperties properties,
+                                          PlatformTransactionManager transactionManager) {
+        this.snapshotRepository = snapshotRepository;
+        this.coalescer = coalescer;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        long rate = properties.getReconcileOperationsPerSecond();
+        this.ioBudget = rate > 0
+            ? Bucket.builder().addLimit(Bandwidth.classic(rate, Refill.greedy(rate, Duration.ofSeconds(1)))).build()
+            : null;
+    }
+
+    /**
+     * Periodically starts a scan unless one is still running.
+     */
+    @Scheduled(fixedDelayString = "#{${shared-folder.scan-interval-seconds:300} * 1000}",
+               initialDelayString = "#{${shared-folder.scan-interval-seconds:300} * 1000}")
+    public void scheduleScan() {
+        if (!properties.isReconcile() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.submit(() -> {
+                try {
+                    Path root = rootLocation();
+                    if (root != null && Files.isDirectory(root)) {
+                        scan(root);
+                    }
+                } catch (Exception e) {
+                    log.error("Directory reconciliation failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Compares a directory tree with the snapshot and reports the directories that changed.
+     * The first scan only records the snapshot, since the startup crawl of the index covers
+     * everything that exists at that point.
+     *
+     * @param root Base path
+     * @return statistics of the scan
+     */
+    public ScanStats scan(Path root) {
+        long start = System.nanoTime();
+        ScanStats stats = new ScanStats();
+
+        Map<String, LocalDateTime> snapshot = new HashMap<>();
+        Map<String, List<String>> subdirectories = new HashMap<>();
+        for (DirectorySnapshotRepository.SnapshotEntry entry : snapshotRepository.findAllEntries()) {
+            snapshot.put(entry.getPath(), entry.getModifiedAt());
+            if (!entry.getPath().equals("/")) {
+                subdirectories.computeIfAbsent(FileEntity.parentOf(entry.getPath()), p -> new ArrayList<>())
+                    .add(entry.getPath());
+            }
+        }
+        boolean seeding = snapshot.isEmpty();
+
+        Map<String, LocalDateTime> inserted = new LinkedHashMap<>();
+        Map<String, LocalDateTime> updated = new LinkedHashMap<>();
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return stats;
+            }
+            Path dir = pending.pop();
+            if (SharedFolderValidator.isInternalPath(root, dir)) {
+                // Left in the snapshot, so rows of earlier scans are removed below
+                continue;
+            }
+            String path = relativePath(root, dir);
+            BasicFileAttributes attrs;
+            try {
+                acquire(1);
+                attrs = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                // Removed since the parent was listed; the parent has changed as well
+                continue;
+            } catch (IOException e) {
+                log.debug("Skipping unreadable directory {}: {}", dir, e.getMessage());
+                snapshot.remove(path);
+                continue;
+            }
+            if (!attrs.isDirectory()) {
+                continue;
+            }
+            stats.directories++;
+
+            LocalDateTime modifiedAt = toLocalDateTime(attrs);
+            LocalDateTime previous = snapshot.remove(path);
+            if (modifiedAt.equals(previous)) {
+                for (String child : subdirectories.getOrDefault(path, List.of())) {
+                    pending.push(root.resolve(child.substring(1)));
+                }
+                continue;
+            }
+
+            stats.changed++;
+            if (!seeding) {
+                coalescer.submit(new DirectoryChangeEvent(dir, DirectoryChangeEvent.EventType.OVERFLOW, Instant.now()));
+            }
+            (previous == null ? inserted : updated).put(path, modifiedAt);
+            listSubdirectories(dir, pending);
+
+            if (inserted.size() + updated.size() >= Math.max(1, properties.getIndexBatchSize())) {
+                saveSnapshots(inserted, updated);
+            }
+        }
+        saveSnapshots(inserted, updated);
+
+        // Directories of the snapshot that were not reached no longer exist
+        List<String> removed = new ArrayList<>(snapshot.keySet());
+        int batchSize = Math.max(1, properties.getIndexBatchSize());
+        for (int from = 0; from < removed.size(); from += batchSize) {
+            List<String> chunk = removed.subList(from, Math.min(removed.size(), from + batchSize));
+            transactionTemplate.executeWithoutResult(status -> snapshotRepository.deleteByPathIn(chunk));
+        }
+        stats.removed = removed.size();
+
+        log.info("Reconciled {} in {} ms: {} directories, {} changed, {} removed",
+            root, (System.nanoTime() - start) / 1_000_000, stats.directories, stats.changed, stats.removed);
+        return stats;
+    }
+
+    private void listSubdirectories(Path dir, Deque<Path> pending) {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                acquire(1);
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    pending.push(child);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed to list {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void saveSnapshots(Map<String, LocalDateTime> inserted, Map<String, LocalDateTime> updated) {
+        if (inserted.isEmpty() && updated.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<DirectorySnapshot> snapshots = new ArrayList<>(inserted.size());
+            inserted.forEach((path, modifiedAt) -> snapshots.add(new DirectorySnapshot(path, modifiedAt, now)));
+            snapshotRepository.saveAll(snapshots);
+            updated.forEach((path, modifiedAt) -> snapshotRepository.updateModifiedAt(path, modifiedAt, now));
+        });
+        inserted.clear();
+        updated.clear();
+    }
+
+    private void acquire(long operations) {
+        if (ioBudget == null) {
+            return;
+        }
+        try {
+            ioBudget.asBlocking().consume(operations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Path rootLocation() {
+        String basePath = properties.getBasePath();
+        return basePath == null || basePath.isBlank() ? null : Path.of(basePath).toAbsolutePath().normalize();
+    }
+
+    private String relativePath(Path root, Path path) {
+        return "/" + root.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * Truncates to the precision kept by the database, so unchanged times compare equal.
+     */
+    private LocalDateTime toLocalDateTime(BasicFileAttributes attrs) {
+        return LocalDateTime.ofInstant(attrs.lastModifiedTime().toInstant().truncatedTo(ChronoUnit.MICROS),
+            ZoneId.systemDefault());
+    }
+
+    /**
+     * Counters of one reconciliation scan.
+     */
+    @Getter
+    public static final class ScanStats {
+        private int directories;
+        private int changed;
+        private int removed;
+    }
+}
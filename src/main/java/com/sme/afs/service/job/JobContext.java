@@ -0,0 +1,77 @@
+package com.sme.afs.service.job;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress counters and cancellation flag of a running job. Counters are updated by the job
+ * thread and written to the database periodically by {@link JobService}.
+ */
+public class JobContext {
+
+    private final String jobId;
+    private final AtomicLong totalItems = new AtomicLong();
+    private final AtomicLong processedItems = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong processedBytes = new AtomicLong();
+    private volatile boolean cancelRequested;
+
+    public JobContext(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Adds to the amount of work the job has found so far.
+     */
+    public void addTotal(long items, long bytes) {
+        totalItems.addAndGet(items);
+        totalBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Adds to the amount of work the job has done so far.
+     */
+    public void addProcessed(long items, long bytes) {
+        processedItems.addAndGet(items);
+        processedBytes.addAndGet(bytes);
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Stops the job if cancellation was requested or its thread was interrupted.
+     *
+     * @throws InterruptedIOException if the job should stop
+     */
+    public void checkCancelled() throws InterruptedIOException {
+        if (isCancelRequested() || Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Job cancelled");
+        }
+    }
+
+    long getTotalItems() {
+        return totalItems.get();
+    }
+
+    long getProcessedItems() {
+        return processedItems.get();
+    }
+
+    long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    long getProcessedBytes() {
+        return processedBytes.get();
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+}
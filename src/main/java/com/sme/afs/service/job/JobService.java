@@ -0,0 +1,260 @@
+package com.sme.afs.service.job;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.JobResponse;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Job;
+import com.sme.afs.repository.JobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs long file operations off the request threads.
+ * <p>
+ * Jobs are executed by a fixed pool of {@code shared-folder.job-threads} workers with a queue
+ * of {@code shared-folder.job-queue-capacity} entries; a submission that does not fit is
+ * rejected instead of piling up. Every job has a row in the {@code jobs} table that records
+ * its state, and the progress counters of running jobs are written to it once a second, so
+ * clients can poll a job from any request. Cancellation sets a flag that the job checks
+ * between items. Jobs that were queued or running when the application stopped are marked
+ * failed on the next startup, and finished jobs are removed after
+ * {@code shared-folder.job-retention-hours}.
+ */
+@Slf4j
+@Service
+public class JobService {
+
+    private static final long PROGRESS_INTERVAL_MS = 1_000;
+    private static final long PURGE_INTERVAL_MS = 3_600_000;
+    private static final int MAX_ERROR_LENGTH = 4096;
+
+    private final JobRepository jobRepository;
+    private final SharedFolderProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, JobContext> active = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    public JobService(JobRepository jobRepository,
+                      SharedFolderProperties properties,
+                      PlatformTransactionManager transactionManager) {
+        this.jobRepository = jobRepository;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int threads = Math.max(1, properties.getJobThreads());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, properties.getJobQueueCapacity())), r -> {
+                Thread thread = new Thread(r, "file-job-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Queues a job for execution by the worker pool.
+     *
+     * @param type       Kind of operation
+     * @param owner      User submitting the job, or null
+     * @param sourcePath Path the job reads or removes (relative to the root location)
+     * @param targetPath Path the job writes, or null
+     * @param task       Body of the job
+     * @return the queued job
+     * @throws AfsException if the queue is full
+     */
+    public JobResponse submit(Job.Type type, String owner, String sourcePath, String targetPath, JobTask task) {
+        Job job = create(type, owner, sourcePath, targetPath);
+        JobContext context = new JobContext(job.getId());
+        active.put(job.getId(), context);
+        try {
+            executor.execute(() -> execute(job.getId(), context, task));
+        } catch (RejectedExecutionException e) {
+            active.remove(job.getId());
+            finish(job.getId(), context, Job.State.FAILED, "Too many jobs are queued");
+            throw new AfsException(ErrorCode.TOO_MANY_REQUESTS, "Too many jobs are queued; try again later");
+        }
+        return toResponse(job);
+    }
+
+    /**
+     * Runs a job on the calling thread, for operations that are quick enough to wait for but
+     * should be recorded like any other job.
+     *
+     * @return the finished job
+     */
+    public JobResponse runInline(Job.Type type, String owner, String sourcePath, String targetPath, JobTask task) {
+        Job job = create(type, owner, sourcePath, targetPath);
+        JobContext context = new JobContext(job.getId());
+        active.put(job.getId(), context);
+        return toResponse(execute(job.getId(), context, task));
+    }
+
+    /**
+     * Gets a job of the user.
+     *
+     * @throws AfsException if there is no such job of the user
+     */
+    public JobResponse getJob(String jobId, String owner) {
+        return toResponse(findJob(jobId, owner));
+    }
+
+    /**
+     * Lists the most recent jobs of the user, newest first.
+     */
+    public List<JobResponse> listJobs(String owner) {
+        return jobRepository.findTop100ByOwnerOrderByCreatedAtDesc(owner).stream()
+            .map(this::toResponse)
+            .toList();
+    }
+
+    /**
+     * Requests cancellation of a job of the user. A queued job is cancelled before it starts;
+     * a running job stops at its next item.
+     *
+     * @return the job as of the request
+     * @throws AfsException if there is no such job of the user
+     */
+    public JobResponse cancel(String jobId, String owner) {
+        Job job = findJob(jobId, owner);
+        JobContext context = active.get(jobId);
+        if (context != null) {
+            context.requestCancel();
+        }
+        return toResponse(job);
+    }
+
+    /**
+     * Writes the progress counters of running jobs.
+     */
+    @Scheduled(fixedDelay = PROGRESS_INTERVAL_MS)
+    public void flushProgress() {
+        for (JobContext context : active.values()) {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.updateProgress(context.getJobId(),
+                context.getTotalItems(), context.getProcessedItems(),
+                context.getTotalBytes(), context.getProcessedBytes()));
+        }
+    }
+
+    /**
+     * Marks jobs that did not finish before the last shutdown as failed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        Integer failed = transactionTemplate.execute(status -> jobRepository.finishAll(
+            EnumSet.of(Job.State.QUEUED, Job.State.RUNNING), Job.State.FAILED,
+            "Interrupted by a restart", LocalDateTime.now()));
+        if (failed != null && failed > 0) {
+            log.warn("Marked {} jobs interrupted by a restart as failed", failed);
+        }
+    }
+
+    /**
+     * Periodically removes finished jobs older than the retention period.
+     */
+    @Scheduled(fixedDelay = PURGE_INTERVAL_MS)
+    public void purgeFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(properties.getJobRetentionHours());
+        transactionTemplate.executeWithoutResult(status -> jobRepository.deleteFinishedBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        active.values().forEach(JobContext::requestCancel);
+        executor.shutdownNow();
+    }
+
+    private Job create(Job.Type type, String owner, String sourcePath, String targetPath) {
+        return transactionTemplate.execute(status ->
+            jobRepository.save(new Job(type, owner, sourcePath, targetPath)));
+    }
+
+    private Job execute(String jobId, JobContext context, JobTask task) {
+        Job.State state;
+        String error = null;
+        if (context.isCancelRequested()) {
+            state = Job.State.CANCELLED;
+        } else {
+            transactionTemplate.executeWithoutResult(status ->
+                jobRepository.markStarted(jobId, Job.State.RUNNING, LocalDateTime.now()));
+            try {
+                task.run(context);
+                state = Job.State.COMPLETED;
+            } catch (InterruptedIOException e) {
+                state = Job.State.CANCELLED;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Job {} failed: {}", jobId, e.getMessage());
+                state = Job.State.FAILED;
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+        }
+        active.remove(jobId);
+        return finish(jobId, context, state, error);
+    }
+
+    private Job finish(String jobId, JobContext context, Job.State state, String error) {
+        return transactionTemplate.execute(status -> {
+            Job job = jobRepository.findById(jobId).orElseThrow();
+            job.setState(state);
+            job.setError(error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+            job.setTotalItems(context.getTotalItems());
+            job.setProcessedItems(context.getProcessedItems());
+            job.setTotalBytes(context.getTotalBytes());
+            job.setProcessedBytes(context.getProcessedBytes());
+            job.setFinishedAt(LocalDateTime.now());
+            return jobRepository.save(job);
+        });
+    }
+
+    private Job findJob(String jobId, String owner) {
+        return jobRepository.findById(jobId)
+            .filter(job -> Objects.equals(job.getOwner(), owner))
+            .orElseThrow(() -> new AfsException(ErrorCode.NOT_FOUND, "Job not found"));
+    }
+
+    private JobResponse toResponse(Job job) {
+        JobResponse response = new JobResponse();
+        response.setId(job.getId());
+        response.setType(job.getType().name());
+        response.setState(job.getState().name());
+        response.setSourcePath(job.getSourcePath());
+        response.setTargetPath(job.getTargetPath());
+        JobContext context = active.get(job.getId());
+        if (context != null) {
+            // Running: the counters in memory are newer than the row
+            response.setTotalItems(context.getTotalItems());
+            response.setProcessedItems(context.getProcessedItems());
+            response.setTotalBytes(context.getTotalBytes());
+            response.setProcessedBytes(context.getProcessedBytes());
+        } else {
+            response.setTotalItems(job.getTotalItems());
+            response.setProcessedItems(job.getProcessedItems());
+            response.setTotalBytes(job.getTotalBytes());
+            response.setProcessedBytes(job.getProcessedBytes());
+        }
+        response.setError(job.getError());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setStartedAt(job.getStartedAt());
+        response.setFinishedAt(job.getFinishedAt());
+        return response;
+    }
+}
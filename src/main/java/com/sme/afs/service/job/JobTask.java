@@ -0,0 +1,13 @@
+package com.sme.afs.service.job;
+
+import java.io.IOException;
+
+/**
+ * Body of a job. Implementations report progress through the context and stop with an
+ * {@link java.io.InterruptedIOException} once cancellation is requested.
+ */
+@FunctionalInterface
+public interface JobTask {
+
+    void run(JobContext context) throws IOException;
+}
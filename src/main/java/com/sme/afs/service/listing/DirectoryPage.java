@@ -0,0 +1,19 @@
+package com.sme.afs.service.listing;
+
+import com.sme.afs.dto.FileInfoResponse;
+
+import java.util.List;
+
+/**
+ * One page of a directory listing with the totals of the whole directory.
+ *
+ * @param entries          Entries of the page, in sort order
+ * @param nextCursor       Cursor for the next page, null if this is the last page
+ * @param totalSize        Size of all files in the directory
+ * @param totalFiles       Number of files in the directory
+ * @param totalDirectories Number of subdirectories in the directory
+ * @param source           Name of the source that produced the page
+ */
+public record DirectoryPage(List<FileInfoResponse> entries, String nextCursor,
+                            long totalSize, int totalFiles, int totalDirectories, String source) {
+}
@@ -0,0 +1,77 @@
+package com.sme.afs.service.listing;
+
+import com.sme.afs.dto.FileInfoResponse;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.service.FileIndexService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lists directories from the rows written by {@link FileIndexService}, without touching the disk.
+ * Answers only while the index is current for the directory.
+ */
+@Component
+@RequiredArgsConstructor
+public class IndexListingSource implements ListingSource {
+
+    public static final String NAME = "index";
+
+    private final FileEntityRepository fileEntityRepository;
+    private final FileIndexService fileIndexService;
+
+    @Override
+    public Optional<DirectoryPage> list(Path directory, String path, ListingQuery query) {
+        if (!fileIndexService.isCurrent(directory)) {
+            return Optional.empty();
+        }
+        // Unknown directories are left to the disk, which reports missing paths and non-directories
+        if (!path.equals("/") && !fileEntityRepository.existsByPathAndIsDirectoryTrueAndIsDeletedFalse(path)) {
+            return Optional.empty();
+        }
+
+        int fetch = query.limit() == ListingQuery.UNLIMITED ? Integer.MAX_VALUE : query.limit() + 1;
+        List<FileInfoResponse> entries = fileEntityRepository.findChildrenPage(path, query.sort().property(),
+                query.descending(), query.afterKey(), query.afterName(), fetch).stream()
+            .map(IndexListingSource::toFileInfo)
+            .toList();
+
+        String nextCursor = null;
+        if (entries.size() > query.limit()) {
+            entries = entries.subList(0, query.limit());
+            nextCursor = query.cursorAfter(entries.get(entries.size() - 1));
+        }
+
+        long totalSize = 0;
+        int totalFiles = 0;
+        int totalDirectories = 0;
+        for (FileEntityRepository.ChildTotals totals : fileEntityRepository.sumChildrenByPath(path)) {
+            if (totals.isDirectory()) {
+                totalDirectories = (int) totals.getEntryCount();
+            } else {
+                totalFiles = (int) totals.getEntryCount();
+                totalSize = totals.getTotalSize();
+            }
+        }
+        return Optional.of(new DirectoryPage(entries, nextCursor, totalSize, totalFiles, totalDirectories, NAME));
+    }
+
+    /**
+     * Maps an indexed entry to the response returned for entries listed from the disk.
+     */
+    public static FileInfoResponse toFileInfo(FileEntity entity) {
+        FileInfoResponse info = new FileInfoResponse();
+        info.setName(entity.getName());
+        info.setPath(entity.getPath().substring(1));
+        info.setDirectory(entity.isDirectory());
+        info.setSize(entity.getSize());
+        info.setMimeType(entity.getMimeType());
+        info.setCreatedAt(entity.getCreatedAt());
+        info.setModifiedAt(entity.getModifiedAt());
+        return info;
+    }
+}
@@ -0,0 +1,78 @@
+package com.sme.afs.service.listing;
+
+import com.sme.afs.dto.FileInfoResponse;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Sort order, page size and position of a directory listing.
+ *
+ * @param sort       Sort key
+ * @param descending Whether to sort in descending order
+ * @param limit      Maximum number of entries, {@link #UNLIMITED} for all
+ * @param afterKey   Sort key of the last entry of the previous page, null for the first page
+ * @param afterName  Name of the last entry of the previous page, null for the first page
+ */
+public record ListingQuery(ListingSort sort, boolean descending, int limit, Comparable<?> afterKey, String afterName) {
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    public static final int MAX_LIMIT = 10_000;
+
+    /**
+     * All entries sorted by name, as returned before listings were paginated.
+     */
+    public static final ListingQuery ALL = new ListingQuery(ListingSort.NAME, false, UNLIMITED, null, null);
+
+    /**
+     * Builds a query from request parameters.
+     *
+     * @param sort      Sort key name, null for name
+     * @param direction "asc" or "desc", null for ascending
+     * @param limit     Page size, null for all entries
+     * @param cursor    Cursor returned with the previous page, null for the first page
+     * @throws AfsException if a parameter is invalid or the cursor belongs to a different sort order
+     */
+    public static ListingQuery of(String sort, String direction, Integer limit, String cursor) {
+        ListingSort listingSort = ListingSort.of(sort);
+        boolean descending = direction != null && direction.equalsIgnoreCase("desc");
+        if (direction != null && !descending && !direction.equalsIgnoreCase("asc")) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Unsupported sort direction: " + direction);
+        }
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Limit must be between 1 and " + MAX_LIMIT);
+        }
+        int pageSize = limit != null ? limit : UNLIMITED;
+        if (cursor == null || cursor.isBlank()) {
+            return new ListingQuery(listingSort, descending, pageSize, null, null);
+        }
+
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 4);
+        } catch (IllegalArgumentException e) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Invalid listing cursor");
+        }
+        if (parts.length != 4 || !parts[0].equals(listingSort.name()) || !parts[1].equals(descending ? "desc" : "asc")) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Listing cursor does not match the sort order");
+        }
+        // The name is the last part, so it may contain any character; name keys are not repeated
+        Comparable<?> afterKey = listingSort == ListingSort.NAME ? parts[3] : listingSort.parseKey(parts[2]);
+        return new ListingQuery(listingSort, descending, pageSize, afterKey, parts[3]);
+    }
+
+    public boolean isFirstPage() {
+        return afterName == null;
+    }
+
+    /**
+     * Builds the cursor that continues the listing after the given entry.
+     */
+    public String cursorAfter(FileInfoResponse last) {
+        String value = sort.name() + "\n" + (descending ? "desc" : "asc") + "\n"
+            + (sort == ListingSort.NAME ? "" : sort.keyOf(last)) + "\n" + last.getName();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
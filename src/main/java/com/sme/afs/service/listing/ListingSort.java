@@ -0,0 +1,111 @@
+package com.sme.afs.service.listing;
+
+import com.sme.afs.dto.FileInfoResponse;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Sort keys of directory listings. Entries with equal keys are ordered by name, which is
+ * unique within a directory, so every entry has a distinct position for keyset pagination.
+ * Names are compared by Unicode code point, the order the index is queried in, so a cursor
+ * written by one listing source continues correctly in the other.
+ */
+public enum ListingSort {
+    NAME("name", FileInfoResponse::getName, Function.identity()),
+    SIZE("size", FileInfoResponse::getSize, Long::valueOf),
+    MODIFIED_AT("modifiedAt", FileInfoResponse::getModifiedAt, LocalDateTime::parse);
+
+    private final String property;
+    private final Function<FileInfoResponse, Comparable<?>> key;
+    private final Function<String, Comparable<?>> parser;
+
+    <T extends Comparable<? super T>> ListingSort(String property,
+                                                  Function<FileInfoResponse, T> key,
+                                                  Function<String, T> parser) {
+        this.property = property;
+        this.key = key::apply;
+        this.parser = parser::apply;
+    }
+
+    /**
+     * Name of the sorted {@link com.sme.afs.model.FileEntity} property.
+     */
+    public String property() {
+        return property;
+    }
+
+    /**
+     * Gets the sort key of an entry.
+     */
+    public Comparable<?> keyOf(FileInfoResponse entry) {
+        return key.apply(entry);
+    }
+
+    /**
+     * Parses a sort key written by {@link String#valueOf(Object)}.
+     *
+     * @throws AfsException if the value is not a valid key
+     */
+    public Comparable<?> parseKey(String value) {
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Invalid listing cursor");
+        }
+    }
+
+    /**
+     * Comparator ordering entries by this key, then by name.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Comparator<FileInfoResponse> comparator(boolean descending) {
+        Comparator<FileInfoResponse> byName = Comparator.comparing(FileInfoResponse::getName, ListingSort::compareNames);
+        Comparator<FileInfoResponse> byKey = (a, b) -> ((Comparable) keyOf(a)).compareTo(keyOf(b));
+        Comparator<FileInfoResponse> comparator = this == NAME ? byName : byKey.thenComparing(byName);
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    /**
+     * Parses the sort parameter of a listing request.
+     *
+     * @param value "name", "size" or "modifiedAt", case-insensitive; null for name
+     */
+    public static ListingSort of(String value) {
+        if (value == null || value.isBlank()) {
+            return NAME;
+        }
+        for (ListingSort sort : values()) {
+            if (sort.property.toLowerCase(Locale.ROOT).equals(value.toLowerCase(Locale.ROOT))) {
+                return sort;
+            }
+        }
+        throw new AfsException(ErrorCode.VALIDATION_FAILED, "Unsupported sort: " + value);
+    }
+
+    /**
+     * Compares names by Unicode code point, like the "C" collation of a UTF-8 database.
+     * {@link String#compareTo} compares UTF-16 units and places supplementary characters
+     * before U+E000 to U+FFFF.
+     */
+    public static int compareNames(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+}
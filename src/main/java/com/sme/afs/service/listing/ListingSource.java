@@ -0,0 +1,20 @@
+package com.sme.afs.service.listing;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Source of directory listings.
+ */
+public interface ListingSource {
+
+    /**
+     * Lists one page of a directory.
+     *
+     * @param directory Absolute path of the directory on disk
+     * @param path      Path of the directory relative to the shared folder root, starting with "/"
+     * @param query     Sort order and page
+     * @return the page, or empty if this source cannot answer for the directory, e.g. because its data is stale
+     */
+    Optional<DirectoryPage> list(Path directory, String path, ListingQuery query);
+}
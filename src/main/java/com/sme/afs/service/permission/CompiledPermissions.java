@@ -0,0 +1,137 @@
+package com.sme.afs.service.permission;
+
+import com.sme.afs.model.Group;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Effective rights of one user, compiled into a rights mask per path prefix.
+ * <p>
+ * A group grants its permissions on its base path and everything below it, and the rights of
+ * several groups add up. Base paths and checked paths are both virtual paths relative to the
+ * shared folder root. A virtual path spells out its ancestors, so walking the parent substrings
+ * of a prefix visits all of them without a database lookup. When compiling, the masks of all
+ * ancestor prefixes are folded into every prefix, so a lookup only has to find the nearest
+ * prefix of a path: at most one hash lookup per path segment and no allocation besides the
+ * parent substrings.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class CompiledPermissions {
+
+    /**
+     * Rights of users who may access everything, e.g. administrators.
+     */
+    public static final CompiledPermissions UNRESTRICTED = new CompiledPermissions(Map.of("/", Permission.ALL));
+
+    /**
+     * Rights of users who are not a member of any group.
+     */
+    public static final CompiledPermissions NONE = new CompiledPermissions(Map.of());
+
+    private final Map<String, Integer> rightsByPrefix;
+
+    private CompiledPermissions(Map<String, Integer> rightsByPrefix) {
+        this.rightsByPrefix = rightsByPrefix;
+    }
+
+    /**
+     * Compiles the permissions of a user's groups.
+     *
+     * @param groups Groups the user is a member of
+     * @return the compiled rights
+     */
+    public static CompiledPermissions compile(Collection<Group> groups) {
+        Map<String, Integer> granted = new HashMap<>();
+        for (Group group : groups) {
+            int rights = Permission.maskOf(group.getPermissions());
+            if (rights != 0 && group.getBasePath() != null) {
+                granted.merge(normalize(group.getBasePath()), rights, (a, b) -> a | b);
+            }
+        }
+        if (granted.isEmpty()) {
+            return NONE;
+        }
+
+        Map<String, Integer> compiled = new HashMap<>(granted.size() * 2);
+        for (String prefix : granted.keySet()) {
+            int rights = 0;
+            for (String p = prefix; p != null; p = parentOf(p)) {
+                rights |= granted.getOrDefault(p, 0);
+            }
+            compiled.put(prefix, rights);
+        }
+        return new CompiledPermissions(Map.copyOf(compiled));
+    }
+
+    /**
+     * Gets the rights mask on a path.
+     *
+     * @param path Path, with or without leading slash
+     * @return the rights mask, 0 if no group grants anything on the path
+     */
+    public int rightsOn(String path) {
+        if (rightsByPrefix.isEmpty()) {
+            return 0;
+        }
+        for (String p = normalize(path); p != null; p = parentOf(p)) {
+            Integer rights = rightsByPrefix.get(p);
+            if (rights != null) {
+                return rights;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks whether a permission is granted on a path.
+     */
+    public boolean allows(String path, Permission permission) {
+        return permission.isGrantedBy(rightsOn(path));
+    }
+
+    public int prefixCount() {
+        return rightsByPrefix.size();
+    }
+
+    /**
+     * Normalizes a path to an absolute path without trailing slash, resolving "." and ".."
+     * segments, so that "a/../b" cannot match the rights of "/a".
+     */
+    public static String normalize(String path) {
+        if (path == null || path.isEmpty() || path.equals("/")) {
+            return "/";
+        }
+        boolean clean = path.charAt(0) == '/' && path.charAt(path.length() - 1) != '/'
+            && !path.contains("//") && !path.contains("/.") && path.indexOf('\\') < 0;
+        if (clean) {
+            return path;
+        }
+
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+            } else {
+                segments.add(segment);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    private static String parentOf(String path) {
+        if (path.equals("/")) {
+            return null;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash > 0 ? path.substring(0, lastSlash) : "/";
+    }
+}
@@ -0,0 +1,59 @@
+package com.sme.afs.service.permission;
+
+import com.sme.afs.model.GroupPermission;
+
+/**
+ * Rights a group can grant on a path, each represented by one bit of a rights mask.
+ */
+public enum Permission {
+    READ,
+    WRITE,
+    DELETE,
+    SHARE,
+    UPLOAD;
+
+    /**
+     * Mask with the bits of all permissions set.
+     */
+    public static final int ALL = (1 << values().length) - 1;
+
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Checks whether a rights mask contains this permission.
+     */
+    public boolean isGrantedBy(int rights) {
+        return (rights & mask()) != 0;
+    }
+
+    /**
+     * Converts the flags of a group permission row into a rights mask.
+     *
+     * @param permission Group permission, may be null
+     * @return the rights mask, 0 if the permission is null
+     */
+    public static int maskOf(GroupPermission permission) {
+        if (permission == null) {
+            return 0;
+        }
+        int rights = 0;
+        if (permission.isCanRead()) {
+            rights |= READ.mask();
+        }
+        if (permission.isCanWrite()) {
+            rights |= WRITE.mask();
+        }
+        if (permission.isCanDelete()) {
+            rights |= DELETE.mask();
+        }
+        if (permission.isCanShare()) {
+            rights |= SHARE.mask();
+        }
+        if (permission.isCanUpload()) {
+            rights |= UPLOAD.mask();
+        }
+        return rights;
+    }
+}
@@ -0,0 +1,30 @@
+package com.sme.afs.service.ratelimit;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Byte-rate budget of a single download stream.
+ */
+public interface ByteThrottle extends AutoCloseable {
+
+    /**
+     * Gets the number of bytes the stream should transfer before acquiring again.
+     *
+     * @return Chunk size in bytes, always positive
+     */
+    int chunkSize();
+
+    /**
+     * Blocks until the given number of bytes may be transferred.
+     *
+     * @param bytes Number of bytes to transfer
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    void acquire(int bytes) throws InterruptedIOException;
+
+    /**
+     * Ends the stream. Calling this more than once has no effect.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,47 @@
+package com.sme.afs.service.ratelimit;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.net.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact rate limiting key for a client address.
+ * <p>
+ * IP literals are stored as their 128-bit address, with IPv4 addresses in IPv4-mapped IPv6 form
+ * so that both notations of the same address share a key. Values that are not IP literals
+ * (e.g. a placeholder for an unknown address) are reduced to a 128-bit hash. No DNS lookups
+ * are performed.
+ *
+ * @param high Upper 64 bits of the address
+ * @param low  Lower 64 bits of the address
+ */
+public record ClientAddressKey(long high, long low) {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    /**
+     * Creates the key for a client address string.
+     *
+     * @param address IP literal as returned by {@code ServletRequest.getRemoteAddr()}
+     * @return the key for the address
+     */
+    public static ClientAddressKey of(String address) {
+        if (InetAddresses.isInetAddress(address)) {
+            InetAddress inetAddress = InetAddresses.forString(address);
+            byte[] bytes = inetAddress.getAddress();
+            if (inetAddress instanceof Inet4Address) {
+                return new ClientAddressKey(0L, IPV4_MAPPED_PREFIX | (ByteBuffer.wrap(bytes).getInt() & 0xFFFF_FFFFL));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new ClientAddressKey(buffer.getLong(), buffer.getLong());
+        }
+        HashCode hash = Hashing.murmur3_128().hashString(address, StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(hash.asBytes());
+        return new ClientAddressKey(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,133 @@
+package com.sme.afs.service.ratelimit;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Token bucket rate limiter for a single dimension, e.g. client address or user.
+ * <p>
+ * Buckets live in a {@link ConcurrentHashMap} keyed by a compact key type. The hot path is a
+ * lock-free map read followed by a CAS-based {@link Bucket#tryConsume(long)}; the map is only
+ * written when a key is seen for the first time.
+ * <p>
+ * Buckets that have refilled to capacity carry no state, as they behave exactly like a freshly
+ * created bucket, so {@link #evictRefilled()} can drop them without changing the limiting
+ * behaviour. Only if the limiter is still over its maximum size after that are active buckets
+ * dropped as well.
+ *
+ * @param <K> Key type; must implement {@code equals} and {@code hashCode}
+ */
+@Slf4j
+public final class KeyedRateLimiter<K> {
+
+    private final String name;
+    private final Supplier<Bandwidth> limitSupplier;
+    private final int maxSize;
+    private final ConcurrentHashMap<K, LimitedBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param name          Name of the limited dimension, used in log messages
+     * @param limitSupplier Supplies the limit for newly created buckets
+     * @param maxSize       Number of buckets above which buckets are evicted
+     */
+    public KeyedRateLimiter(String name, Supplier<Bandwidth> limitSupplier, int maxSize) {
+        this.name = name;
+        this.limitSupplier = limitSupplier;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Tries to consume one token from the bucket of the given key.
+     *
+     * @param key The key to limit
+     * @return true if the request is allowed, false if the limit is exceeded
+     */
+    public boolean tryAcquire(K key) {
+        return bucket(key).tryConsume(1);
+    }
+
+    /**
+     * Gets the bucket of the given key, creating it if needed.
+     * Callers that consume tokens over a longer period should look the bucket up again
+     * for every consumption, as refilled buckets may be evicted and replaced in between.
+     *
+     * @param key The key to limit
+     * @return the bucket of the key
+     */
+    public Bucket bucket(K key) {
+        LimitedBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxSize) {
+                evictToMaxSize();
+            }
+            bucket = buckets.computeIfAbsent(key, k -> LimitedBucket.create(limitSupplier.get()));
+        }
+        return bucket.bucket();
+    }
+
+    /**
+     * Removes all buckets that have refilled to capacity.
+     *
+     * @return Number of buckets removed
+     */
+    public int evictRefilled() {
+        int removed = 0;
+        for (Map.Entry<K, LimitedBucket> entry : buckets.entrySet()) {
+            if (entry.getValue().isRefilled() && buckets.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the number of buckets currently held.
+     *
+     * @return Number of tracked keys
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private void evictToMaxSize() {
+        // Only one thread evicts at a time; others proceed without waiting
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            evictRefilled();
+            if (buckets.size() >= maxSize) {
+                int target = maxSize - maxSize / 10;
+                int removed = 0;
+                Iterator<K> keys = buckets.keySet().iterator();
+                while (buckets.size() > target && keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    removed++;
+                }
+                log.warn("Rate limiter '{}' exceeded {} keys; evicted {} active buckets", name, maxSize, removed);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private record LimitedBucket(Bucket bucket, long capacity) {
+
+        static LimitedBucket create(Bandwidth limit) {
+            return new LimitedBucket(Bucket.builder().addLimit(limit).build(), limit.getCapacity());
+        }
+
+        boolean isRefilled() {
+            return bucket.getAvailableTokens() >= capacity;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.sme.afs.service.ratelimit;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that paces reads according to a {@link ByteThrottle}.
+ * Closing the stream closes the underlying stream and ends the throttle.
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+    private final ByteThrottle throttle;
+
+    public ThrottledInputStream(InputStream in, ByteThrottle throttle) {
+        super(in);
+        this.throttle = throttle;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            throttle.acquire(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, Math.min(len, throttle.chunkSize()));
+        if (n > 0) {
+            throttle.acquire(n);
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            throttle.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.sme.afs.service.ratelimit;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that paces writes according to a {@link ByteThrottle}.
+ * <p>
+ * Closing the stream flushes it and ends the throttle but leaves the underlying stream open,
+ * as that usually is a response stream owned by the web container.
+ */
+public class ThrottledOutputStream extends FilterOutputStream {
+
+    private final ByteThrottle throttle;
+
+    public ThrottledOutputStream(OutputStream out, ByteThrottle throttle) {
+        super(out);
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        throttle.acquire(1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int chunk = Math.min(len, throttle.chunkSize());
+            throttle.acquire(chunk);
+            out.write(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.flush();
+        } finally {
+            throttle.close();
+        }
+    }
+}
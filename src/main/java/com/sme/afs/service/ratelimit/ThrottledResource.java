@@ -0,0 +1,59 @@
+package com.sme.afs.service.ratelimit;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * Resource whose input streams are paced by a {@link ByteThrottle}.
+ * Metadata is taken from the wrapped resource; a new throttle is opened for every stream.
+ */
+public class ThrottledResource extends AbstractResource {
+
+    private final Resource delegate;
+    private final Supplier<ByteThrottle> throttleFactory;
+
+    public ThrottledResource(Resource delegate, Supplier<ByteThrottle> throttleFactory) {
+        this.delegate = delegate;
+        this.throttleFactory = throttleFactory;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        InputStream in = delegate.getInputStream();
+        return new ThrottledInputStream(in, throttleFactory.get());
+    }
+
+    @Override
+    public boolean exists() {
+        return delegate.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return delegate.isReadable();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return delegate.lastModified();
+    }
+
+    @Override
+    public String getFilename() {
+        return delegate.getFilename();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Throttled " + delegate.getDescription();
+    }
+}
@@ -0,0 +1,93 @@
+package com.sme.afs.service.search;
+
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Search term, scope and page of a file search.
+ *
+ * @param term      Lower-cased text to find in file and tag names
+ * @param scope     Path of the directory to search below, "/" for the whole shared folder
+ * @param type      Kinds of entries to return
+ * @param limit     Maximum number of entries
+ * @param afterName Name of the last entry of the previous page, null for the first page
+ * @param afterPath Path of the last entry of the previous page, null for the first page
+ */
+public record SearchQuery(String term, String scope, SearchType type, int limit, String afterName, String afterPath) {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1_000;
+    public static final int MAX_TERM_LENGTH = 255;
+
+    /**
+     * Builds a query from request parameters.
+     *
+     * @param term   Text to find, case-insensitive
+     * @param path   Directory to search below, null for the whole shared folder
+     * @param type   Entry type name, null for all
+     * @param limit  Page size, null for {@link #DEFAULT_LIMIT}
+     * @param cursor Cursor returned with the previous page, null for the first page
+     * @throws AfsException if a parameter or the cursor is invalid
+     */
+    public static SearchQuery of(String term, String path, String type, Integer limit, String cursor) {
+        if (term == null || term.isBlank()) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Search query must not be empty");
+        }
+        if (term.length() > MAX_TERM_LENGTH) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED,
+                "Search query must not exceed " + MAX_TERM_LENGTH + " characters");
+        }
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT)) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        String afterPath = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterPath = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new AfsException(ErrorCode.VALIDATION_FAILED, "Invalid search cursor");
+            }
+            if (!afterPath.startsWith("/")) {
+                throw new AfsException(ErrorCode.VALIDATION_FAILED, "Invalid search cursor");
+            }
+        }
+        // The name is the last path segment, so the cursor only carries the path
+        String afterName = afterPath != null ? afterPath.substring(afterPath.lastIndexOf('/') + 1) : null;
+
+        return new SearchQuery(term.trim().toLowerCase(Locale.ROOT), normalizeScope(path), SearchType.of(type),
+            limit != null ? limit : DEFAULT_LIMIT, afterName, afterPath);
+    }
+
+    /**
+     * LIKE pattern matching names that contain the term, escaped with backslashes.
+     */
+    public String termPattern() {
+        return "%" + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Builds the cursor that continues the search after the entry with the given path.
+     */
+    public static String cursorAfter(String path) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(path.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String normalizeScope(String path) {
+        if (path == null || path.isBlank()) {
+            return "/";
+        }
+        String scope = path.startsWith("/") ? path : "/" + path;
+        while (scope.length() > 1 && scope.endsWith("/")) {
+            scope = scope.substring(0, scope.length() - 1);
+        }
+        if (scope.contains("/../") || scope.endsWith("/..")) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Path is outside of root directory");
+        }
+        return scope;
+    }
+}
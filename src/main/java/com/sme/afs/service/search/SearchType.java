@@ -0,0 +1,44 @@
+package com.sme.afs.service.search;
+
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+
+import java.util.Locale;
+
+/**
+ * Kinds of entries a search returns.
+ */
+public enum SearchType {
+    ALL(null),
+    FILE(false),
+    DIRECTORY(true);
+
+    private final Boolean directory;
+
+    SearchType(Boolean directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Value of the directory flag to match, null for both.
+     */
+    public Boolean directory() {
+        return directory;
+    }
+
+    /**
+     * Parses the type parameter of a search request.
+     *
+     * @param value "all", "file" or "directory", case-insensitive; null for all
+     */
+    public static SearchType of(String value) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new AfsException(ErrorCode.VALIDATION_FAILED, "Unsupported search type: " + value);
+        }
+    }
+}
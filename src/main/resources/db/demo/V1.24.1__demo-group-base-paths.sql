@@ -0,0 +1,4 @@
+-- Group base paths are virtual paths below the shared folder root, not host paths
+UPDATE groups SET base_path = '/marketing' WHERE id = 1 AND base_path = '/volume1/shared/marketing';
+UPDATE groups SET base_path = '/development' WHERE id = 2 AND base_path = '/volume1/shared/development';
+UPDATE groups SET base_path = '/external' WHERE id = 3 AND base_path = '/volume1/shared/external';
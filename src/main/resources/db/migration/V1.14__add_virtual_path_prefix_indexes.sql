@@ -0,0 +1,34 @@
+-- Number of path segments, used together with the path prefix to find direct children
+ALTER TABLE virtual_paths ADD COLUMN depth INTEGER;
+
+UPDATE virtual_paths
+SET depth = CASE
+    WHEN virtual_path = '/' THEN 0
+    ELSE length(rtrim(virtual_path, '/')) - length(replace(rtrim(virtual_path, '/'), '/', ''))
+END;
+
+ALTER TABLE virtual_paths ALTER COLUMN depth SET NOT NULL;
+
+-- The plain btree on virtual_path cannot serve LIKE 'prefix%' under a non-C collation.
+-- text_pattern_ops indexes compare byte-wise and support prefix matches; the partial
+-- indexes only cover live rows, which all hot lookups filter on.
+CREATE INDEX idx_virtual_paths_prefix_active
+    ON virtual_paths (virtual_path text_pattern_ops)
+    WHERE is_deleted = false;
+
+-- Direct children: depth = parent depth + 1 AND virtual_path LIKE 'parent/%'
+CREATE INDEX idx_virtual_paths_depth_prefix_active
+    ON virtual_paths (depth, virtual_path text_pattern_ops)
+    WHERE is_deleted = false;
+
+CREATE INDEX idx_virtual_paths_parent_active
+    ON virtual_paths (parent_id, name)
+    WHERE is_deleted = false;
+
+CREATE INDEX idx_files_virtual_path_active
+    ON files (virtual_path_id)
+    WHERE is_deleted = false;
+
+CREATE INDEX idx_files_path_prefix_active
+    ON files (path text_pattern_ops)
+    WHERE is_deleted = false;
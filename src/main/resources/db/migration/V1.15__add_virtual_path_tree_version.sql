@@ -0,0 +1,8 @@
+-- Single-row counter incremented by every change to the virtual path tree.
+-- Nodes compare it with the version of their in-memory path cache to detect staleness.
+CREATE TABLE virtual_path_tree_version (
+    id INTEGER PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO virtual_path_tree_version (id, version) VALUES (1, 0);
@@ -0,0 +1,17 @@
+-- Parent directory of every entry, so the direct children of a directory are found by
+-- equality instead of a prefix scan over the whole subtree
+ALTER TABLE files ADD COLUMN parent_path TEXT;
+
+UPDATE files
+SET parent_path = COALESCE(NULLIF(regexp_replace(path, '/[^/]*$', ''), ''), '/');
+
+ALTER TABLE files ALTER COLUMN parent_path SET NOT NULL;
+
+-- The indexer keeps exactly one live row per path
+CREATE UNIQUE INDEX uq_files_path_active
+    ON files (path)
+    WHERE is_deleted = false;
+
+CREATE INDEX idx_files_parent_active
+    ON files (parent_path, name)
+    WHERE is_deleted = false;
@@ -0,0 +1,9 @@
+-- Keyset pagination of directory listings sorted by size or modification time;
+-- sorting by name is served by idx_files_parent_active
+CREATE INDEX idx_files_parent_size_active
+    ON files (parent_path, size, name)
+    WHERE is_deleted = false;
+
+CREATE INDEX idx_files_parent_modified_active
+    ON files (parent_path, modified_at, name)
+    WHERE is_deleted = false;
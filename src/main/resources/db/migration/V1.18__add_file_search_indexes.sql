@@ -0,0 +1,29 @@
+-- Substring search over file and tag names: lower(name) LIKE '%term%'.
+-- pg_trgm GIN indexes serve unanchored LIKE patterns. Installations whose database role may
+-- not create extensions skip the indexes; search then falls back to sequential scans.
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN insufficient_privilege OR undefined_file THEN
+    RAISE WARNING 'pg_trgm is not available, file search will not be indexed: %', SQLERRM;
+END
+$$;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        EXECUTE 'CREATE INDEX idx_files_name_trgm_active ON files '
+             || 'USING gin (lower(name) gin_trgm_ops) WHERE is_deleted = false';
+        EXECUTE 'CREATE INDEX idx_file_tags_name_trgm ON file_tags '
+             || 'USING gin (lower(name) gin_trgm_ops)';
+    END IF;
+END
+$$;
+
+-- Keyset pagination of results ordered by (name, path)
+CREATE INDEX idx_files_name_path_active
+    ON files (name, path)
+    WHERE is_deleted = false;
+
+CREATE INDEX idx_file_tag_mappings_tag
+    ON file_tag_mappings (tag_id);
@@ -0,0 +1,7 @@
+-- Modification time of every directory of the shared folder as seen by the last
+-- reconciliation scan. Directories whose mtime is unchanged are not listed again.
+CREATE TABLE directory_snapshots (
+    path TEXT PRIMARY KEY,
+    modified_at TIMESTAMP NOT NULL,
+    scanned_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,9 @@
+-- Deduplicated upload content stored once under system/metadata/content and hard-linked
+-- into every folder that holds a copy. ref_count is the number of those links.
+CREATE TABLE content_blobs (
+    checksum VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    last_linked_at TIMESTAMP NOT NULL
+);
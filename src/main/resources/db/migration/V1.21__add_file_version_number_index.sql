@@ -0,0 +1,2 @@
+-- One row per version number; concurrent replaces of a file cannot record the same version.
+CREATE UNIQUE INDEX idx_file_versions_file_number ON file_versions(file_id, version_number);
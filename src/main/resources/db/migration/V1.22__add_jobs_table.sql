@@ -0,0 +1,21 @@
+-- Long-running file operations executed by the job engine. Progress counters are written
+-- while a job runs; jobs still queued or running at startup were cut short by a restart.
+CREATE TABLE jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    type VARCHAR(16) NOT NULL,
+    state VARCHAR(16) NOT NULL,
+    owner VARCHAR(255),
+    source_path TEXT,
+    target_path TEXT,
+    total_items BIGINT NOT NULL DEFAULT 0,
+    processed_items BIGINT NOT NULL DEFAULT 0,
+    total_bytes BIGINT NOT NULL DEFAULT 0,
+    processed_bytes BIGINT NOT NULL DEFAULT 0,
+    error TEXT,
+    created_at TIMESTAMP NOT NULL,
+    started_at TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+CREATE INDEX idx_jobs_owner_created ON jobs(owner, created_at DESC);
+CREATE INDEX idx_jobs_state ON jobs(state);
@@ -0,0 +1,12 @@
+-- Optional storage quotas of groups; NULL means unlimited.
+ALTER TABLE groups ADD COLUMN quota_bytes BIGINT;
+ALTER TABLE groups ADD COLUMN quota_files BIGINT;
+
+-- Number and total size of the files below the base path of every group. Adjusted by the
+-- indexer together with the entries it writes and periodically recounted from the index.
+CREATE TABLE group_usage (
+    group_id BIGINT PRIMARY KEY REFERENCES groups(id) ON DELETE CASCADE,
+    used_bytes BIGINT NOT NULL DEFAULT 0,
+    file_count BIGINT NOT NULL DEFAULT 0,
+    reconciled_at TIMESTAMP
+);
@@ -0,0 +1,20 @@
+-- Directory listings from the index sort names by code point, the order of listings read
+-- from the disk, so a cursor stays valid when the listing source changes. The collation has
+-- a lower-case name because HQL passes collation names to the database unquoted.
+CREATE COLLATION IF NOT EXISTS code_point FROM "C";
+
+-- The keyset indexes are rebuilt with the same collation to keep serving those queries
+DROP INDEX idx_files_parent_active;
+CREATE INDEX idx_files_parent_active
+    ON files (parent_path, name COLLATE code_point)
+    WHERE is_deleted = false;
+
+DROP INDEX idx_files_parent_size_active;
+CREATE INDEX idx_files_parent_size_active
+    ON files (parent_path, size, name COLLATE code_point)
+    WHERE is_deleted = false;
+
+DROP INDEX idx_files_parent_modified_active;
+CREATE INDEX idx_files_parent_modified_active
+    ON files (parent_path, modified_at, name COLLATE code_point)
+    WHERE is_deleted = false;
@@ -131,6 +131,21 @@ class BlobUrlRepositoryTest {
         assertEquals(2, activeCount); // activeBlobUrl and anotherActiveBlobUrl
     }
 
+    @Test
+    void testCountActiveUrlsByUserAndExpiry() {
+        // Act
+        List<BlobUrlRepository.ActiveUrlCount> counts = blobUrlRepository.countActiveUrlsByUserAndExpiry(fixedNow);
+
+        // Assert - expired URL is excluded, one group per creator and expiry
+        assertEquals(2, counts.size());
+        for (BlobUrlRepository.ActiveUrlCount count : counts) {
+            assertEquals(1L, count.getUrlCount());
+            assertTrue(count.getExpiresAt().isAfter(fixedNow));
+        }
+        assertTrue(counts.stream().anyMatch(c -> "testuser".equals(c.getCreatedBy())));
+        assertTrue(counts.stream().anyMatch(c -> "anotheruser".equals(c.getCreatedBy())));
+    }
+
     @Test
     void testCountActiveUrlsByUser() {
         // Arrange
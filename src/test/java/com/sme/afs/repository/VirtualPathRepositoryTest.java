@@ -0,0 +1,121 @@
+package com.sme.afs.repository;
+
+import com.sme.afs.model.User;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.util.TestDataUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class VirtualPathRepositoryTest {
+
+    @Autowired
+    private VirtualPathRepository virtualPathRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(TestDataUtil.createTestUser("pathuser"));
+    }
+
+    @Test
+    void shouldMarkSubtreeDeletedInBatches() {
+        // Given
+        VirtualPath root = save("/docs", null);
+        VirtualPath sub = save("/docs/sub", root);
+        save("/docs/sub/a", sub);
+        save("/docs/sub/b", sub);
+        save("/docs/c", root);
+        save("/docs-other", null);
+
+        // When
+        LocalDateTime now = LocalDateTime.now();
+        int first = virtualPathRepository.markSubtreeDeleted("/docs", "/docs/%", now, user, 3);
+        int second = virtualPathRepository.markSubtreeDeleted("/docs", "/docs/%", now, user, 3);
+        int third = virtualPathRepository.markSubtreeDeleted("/docs", "/docs/%", now, user, 3);
+
+        // Then
+        assertThat(first).isEqualTo(3);
+        assertThat(second).isEqualTo(2);
+        assertThat(third).isZero();
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/docs")).isEmpty();
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/docs/sub/b")).isEmpty();
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/docs-other")).isPresent();
+
+        VirtualPath deleted = virtualPathRepository.findById(sub.getId()).orElseThrow();
+        assertThat(deleted.isDeleted()).isTrue();
+        assertThat(deleted.getDeletedBy().getId()).isEqualTo(user.getId());
+        assertThat(deleted.getDeletedAt()).isNotNull();
+    }
+
+    @Test
+    void shouldTreatLikeWildcardsLiterally() {
+        // Given
+        VirtualPath literal = save("/a_b", null);
+        save("/a_b/child", literal);
+        VirtualPath other = save("/axb", null);
+        save("/axb/child", other);
+
+        // When
+        int deleted = virtualPathRepository.markSubtreeDeleted(
+            "/a_b", "/a\\_b/%", LocalDateTime.now(), user, 100);
+
+        // Then
+        assertThat(deleted).isEqualTo(2);
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/axb/child")).isPresent();
+    }
+
+    @Test
+    void shouldFindDirectChildrenAndSubtree() {
+        // Given
+        VirtualPath root = save("/docs", null);
+        VirtualPath sub = save("/docs/sub", root);
+        save("/docs/sub/a", sub);
+        save("/docs/b", root);
+        save("/docs-other", null);
+        VirtualPath deleted = save("/docs/c", root);
+        deleted.setDeleted(true);
+        virtualPathRepository.save(deleted);
+
+        // When
+        List<VirtualPath> children = virtualPathRepository.findChildrenByPath("/docs");
+        List<VirtualPath> topLevel = virtualPathRepository.findChildrenByPath("/");
+        List<VirtualPath> subtree = virtualPathRepository.findAllByBasePathAndIsDeletedFalse("/docs");
+
+        // Then
+        assertThat(children).extracting(VirtualPath::getVirtualPath).containsExactly("/docs/b", "/docs/sub");
+        assertThat(topLevel).extracting(VirtualPath::getVirtualPath).containsExactlyInAnyOrder("/docs", "/docs-other");
+        assertThat(subtree).extracting(VirtualPath::getVirtualPath)
+            .containsExactlyInAnyOrder("/docs/sub", "/docs/sub/a", "/docs/b");
+        assertThat(sub.getDepth()).isEqualTo(2);
+    }
+
+    private VirtualPath save(String path, VirtualPath parent) {
+        VirtualPath vPath = new VirtualPath();
+        vPath.setVirtualPath(path);
+        vPath.setPhysicalPath("/data" + path);
+        vPath.setName(path.substring(path.lastIndexOf('/') + 1));
+        vPath.setDirectory(true);
+        vPath.setParent(parent);
+        vPath.setCreatedAt(LocalDateTime.now());
+        vPath.setCreatedBy(user);
+        vPath.setModifiedAt(LocalDateTime.now());
+        vPath.setModifiedBy(user);
+        return virtualPathRepository.save(vPath);
+    }
+}
@@ -0,0 +1,135 @@
+package com.sme.afs.service;
+
+import com.sme.afs.model.BlobUrl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for ArchiveService.
+ * Tests streaming of directory trees and blob URL bundles as ZIP archives.
+ */
+class ArchiveServiceTest {
+
+    @TempDir
+    Path tempDir;
+    private ArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        archiveService = new ArchiveService();
+    }
+
+    @Test
+    void testWriteDirectory_ContainsNestedEntries() throws IOException {
+        // Arrange
+        Path root = tempDir.resolve("docs");
+        Files.createDirectories(root.resolve("sub/empty"));
+        Files.writeString(root.resolve("a.txt"), "alpha");
+        Files.writeString(root.resolve("sub/b.txt"), "beta");
+        Files.writeString(root.resolve("sub/image.jpg"), "not really a jpeg");
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.writeDirectory(root, out);
+
+        // Assert
+        Map<String, String> entries = readEntries(out.toByteArray());
+        assertThat(entries).containsOnlyKeys(
+            "docs/", "docs/a.txt", "docs/sub/", "docs/sub/b.txt", "docs/sub/image.jpg", "docs/sub/empty/");
+        assertThat(entries.get("docs/a.txt")).isEqualTo("alpha");
+        assertThat(entries.get("docs/sub/b.txt")).isEqualTo("beta");
+        assertThat(entries.get("docs/sub/image.jpg")).isEqualTo("not really a jpeg");
+    }
+
+    @Test
+    void testWriteDirectory_DoesNotCloseOutputStream() throws IOException {
+        // Arrange
+        Path root = Files.createDirectory(tempDir.resolve("root"));
+        Files.writeString(root.resolve("file.txt"), "content");
+        boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        // Act
+        archiveService.writeDirectory(root, out);
+
+        // Assert
+        assertThat(closed[0]).isFalse();
+        assertThat(readEntries(out.toByteArray())).containsKeys("root/", "root/file.txt");
+    }
+
+    @Test
+    void testWriteBlobBundle_RenamesDuplicateFilenames() throws IOException {
+        // Arrange
+        Path first = tempDir.resolve("link1");
+        Path second = tempDir.resolve("link2");
+        Path third = tempDir.resolve("link3");
+        Files.writeString(first, "one");
+        Files.writeString(second, "two");
+        Files.writeString(third, "three");
+
+        List<BlobUrl> blobUrls = List.of(
+            blobUrl("report.pdf", first),
+            blobUrl("report.pdf", second),
+            blobUrl("notes", third));
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.writeBlobBundle(blobUrls, out);
+
+        // Assert
+        Map<String, String> entries = readEntries(out.toByteArray());
+        assertThat(entries).containsExactly(
+            entry("report.pdf", "one"),
+            entry("report (1).pdf", "two"),
+            entry("notes", "three"));
+    }
+
+    @Test
+    void testWriteBlobBundle_MissingFileThrows() {
+        // Arrange
+        List<BlobUrl> blobUrls = List.of(blobUrl("gone.txt", tempDir.resolve("missing")));
+
+        // Act & Assert
+        assertThatThrownBy(() -> archiveService.writeBlobBundle(blobUrls, new ByteArrayOutputStream()))
+            .isInstanceOf(IOException.class);
+    }
+
+    private BlobUrl blobUrl(String filename, Path hardLink) {
+        return BlobUrl.builder()
+            .token("token-" + hardLink.getFileName())
+            .filename(filename)
+            .hardLinkPath(hardLink.toString())
+            .build();
+    }
+
+    private Map<String, String> readEntries(byte[] archive) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
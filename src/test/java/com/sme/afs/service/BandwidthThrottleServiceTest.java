@@ -0,0 +1,125 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.BlobUrlProperties;
+import com.sme.afs.dto.BandwidthStatsResponse;
+import com.sme.afs.service.ratelimit.ByteThrottle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for BandwidthThrottleService.
+ * Tests byte-rate limiting of download streams, fair chunk sizing and throttling statistics.
+ */
+class BandwidthThrottleServiceTest {
+
+    private BlobUrlProperties blobUrlProperties;
+    private BandwidthThrottleService bandwidthThrottleService;
+
+    @BeforeEach
+    void setUp() {
+        blobUrlProperties = new BlobUrlProperties();
+        blobUrlProperties.getRateLimit().getBandwidth().setChunkSize(DataSize.ofKilobytes(8));
+        bandwidthThrottleService = new BandwidthThrottleService(blobUrlProperties);
+    }
+
+    @Test
+    void testThrottle_DisabledReturnsOriginal() {
+        Resource resource = new ByteArrayResource(new byte[10]);
+        OutputStream out = new ByteArrayOutputStream();
+
+        assertThat(bandwidthThrottleService.isEnabled()).isFalse();
+        assertThat(bandwidthThrottleService.throttle(resource, "alice", "10.0.0.1")).isSameAs(resource);
+        assertThat(bandwidthThrottleService.throttle(out, "alice", "10.0.0.1")).isSameAs(out);
+    }
+
+    @Test
+    void testThrottle_OutputStreamLimitedPerUser() throws IOException {
+        blobUrlProperties.getRateLimit().getBandwidth().setPerUserPerSecond(DataSize.ofKilobytes(32));
+        byte[] data = new byte[48 * 1024];
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        long start = System.nanoTime();
+        try (OutputStream out = bandwidthThrottleService.throttle(target, "alice", "10.0.0.1")) {
+            out.write(data);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 32KB burst passes immediately, the remaining 16KB take about half a second
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(400);
+        assertThat(target.size()).isEqualTo(data.length);
+
+        BandwidthStatsResponse stats = bandwidthThrottleService.getStats();
+        assertThat(stats.isEnabled()).isTrue();
+        assertThat(stats.getTotalBytes()).isEqualTo(data.length);
+        assertThat(stats.getThrottledBytes()).isPositive();
+        assertThat(stats.getActiveStreams()).isZero();
+    }
+
+    @Test
+    void testThrottle_WaitsOnceForTheSlowestLimit() throws IOException {
+        blobUrlProperties.getRateLimit().getBandwidth().setPerUserPerSecond(DataSize.ofKilobytes(32));
+        blobUrlProperties.getRateLimit().getBandwidth().setPerIpPerSecond(DataSize.ofKilobytes(32));
+        blobUrlProperties.getRateLimit().getBandwidth().setGlobalPerSecond(DataSize.ofKilobytes(32));
+        byte[] data = new byte[48 * 1024];
+
+        long start = System.nanoTime();
+        try (OutputStream out = bandwidthThrottleService.throttle(new ByteArrayOutputStream(), "alice", "10.0.0.1")) {
+            out.write(data);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // The remaining 16KB are reserved from all three buckets together, so their waits overlap
+        assertThat(elapsedMillis).isBetween(400L, 1000L);
+        assertThat(bandwidthThrottleService.getStats().getThrottledMillis()).isBetween(400L, 1000L);
+    }
+
+    @Test
+    void testThrottle_ResourceStreamCountsBytes() throws IOException {
+        blobUrlProperties.getRateLimit().getBandwidth().setGlobalPerSecond(DataSize.ofMegabytes(100));
+        byte[] data = new byte[20_000];
+        Resource resource = bandwidthThrottleService.throttle(new ByteArrayResource(data), null, null);
+
+        assertThat(resource.contentLength()).isEqualTo(data.length);
+        try (InputStream in = resource.getInputStream()) {
+            assertThat(bandwidthThrottleService.getStats().getActiveStreams()).isEqualTo(1);
+            assertThat(in.readAllBytes()).hasSize(data.length);
+        }
+
+        BandwidthStatsResponse stats = bandwidthThrottleService.getStats();
+        assertThat(stats.getTotalBytes()).isEqualTo(data.length);
+        assertThat(stats.getThrottledBytes()).isZero();
+        assertThat(stats.getActiveStreams()).isZero();
+    }
+
+    @Test
+    void testChunkSize_SharedBetweenStreamsOfUser() {
+        blobUrlProperties.getRateLimit().getBandwidth().setPerUserPerSecond(DataSize.ofMegabytes(1));
+
+        ByteThrottle first = bandwidthThrottleService.open("alice", "10.0.0.1");
+        assertThat(first.chunkSize()).isEqualTo(8 * 1024);
+
+        ByteThrottle second = bandwidthThrottleService.open("alice", "10.0.0.2");
+        ByteThrottle other = bandwidthThrottleService.open("bob", "10.0.0.3");
+        assertThat(first.chunkSize()).isEqualTo(4 * 1024);
+        assertThat(second.chunkSize()).isEqualTo(4 * 1024);
+        assertThat(other.chunkSize()).isEqualTo(8 * 1024);
+
+        second.close();
+        second.close();
+        assertThat(first.chunkSize()).isEqualTo(8 * 1024);
+
+        first.close();
+        other.close();
+        assertThat(bandwidthThrottleService.getStats().getActiveStreams()).isZero();
+    }
+}
@@ -6,6 +6,7 @@ import com.sme.afs.error.ErrorCode;
 import com.sme.afs.exception.AfsException;
 import com.sme.afs.model.BlobUrl;
 import com.sme.afs.repository.BlobUrlRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -58,9 +59,16 @@ class BlobUrlServiceTest {
         lenient().when(blobUrlProperties.getTempDirectory()).thenReturn(tempDir.toString());
         lenient().when(blobUrlProperties.getDefaultExpiration()).thenReturn(Duration.ofHours(1));
         lenient().when(blobUrlProperties.getMaxConcurrentUrls()).thenReturn(1000L);
+        lenient().when(blobUrlProperties.getBatchLinkParallelism()).thenReturn(4);
         
         blobUrlService = new BlobUrlService(
-                blobUrlRepository, tokenService, hardLinkManager, fileService, blobUrlProperties);
+                blobUrlRepository, tokenService, hardLinkManager, fileService, blobUrlProperties,
+                new BlobUrlQuotaService(blobUrlRepository, blobUrlProperties));
+    }
+
+    @AfterEach
+    void tearDown() {
+        blobUrlService.shutdown();
     }
 
     @Test
@@ -84,7 +92,6 @@ class BlobUrlServiceTest {
         when(fileService.getFileInfo(filePath)).thenReturn(fileInfo);
         when(fileService.loadAsResource(filePath)).thenReturn(mockResource);
         when(tokenService.generateSecureToken()).thenReturn(token);
-        when(blobUrlRepository.countActiveUrls(any(LocalDateTime.class))).thenReturn(0L);
         when(blobUrlRepository.save(any(BlobUrl.class))).thenAnswer(invocation -> invocation.getArgument(0));
         
         // Act
@@ -131,7 +138,8 @@ class BlobUrlServiceTest {
         fileInfo.setDirectory(false);
         
         when(fileService.getFileInfo(filePath)).thenReturn(fileInfo);
-        when(blobUrlRepository.countActiveUrls(any(LocalDateTime.class))).thenReturn(1000L);
+        when(blobUrlRepository.countActiveUrlsByUserAndExpiry(any(LocalDateTime.class)))
+                .thenReturn(List.of(activeUrlCount("otheruser", 1000L)));
         
         // Act & Assert
         assertThatThrownBy(() -> blobUrlService.createBlobUrl(filePath, createdBy))
@@ -161,7 +169,6 @@ class BlobUrlServiceTest {
         when(fileService.getFileInfo(filePath)).thenReturn(fileInfo);
         when(fileService.loadAsResource(filePath)).thenReturn(mockResource);
         when(tokenService.generateSecureToken()).thenReturn(token);
-        when(blobUrlRepository.countActiveUrls(any(LocalDateTime.class))).thenReturn(0L);
         doThrow(new IOException("Hard link creation failed")).when(hardLinkManager)
                 .createHardLink(any(Path.class), any(Path.class));
         
@@ -174,6 +181,117 @@ class BlobUrlServiceTest {
         verify(blobUrlRepository).deleteById(token);
     }
 
+    @Test
+    void createBlobUrls_ShouldCreateAllLinksAndSaveInOneBatch() throws IOException {
+        // Arrange
+        lenient().when(blobUrlProperties.getMaxBatchSize()).thenReturn(1000);
+        List<String> filePaths = Arrays.asList("a.txt", "b.txt", "c.txt");
+        for (String filePath : filePaths) {
+            when(fileService.resolveFile(filePath)).thenReturn(resolvedFile(filePath));
+        }
+        when(tokenService.generateSecureToken()).thenReturn("token-a", "token-b", "token-c");
+        when(blobUrlRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<BlobUrl> result = blobUrlService.createBlobUrls(filePaths, "testuser");
+
+        // Assert
+        assertThat(result).extracting(BlobUrl::getToken).containsExactly("token-a", "token-b", "token-c");
+        assertThat(result).extracting(BlobUrl::getFilename).containsExactly("a.txt", "b.txt", "c.txt");
+        assertThat(result).allMatch(BlobUrl::isNew);
+        verify(blobUrlRepository, times(1)).countActiveUrlsByUserAndExpiry(any(LocalDateTime.class));
+        verify(hardLinkManager, times(3)).createHardLink(any(Path.class), any(Path.class));
+        verify(blobUrlRepository).saveAll(anyList());
+        verify(blobUrlRepository).flush();
+        verify(blobUrlRepository, never()).save(any(BlobUrl.class));
+    }
+
+    @Test
+    void createBlobUrls_ShouldRejectBatchExceedingConcurrentLimit() {
+        // Arrange
+        lenient().when(blobUrlProperties.getMaxBatchSize()).thenReturn(1000);
+        when(blobUrlRepository.countActiveUrlsByUserAndExpiry(any(LocalDateTime.class)))
+                .thenReturn(List.of(activeUrlCount("otheruser", 999L)));
+
+        // Act & Assert
+        assertThatThrownBy(() -> blobUrlService.createBlobUrls(Arrays.asList("a.txt", "b.txt"), "testuser"))
+                .isInstanceOf(AfsException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.VALIDATION_FAILED)
+                .hasMessageContaining("Maximum concurrent blob URLs limit reached");
+        verifyNoInteractions(hardLinkManager);
+    }
+
+    @Test
+    void createBlobUrls_ShouldRollBackCreatedLinksOnPartialFailure() throws IOException {
+        // Arrange
+        lenient().when(blobUrlProperties.getMaxBatchSize()).thenReturn(1000);
+        List<String> filePaths = Arrays.asList("a.txt", "b.txt");
+        for (String filePath : filePaths) {
+            when(fileService.resolveFile(filePath)).thenReturn(resolvedFile(filePath));
+        }
+        when(tokenService.generateSecureToken()).thenReturn("token-a", "token-b");
+        doNothing().when(hardLinkManager).createHardLink(any(Path.class), eq(tempDir.resolve("token-a")));
+        doThrow(new IOException("Hard link creation failed")).when(hardLinkManager)
+                .createHardLink(any(Path.class), eq(tempDir.resolve("token-b")));
+
+        // Act & Assert
+        assertThatThrownBy(() -> blobUrlService.createBlobUrls(filePaths, "testuser"))
+                .isInstanceOf(AfsException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.INTERNAL_ERROR)
+                .hasMessageContaining("Failed to create temporary download links");
+
+        verify(hardLinkManager).deleteHardLink(tempDir.resolve("token-a"));
+        verify(hardLinkManager, never()).deleteHardLink(tempDir.resolve("token-b"));
+        verify(blobUrlRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void createBlobUrl_ShouldEnforcePerUserLimit() {
+        // Arrange
+        String filePath = "test/file.txt";
+        FileInfoResponse fileInfo = new FileInfoResponse();
+        fileInfo.setDirectory(false);
+
+        when(blobUrlProperties.getMaxConcurrentUrlsPerUser()).thenReturn(5L);
+        when(fileService.getFileInfo(filePath)).thenReturn(fileInfo);
+        when(blobUrlRepository.countActiveUrlsByUserAndExpiry(any(LocalDateTime.class)))
+                .thenReturn(List.of(activeUrlCount("testuser", 5L), activeUrlCount("otheruser", 100L)));
+
+        // Act & Assert
+        assertThatThrownBy(() -> blobUrlService.createBlobUrl(filePath, "testuser"))
+                .isInstanceOf(AfsException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.VALIDATION_FAILED)
+                .hasMessageContaining("Maximum concurrent blob URLs per user limit reached");
+    }
+
+    @Test
+    void createBlobUrl_ShouldReleaseQuotaWhenCreationFails() throws IOException {
+        // Arrange
+        String filePath = "test/file.txt";
+        FileInfoResponse fileInfo = new FileInfoResponse();
+        fileInfo.setName("file.txt");
+        fileInfo.setDirectory(false);
+
+        Path originalFile = tempDir.resolve("original.txt");
+        Files.write(originalFile, "test content".getBytes());
+
+        when(blobUrlProperties.getMaxConcurrentUrls()).thenReturn(1L);
+        when(fileService.getFileInfo(filePath)).thenReturn(fileInfo);
+        when(fileService.loadAsResource(filePath)).thenReturn(new UrlResource(originalFile.toUri()));
+        when(tokenService.generateSecureToken()).thenReturn("token-1", "token-2");
+        doThrow(new IOException("Hard link creation failed")).doNothing().when(hardLinkManager)
+                .createHardLink(any(Path.class), any(Path.class));
+        when(blobUrlRepository.save(any(BlobUrl.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        assertThatThrownBy(() -> blobUrlService.createBlobUrl(filePath, "testuser"))
+                .isInstanceOf(AfsException.class);
+        BlobUrl result = blobUrlService.createBlobUrl(filePath, "testuser");
+
+        // Assert - the failed attempt must not keep holding the only slot
+        assertThat(result.getToken()).isEqualTo("token-2");
+    }
+
     @Test
     void getBlobUrlStatus_ShouldReturnBlobUrlForValidToken() {
         // Arrange
@@ -420,4 +538,34 @@ class BlobUrlServiceTest {
         // Assert
         assertThat(result).isEqualTo(5L);
     }
-}
\ No newline at end of file
+
+    private FileService.ResolvedFile resolvedFile(String name) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, name.getBytes());
+
+        FileInfoResponse fileInfo = new FileInfoResponse();
+        fileInfo.setName(name);
+        fileInfo.setSize(name.length());
+        fileInfo.setMimeType("text/plain");
+        return new FileService.ResolvedFile(file, fileInfo);
+    }
+
+    private BlobUrlRepository.ActiveUrlCount activeUrlCount(String createdBy, long urlCount) {
+        return new BlobUrlRepository.ActiveUrlCount() {
+            @Override
+            public String getCreatedBy() {
+                return createdBy;
+            }
+
+            @Override
+            public LocalDateTime getExpiresAt() {
+                return LocalDateTime.now().plusHours(1);
+            }
+
+            @Override
+            public long getUrlCount() {
+                return urlCount;
+            }
+        };
+    }
+}
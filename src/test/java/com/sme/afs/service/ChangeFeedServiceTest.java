@@ -0,0 +1,190 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.ChangeFeedEvent;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.filesystem.DirectoryChangeBatch;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent.EventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class ChangeFeedServiceTest {
+
+    private static final Path ROOT = Path.of("/srv/shared").toAbsolutePath();
+
+    private SharedFolderProperties properties;
+    private ChangeFeedService changeFeedService;
+    private SseEmitter emitter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SharedFolderProperties();
+        properties.setBasePath(ROOT.toString());
+        properties.setChangeFeedQueueCapacity(2);
+        properties.setChangeFeedMaxSubscribers(1);
+        changeFeedService = spy(new ChangeFeedService(properties));
+        emitter = mock(SseEmitter.class);
+        doReturn(emitter).when(changeFeedService).newEmitter();
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeFeedService.shutdown();
+    }
+
+    @Test
+    void onDirectoryChanges_ShouldSendChangesBelowSubscribedPathsOnly() throws Exception {
+        changeFeedService.subscribe(List.of("/docs/"));
+
+        changeFeedService.onDirectoryChanges(batch(
+            change("docs/a.txt", EventType.CREATED),
+            change("docsx/b.txt", EventType.CREATED),
+            change("other/c.txt", EventType.MODIFIED),
+            change("docs/sub", EventType.OVERFLOW)));
+
+        ArgumentCaptor<SseEmitter.SseEventBuilder> sent = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, timeout(5_000).times(2)).send(sent.capture());
+        assertThat(sent.getAllValues()).map(this::payload)
+            .extracting(ChangeFeedEvent::getPath, ChangeFeedEvent::getType)
+            .containsExactly(
+                tuple("/docs/a.txt", "CREATED"),
+                tuple("/docs/sub", "RESCAN"));
+    }
+
+    @Test
+    void onDirectoryChanges_ShouldReplaceOverflowingQueueWithResync() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstSend = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstSend.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        changeFeedService.subscribe(List.of("/"));
+
+        changeFeedService.onDirectoryChanges(batch(change("first", EventType.CREATED)));
+        assertThat(firstSend.await(5, TimeUnit.SECONDS)).isTrue();
+        changeFeedService.onDirectoryChanges(batch(
+            change("1", EventType.CREATED), change("2", EventType.CREATED), change("3", EventType.CREATED)));
+        release.countDown();
+
+        ArgumentCaptor<SseEmitter.SseEventBuilder> sent = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, timeout(5_000).times(2)).send(sent.capture());
+        assertThat(eventName(sent.getAllValues().get(1))).isEqualTo(ChangeFeedService.RESYNC_EVENT);
+    }
+
+    @Test
+    void closeStalledFeeds_ShouldCloseFeedWhoseSendIsBlocked() throws Exception {
+        properties.setChangeFeedSendTimeoutMillis(50);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        // A real emitter, whose send holds the emitter's lock while the connection write blocks
+        SseEmitter blocking = new SseEmitter();
+        connect(blocking, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "send" -> {
+                    sending.countDown();
+                    try {
+                        new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        // The write finishes; a failed one is completed by the container instead
+                        interrupted.countDown();
+                    }
+                }
+                case "complete" -> completed.countDown();
+                default -> { }
+            }
+            return null;
+        });
+        doReturn(blocking).when(changeFeedService).newEmitter();
+        changeFeedService.subscribe(List.of("/"));
+        changeFeedService.onDirectoryChanges(batch(change("a.txt", EventType.CREATED)));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), changeFeedService::closeStalledFeeds);
+
+        assertThat(changeFeedService.getSubscriberCount()).isZero();
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void subscribe_ShouldRejectMissingPathsAndTooManyFeeds() {
+        assertThatThrownBy(() -> changeFeedService.subscribe(List.of())).isInstanceOf(AfsException.class);
+
+        changeFeedService.subscribe(List.of("/docs"));
+
+        assertThat(changeFeedService.getSubscriberCount()).isEqualTo(1);
+        assertThatThrownBy(() -> changeFeedService.subscribe(List.of("/other")))
+            .isInstanceOf(AfsException.class)
+            .extracting(e -> ((AfsException) e).getErrorCode())
+            .isEqualTo(ErrorCode.TOO_MANY_REQUESTS);
+    }
+
+    private DirectoryChangeBatch batch(DirectoryChangeEvent... changes) {
+        return new DirectoryChangeBatch(List.of(changes), changes.length, Instant.now());
+    }
+
+    private DirectoryChangeEvent change(String path, EventType type) {
+        return new DirectoryChangeEvent(ROOT.resolve(path), type, Instant.now());
+    }
+
+    private ChangeFeedEvent payload(SseEmitter.SseEventBuilder event) {
+        return event.build().stream()
+            .map(part -> part.getData())
+            .filter(ChangeFeedEvent.class::isInstance)
+            .map(ChangeFeedEvent.class::cast)
+            .findFirst().orElseThrow();
+    }
+
+    private String eventName(SseEmitter.SseEventBuilder event) {
+        return event.build().stream()
+            .map(part -> Objects.toString(part.getData()))
+            .filter(text -> text.startsWith("event:"))
+            .map(text -> text.substring("event:".length()).lines().findFirst().orElse(""))
+            .findFirst().orElseThrow();
+    }
+
+    /**
+     * Connects an emitter to a response handler, as Spring MVC does when the request returns it.
+     */
+    private void connect(SseEmitter emitter, InvocationHandler handler) throws Exception {
+        Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+        Method initialize = ResponseBodyEmitter.class.getDeclaredMethod("initialize", handlerType);
+        initialize.setAccessible(true);
+        initialize.invoke(emitter, Proxy.newProxyInstance(handlerType.getClassLoader(),
+            new Class<?>[]{handlerType}, handler));
+    }
+}
@@ -0,0 +1,99 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.service.filesystem.DirectoryMonitorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({ChecksumService.class, FileIndexService.class, QuotaService.class, SharedFolderProperties.class})
+class ChecksumServiceTest {
+
+    // SHA-256 of "abc"
+    private static final String ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Autowired
+    private ChecksumService checksumService;
+
+    @Autowired
+    private FileIndexService fileIndexService;
+
+    @Autowired
+    private FileEntityRepository fileEntityRepository;
+
+    @Autowired
+    private SharedFolderProperties properties;
+
+    @MockBean
+    private DirectoryMonitorService directoryMonitorService;
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setBasePath(root.toString());
+        Files.createDirectories(root.resolve("docs"));
+        Files.writeString(root.resolve("docs/a.txt"), "abc");
+        Files.write(root.resolve("docs/empty.bin"), new byte[0]);
+        Files.write(root.resolve("large.bin"), new byte[3 * 1024 * 1024 + 17]);
+    }
+
+    @Test
+    void backfill_ShouldHashFilesWithoutChecksum() throws IOException {
+        fileIndexService.crawl(root);
+
+        assertThat(checksumService.backfill()).isEqualTo(3);
+
+        assertThat(checksum("/docs/a.txt")).isEqualTo(ABC);
+        assertThat(checksum("/docs/empty.bin"))
+            .isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+        assertThat(checksum("/large.bin")).isEqualTo(checksumService.hash(root.resolve("large.bin")));
+        assertThat(fileEntityRepository.findByPathAndIsDeletedFalse("/docs").orElseThrow().getChecksum()).isNull();
+        assertThat(checksumService.backfill()).isZero();
+    }
+
+    @Test
+    void backfill_ShouldRehashChangedFilesAndSkipFilesChangedSinceIndexing() throws IOException {
+        fileIndexService.crawl(root);
+        checksumService.backfill();
+
+        Files.writeString(root.resolve("docs/a.txt"), "changed");
+        fileIndexService.crawl(root);
+
+        assertThat(checksum("/docs/a.txt")).isNull();
+
+        // Not yet indexed again, so the row no longer describes the file
+        Files.setLastModifiedTime(root.resolve("docs/a.txt"), FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+
+        assertThat(checksumService.backfill()).isZero();
+        assertThat(checksum("/docs/a.txt")).isNull();
+
+        fileIndexService.crawl(root);
+
+        assertThat(checksumService.backfill()).isEqualTo(1);
+        assertThat(checksum("/docs/a.txt")).isNotNull().isNotEqualTo(ABC);
+    }
+
+    private String checksum(String path) {
+        return fileEntityRepository.findByPathAndIsDeletedFalse(path).orElseThrow().getChecksum();
+    }
+}
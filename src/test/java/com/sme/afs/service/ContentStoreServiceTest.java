@@ -0,0 +1,123 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.ContentBlob;
+import com.sme.afs.repository.ContentBlobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({ContentStoreService.class, HardLinkManager.class, SharedFolderProperties.class})
+class ContentStoreServiceTest {
+
+    // SHA-256 of "abc"
+    private static final String ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Autowired
+    private ContentStoreService contentStoreService;
+
+    @Autowired
+    private ContentBlobRepository contentBlobRepository;
+
+    @Autowired
+    private SharedFolderProperties properties;
+
+    @TempDir
+    Path root;
+
+    private Path blob;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setBasePath(root.toString());
+        Files.createDirectories(root.resolve("groups/a"));
+        Files.createDirectories(root.resolve("groups/b"));
+        blob = root.resolve(ContentStoreService.CONTENT_DIRECTORY)
+            .resolve(ContentStoreService.BLOBS).resolve(ABC.substring(0, 2)).resolve(ABC);
+    }
+
+    @Test
+    void store_ShouldLinkIdenticalContentToOneBlob() throws IOException {
+        Path first = root.resolve("groups/a/setup.exe");
+        Path second = root.resolve("groups/b/setup-copy.exe");
+
+        ContentStoreService.StoredContent stored = contentStoreService.store(content("abc"), first);
+        ContentStoreService.StoredContent duplicate = contentStoreService.store(content("abc"), second);
+
+        assertThat(stored.checksum()).isEqualTo(ABC);
+        assertThat(stored.deduplicated()).isFalse();
+        assertThat(duplicate.checksum()).isEqualTo(ABC);
+        assertThat(duplicate.deduplicated()).isTrue();
+        assertThat(Files.readString(second)).isEqualTo("abc");
+        assertThat(Files.isSameFile(first, second)).isTrue();
+        assertThat(Files.isSameFile(first, blob)).isTrue();
+        assertThat(contentBlobRepository.findById(ABC)).get()
+            .extracting(ContentBlob::getRefCount, ContentBlob::getSize)
+            .containsExactly(2, 3L);
+        assertThat(root.resolve(ContentStoreService.CONTENT_DIRECTORY).resolve(ContentStoreService.INCOMING))
+            .isEmptyDirectory();
+    }
+
+    @Test
+    void store_ShouldKeepDifferentContentApart() throws IOException {
+        Path first = root.resolve("groups/a/one.txt");
+        Path second = root.resolve("groups/a/two.txt");
+
+        contentStoreService.store(content("abc"), first);
+        ContentStoreService.StoredContent other = contentStoreService.store(content("abd"), second);
+
+        assertThat(other.deduplicated()).isFalse();
+        assertThat(Files.isSameFile(first, second)).isFalse();
+        assertThat(Files.readString(second)).isEqualTo("abd");
+        assertThat(contentBlobRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void sweep_ShouldRecountLinksAndRemoveUnreferencedBlobs() throws IOException {
+        Path first = root.resolve("groups/a/report.pdf");
+        Path second = root.resolve("groups/b/report.pdf");
+        contentStoreService.store(content("abc"), first);
+        contentStoreService.store(content("abc"), second);
+
+        Files.delete(first);
+        assertThat(contentStoreService.sweep()).isZero();
+        assertThat(contentBlobRepository.findById(ABC)).get()
+            .extracting(ContentBlob::getRefCount).isEqualTo(1);
+
+        Files.delete(second);
+        assertThat(contentStoreService.sweep()).isEqualTo(1);
+        assertThat(blob).doesNotExist();
+        assertThat(contentBlobRepository.findById(ABC)).isEmpty();
+    }
+
+    @Test
+    void sweep_ShouldForgetBlobsWhoseFileIsGone() throws IOException {
+        contentStoreService.store(content("abc"), root.resolve("groups/a/file.txt"));
+        Files.delete(blob);
+
+        contentStoreService.sweep();
+
+        assertThat(contentBlobRepository.findById(ABC)).isEmpty();
+        assertThat(root.resolve("groups/a/file.txt")).hasContent("abc");
+    }
+
+    private static ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
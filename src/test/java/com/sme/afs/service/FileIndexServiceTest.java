@@ -0,0 +1,127 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.service.filesystem.DirectoryMonitorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({FileIndexService.class, QuotaService.class, SharedFolderProperties.class})
+class FileIndexServiceTest {
+
+    @Autowired
+    private FileIndexService fileIndexService;
+
+    @Autowired
+    private FileEntityRepository fileEntityRepository;
+
+    @Autowired
+    private SharedFolderProperties properties;
+
+    @MockBean
+    private DirectoryMonitorService directoryMonitorService;
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setBasePath(root.toString());
+        properties.setIndexBatchSize(2);
+        Files.createDirectories(root.resolve("docs/sub"));
+        Files.writeString(root.resolve("docs/a.txt"), "a");
+        Files.writeString(root.resolve("docs/b.txt"), "bb");
+        Files.writeString(root.resolve("docs/sub/c.txt"), "ccc");
+        Files.writeString(root.resolve("top.txt"), "top");
+    }
+
+    @Test
+    void crawl_ShouldIndexTreeAndSkipUnchangedEntries() {
+        FileIndexService.IndexStats first = fileIndexService.crawl(root);
+
+        assertThat(first.getInserted()).isEqualTo(6);
+        assertThat(fileEntityRepository.findChildrenByPath("/docs"))
+            .extracting(FileEntity::getName).containsExactly("a.txt", "b.txt", "sub");
+        FileEntity c = fileEntityRepository.findByPathAndIsDeletedFalse("/docs/sub/c.txt").orElseThrow();
+        assertThat(c.getSize()).isEqualTo(3);
+        assertThat(c.getParentPath()).isEqualTo("/docs/sub");
+        assertThat(c.getPhysicalPath()).isEqualTo(root.resolve("docs/sub/c.txt").toString());
+        assertThat(fileEntityRepository.findByPathAndIsDeletedFalse("/docs").orElseThrow().isDirectory()).isTrue();
+
+        FileIndexService.IndexStats second = fileIndexService.crawl(root);
+
+        assertThat(second.getScanned()).isEqualTo(6);
+        assertThat(second.getInserted()).isZero();
+        assertThat(second.getUpdated()).isZero();
+        assertThat(second.getDeleted()).isZero();
+    }
+
+    @Test
+    void crawl_ShouldUpdateChangedAndDeleteMissingEntries() throws IOException {
+        fileIndexService.crawl(root);
+
+        Files.writeString(root.resolve("docs/a.txt"), "changed");
+        FileSystemUtils.deleteRecursively(root.resolve("docs/sub"));
+
+        FileIndexService.IndexStats stats = fileIndexService.crawl(root);
+
+        // a.txt and the modification time of docs
+        assertThat(stats.getUpdated()).isEqualTo(2);
+        assertThat(stats.getDeleted()).isEqualTo(2);
+        assertThat(fileEntityRepository.findByPathAndIsDeletedFalse("/docs/a.txt").orElseThrow().getSize())
+            .isEqualTo(7);
+        assertThat(fileEntityRepository.findByPathAndIsDeletedFalse("/docs/sub/c.txt")).isEmpty();
+    }
+
+    @Test
+    void indexPath_ShouldApplySingleChanges() throws IOException {
+        fileIndexService.crawl(root);
+
+        Files.createDirectories(root.resolve("new/deep"));
+        Files.writeString(root.resolve("new/deep/d.txt"), "d");
+        fileIndexService.indexPath(root, root.resolve("new"), true);
+        Files.delete(root.resolve("top.txt"));
+        fileIndexService.indexPath(root, root.resolve("top.txt"), false);
+
+        assertThat(fileEntityRepository.findByPathAndIsDeletedFalse("/new/deep/d.txt")).isPresent();
+        assertThat(fileEntityRepository.findByPathAndIsDeletedFalse("/top.txt")).isEmpty();
+        assertThat(fileEntityRepository.findChildrenByPath("/"))
+            .extracting(FileEntity::getName).containsExactly("docs", "new");
+    }
+
+    @Test
+    void crawl_ShouldSkipSystemDirectoriesAndStagingFiles() throws IOException {
+        Files.createDirectories(root.resolve("system/metadata/versions/1"));
+        Files.writeString(root.resolve("system/metadata/versions/1/1"), "old");
+        Files.createDirectories(root.resolve("logs"));
+        Files.writeString(root.resolve("docs/.a.txt.3f0c2a9e-6d1b-4c55-9a7e-2b8f4e1d0c77.upload"), "partial");
+        Files.writeString(root.resolve("docs/.notes.upload"), "user file");
+
+        fileIndexService.crawl(root);
+        fileIndexService.indexPath(root, root.resolve("system/metadata/versions/1/1"), false);
+
+        assertThat(fileEntityRepository.findChildrenByPath("/"))
+            .extracting(FileEntity::getName).containsExactly("docs", "top.txt");
+        assertThat(fileEntityRepository.findChildrenByPath("/docs"))
+            .extracting(FileEntity::getName).containsExactly(".notes.upload", "a.txt", "b.txt", "sub");
+        assertThat(fileEntityRepository.findByPathAndIsDeletedFalse("/system/metadata/versions/1/1")).isEmpty();
+    }
+}
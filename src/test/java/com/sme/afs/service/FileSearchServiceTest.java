@@ -0,0 +1,139 @@
+package com.sme.afs.service;
+
+import com.sme.afs.dto.FileInfoResponse;
+import com.sme.afs.dto.SearchResponse;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.model.FileTag;
+import com.sme.afs.model.Group;
+import com.sme.afs.model.GroupPermission;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.repository.FileTagRepository;
+import com.sme.afs.service.permission.CompiledPermissions;
+import com.sme.afs.service.search.SearchQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import(FileSearchService.class)
+class FileSearchServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Autowired
+    private FileSearchService fileSearchService;
+
+    @Autowired
+    private FileEntityRepository fileEntityRepository;
+
+    @Autowired
+    private FileTagRepository fileTagRepository;
+
+    @MockBean
+    private PermissionService permissionService;
+
+    private FileEntity notes;
+
+    @BeforeEach
+    void setUp() {
+        save("/docs", true);
+        save("/docs/Report_2023.pdf", false);
+        save("/docs/report_2024.pdf", false);
+        save("/archive", true);
+        save("/archive/report_2024.pdf", false);
+        save("/archive/Reports", true);
+        notes = save("/archive/notes.txt", false);
+        save("/docs/report_old.txt", false).setDeleted(true);
+
+        FileTag tag = new FileTag();
+        tag.setName("Quarterly-Report");
+        tag.setCreatedAt(NOW);
+        notes.getTags().add(fileTagRepository.save(tag));
+        fileEntityRepository.flush();
+    }
+
+    @Test
+    void search_ShouldMatchNamesAndTagsCaseInsensitively() {
+        SearchResponse response = fileSearchService.search("user", SearchQuery.of("REPORT", null, null, null, null));
+
+        assertThat(response.getEntries()).extracting(FileInfoResponse::getPath).containsExactly(
+            "docs/Report_2023.pdf", "archive/Reports", "archive/notes.txt",
+            "archive/report_2024.pdf", "docs/report_2024.pdf");
+        assertThat(response.getNextCursor()).isNull();
+    }
+
+    @Test
+    void search_ShouldFilterByScopeAndTypeAndTreatWildcardsLiterally() {
+        assertThat(fileSearchService.search("user", SearchQuery.of("report", "/archive/", "file", null, null))
+            .getEntries()).extracting(FileInfoResponse::getPath)
+            .containsExactly("archive/notes.txt", "archive/report_2024.pdf");
+
+        assertThat(fileSearchService.search("user", SearchQuery.of("report", "/docs", "directory", null, null))
+            .getEntries()).isEmpty();
+
+        assertThat(fileSearchService.search("user", SearchQuery.of("t_2", null, null, null, null))
+            .getEntries()).extracting(FileInfoResponse::getPath)
+            .containsExactly("docs/Report_2023.pdf", "archive/report_2024.pdf", "docs/report_2024.pdf");
+        assertThat(fileSearchService.search("user", SearchQuery.of("t%2", null, null, null, null))
+            .getEntries()).isEmpty();
+    }
+
+    @Test
+    void search_ShouldPageWithCursorAndSkipUnreadableEntries() {
+        SearchResponse first = fileSearchService.search("user", SearchQuery.of("report", null, null, 2, null));
+
+        assertThat(first.getEntries()).extracting(FileInfoResponse::getPath)
+            .containsExactly("docs/Report_2023.pdf", "archive/Reports");
+
+        SearchResponse second = fileSearchService.search("user",
+            SearchQuery.of("report", null, null, 2, first.getNextCursor()));
+
+        assertThat(second.getEntries()).extracting(FileInfoResponse::getPath)
+            .containsExactly("archive/notes.txt", "archive/report_2024.pdf");
+
+        Group docs = new Group();
+        docs.setBasePath("/docs");
+        GroupPermission read = new GroupPermission();
+        read.setGroup(docs);
+        read.setCanRead(true);
+        docs.setPermissions(read);
+        CompiledPermissions docsOnly = CompiledPermissions.compile(List.of(docs));
+        when(permissionService.isEnforced()).thenReturn(true);
+        when(permissionService.getPermissions("user")).thenReturn(docsOnly);
+
+        SearchResponse restricted = fileSearchService.search("user", SearchQuery.of("report", null, null, 1, null));
+
+        assertThat(restricted.getEntries()).extracting(FileInfoResponse::getPath)
+            .containsExactly("docs/Report_2023.pdf");
+        SearchResponse next = fileSearchService.search("user",
+            SearchQuery.of("report", null, null, 1, restricted.getNextCursor()));
+        assertThat(next.getEntries()).extracting(FileInfoResponse::getPath)
+            .containsExactly("docs/report_2024.pdf");
+        assertThat(next.getNextCursor()).isNull();
+    }
+
+    private FileEntity save(String path, boolean directory) {
+        FileEntity entity = new FileEntity();
+        entity.setName(path.substring(path.lastIndexOf('/') + 1));
+        entity.setPath(path);
+        entity.setPhysicalPath("/srv/shared" + path);
+        entity.setDirectory(directory);
+        entity.setSize(directory ? 0L : 1L);
+        entity.setCreatedAt(NOW);
+        entity.setModifiedAt(NOW);
+        return fileEntityRepository.save(entity);
+    }
+}
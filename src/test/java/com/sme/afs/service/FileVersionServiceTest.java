@@ -0,0 +1,174 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.FileVersionResponse;
+import com.sme.afs.model.FileVersion;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.repository.FileVersionRepository;
+import com.sme.afs.service.filesystem.DirectoryMonitorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({FileVersionService.class, FileIndexService.class, QuotaService.class, HardLinkManager.class, SharedFolderProperties.class})
+// Version files of deleted files are removed when the indexer's transaction commits
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FileVersionServiceTest {
+
+    @Autowired
+    private FileVersionService fileVersionService;
+
+    @Autowired
+    private SharedFolderProperties properties;
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Autowired
+    private FileEntityRepository fileEntityRepository;
+
+    @SpyBean
+    private FileIndexService fileIndexService;
+
+    @MockBean
+    private DirectoryMonitorService directoryMonitorService;
+
+    @TempDir
+    Path root;
+
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setBasePath(root.toString());
+        Files.createDirectories(root.resolve("docs"));
+        target = root.resolve("docs/report.txt");
+        Files.writeString(target, "first");
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileVersionRepository.deleteAll();
+        fileEntityRepository.deleteAll();
+    }
+
+    @Test
+    void replace_ShouldLinkPreviousContentIntoVersionsAndRenameStagedFile() throws IOException {
+        Object originalInode = Files.readAttributes(target, "unix:ino").get("ino");
+
+        FileVersion version = fileVersionService.replace(target, stage("second"), null);
+
+        Path versionPath = Path.of(version.getPhysicalPath());
+        assertThat(version.getVersionNumber()).isEqualTo(1);
+        assertThat(version.getSize()).isEqualTo(5L);
+        assertThat(versionPath).startsWith(root.resolve(FileVersionService.VERSIONS_DIRECTORY));
+        assertThat(versionPath).hasContent("first");
+        assertThat(Files.readAttributes(versionPath, "unix:ino").get("ino")).isEqualTo(originalInode);
+        assertThat(target).hasContent("second");
+        assertThat(root.resolve("docs")).isDirectoryNotContaining(p -> p.getFileName().toString().endsWith(".upload"));
+    }
+
+    @Test
+    void replace_ShouldNumberVersionsAndListThemNewestFirst() throws IOException {
+        fileVersionService.replace(target, stage("second"), null);
+        fileVersionService.replace(target, stage("third!"), null);
+
+        List<FileVersionResponse> versions = fileVersionService.listVersions(target);
+
+        assertThat(versions).extracting(FileVersionResponse::getVersionNumber).containsExactly(2, 1);
+        assertThat(versions).extracting(FileVersionResponse::getSize).containsExactly(6L, 5L);
+        assertThat(target).hasContent("third!");
+    }
+
+    @Test
+    void replace_ShouldRemoveVersionsBeyondRetentionLimit() throws IOException {
+        properties.setMaxVersionsPerFile(2);
+        FileVersion first = fileVersionService.replace(target, stage("second"), null);
+        fileVersionService.replace(target, stage("third!"), null);
+        fileVersionService.replace(target, stage("fourth"), null);
+
+        assertThat(fileVersionService.listVersions(target))
+            .extracting(FileVersionResponse::getVersionNumber).containsExactly(3, 2);
+        assertThat(Path.of(first.getPhysicalPath())).doesNotExist();
+    }
+
+    @Test
+    void replace_ShouldLeaveFileAndVersionsUntouchedWhenRenameFails() throws IOException {
+        Path missing = root.resolve("docs/.report.txt.missing.upload");
+
+        assertThatThrownBy(() -> fileVersionService.replace(target, missing, null))
+            .isInstanceOf(NoSuchFileException.class);
+
+        assertThat(target).hasContent("first");
+        try (Stream<Path> files = Files.walk(root.resolve(FileVersionService.VERSIONS_DIRECTORY))) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void replace_ShouldUseRowInsertedConcurrentlyByIndexer() throws IOException {
+        // The indexer wins the insert, so indexing on the request thread hits the unique path
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            throw new DataIntegrityViolationException("uq_files_path_active");
+        }).when(fileIndexService).indexPath(any(), any(), anyBoolean());
+
+        FileVersion version = fileVersionService.replace(target, stage("second"), null);
+
+        assertThat(version.getFile().getPath()).isEqualTo("/docs/report.txt");
+        assertThat(target).hasContent("second");
+    }
+
+    @Test
+    void indexer_ShouldRemoveVersionsOfDeletedAndMovedFiles() throws IOException {
+        Path other = root.resolve("docs/other.txt");
+        Files.writeString(other, "one");
+        FileVersion deletedVersion = fileVersionService.replace(target, stage("second"), null);
+        FileVersion movedVersion = fileVersionService.replace(other, stage("two"), null);
+
+        Files.delete(target);
+        fileIndexService.indexPath(root, target, false);
+        Path renamed = root.resolve("docs/renamed.txt");
+        Files.move(other, renamed);
+        fileIndexService.indexPath(root, root.resolve("docs"), false);
+
+        assertThat(fileVersionRepository.count()).isZero();
+        assertThat(Path.of(deletedVersion.getPhysicalPath()).getParent()).doesNotExist();
+        assertThat(Path.of(movedVersion.getPhysicalPath()).getParent()).doesNotExist();
+        assertThat(fileVersionService.listVersions(renamed)).isEmpty();
+        assertThat(renamed).hasContent("two");
+    }
+
+    private Path stage(String content) throws IOException {
+        Path staged = Files.createTempFile(target.getParent(), ".report.txt.", ".upload");
+        Files.writeString(staged, content);
+        return staged;
+    }
+}
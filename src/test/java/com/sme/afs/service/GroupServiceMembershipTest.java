@@ -29,6 +29,12 @@ class GroupServiceMembershipTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private PermissionService permissionService;
+
+    @Mock
+    private QuotaService quotaService;
+
     @InjectMocks
     private GroupService groupService;
 
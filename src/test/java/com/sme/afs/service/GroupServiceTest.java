@@ -28,6 +28,12 @@ class GroupServiceTest {
     @Mock
     private GroupRepository groupRepository;
 
+    @Mock
+    private PermissionService permissionService;
+
+    @Mock
+    private QuotaService quotaService;
+
     @InjectMocks
     private GroupService groupService;
 
@@ -73,6 +79,19 @@ class GroupServiceTest {
         assertThat(result.getBasePath()).isEqualTo("/new/path");
     }
 
+    @Test
+    void updateGroupBasePath_ShouldStoreNormalizedVirtualPath() {
+        UpdateGroupRequest request = new UpdateGroupRequest();
+        request.setBasePath("/new/./path/");
+
+        when(groupRepository.findById(1L)).thenReturn(Optional.of(testGroup));
+        when(groupRepository.save(any(Group.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        GroupDTO result = groupService.updateGroupBasePath(1L, request);
+
+        assertThat(result.getBasePath()).isEqualTo("/new/path");
+    }
+
     @Test
     void updateGroupBasePath_GroupNotFound() {
         UpdateGroupRequest request = new UpdateGroupRequest();
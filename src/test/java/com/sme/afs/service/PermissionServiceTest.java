@@ -0,0 +1,138 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Group;
+import com.sme.afs.model.GroupPermission;
+import com.sme.afs.model.Role;
+import com.sme.afs.model.User;
+import com.sme.afs.repository.UserRepository;
+import com.sme.afs.service.permission.CompiledPermissions;
+import com.sme.afs.service.permission.Permission;
+import com.sme.afs.util.TestDataUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PermissionServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SharedFolderProperties properties;
+    private PermissionService permissionService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SharedFolderProperties();
+        properties.setEnforcePermissions(true);
+        permissionService = new PermissionService(userRepository, properties);
+    }
+
+    @Test
+    void compile_ShouldInheritAndCombineGroupRights() {
+        CompiledPermissions compiled = CompiledPermissions.compile(List.of(
+            group("/team", true, false, false),
+            group("/team/docs", false, true, false),
+            group("/team/docs", false, false, true)));
+
+        assertThat(compiled.allows("/team/readme.txt", Permission.READ)).isTrue();
+        assertThat(compiled.allows("/team/readme.txt", Permission.WRITE)).isFalse();
+        assertThat(compiled.allows("team/docs/a/b.txt", Permission.READ)).isTrue();
+        assertThat(compiled.allows("/team/docs/a/b.txt", Permission.WRITE)).isTrue();
+        assertThat(compiled.allows("/team/docs/a/b.txt", Permission.DELETE)).isTrue();
+        assertThat(compiled.allows("/teamwork", Permission.READ)).isFalse();
+        assertThat(compiled.allows("/", Permission.READ)).isFalse();
+    }
+
+    @Test
+    void compile_ShouldResolveDotSegmentsBeforeMatching() {
+        CompiledPermissions compiled = CompiledPermissions.compile(List.of(group("/public", true, true, true)));
+
+        assertThat(compiled.allows("/public/../private/secret.txt", Permission.READ)).isFalse();
+        assertThat(compiled.allows("/private/../public/./a.txt", Permission.READ)).isTrue();
+        assertThat(compiled.allows("//public//a.txt", Permission.READ)).isTrue();
+    }
+
+    @Test
+    void hasPermission_ShouldCacheCompiledRights() {
+        User user = user("alice", group("/team", true, false, false));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+
+        assertThat(permissionService.hasPermission("alice", "/team/a", Permission.READ)).isTrue();
+        assertThat(permissionService.hasPermission("alice", "/team/b", Permission.WRITE)).isFalse();
+
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    void invalidateUser_ShouldRecompileRights() {
+        User user = user("alice", group("/team", true, false, false));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+        assertThat(permissionService.hasPermission("alice", "/team/a", Permission.WRITE)).isFalse();
+
+        user.getGroups().add(group("/team", false, true, false));
+        permissionService.invalidateUser("alice");
+
+        assertThat(permissionService.hasPermission("alice", "/team/a", Permission.WRITE)).isTrue();
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void checkPermission_ShouldAllowAdminsEverywhere() {
+        User admin = user("admin");
+        admin.getRoles().add(Role.ROLE_ADMIN);
+        when(userRepository.findByUsername("admin")).thenReturn(Optional.of(admin));
+
+        permissionService.checkPermission("admin", "/anything", Permission.DELETE);
+    }
+
+    @Test
+    void checkPermission_ShouldDenyMissingPermission() {
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(user("bob")));
+
+        assertThatThrownBy(() -> permissionService.checkPermission("bob", "/team/a", Permission.READ))
+            .isInstanceOf(AfsException.class)
+            .satisfies(e -> assertThat(((AfsException) e).getErrorCode()).isEqualTo(ErrorCode.ACCESS_DENIED));
+    }
+
+    @Test
+    void checkPermission_ShouldDoNothingWhenNotEnforced() {
+        properties.setEnforcePermissions(false);
+
+        permissionService.checkPermission("bob", "/team/a", Permission.READ);
+    }
+
+    private User user(String username, Group... groups) {
+        User user = TestDataUtil.createTestUser(username);
+        user.setGroups(new HashSet<>(Set.of(groups)));
+        return user;
+    }
+
+    private Group group(String basePath, boolean read, boolean write, boolean delete) {
+        Group group = TestDataUtil.createTestGroup(basePath.replace('/', '-') + read + write + delete);
+        group.setBasePath(basePath);
+        GroupPermission permission = new GroupPermission();
+        permission.setGroup(group);
+        permission.setCanRead(read);
+        permission.setCanWrite(write);
+        permission.setCanDelete(delete);
+        group.setPermissions(permission);
+        return group;
+    }
+}
@@ -0,0 +1,177 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Group;
+import com.sme.afs.model.GroupUsage;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.repository.GroupRepository;
+import com.sme.afs.repository.GroupUsageRepository;
+import com.sme.afs.service.filesystem.DirectoryMonitorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({QuotaService.class, FileIndexService.class, SharedFolderProperties.class})
+// Counter rows are written in separate transactions, which must see the groups of the test
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QuotaServiceTest {
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private FileIndexService fileIndexService;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private GroupUsageRepository groupUsageRepository;
+
+    @Autowired
+    private FileEntityRepository fileEntityRepository;
+
+    @Autowired
+    private SharedFolderProperties properties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private DirectoryMonitorService directoryMonitorService;
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setBasePath(root.toString());
+        Files.createDirectories(root.resolve("team/sub"));
+        Files.writeString(root.resolve("team/a.txt"), "aa");
+        Files.writeString(root.resolve("team/sub/b.txt"), "bbb");
+        Files.writeString(root.resolve("other.txt"), "x");
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupUsageRepository.deleteAll();
+        fileEntityRepository.deleteAll();
+        groupRepository.deleteAll();
+        quotaService.reconcile();
+    }
+
+    @Test
+    void indexer_ShouldAdjustUsageOfGroupsContainingChangedFiles() throws IOException {
+        Group team = group("team", "/team", null, null);
+        Group sub = group("sub", "/team/sub", null, null);
+        quotaService.reconcile();
+
+        fileIndexService.crawl(root);
+
+        assertUsage(team, 5, 2);
+        assertUsage(sub, 3, 1);
+
+        Files.writeString(root.resolve("team/a.txt"), "aaaa");
+        fileIndexService.indexPath(root, root.resolve("team/a.txt"), false);
+        FileSystemUtils.deleteRecursively(root.resolve("team/sub"));
+        fileIndexService.indexPath(root, root.resolve("team/sub"), false);
+
+        assertUsage(team, 4, 1);
+        assertUsage(sub, 0, 0);
+    }
+
+    @Test
+    void reserve_ShouldRejectWritesThatWouldExceedQuota() {
+        group("team", "/team", 100L, 2L);
+        quotaService.reconcile();
+
+        QuotaService.Reservation first = quotaService.reserve("/team/a.bin", 60, 1);
+        assertThatThrownBy(() -> quotaService.reserve("/team/b.bin", 50, 1))
+            .isInstanceOf(AfsException.class)
+            .extracting(e -> ((AfsException) e).getErrorCode())
+            .isEqualTo(ErrorCode.QUOTA_EXCEEDED);
+        quotaService.reserve("/other/c.bin", 1_000, 1);
+
+        quotaService.release(first);
+        quotaService.reserve("/team/b.bin", 50, 1);
+        // Counting the file settles its reservation instead of adding to it
+        QuotaService.UsageDelta delta = new QuotaService.UsageDelta();
+        delta.add("/team/b.bin", 50, 1);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> quotaService.apply(delta));
+
+        quotaService.reserve("/team/c.bin", 50, 1);
+        assertThatThrownBy(() -> quotaService.reserve("/team/d.bin", 0, 1))
+            .isInstanceOf(AfsException.class);
+    }
+
+    @Test
+    void reserveTransfer_ShouldChargeOnlyGroupsTheEntryEnters() {
+        group("team", "/team", 6L, null);
+        group("other", "/other", 1L, null);
+        quotaService.reconcile();
+        fileIndexService.crawl(root);
+
+        // Already counted by team, and other is not entered
+        quotaService.reserveTransfer("/team/sub", "/team/moved", true);
+        assertThatThrownBy(() -> quotaService.reserveTransfer("/team/sub", "/other/sub", true))
+            .isInstanceOf(AfsException.class)
+            .extracting(e -> ((AfsException) e).getErrorCode())
+            .isEqualTo(ErrorCode.QUOTA_EXCEEDED);
+        assertThatThrownBy(() -> quotaService.reserveTransfer("/team/sub", "/team/copy", false))
+            .isInstanceOf(AfsException.class);
+        quotaService.reserveTransfer("/other.txt", "/team/other.txt", true);
+    }
+
+    @Test
+    void reconcile_ShouldCorrectDriftedCounters() {
+        Group team = group("team", "/team", null, null);
+        quotaService.reconcile();
+        fileIndexService.crawl(root);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            groupUsageRepository.setUsage(team.getId(), 999, 9));
+
+        quotaService.reconcile();
+
+        assertUsage(team, 5, 2);
+        assertThat(quotaService.getUsage(team.getId()).getReconciledAt()).isNotNull();
+    }
+
+    private Group group(String name, String basePath, Long quotaBytes, Long quotaFiles) {
+        Group group = new Group();
+        group.setName(name);
+        group.setBasePath(basePath);
+        group.setQuotaBytes(quotaBytes);
+        group.setQuotaFiles(quotaFiles);
+        return groupRepository.save(group);
+    }
+
+    private void assertUsage(Group group, long bytes, long files) {
+        GroupUsage usage = groupUsageRepository.findById(group.getId()).orElseThrow();
+        assertThat(usage.getUsedBytes()).isEqualTo(bytes);
+        assertThat(usage.getFileCount()).isEqualTo(files);
+    }
+}
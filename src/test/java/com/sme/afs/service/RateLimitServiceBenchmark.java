@@ -0,0 +1,84 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.BlobUrlProperties;
+import com.sme.afs.service.ratelimit.ClientAddressKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the per-download rate limit checks of {@link RateLimitService}.
+ * Limits are set high enough that every request is allowed, so the benchmark measures
+ * limiter overhead rather than rejections.
+ * <p>
+ * Run from the IDE or with:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sme.afs.service.RateLimitServiceBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class RateLimitServiceBenchmark {
+
+    /**
+     * Number of distinct clients the requests are spread over.
+     */
+    @Param({"100", "5000"})
+    public int clients;
+
+    private RateLimitService rateLimitService;
+    private String[] addresses;
+    private String[] usernames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BlobUrlProperties properties = new BlobUrlProperties();
+        properties.getRateLimit().setDownloadPerIp(new BlobUrlProperties.RateLimit.DownloadLimit(Integer.MAX_VALUE, 1));
+        properties.getRateLimit().setDownloadPerUser(new BlobUrlProperties.RateLimit.DownloadLimit(Integer.MAX_VALUE, 1));
+        properties.getRateLimit().setTokenValidation(new BlobUrlProperties.RateLimit.TokenLimit(Integer.MAX_VALUE, 60));
+        rateLimitService = new RateLimitService(properties);
+
+        addresses = new String[clients];
+        usernames = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            addresses[i] = (i % 2 == 0)
+                    ? "10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF)
+                    : "2001:db8::" + Integer.toHexString(i);
+            usernames[i] = "user" + i;
+        }
+    }
+
+    @Benchmark
+    public boolean downloadChecks() {
+        int i = ThreadLocalRandom.current().nextInt(clients);
+        ClientAddressKey client = ClientAddressKey.of(addresses[i]);
+        return rateLimitService.tryAcquireDownloadByIp(client, addresses[i])
+                & rateLimitService.tryAcquireDownloadByUser(usernames[i])
+                & rateLimitService.tryAcquireTokenValidation(client, addresses[i]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimitServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
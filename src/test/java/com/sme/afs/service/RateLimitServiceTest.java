@@ -0,0 +1,113 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.BlobUrlProperties;
+import com.sme.afs.service.ratelimit.ClientAddressKey;
+import com.sme.afs.service.ratelimit.KeyedRateLimiter;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Refill;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for RateLimitService.
+ * Tests the per-IP, per-user and token validation limiters and client address keys.
+ */
+class RateLimitServiceTest {
+
+    private BlobUrlProperties blobUrlProperties;
+    private RateLimitService rateLimitService;
+
+    @BeforeEach
+    void setUp() {
+        blobUrlProperties = new BlobUrlProperties();
+        blobUrlProperties.getRateLimit().setDownloadPerIp(new BlobUrlProperties.RateLimit.DownloadLimit(3, 5));
+        blobUrlProperties.getRateLimit().setDownloadPerUser(new BlobUrlProperties.RateLimit.DownloadLimit(2, 5));
+        blobUrlProperties.getRateLimit().setTokenValidation(new BlobUrlProperties.RateLimit.TokenLimit(4, 60));
+        rateLimitService = new RateLimitService(blobUrlProperties);
+    }
+
+    @Test
+    void testDownloadByIp_LimitsPerAddress() {
+        ClientAddressKey first = ClientAddressKey.of("192.168.1.10");
+        ClientAddressKey second = ClientAddressKey.of("192.168.1.11");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimitService.tryAcquireDownloadByIp(first, "192.168.1.10")).isTrue();
+        }
+        assertThat(rateLimitService.tryAcquireDownloadByIp(first, "192.168.1.10")).isFalse();
+        assertThat(rateLimitService.tryAcquireDownloadByIp(second, "192.168.1.11")).isTrue();
+    }
+
+    @Test
+    void testDownloadByUser_LimitsPerUser() {
+        assertThat(rateLimitService.tryAcquireDownloadByUser("alice")).isTrue();
+        assertThat(rateLimitService.tryAcquireDownloadByUser("alice")).isTrue();
+        assertThat(rateLimitService.tryAcquireDownloadByUser("alice")).isFalse();
+        assertThat(rateLimitService.tryAcquireDownloadByUser("bob")).isTrue();
+        assertThat(rateLimitService.tryAcquireDownloadByUser(" ")).isTrue();
+    }
+
+    @Test
+    void testTokenValidation_IndependentOfDownloadLimit() {
+        ClientAddressKey client = ClientAddressKey.of("10.0.0.1");
+        for (int i = 0; i < 3; i++) {
+            rateLimitService.tryAcquireDownloadByIp(client, "10.0.0.1");
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(rateLimitService.tryAcquireTokenValidation(client, "10.0.0.1")).isTrue();
+        }
+        assertThat(rateLimitService.tryAcquireTokenValidation(client, "10.0.0.1")).isFalse();
+    }
+
+    @Test
+    void testDisabled_AllowsEverything() {
+        blobUrlProperties.getRateLimit().setEnabled(false);
+        ClientAddressKey client = ClientAddressKey.of("10.0.0.1");
+
+        assertThat(rateLimitService.isEnabled()).isFalse();
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimitService.tryAcquireDownloadByIp(client, "10.0.0.1")).isTrue();
+        }
+    }
+
+    @Test
+    void testClientAddressKey_NormalizesAddresses() {
+        assertThat(ClientAddressKey.of("127.0.0.1")).isEqualTo(ClientAddressKey.of("::ffff:127.0.0.1"));
+        assertThat(ClientAddressKey.of("2001:db8::1")).isEqualTo(ClientAddressKey.of("2001:0db8:0:0:0:0:0:1"));
+        assertThat(ClientAddressKey.of("127.0.0.1")).isNotEqualTo(ClientAddressKey.of("127.0.0.2"));
+        assertThat(ClientAddressKey.of("unknown")).isEqualTo(ClientAddressKey.of("unknown"));
+        assertThat(ClientAddressKey.of("unknown")).isNotEqualTo(ClientAddressKey.of("localhost"));
+    }
+
+    @Test
+    void testKeyedRateLimiter_EvictsOnlyRefilledBuckets() {
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(
+            "test", () -> Bandwidth.classic(2, Refill.intervally(2, Duration.ofMinutes(5))), 100);
+        limiter.tryAcquire("active");
+        limiter.tryAcquire("idle");
+        limiter.tryAcquire("idle");
+
+        assertThat(limiter.evictRefilled()).isZero();
+        assertThat(limiter.size()).isEqualTo(2);
+
+        // Eviction must not reset the state of a depleted bucket
+        assertThat(limiter.tryAcquire("idle")).isFalse();
+    }
+
+    @Test
+    void testKeyedRateLimiter_StaysWithinMaxSize() {
+        KeyedRateLimiter<Integer> limiter = new KeyedRateLimiter<>(
+            "test", () -> Bandwidth.classic(1, Refill.intervally(1, Duration.ofMinutes(5))), 100);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire(i);
+        }
+
+        assertThat(limiter.size()).isLessThanOrEqualTo(100);
+    }
+}
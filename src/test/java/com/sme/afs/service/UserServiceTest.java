@@ -44,6 +44,9 @@ class UserServiceTest {
     @Mock
     private SessionService sessionService;
 
+    @Mock
+    private PermissionService permissionService;
+
     @InjectMocks
     private UserService userService;
 
@@ -0,0 +1,140 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.User;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.model.VirtualPathTreeVersion;
+import com.sme.afs.repository.UserRepository;
+import com.sme.afs.repository.VirtualPathRepository;
+import com.sme.afs.repository.VirtualPathTreeVersionRepository;
+import com.sme.afs.util.TestDataUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({VirtualPathCache.class, SharedFolderProperties.class})
+class VirtualPathCacheTest {
+
+    @Autowired
+    private VirtualPathCache virtualPathCache;
+
+    @Autowired
+    private VirtualPathRepository virtualPathRepository;
+
+    @Autowired
+    private VirtualPathTreeVersionRepository versionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SharedFolderProperties properties;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(TestDataUtil.createTestUser("cacheuser"));
+        properties.setVirtualPathCacheMaxEntries(100_000);
+        properties.setVirtualPathCacheCheckIntervalMillis(60_000);
+        virtualPathCache.invalidate();
+    }
+
+    @Test
+    void lookup_ShouldLoadDirectoriesLazily() {
+        VirtualPath docs = save("/docs", null);
+        VirtualPath sub = save("/docs/sub", docs);
+        save("/docs/sub/a", sub);
+        save("/other", null);
+
+        assertThat(virtualPathCache.lookup("/docs/sub/a")).hasValueSatisfying(entry -> {
+            assertThat(entry.virtualPath()).isEqualTo("/docs/sub/a");
+            assertThat(entry.directory()).isTrue();
+        });
+        // "/", "/docs" and "/docs/sub" have been loaded
+        assertThat(virtualPathCache.size()).isEqualTo(4);
+        assertThat(virtualPathCache.exists("/docs/missing")).isFalse();
+        assertThat(virtualPathCache.parent("/docs/sub").orElseThrow().id()).isEqualTo(docs.getId());
+        assertThat(virtualPathCache.lookup("/").orElseThrow().directory()).isTrue();
+        assertThat(virtualPathCache.children("/docs"))
+            .extracting(VirtualPathCache.Entry::virtualPath).containsExactly("/docs/sub");
+    }
+
+    @Test
+    void lookup_ShouldStayWithinMaxEntries() {
+        properties.setVirtualPathCacheMaxEntries(3);
+        VirtualPath a = save("/a", null);
+        VirtualPath b = save("/b", null);
+        save("/a/1", a);
+        save("/a/2", a);
+        save("/b/1", b);
+        save("/b/2", b);
+
+        assertThat(virtualPathCache.exists("/a/1")).isTrue();
+        assertThat(virtualPathCache.exists("/b/2")).isTrue();
+
+        assertThat(virtualPathCache.size()).isLessThanOrEqualTo(4);
+        assertThat(virtualPathCache.exists("/a/2")).isTrue();
+    }
+
+    @Test
+    void lookup_ShouldDetectChangesByOtherNodes() {
+        properties.setVirtualPathCacheCheckIntervalMillis(0);
+        save("/docs", null);
+        assertThat(virtualPathCache.exists("/docs")).isTrue();
+
+        // Another node deletes the path and bumps the tree version
+        VirtualPath docs = virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/docs").orElseThrow();
+        docs.setDeleted(true);
+        virtualPathRepository.saveAndFlush(docs);
+        assertThat(virtualPathCache.exists("/docs")).isTrue();
+
+        incrementVersion();
+        assertThat(virtualPathCache.exists("/docs")).isFalse();
+    }
+
+    @Test
+    void recordCreated_ShouldUpdateLoadedDirectory() {
+        VirtualPath docs = save("/docs", null);
+        assertThat(virtualPathCache.children("/docs")).isEmpty();
+
+        VirtualPath created = save("/docs/new", docs);
+        virtualPathCache.recordCreated(created);
+
+        assertThat(virtualPathCache.exists("/docs/new")).isTrue();
+    }
+
+    private void incrementVersion() {
+        if (versionRepository.incrementVersion() == 0) {
+            VirtualPathTreeVersion version = new VirtualPathTreeVersion();
+            version.setId(VirtualPathTreeVersion.SINGLETON_ID);
+            version.setVersion(1);
+            versionRepository.saveAndFlush(version);
+        }
+    }
+
+    private VirtualPath save(String path, VirtualPath parent) {
+        VirtualPath vPath = new VirtualPath();
+        vPath.setVirtualPath(path);
+        vPath.setPhysicalPath("/data" + path);
+        vPath.setName(path.substring(path.lastIndexOf('/') + 1));
+        vPath.setDirectory(true);
+        vPath.setParent(parent);
+        vPath.setCreatedAt(LocalDateTime.now());
+        vPath.setCreatedBy(user);
+        vPath.setModifiedAt(LocalDateTime.now());
+        vPath.setModifiedBy(user);
+        return virtualPathRepository.save(vPath);
+    }
+}
@@ -0,0 +1,133 @@
+package com.sme.afs.service;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.User;
+import com.sme.afs.model.VirtualPath;
+import com.sme.afs.repository.UserRepository;
+import com.sme.afs.repository.VirtualPathRepository;
+import com.sme.afs.util.TestDataUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({VirtualPathService.class, VirtualPathCache.class, SharedFolderProperties.class})
+class VirtualPathServiceTest {
+
+    @Autowired
+    private VirtualPathService virtualPathService;
+
+    @Autowired
+    private VirtualPathRepository virtualPathRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VirtualPathCache virtualPathCache;
+
+    @MockBean
+    private SharedFolderValidator sharedFolderValidator;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(TestDataUtil.createTestUser("vpathuser"));
+        virtualPathCache.invalidate();
+    }
+
+    @Test
+    void deleteDirectory_ShouldMarkWholeSubtreeAndReturnCount() {
+        VirtualPath root = save("/docs", null);
+        VirtualPath sub = save("/docs/sub", root);
+        save("/docs/sub/a", sub);
+        save("/docs/b", root);
+        save("/docsx", null);
+
+        int deleted = virtualPathService.deleteDirectory("/docs", user);
+
+        assertThat(deleted).isEqualTo(4);
+        assertThat(virtualPathRepository.existsByVirtualPathAndIsDeletedFalse("/docs/sub/a")).isFalse();
+        assertThat(virtualPathRepository.existsByVirtualPathAndIsDeletedFalse("/docsx")).isTrue();
+    }
+
+    @Test
+    void moveDirectory_ShouldRewriteDescendantPaths() {
+        VirtualPath projects = save("/projects", null);
+        VirtualPath archive = save("/archive", null);
+        VirtualPath alpha = save("/projects/alpha", projects);
+        VirtualPath src = save("/projects/alpha/src", alpha);
+        save("/projects/alpha/src/main", src);
+        save("/projects/alphabet", projects);
+
+        VirtualPath moved = virtualPathService.moveDirectory("/projects/alpha", "/archive/alpha-2024", user);
+
+        assertThat(moved.getVirtualPath()).isEqualTo("/archive/alpha-2024");
+        assertThat(moved.getName()).isEqualTo("alpha-2024");
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/archive/alpha-2024/src/main")
+            .orElseThrow().getDepth()).isEqualTo(4);
+        assertThat(virtualPathRepository.findChildrenByPath("/archive/alpha-2024"))
+            .extracting(VirtualPath::getVirtualPath).containsExactly("/archive/alpha-2024/src");
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/archive/alpha-2024").orElseThrow()
+            .getParent().getId()).isEqualTo(archive.getId());
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/projects/alpha/src")).isEmpty();
+        assertThat(virtualPathRepository.findByVirtualPathAndIsDeletedFalse("/projects/alphabet")).isPresent();
+    }
+
+    @Test
+    void moveDirectory_ShouldRejectMoveIntoOwnSubtree() {
+        VirtualPath root = save("/a", null);
+        save("/a/b", root);
+
+        assertThatThrownBy(() -> virtualPathService.moveDirectory("/a", "/a/b/c", user))
+            .isInstanceOf(AfsException.class)
+            .hasMessageContaining("own subdirectory");
+    }
+
+    @Test
+    void moveDirectory_ShouldRejectExistingTarget() {
+        save("/a", null);
+        save("/b", null);
+
+        assertThatThrownBy(() -> virtualPathService.moveDirectory("/a", "/b", user))
+            .isInstanceOf(AfsException.class)
+            .satisfies(e -> assertThat(((AfsException) e).getErrorCode()).isEqualTo(ErrorCode.CONFLICT));
+    }
+
+    @Test
+    void isAncestorPath_ShouldCompareWholeSegments() {
+        assertThat(VirtualPath.isAncestorPath("/a", "/a")).isTrue();
+        assertThat(VirtualPath.isAncestorPath("/a", "/a/b")).isTrue();
+        assertThat(VirtualPath.isAncestorPath("/a", "/ab")).isFalse();
+        assertThat(VirtualPath.isAncestorPath("/", "/a")).isTrue();
+        assertThat(VirtualPath.isAncestorPath("/a/b", "/a")).isFalse();
+    }
+
+    private VirtualPath save(String path, VirtualPath parent) {
+        VirtualPath vPath = new VirtualPath();
+        vPath.setVirtualPath(path);
+        vPath.setPhysicalPath("/data" + path);
+        vPath.setName(path.substring(path.lastIndexOf('/') + 1));
+        vPath.setDirectory(true);
+        vPath.setParent(parent);
+        vPath.setCreatedAt(LocalDateTime.now());
+        vPath.setCreatedBy(user);
+        vPath.setModifiedAt(LocalDateTime.now());
+        vPath.setModifiedBy(user);
+        return virtualPathRepository.save(vPath);
+    }
+}
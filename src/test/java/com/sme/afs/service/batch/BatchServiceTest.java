@@ -0,0 +1,152 @@
+package com.sme.afs.service.batch;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.BatchItemResult;
+import com.sme.afs.dto.BatchResponse;
+import com.sme.afs.dto.JobResponse;
+import com.sme.afs.dto.MoveRequest;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Group;
+import com.sme.afs.model.GroupPermission;
+import com.sme.afs.service.FileService;
+import com.sme.afs.service.PermissionService;
+import com.sme.afs.service.permission.CompiledPermissions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for BatchService.
+ */
+class BatchServiceTest {
+
+    private FileService fileService;
+    private PermissionService permissionService;
+    private SharedFolderProperties properties;
+    private BatchService batchService;
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fileService = mock(FileService.class);
+        permissionService = mock(PermissionService.class);
+        properties = new SharedFolderProperties();
+        properties.setBatchParallelism(4);
+        batchService = new BatchService(fileService, permissionService, properties);
+        when(fileService.resolveExisting(anyString())).thenReturn(Files.createFile(root.resolve("file.txt")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchService.shutdown();
+    }
+
+    @Test
+    void delete_ShouldValidateWholeBatchBeforeDeletingValidPaths() throws IOException {
+        when(fileService.resolveExisting("/docs")).thenReturn(Files.createDirectory(root.resolve("docs")));
+        when(fileService.resolveExisting("/missing.txt"))
+            .thenThrow(new AfsException(ErrorCode.NOT_FOUND, "File not found"));
+        JobResponse job = new JobResponse();
+        job.setId("job-1");
+        when(fileService.submitDelete("/docs", "user")).thenReturn(job);
+
+        BatchResponse response = batchService.delete(
+            List.of("/docs", "/docs/a.txt", "/b.txt", "/b.txt", "/missing.txt", "/c.txt"), "user");
+
+        assertThat(response.getResults()).extracting(BatchItemResult::getError)
+            .containsExactly(null, "VALIDATION_FAILED", null, "VALIDATION_FAILED", "NOT_FOUND", null);
+        assertThat(response.getSucceeded()).isEqualTo(3);
+        assertThat(response.getFailed()).isEqualTo(3);
+        assertThat(response.getResults()).extracting(BatchItemResult::getJobId)
+            .containsExactly("job-1", null, null, null, null, null);
+        // Directory trees are deleted by a job, not on the request thread
+        verify(fileService, never()).delete("/docs");
+        verify(fileService, times(1)).delete("/b.txt");
+        verify(fileService).delete("/c.txt");
+        verify(fileService, never()).delete("/docs/a.txt");
+        verify(fileService, never()).delete("/missing.txt");
+    }
+
+    @Test
+    void delete_ShouldCheckPermissionsOnceAndReportFailuresPerItem() {
+        Group group = new Group();
+        group.setBasePath("/shared");
+        GroupPermission delete = new GroupPermission();
+        delete.setGroup(group);
+        delete.setCanDelete(true);
+        group.setPermissions(delete);
+        when(permissionService.isEnforced()).thenReturn(true);
+        when(permissionService.getPermissions("user")).thenReturn(CompiledPermissions.compile(List.of(group)));
+        doThrow(new IllegalStateException("disk")).when(fileService).delete("/shared/b.txt");
+
+        BatchResponse response = batchService.delete(List.of("/private/a.txt", "/shared/a.txt", "/shared/b.txt"), "user");
+
+        assertThat(response.getResults()).extracting(BatchItemResult::getError)
+            .containsExactly("ACCESS_DENIED", null, "INTERNAL_ERROR");
+        verify(permissionService, times(1)).getPermissions("user");
+        verify(fileService, never()).delete("/private/a.txt");
+    }
+
+    @Test
+    void move_ShouldRejectMovesThatDependOnEachOther() {
+        BatchResponse response = batchService.move(List.of(
+            new MoveRequest("/a", "/archive/a"),
+            new MoveRequest("/a/x.txt", "/archive/x.txt"),
+            new MoveRequest("/b", "/b/inner"),
+            new MoveRequest("/c.txt", "/a/c.txt"),
+            new MoveRequest("/d.txt", "/archive/d.txt")), "user");
+
+        assertThat(response.getResults()).extracting(BatchItemResult::isSuccess)
+            .containsExactly(true, false, false, false, true);
+        verify(fileService).move("/a", "/archive/a");
+        verify(fileService).move("/d.txt", "/archive/d.txt");
+        verify(fileService, times(2)).move(anyString(), anyString());
+    }
+
+    @Test
+    void createDirectories_ShouldCreateParentsBeforeChildren() {
+        when(fileService.resolveNewPath("/new/child"))
+            .thenThrow(new AfsException(ErrorCode.NOT_FOUND, "Directory not found"));
+
+        BatchResponse response = batchService.createDirectories(List.of("/new/child", "/new", "/other"), "user");
+
+        assertThat(response.getFailed()).isZero();
+        InOrder order = inOrder(fileService);
+        order.verify(fileService).createDirectory("/new");
+        order.verify(fileService).createDirectory("/new/child");
+        verify(fileService, never()).resolveNewPath("/new/child");
+    }
+
+    @Test
+    void batch_ShouldRejectEmptyAndOversizedBatches() {
+        properties.setBatchMaxSize(2);
+
+        assertThatThrownBy(() -> batchService.delete(Collections.emptyList(), "user"))
+            .isInstanceOf(AfsException.class);
+        assertThatThrownBy(() -> batchService.delete(List.of("/a", "/b", "/c"), "user"))
+            .isInstanceOf(AfsException.class);
+        verify(fileService, never()).delete(anyString());
+    }
+}
@@ -0,0 +1,185 @@
+package com.sme.afs.service.copy;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.JobResponse;
+import com.sme.afs.error.ErrorCode;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Job;
+import com.sme.afs.service.FileIndexService;
+import com.sme.afs.service.FileService;
+import com.sme.afs.service.QuotaService;
+import com.sme.afs.service.job.JobContext;
+import com.sme.afs.service.job.JobService;
+import com.sme.afs.service.job.JobTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for CopyService and FileCopier.
+ */
+class CopyServiceTest {
+
+    private static final FileTime MODIFIED = FileTime.from(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @TempDir
+    Path root;
+
+    private FileService fileService;
+    private FileIndexService fileIndexService;
+    private JobService jobService;
+    private QuotaService quotaService;
+    private FileCopier fileCopier;
+    private CopyService copyService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        SharedFolderProperties properties = new SharedFolderProperties();
+        properties.setBasePath(root.toString());
+        fileService = mock(FileService.class);
+        fileIndexService = mock(FileIndexService.class);
+        jobService = mock(JobService.class);
+        quotaService = mock(QuotaService.class);
+        fileCopier = new FileCopier(properties);
+        copyService = new CopyService(fileService, fileIndexService, fileCopier, jobService, quotaService, properties);
+
+        Files.createDirectories(root.resolve("docs/sub/empty"));
+        Files.writeString(root.resolve("docs/a.txt"), "alpha");
+        Files.write(root.resolve("docs/sub/large.bin"), new byte[3 * 1024 * 1024 + 5]);
+        Files.setLastModifiedTime(root.resolve("docs/a.txt"), MODIFIED);
+        Files.setLastModifiedTime(root.resolve("docs/sub"), MODIFIED);
+    }
+
+    @Test
+    void copy_ShouldCopyFileWithinRequest() throws IOException {
+        resolve("/docs/a.txt", "/docs/b.txt");
+        when(jobService.runInline(eq(Job.Type.COPY), eq("user"), eq("/docs/a.txt"), eq("/docs/b.txt"), any()))
+            .thenAnswer(invocation -> {
+                JobTask task = invocation.getArgument(4);
+                task.run(new JobContext("job"));
+                JobResponse job = new JobResponse();
+                job.setState(Job.State.COMPLETED.name());
+                return job;
+            });
+
+        JobResponse job = copyService.copy("/docs/a.txt", "/docs/b.txt", false, "user");
+
+        assertThat(job.getState()).isEqualTo("COMPLETED");
+        assertThat(root.resolve("docs/b.txt")).hasContent("alpha");
+        assertThat(Files.getLastModifiedTime(root.resolve("docs/b.txt"))).isEqualTo(MODIFIED);
+        verify(fileIndexService).refresh(root.resolve("docs/b.txt"), true);
+    }
+
+    @Test
+    void copy_ShouldSubmitDirectoryCopyAsJob() {
+        resolve("/docs", "/backup");
+
+        copyService.copy("/docs", "/backup", true, "user");
+
+        verify(jobService).submit(eq(Job.Type.COPY), eq("user"), eq("/docs"), eq("/backup"), any());
+        verify(jobService, never()).runInline(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void copy_ShouldReserveQuotaOfTargetAndReleaseItWhenJobIsRejected() {
+        resolve("/docs", "/backup");
+        QuotaService.Reservation reservation = mock(QuotaService.Reservation.class);
+        when(quotaService.reserveTransfer("/docs", "/backup", false)).thenReturn(reservation);
+        when(jobService.submit(eq(Job.Type.COPY), eq("user"), eq("/docs"), eq("/backup"), any()))
+            .thenThrow(new AfsException(ErrorCode.TOO_MANY_REQUESTS, "Too many jobs are queued"));
+
+        assertThatThrownBy(() -> copyService.copy("/docs", "/backup", true, "user"))
+            .isInstanceOf(AfsException.class);
+
+        verify(quotaService).release(reservation);
+    }
+
+    @Test
+    void copy_ShouldRejectDirectoriesWithoutRecursiveFlagAndCopiesIntoThemselves() {
+        resolve("/docs", "/backup");
+        assertThatThrownBy(() -> copyService.copy("/docs", "/backup", false, "user"))
+            .isInstanceOf(AfsException.class);
+
+        resolve("/docs", "/docs/sub/copy");
+        assertThatThrownBy(() -> copyService.copy("/docs", "/docs/sub/copy", true, "user"))
+            .isInstanceOf(AfsException.class);
+    }
+
+    @Test
+    void copyTree_ShouldCopyDirectoryTreeAndReportProgress() throws IOException {
+        JobContext context = new JobContext("job");
+        Path target = root.resolve("backup");
+
+        fileCopier.copyTree(root.resolve("docs"), target, context);
+
+        assertThat(target.resolve("a.txt")).hasContent("alpha");
+        assertThat(target.resolve("sub/large.bin")).hasSize(3 * 1024 * 1024 + 5);
+        assertThat(target.resolve("sub/empty")).isEmptyDirectory();
+        assertThat(Files.getLastModifiedTime(target.resolve("sub"))).isEqualTo(MODIFIED);
+        assertThat(Files.getLastModifiedTime(target.resolve("a.txt"))).isEqualTo(MODIFIED);
+    }
+
+    @Test
+    void copyTree_ShouldRemovePartialCopyWhenCancelled() {
+        AtomicInteger checks = new AtomicInteger();
+        JobContext context = new JobContext("job") {
+            @Override
+            public boolean isCancelRequested() {
+                // Cancel once the copy is under way
+                return checks.incrementAndGet() > 6;
+            }
+        };
+        Path target = root.resolve("backup");
+
+        assertThatThrownBy(() -> fileCopier.copyTree(root.resolve("docs"), target, context))
+            .isInstanceOf(InterruptedIOException.class);
+
+        assertThat(target).doesNotExist();
+        assertThat(root.resolve("docs/a.txt")).hasContent("alpha");
+    }
+
+    @Test
+    void fileCopier_ShouldNotOverwriteExistingTarget() throws IOException {
+        Path target = root.resolve("docs/existing.txt");
+        Files.writeString(target, "keep");
+
+        assertThatThrownBy(() -> fileCopier.copy(root.resolve("docs/a.txt"), target, () -> false, bytes -> { }))
+            .isInstanceOf(IOException.class);
+        assertThat(target).hasContent("keep");
+    }
+
+    @Test
+    void fileCopier_ShouldOnlyDisableReflinksWhenFilesystemsCannotClone() {
+        assertThat(FileCopier.isCloneUnsupported(
+            "cp: failed to clone '/b/x' from '/a/x': Operation not supported")).isTrue();
+        assertThat(FileCopier.isCloneUnsupported(
+            "cp: failed to clone '/b/x' from '/a/x': Invalid cross-device link")).isTrue();
+        assertThat(FileCopier.isCloneUnsupported("cp: unrecognized option '--reflink=always'")).isTrue();
+        assertThat(FileCopier.isCloneUnsupported(
+            "cp: error writing '/b/x': No space left on device")).isFalse();
+        assertThat(FileCopier.isCloneUnsupported("cp: cannot open '/a/x' for reading: Permission denied")).isFalse();
+        assertThat(FileCopier.isCloneUnsupported("")).isFalse();
+    }
+
+    private void resolve(String source, String target) {
+        when(fileService.resolveExisting(eq(source))).thenReturn(root.resolve(source.substring(1)));
+        when(fileService.resolveNewPath(eq(target))).thenReturn(root.resolve(target.substring(1)));
+    }
+}
@@ -0,0 +1,115 @@
+package com.sme.afs.service.filesystem;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.filesystem.DirectoryChangeBatch;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class DefaultDirectoryMonitorServiceTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path root;
+
+    private DirectoryChangeCoalescer coalescer;
+    private DefaultDirectoryMonitorService monitorService;
+
+    @BeforeEach
+    void setUp() {
+        SharedFolderProperties properties = new SharedFolderProperties();
+        properties.setMonitorCoalesceWindowMillis(50);
+        coalescer = new DirectoryChangeCoalescer(eventPublisher, properties);
+        monitorService = new DefaultDirectoryMonitorService(coalescer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitorService.destroy();
+        coalescer.shutdown();
+    }
+
+    @Test
+    void startMonitoring_ShouldWatchWholeTree() throws IOException {
+        Files.createDirectories(root.resolve("a/b/c"));
+        Files.createDirectories(root.resolve("d"));
+
+        monitorService.startMonitoring(root);
+
+        assertThat(monitorService.getWatchedDirectoryCount()).isEqualTo(5);
+        assertThat(monitorService.isMonitoring(root.resolve("a/b/c"))).isTrue();
+
+        Files.writeString(root.resolve("a/b/c/file.txt"), "x");
+
+        verify(eventPublisher, timeout(TIMEOUT_MS)).publishEvent(
+            (Object) argThat(event(root.resolve("a/b/c/file.txt"), DirectoryChangeEvent.EventType.CREATED)));
+    }
+
+    @Test
+    void newSubdirectories_ShouldBeRegisteredRecursively() throws IOException {
+        monitorService.startMonitoring(root);
+
+        Files.createDirectories(root.resolve("new"));
+        verify(eventPublisher, timeout(TIMEOUT_MS)).publishEvent(
+            (Object) argThat(event(root.resolve("new"), DirectoryChangeEvent.EventType.CREATED)));
+        waitUntilMonitoring(root.resolve("new"));
+
+        Files.writeString(root.resolve("new/file.txt"), "x");
+
+        verify(eventPublisher, timeout(TIMEOUT_MS)).publishEvent(
+            (Object) argThat(event(root.resolve("new/file.txt"), DirectoryChangeEvent.EventType.CREATED)));
+    }
+
+    @Test
+    void deletedAndStoppedDirectories_ShouldBeUnregistered() throws IOException {
+        Files.createDirectories(root.resolve("gone/deep"));
+        monitorService.startMonitoring(root);
+
+        Files.delete(root.resolve("gone/deep"));
+        Files.delete(root.resolve("gone"));
+
+        verify(eventPublisher, timeout(TIMEOUT_MS)).publishEvent(
+            (Object) argThat(event(root.resolve("gone"), DirectoryChangeEvent.EventType.DELETED)));
+        assertThat(monitorService.isMonitoring(root.resolve("gone"))).isFalse();
+
+        monitorService.stopMonitoring(root);
+
+        assertThat(monitorService.isMonitoring(root)).isFalse();
+        assertThat(monitorService.getWatchedDirectoryCount()).isZero();
+    }
+
+    private void waitUntilMonitoring(Path directory) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!monitorService.isMonitoring(directory) && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(monitorService.isMonitoring(directory)).isTrue();
+    }
+
+    private ArgumentMatcher<Object> event(Path path, DirectoryChangeEvent.EventType type) {
+        return argument -> argument instanceof DirectoryChangeBatch batch
+            && batch.getChanges().stream().anyMatch(event ->
+                event.getPath().equals(path.toAbsolutePath().normalize()) && event.getEventType() == type);
+    }
+}
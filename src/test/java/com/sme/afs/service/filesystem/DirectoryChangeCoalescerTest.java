@@ -0,0 +1,124 @@
+package com.sme.afs.service.filesystem;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.filesystem.DirectoryChangeBatch;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent.EventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class DirectoryChangeCoalescerTest {
+
+    private static final Path DIR = Path.of("/srv/shared/docs");
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SharedFolderProperties properties;
+    private DirectoryChangeCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SharedFolderProperties();
+        properties.setMonitorCoalesceWindowMillis(100);
+        properties.setMonitorMaxBatchSize(1_000);
+        properties.setMonitorBatchQueueCapacity(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    void submit_ShouldCollapseEventsPerPathWithinWindow() {
+        coalescer = new DirectoryChangeCoalescer(eventPublisher, properties);
+
+        for (int i = 0; i < 100; i++) {
+            coalescer.submit(event("a.txt", i == 0 ? EventType.CREATED : EventType.MODIFIED));
+        }
+        coalescer.submit(event("b.txt", EventType.MODIFIED));
+        coalescer.submit(event("b.txt", EventType.DELETED));
+        coalescer.submit(event("c", EventType.DELETED));
+        coalescer.submit(event("c", EventType.CREATED));
+
+        ArgumentCaptor<DirectoryChangeBatch> captor = ArgumentCaptor.forClass(DirectoryChangeBatch.class);
+        verify(eventPublisher, timeout(5_000)).publishEvent(captor.capture());
+
+        DirectoryChangeBatch batch = captor.getValue();
+        assertThat(batch.getReceivedEvents()).isEqualTo(104);
+        assertThat(batch.getChanges())
+            .extracting(DirectoryChangeEvent::getPath, DirectoryChangeEvent::getEventType)
+            .containsExactly(
+                tuple(DIR.resolve("a.txt"), EventType.CREATED),
+                tuple(DIR.resolve("b.txt"), EventType.DELETED),
+                tuple(DIR.resolve("c"), EventType.CREATED));
+    }
+
+    @Test
+    void merge_ShouldKeepOverflowUntilDelivered() {
+        DirectoryChangeEvent overflow = new DirectoryChangeEvent(DIR, EventType.OVERFLOW, Instant.now());
+
+        assertThat(DirectoryChangeCoalescer.merge(overflow, new DirectoryChangeEvent(DIR, EventType.MODIFIED, Instant.now())))
+            .isSameAs(overflow);
+        assertThat(DirectoryChangeCoalescer.merge(new DirectoryChangeEvent(DIR, EventType.MODIFIED, Instant.now()), overflow))
+            .isSameAs(overflow);
+    }
+
+    @Test
+    void submit_ShouldDeliverFullBatchesEarlyAndBlockWhenListenersFallBehind() throws InterruptedException {
+        properties.setMonitorCoalesceWindowMillis(60_000);
+        properties.setMonitorMaxBatchSize(2);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+        coalescer = new DirectoryChangeCoalescer(eventPublisher, properties);
+
+        // First batch is taken by the blocked listener, the second fills the queue
+        coalescer.submit(event("1", EventType.CREATED));
+        coalescer.submit(event("2", EventType.CREATED));
+        verify(eventPublisher, timeout(5_000)).publishEvent(any(Object.class));
+        coalescer.submit(event("3", EventType.CREATED));
+        coalescer.submit(event("4", EventType.CREATED));
+
+        Thread watcher = new Thread(() -> {
+            coalescer.submit(event("5", EventType.CREATED));
+            coalescer.submit(event("6", EventType.CREATED));
+        });
+        watcher.start();
+        watcher.join(300);
+        assertThat(watcher.isAlive()).isTrue();
+
+        release.countDown();
+        watcher.join(5_000);
+        assertThat(watcher.isAlive()).isFalse();
+        verify(eventPublisher, timeout(5_000).times(3)).publishEvent(any(Object.class));
+    }
+
+    private DirectoryChangeEvent event(String name, EventType type) {
+        return new DirectoryChangeEvent(DIR.resolve(name), type, Instant.now());
+    }
+}
@@ -0,0 +1,98 @@
+package com.sme.afs.service.filesystem;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.model.filesystem.DirectoryChangeEvent;
+import com.sme.afs.repository.DirectorySnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({DirectoryReconciliationService.class, SharedFolderProperties.class})
+class DirectoryReconciliationServiceTest {
+
+    private static final FileTime INITIAL = FileTime.from(Instant.parse("2024-01-01T00:00:00Z"));
+    private static final FileTime CHANGED = FileTime.from(Instant.parse("2024-02-01T00:00:00Z"));
+
+    @Autowired
+    private DirectoryReconciliationService reconciliationService;
+
+    @Autowired
+    private DirectorySnapshotRepository snapshotRepository;
+
+    @MockBean
+    private DirectoryChangeCoalescer coalescer;
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(root.resolve("a/b"));
+        Files.createDirectories(root.resolve("gone"));
+        Files.writeString(root.resolve("a/b/file.txt"), "x");
+        for (String dir : new String[]{"a/b", "a", "gone", ""}) {
+            Files.setLastModifiedTime(root.resolve(dir), INITIAL);
+        }
+    }
+
+    @Test
+    void scan_ShouldRecordSnapshotOnFirstRunWithoutReportingChanges() {
+        DirectoryReconciliationService.ScanStats first = reconciliationService.scan(root);
+
+        assertThat(first.getDirectories()).isEqualTo(4);
+        assertThat(first.getChanged()).isEqualTo(4);
+        assertThat(snapshotRepository.count()).isEqualTo(4);
+        verify(coalescer, never()).submit(any());
+
+        DirectoryReconciliationService.ScanStats second = reconciliationService.scan(root);
+
+        assertThat(second.getDirectories()).isEqualTo(4);
+        assertThat(second.getChanged()).isZero();
+        verify(coalescer, never()).submit(any());
+    }
+
+    @Test
+    void scan_ShouldReportChangedAndNewDirectoriesAndForgetRemovedOnes() throws IOException {
+        reconciliationService.scan(root);
+
+        Files.writeString(root.resolve("a/b/other.txt"), "y");
+        Files.setLastModifiedTime(root.resolve("a/b"), CHANGED);
+        Files.createDirectories(root.resolve("new/deep"));
+        Files.delete(root.resolve("gone"));
+        Files.setLastModifiedTime(root, CHANGED);
+
+        DirectoryReconciliationService.ScanStats stats = reconciliationService.scan(root);
+
+        ArgumentCaptor<DirectoryChangeEvent> events = ArgumentCaptor.forClass(DirectoryChangeEvent.class);
+        verify(coalescer, times(4)).submit(events.capture());
+        assertThat(events.getAllValues()).allMatch(e -> e.getEventType() == DirectoryChangeEvent.EventType.OVERFLOW)
+            .extracting(DirectoryChangeEvent::getPath)
+            .containsExactlyInAnyOrder(root, root.resolve("a/b"), root.resolve("new"), root.resolve("new/deep"));
+        assertThat(stats.getChanged()).isEqualTo(4);
+        assertThat(stats.getRemoved()).isEqualTo(1);
+        assertThat(snapshotRepository.existsById("/gone")).isFalse();
+        assertThat(snapshotRepository.existsById("/new/deep")).isTrue();
+    }
+}
@@ -0,0 +1,132 @@
+package com.sme.afs.service.job;
+
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.JobResponse;
+import com.sme.afs.exception.AfsException;
+import com.sme.afs.model.Job;
+import com.sme.afs.repository.JobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({JobService.class, SharedFolderProperties.class})
+@TestPropertySource(properties = {"shared-folder.job-threads=1", "shared-folder.job-queue-capacity=1"})
+// Jobs run on worker threads, which must see the rows written by the test
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobServiceTest {
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @AfterEach
+    void tearDown() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void submit_ShouldRunJobAndPersistStateAndProgress() throws Exception {
+        JobResponse queued = jobService.submit(Job.Type.DELETE, "user", "/docs", null, context -> {
+            context.addTotal(3, 30);
+            context.addProcessed(3, 30);
+        });
+
+        JobResponse job = awaitFinished(queued.getId());
+
+        assertThat(queued.getState()).isEqualTo("QUEUED");
+        assertThat(job.getState()).isEqualTo("COMPLETED");
+        assertThat(job.getProcessedItems()).isEqualTo(3);
+        assertThat(job.getTotalBytes()).isEqualTo(30);
+        assertThat(job.getStartedAt()).isNotNull();
+        assertThat(job.getFinishedAt()).isNotNull();
+        assertThat(jobService.listJobs("user")).extracting(JobResponse::getId).containsExactly(job.getId());
+    }
+
+    @Test
+    void submit_ShouldRecordFailures() throws Exception {
+        JobResponse queued = jobService.submit(Job.Type.MOVE, "user", "/a", "/b", context -> {
+            throw new IOException("disk full");
+        });
+
+        JobResponse job = awaitFinished(queued.getId());
+
+        assertThat(job.getState()).isEqualTo("FAILED");
+        assertThat(job.getError()).isEqualTo("disk full");
+    }
+
+    @Test
+    void cancel_ShouldStopRunningAndQueuedJobsAndRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        JobResponse first = jobService.submit(Job.Type.DELETE, "user", "/a", null, context -> {
+            running.countDown();
+            while (true) {
+                context.checkCancelled();
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        JobResponse second = jobService.submit(Job.Type.DELETE, "user", "/b", null, context -> { });
+
+        assertThatThrownBy(() -> jobService.submit(Job.Type.DELETE, "user", "/c", null, context -> { }))
+            .isInstanceOf(AfsException.class);
+
+        jobService.cancel(second.getId(), "user");
+        jobService.cancel(first.getId(), "user");
+
+        assertThat(awaitFinished(first.getId()).getState()).isEqualTo("CANCELLED");
+        assertThat(awaitFinished(second.getId()).getState()).isEqualTo("CANCELLED");
+    }
+
+    @Test
+    void getJob_ShouldHideJobsOfOtherUsers() {
+        JobResponse job = jobService.runInline(Job.Type.COPY, "user", "/a", "/b", context -> { });
+
+        assertThat(job.getState()).isEqualTo("COMPLETED");
+        assertThatThrownBy(() -> jobService.getJob(job.getId(), "other"))
+            .isInstanceOf(AfsException.class);
+    }
+
+    @Test
+    void failInterruptedJobs_ShouldFailJobsLeftUnfinished() {
+        Job orphan = jobRepository.save(new Job(Job.Type.MOVE, "user", "/a", "/b"));
+
+        jobService.failInterruptedJobs();
+
+        JobResponse job = jobService.getJob(orphan.getId(), "user");
+        assertThat(job.getState()).isEqualTo("FAILED");
+        assertThat(job.getError()).isEqualTo("Interrupted by a restart");
+    }
+
+    private JobResponse awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        JobResponse job = jobService.getJob(jobId, "user");
+        while (!Job.State.valueOf(job.getState()).isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            job = jobService.getJob(jobId, "user");
+        }
+        return job;
+    }
+}
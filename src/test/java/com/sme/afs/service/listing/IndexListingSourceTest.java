@@ -0,0 +1,166 @@
+package com.sme.afs.service.listing;
+
+import com.sme.afs.config.SharedFolderConfig;
+import com.sme.afs.config.SharedFolderProperties;
+import com.sme.afs.dto.FileInfoResponse;
+import com.sme.afs.dto.FileListResponse;
+import com.sme.afs.model.FileEntity;
+import com.sme.afs.repository.FileEntityRepository;
+import com.sme.afs.service.FileIndexService;
+import com.sme.afs.service.FileService;
+import com.sme.afs.service.QuotaService;
+import com.sme.afs.service.copy.FileCopier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import(IndexListingSource.class)
+class IndexListingSourceTest {
+
+    private static final Path DIRECTORY = Path.of("/srv/shared/docs");
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Autowired
+    private IndexListingSource indexListingSource;
+
+    @Autowired
+    private FileEntityRepository fileEntityRepository;
+
+    @MockBean
+    private FileIndexService fileIndexService;
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setUp() {
+        when(fileIndexService.isCurrent(any())).thenReturn(true);
+        save("/docs", true, 0, 0);
+        save("/docs/a.txt", false, 30, 3);
+        save("/docs/b.txt", false, 10, 1);
+        save("/docs/c.txt", false, 10, 2);
+        save("/docs/sub", true, 0, 4);
+        save("/docs/sub/d.txt", false, 99, 5);
+    }
+
+    @Test
+    void list_ShouldPageByNameWithTotalsOfWholeDirectory() {
+        DirectoryPage first = indexListingSource.list(DIRECTORY, "/docs",
+            ListingQuery.of(null, null, 3, null)).orElseThrow();
+
+        assertThat(first.entries()).extracting(FileInfoResponse::getName)
+            .containsExactly("a.txt", "b.txt", "c.txt");
+        assertThat(first.entries().get(0).getPath()).isEqualTo("docs/a.txt");
+        assertThat(first.nextCursor()).isNotNull();
+        assertThat(first.totalFiles()).isEqualTo(3);
+        assertThat(first.totalDirectories()).isEqualTo(1);
+        assertThat(first.totalSize()).isEqualTo(50);
+        assertThat(first.source()).isEqualTo(IndexListingSource.NAME);
+
+        DirectoryPage second = indexListingSource.list(DIRECTORY, "/docs",
+            ListingQuery.of(null, null, 3, first.nextCursor())).orElseThrow();
+
+        assertThat(second.entries()).extracting(FileInfoResponse::getName).containsExactly("sub");
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void list_ShouldBreakTiesByNameWhenSortingByKey() {
+        DirectoryPage first = indexListingSource.list(DIRECTORY, "/docs",
+            ListingQuery.of("size", "desc", 2, null)).orElseThrow();
+
+        assertThat(first.entries()).extracting(FileInfoResponse::getName).containsExactly("a.txt", "c.txt");
+
+        DirectoryPage second = indexListingSource.list(DIRECTORY, "/docs",
+            ListingQuery.of("size", "desc", 2, first.nextCursor())).orElseThrow();
+
+        assertThat(second.entries()).extracting(FileInfoResponse::getName).containsExactly("b.txt", "sub");
+        assertThat(second.nextCursor()).isNull();
+
+        DirectoryPage byModified = indexListingSource.list(DIRECTORY, "/docs",
+            ListingQuery.of("modifiedAt", "asc", null, null)).orElseThrow();
+
+        assertThat(byModified.entries()).extracting(FileInfoResponse::getName)
+            .containsExactly("b.txt", "c.txt", "a.txt", "sub");
+    }
+
+    @Test
+    void list_ShouldDeferToDiskWhenIndexIsNotCurrentOrDirectoryUnknown() {
+        assertThat(indexListingSource.list(DIRECTORY, "/missing", ListingQuery.ALL)).isEmpty();
+        assertThat(indexListingSource.list(DIRECTORY, "/docs/a.txt", ListingQuery.ALL)).isEmpty();
+
+        when(fileIndexService.isCurrent(any())).thenReturn(false);
+
+        assertThat(indexListingSource.list(DIRECTORY, "/docs", ListingQuery.ALL)).isEmpty();
+    }
+
+    @Test
+    void list_ShouldContinueCursorWhenListingSwitchesBetweenIndexAndDisk() throws IOException {
+        // Case and punctuation order differently under a linguistic collation than by code point
+        List<String> names = List.of("B.txt", "_z.txt", "a.txt", "b.txt", "docs");
+        Files.createDirectory(root.resolve("docs"));
+        for (String name : names.subList(0, 4)) {
+            Files.createFile(root.resolve(name));
+            save("/" + name, false, 0, 0);
+        }
+        // Neither source lists system directories, upload staging files or symbolic links
+        Files.createDirectories(root.resolve("system/trash"));
+        Files.createFile(root.resolve(".a.txt.123e4567-e89b-12d3-a456-426614174000.upload"));
+        Files.createSymbolicLink(root.resolve("link"), root.resolve("a.txt"));
+        SharedFolderConfig config = mock(SharedFolderConfig.class);
+        when(config.getBasePath()).thenReturn(root.toString());
+        FileService fileService = new FileService(config, new SharedFolderProperties(), fileIndexService,
+            null, null, null, mock(FileCopier.class), mock(QuotaService.class), indexListingSource);
+
+        for (boolean startFromIndex : List.of(true, false)) {
+            List<String> listed = new ArrayList<>();
+            String cursor = null;
+            boolean fromIndex = startFromIndex;
+            do {
+                when(fileIndexService.isCurrent(any())).thenReturn(fromIndex);
+                FileListResponse page = fileService.listDirectory("/", ListingQuery.of(null, null, 1, cursor));
+                assertThat(page.getSource()).isEqualTo(fromIndex ? IndexListingSource.NAME : "disk");
+                assertThat(page.getTotalFiles()).isEqualTo(4);
+                assertThat(page.getTotalDirectories()).isEqualTo(1);
+                page.getEntries().forEach(entry -> listed.add(entry.getName()));
+                cursor = page.getNextCursor();
+                fromIndex = !fromIndex;
+            } while (cursor != null);
+
+            assertThat(listed).containsExactlyElementsOf(names);
+        }
+    }
+
+    private void save(String path, boolean directory, long size, int minutes) {
+        FileEntity entity = new FileEntity();
+        entity.setName(path.substring(path.lastIndexOf('/') + 1));
+        entity.setPath(path);
+        entity.setPhysicalPath("/srv/shared" + path);
+        entity.setDirectory(directory);
+        entity.setSize(size);
+        entity.setCreatedAt(NOW);
+        entity.setModifiedAt(NOW.plusMinutes(minutes));
+        fileEntityRepository.save(entity);
+    }
+}